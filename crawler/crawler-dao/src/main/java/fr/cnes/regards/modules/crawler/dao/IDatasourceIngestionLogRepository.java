@@ -0,0 +1,37 @@
+package fr.cnes.regards.modules.crawler.dao;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
+
+/**
+ * @author oroussel
+ */
+public interface IDatasourceIngestionLogRepository extends JpaRepository<DatasourceIngestionLog, Long> {
+
+    /**
+     * Find a page of given DatasourceIngestion log entries
+     */
+    Page<DatasourceIngestionLog> findByDsId(String dsId, Pageable pageable);
+
+    long countByDsId(String dsId);
+
+    /**
+     * Delete all given DatasourceIngestion log entries
+     */
+    @Modifying
+    @Query("DELETE FROM DatasourceIngestionLog log WHERE log.dsId = :dsId")
+    int deleteByDsId(@Param("dsId") String dsId);
+
+    /**
+     * Delete given DatasourceIngestion log entries older than given one
+     */
+    @Modifying
+    @Query("DELETE FROM DatasourceIngestionLog log WHERE log.dsId = :dsId AND log.id < :id")
+    int deleteByDsIdAndIdLessThan(@Param("dsId") String dsId, @Param("id") Long id);
+}
@@ -1,12 +1,13 @@
 package fr.cnes.regards.modules.crawler.dao;
 
 import java.time.OffsetDateTime;
-import java.util.Optional;
-
-import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
 import fr.cnes.regards.modules.crawler.domain.IngestionStatus;
@@ -17,18 +18,79 @@ import fr.cnes.regards.modules.crawler.domain.IngestionStatus;
 public interface IDatasourceIngestionRepository extends JpaRepository<DatasourceIngestion, String> {
 
     /**
-     * Find a DatasourceIngestion (any of them) whom next planned ingest date is less than given date
-     * and with given status (usually 'STARTED')
-     * @return a DatasourceIngestion or nothing
+     * Find all DatasourceIngestions whom next planned ingest date is less than given date and with status different
+     * from given one, oldest planned first
+     */
+    List<DatasourceIngestion> findByNextPlannedIngestDateLessThanAndStatusNotOrderByNextPlannedIngestDateAsc(
+            OffsetDateTime limitDate, IngestionStatus status);
+
+    /**
+     * Whether at least one DatasourceIngestion has given status
+     */
+    boolean existsByStatus(IngestionStatus status);
+
+    /**
+     * Find all DatasourceIngestions ready to be ingested, oldest planned first. Nothing is locked, candidates have to
+     * be claimed with {@link #claim(String, String, OffsetDateTime)}
+     */
+    default List<DatasourceIngestion> findAllReady(OffsetDateTime limitDate) {
+        return findByNextPlannedIngestDateLessThanAndStatusNotOrderByNextPlannedIngestDateAsc(limitDate,
+                                                                                              IngestionStatus.STARTED);
+    }
+
+    /**
+     * Atomically mark given DatasourceIngestion as STARTED by given owner (reinitializing previous ingestion
+     * properties) only if it is not already STARTED. When several instances try to claim the same DatasourceIngestion,
+     * only one of them wins.
+     * @return 1 if DatasourceIngestion has been claimed, 0 if it has been claimed by someone else meanwhile
      */
-    @Lock(LockModeType.PESSIMISTIC_READ)
-    Optional<DatasourceIngestion> findTopByNextPlannedIngestDateLessThanAndStatusNot(OffsetDateTime limitDate,
-            IngestionStatus status);
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DatasourceIngestion dsi SET dsi.status = :status, dsi.statusDate = :statusDate, "
+            + "dsi.owner = :owner, dsi.heartbeatDate = :statusDate, "
+            + "dsi.duration = null, dsi.stackTrace = null, dsi.savedObjectsCount = 0, dsi.inErrorObjectsCount = 0 "
+            + "WHERE dsi.id = :id AND dsi.status <> :status")
+    int updateStatusIfNot(@Param("id") String id, @Param("status") IngestionStatus status,
+            @Param("owner") String owner, @Param("statusDate") OffsetDateTime statusDate);
 
     /**
-     * Find next DatasourceIngestion ready to be ingested
+     * Claim given DatasourceIngestion, see {@link #updateStatusIfNot(String, IngestionStatus, String, OffsetDateTime)}
+     * @return true if DatasourceIngestion has been claimed
      */
-    default Optional<DatasourceIngestion> findNextReady(OffsetDateTime limitDate) {
-        return findTopByNextPlannedIngestDateLessThanAndStatusNot(limitDate, IngestionStatus.STARTED);
+    default boolean claim(String id, String owner, OffsetDateTime statusDate) {
+        return updateStatusIfNot(id, IngestionStatus.STARTED, owner, statusDate) == 1;
     }
+
+    /**
+     * Update heartbeat date of given STARTED DatasourceIngestions owned by given owner
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DatasourceIngestion dsi SET dsi.heartbeatDate = :heartbeatDate "
+            + "WHERE dsi.id IN :ids AND dsi.owner = :owner AND dsi.status = :status")
+    int updateHeartbeat(@Param("ids") Collection<String> ids, @Param("owner") String owner,
+            @Param("status") IngestionStatus status, @Param("heartbeatDate") OffsetDateTime heartbeatDate);
+
+    /**
+     * Set given status and cause to all DatasourceIngestions with given current status owned by given owner
+     * @return count of updated DatasourceIngestions
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DatasourceIngestion dsi SET dsi.status = :newStatus, dsi.statusDate = :statusDate, "
+            + "dsi.stackTrace = :cause, dsi.owner = null WHERE dsi.status = :status AND dsi.owner = :owner")
+    int updateStatusByOwner(@Param("status") IngestionStatus status, @Param("owner") String owner,
+            @Param("newStatus") IngestionStatus newStatus, @Param("cause") String cause,
+            @Param("statusDate") OffsetDateTime statusDate);
+
+    /**
+     * Set given status and cause to all DatasourceIngestions with given current status whom owner has not given any
+     * sign of life since given date (or has never given one)
+     * @return count of updated DatasourceIngestions
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DatasourceIngestion dsi SET dsi.status = :newStatus, dsi.statusDate = :statusDate, "
+            + "dsi.stackTrace = :cause, dsi.owner = null WHERE dsi.status = :status "
+            + "AND (dsi.heartbeatDate IS NULL OR dsi.heartbeatDate < :heartbeatLimitDate)")
+    int updateStatusByHeartbeatBefore(@Param("status") IngestionStatus status,
+            @Param("heartbeatLimitDate") OffsetDateTime heartbeatLimitDate,
+            @Param("newStatus") IngestionStatus newStatus, @Param("cause") String cause,
+            @Param("statusDate") OffsetDateTime statusDate);
 }
@@ -0,0 +1,59 @@
+package fr.cnes.regards.modules.crawler.dao;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import fr.cnes.regards.modules.crawler.domain.PendingDatasetUpdate;
+
+/**
+ * @author oroussel
+ */
+public interface IPendingDatasetUpdateRepository extends JpaRepository<PendingDatasetUpdate, String> {
+
+    /**
+     * Plan the update of given dataset or merge a new event into its pending update, atomically so that concurrent
+     * first events of a dataset are all merged into the same pending update
+     * @param eventDate UTC event date
+     * @param forceDataObjectsUpdate whether all dataset data objects must be updated (kept once set)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO {h-schema}t_pending_dataset_update (dataset_ipid, force_data_objects_update, "
+            + "first_event_date, last_event_date, events_count) "
+            + "VALUES (:datasetIpId, :forceDataObjectsUpdate, :eventDate, :eventDate, 1) "
+            + "ON CONFLICT (dataset_ipid) DO UPDATE SET last_event_date = EXCLUDED.last_event_date, "
+            + "events_count = t_pending_dataset_update.events_count + 1, force_data_objects_update = "
+            + "t_pending_dataset_update.force_data_objects_update OR EXCLUDED.force_data_objects_update",
+            nativeQuery = true)
+    void plan(@Param("datasetIpId") String datasetIpId, @Param("eventDate") LocalDateTime eventDate,
+            @Param("forceDataObjectsUpdate") boolean forceDataObjectsUpdate);
+
+    /**
+     * Find all pending updates without new event since given date or whose first event is older than given date
+     */
+    @Query("SELECT u FROM PendingDatasetUpdate u WHERE u.lastEventDate <= :lastEventLimitDate "
+            + "OR u.firstEventDate <= :firstEventLimitDate ORDER BY u.firstEventDate")
+    List<PendingDatasetUpdate> findDue(@Param("lastEventLimitDate") OffsetDateTime lastEventLimitDate,
+            @Param("firstEventLimitDate") OffsetDateTime firstEventLimitDate);
+
+    /**
+     * Reset event dates of given pending update so that it is not due before coalescing delay
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE PendingDatasetUpdate u SET u.firstEventDate = :date, u.lastEventDate = :date "
+            + "WHERE u.datasetIpId = :datasetIpId")
+    int postpone(@Param("datasetIpId") String datasetIpId, @Param("date") OffsetDateTime date);
+
+    /**
+     * Remove given pending update only if no event has been merged into it since it has been read
+     * @return 1 if pending update has been removed, 0 otherwise
+     */
+    @Modifying
+    @Query("DELETE FROM PendingDatasetUpdate u WHERE u.datasetIpId = :datasetIpId AND u.eventsCount = :eventsCount")
+    int deleteIfUnchanged(@Param("datasetIpId") String datasetIpId, @Param("eventsCount") int eventsCount);
+}
@@ -0,0 +1,45 @@
+package fr.cnes.regards.modules.crawler.dao;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import fr.cnes.regards.modules.crawler.domain.PendingFeatureDeletion;
+
+/**
+ * @author oroussel
+ */
+public interface IPendingFeatureDeletionRepository extends JpaRepository<PendingFeatureDeletion, String> {
+
+    /**
+     * Save a feature deletion unless it is already pending
+     * @param eventDate UTC event date
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO {h-schema}t_pending_feature_deletion (feature_id, event_date, attempts) "
+            + "VALUES (:featureId, :eventDate, 0) ON CONFLICT (feature_id) DO NOTHING", nativeQuery = true)
+    void add(@Param("featureId") String featureId, @Param("eventDate") LocalDateTime eventDate);
+
+    /**
+     * Find oldest pending deletions
+     */
+    @Query("SELECT d FROM PendingFeatureDeletion d ORDER BY d.eventDate")
+    List<PendingFeatureDeletion> findOldest(Pageable pageable);
+
+    /**
+     * Count a failed attempt of given pending deletions
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE PendingFeatureDeletion d SET d.attempts = d.attempts + 1 WHERE d.featureId IN :featureIds")
+    int countFailedAttempt(@Param("featureIds") Collection<String> featureIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM PendingFeatureDeletion d WHERE d.featureId IN :featureIds")
+    int deleteByFeatureIds(@Param("featureIds") Collection<String> featureIds);
+}
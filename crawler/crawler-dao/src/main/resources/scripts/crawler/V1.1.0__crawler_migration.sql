@@ -0,0 +1 @@
+alter table t_datasource_ingestion add column error_last_key text;
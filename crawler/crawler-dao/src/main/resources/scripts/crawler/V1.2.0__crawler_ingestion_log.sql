@@ -0,0 +1,3 @@
+create table t_datasource_ingestion_log (id int8 not null, ds_id varchar(36) not null, date timestamp not null, message text, primary key (id));
+create index idx_dsi_log_ds_id on t_datasource_ingestion_log (ds_id);
+create sequence seq_datasource_ingestion_log start 1 increment 500;
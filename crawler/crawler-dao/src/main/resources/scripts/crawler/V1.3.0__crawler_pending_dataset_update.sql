@@ -0,0 +1 @@
+create table t_pending_dataset_update (dataset_ipid varchar(128) not null, force_data_objects_update boolean not null, first_event_date timestamp not null, last_event_date timestamp not null, events_count int4 not null, primary key (dataset_ipid));
@@ -0,0 +1,2 @@
+alter table t_datasource_ingestion add column owner varchar(128);
+alter table t_datasource_ingestion add column heartbeat_date timestamp;
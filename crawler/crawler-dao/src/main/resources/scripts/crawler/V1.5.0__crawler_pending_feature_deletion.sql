@@ -0,0 +1,2 @@
+create table t_pending_feature_deletion (feature_id varchar(128) not null, event_date timestamp not null, attempts int4 not null, primary key (feature_id));
+create index idx_pending_feature_deletion_date on t_pending_feature_deletion (event_date);
@@ -69,6 +69,19 @@ public class DatasourceIngestion {
     @Convert(converter = OffsetDateTimeAttributeConverter.class)
     private OffsetDateTime statusDate = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
 
+    /**
+     * Identifier of crawler instance running current (STARTED) ingestion
+     */
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    /**
+     * Date of last sign of life of crawler instance running current (STARTED) ingestion
+     */
+    @Column(name = "heartbeat_date")
+    @Convert(converter = OffsetDateTimeAttributeConverter.class)
+    private OffsetDateTime heartbeatDate;
+
     /**
      * Last ingestion saved objects count
      */
@@ -87,6 +100,13 @@ public class DatasourceIngestion {
     @Column(name = "error_page_nb")
     private Integer errorPageNumber;
 
+    /**
+     * Last NOT_FINISHED ingestion key of last entity read before failed page (keyset paginated datasources)
+     */
+    @Column(name = "error_last_key")
+    @Type(type = "text")
+    private String errorLastKey;
+
     /**
      * When status is ERROR, the exception stack trace
      */
@@ -196,6 +216,30 @@ public class DatasourceIngestion {
         this.errorPageNumber = errorPageNumber;
     }
 
+    public String getErrorLastKey() {
+        return errorLastKey;
+    }
+
+    public void setErrorLastKey(String errorLastKey) {
+        this.errorLastKey = errorLastKey;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public OffsetDateTime getHeartbeatDate() {
+        return heartbeatDate;
+    }
+
+    public void setHeartbeatDate(OffsetDateTime heartbeatDate) {
+        this.heartbeatDate = heartbeatDate;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -231,5 +275,4 @@ public class DatasourceIngestion {
         return "DatasourceIngestion [id=" + id + ", lastIngestDate=" + lastIngestDate + ", status=" + status
                 + ", statusDate=" + statusDate + "]";
     }
-
 }
@@ -0,0 +1,72 @@
+package fr.cnes.regards.modules.crawler.domain;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Type;
+
+import fr.cnes.regards.framework.jpa.converters.OffsetDateTimeAttributeConverter;
+
+/**
+ * Datasource ingestion progress log entry. Entries are only appended (never updated), one per progress message.
+ * @author oroussel
+ */
+@Entity
+@Table(name = "t_datasource_ingestion_log", indexes = { @Index(name = "idx_dsi_log_ds_id", columnList = "ds_id") })
+@SequenceGenerator(name = "dsIngestionLogSequence", initialValue = 1, sequenceName = "seq_datasource_ingestion_log",
+        allocationSize = 500)
+public class DatasourceIngestionLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dsIngestionLogSequence")
+    private Long id;
+
+    /**
+     * Datasource ingestion id (see {@link DatasourceIngestion#getId()})
+     */
+    @Column(name = "ds_id", length = 36, nullable = false)
+    private String dsId;
+
+    @Column(name = "date", nullable = false)
+    @Convert(converter = OffsetDateTimeAttributeConverter.class)
+    private OffsetDateTime date;
+
+    @Column(name = "message")
+    @Type(type = "text")
+    private String message;
+
+    @SuppressWarnings("unused")
+    private DatasourceIngestionLog() {
+    }
+
+    public DatasourceIngestionLog(String dsId, OffsetDateTime date, String message) {
+        this.dsId = dsId;
+        this.date = date;
+        this.message = message;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDsId() {
+        return dsId;
+    }
+
+    public OffsetDateTime getDate() {
+        return date;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,77 @@
+package fr.cnes.regards.modules.crawler.domain;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import fr.cnes.regards.framework.jpa.converters.OffsetDateTimeAttributeConverter;
+
+/**
+ * Dataset update still to be done, merging all events received on the dataset since it has been planned. It is saved
+ * with the consumption of the event so that no update is lost if the crawler stops before doing it.
+ * @author oroussel
+ */
+@Entity
+@Table(name = "t_pending_dataset_update")
+public class PendingDatasetUpdate {
+
+    /**
+     * Dataset URN
+     */
+    @Id
+    @Column(name = "dataset_ipid", length = 128)
+    private String datasetIpId;
+
+    /**
+     * Whether all dataset data objects must be updated (union of all merged events)
+     */
+    @Column(name = "force_data_objects_update", nullable = false)
+    private boolean forceDataObjectsUpdate;
+
+    @Column(name = "first_event_date", nullable = false)
+    @Convert(converter = OffsetDateTimeAttributeConverter.class)
+    private OffsetDateTime firstEventDate;
+
+    @Column(name = "last_event_date", nullable = false)
+    @Convert(converter = OffsetDateTimeAttributeConverter.class)
+    private OffsetDateTime lastEventDate;
+
+    @Column(name = "events_count", nullable = false)
+    private int eventsCount;
+
+    @SuppressWarnings("unused")
+    private PendingDatasetUpdate() {
+    }
+
+    public PendingDatasetUpdate(String datasetIpId, boolean forceDataObjectsUpdate, OffsetDateTime eventDate) {
+        this.datasetIpId = datasetIpId;
+        this.forceDataObjectsUpdate = forceDataObjectsUpdate;
+        this.firstEventDate = eventDate;
+        this.lastEventDate = eventDate;
+        this.eventsCount = 1;
+    }
+
+    public String getDatasetIpId() {
+        return datasetIpId;
+    }
+
+    public boolean isForceDataObjectsUpdate() {
+        return forceDataObjectsUpdate;
+    }
+
+    public OffsetDateTime getFirstEventDate() {
+        return firstEventDate;
+    }
+
+    public OffsetDateTime getLastEventDate() {
+        return lastEventDate;
+    }
+
+    public int getEventsCount() {
+        return eventsCount;
+    }
+}
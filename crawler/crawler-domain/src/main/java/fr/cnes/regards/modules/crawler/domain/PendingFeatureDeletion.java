@@ -0,0 +1,60 @@
+package fr.cnes.regards.modules.crawler.domain;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import fr.cnes.regards.framework.jpa.converters.OffsetDateTimeAttributeConverter;
+
+/**
+ * Feature deletion from index still to be sent. It is saved with the consumption of the feature event asking for it so
+ * that no deletion is lost if the crawler stops before sending it.
+ * @author oroussel
+ */
+@Entity
+@Table(name = "t_pending_feature_deletion")
+public class PendingFeatureDeletion {
+
+    /**
+     * Feature id (URN)
+     */
+    @Id
+    @Column(name = "feature_id", length = 128)
+    private String featureId;
+
+    @Column(name = "event_date", nullable = false)
+    @Convert(converter = OffsetDateTimeAttributeConverter.class)
+    private OffsetDateTime eventDate;
+
+    /**
+     * Count of failed sendings
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @SuppressWarnings("unused")
+    private PendingFeatureDeletion() {
+    }
+
+    public PendingFeatureDeletion(String featureId, OffsetDateTime eventDate) {
+        this.featureId = featureId;
+        this.eventDate = eventDate;
+        this.attempts = 0;
+    }
+
+    public String getFeatureId() {
+        return featureId;
+    }
+
+    public OffsetDateTime getEventDate() {
+        return eventDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -21,8 +21,13 @@ package fr.cnes.regards.modules.crawler.rest;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.PagedModel;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -36,6 +41,7 @@ import fr.cnes.regards.framework.hateoas.LinkRels;
 import fr.cnes.regards.framework.hateoas.MethodParamFactory;
 import fr.cnes.regards.framework.security.annotation.ResourceAccess;
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
 import fr.cnes.regards.modules.crawler.service.ICrawlerAndIngesterService;
 
 /**
@@ -50,6 +56,8 @@ public class CrawlerController implements IResourceController<DatasourceIngestio
 
     public static final String INGESTION_ID = "/{ingestion_id}";
 
+    public static final String LOGS = "/logs";
+
     /**
      * Crawler service
      */
@@ -72,6 +80,20 @@ public class CrawlerController implements IResourceController<DatasourceIngestio
         return ResponseEntity.ok(toResources(crawlerService.getDatasourceIngestions()));
     }
 
+    /**
+     * Retrieve a page of DatasourceIngestion progress log entries (oldest first by default)
+     * @param ingestionId {@link DatasourceIngestion} id
+     * @return a page of DatasourceIngestionLog
+     */
+    @ResourceAccess(description = "List crawler datasource ingestion progress log.")
+    @RequestMapping(method = RequestMethod.GET, value = INGESTION_ID + LOGS)
+    public ResponseEntity<PagedModel<EntityModel<DatasourceIngestionLog>>> getDatasourceIngestionLogs(
+            @PathVariable("ingestion_id") String ingestionId,
+            @PageableDefault(sort = "id", direction = Sort.Direction.ASC, size = 100) Pageable pageable,
+            PagedResourcesAssembler<DatasourceIngestionLog> assembler) {
+        return ResponseEntity.ok(assembler.toModel(crawlerService.getDatasourceIngestionLogs(ingestionId, pageable)));
+    }
+
     /**
      * Delete a DatasourceIngestion.
      * @param ingestionId {@link DatasourceIngestion} id
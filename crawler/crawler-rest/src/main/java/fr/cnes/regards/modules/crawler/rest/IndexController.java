@@ -26,6 +26,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
@@ -55,26 +56,34 @@ public class IndexController {
 
     /**
      * Delete a DatasourceIngestion.
+     * @param zeroDowntime if true, index is rebuilt into a new one replacing current one only once filled (searches
+     *            still work during rebuild) instead of being deleted then recreated
      * @return void
      * @throws ModuleException
      */
     @ResourceAccess(description = "Delete and recreate curent index.")
     @RequestMapping(method = RequestMethod.DELETE)
-    public ResponseEntity<Void> recreateIndex() throws ModuleException {
+    public ResponseEntity<Void> recreateIndex(
+            @RequestParam(name = "zeroDowntime", required = false, defaultValue = "false") boolean zeroDowntime)
+            throws ModuleException {
 
         String tenant = runtimeTenantResolver.getTenant();
 
-        entityIndexerService.deleteIndexNRecreateEntities(tenant);
+        if (zeroDowntime) {
+            // Entities are recreated into new index and current documents (thus ingested data objects) are kept
+            entityIndexerService.rebuildIndexNRecreateEntities(tenant);
+        } else {
+            entityIndexerService.deleteIndexNRecreateEntities(tenant);
 
-        // Clear all datasources ingestion
-        //2. Then re-create all entities
-        entityIndexerService.updateAllDatasets(tenant, OffsetDateTime.now());
-        entityIndexerService.updateAllCollections(tenant, OffsetDateTime.now());
+            //2. Then re-create all entities
+            entityIndexerService.updateAllDatasets(tenant, OffsetDateTime.now());
+            entityIndexerService.updateAllCollections(tenant, OffsetDateTime.now());
 
-        //3. Clear all datasources ingestion
-        List<DatasourceIngestion> datasources = dataSourceIngesterService.getDatasourceIngestions();
-        if ((datasources != null) && !datasources.isEmpty()) {
-            datasources.forEach(ds -> dataSourceIngesterService.deleteDatasourceIngestion(ds.getId()));
+            //3. Clear all datasources ingestion
+            List<DatasourceIngestion> datasources = dataSourceIngesterService.getDatasourceIngestions();
+            if ((datasources != null) && !datasources.isEmpty()) {
+                datasources.forEach(ds -> dataSourceIngesterService.deleteDatasourceIngestion(ds.getId()));
+            }
         }
 
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.rest;
+
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import fr.cnes.regards.framework.jpa.multitenant.transactional.MultitenantTransactional;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.test.integration.AbstractRegardsTransactionalIT;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionLogRepository;
+import fr.cnes.regards.modules.crawler.service.DatasourceIngestionLogService;
+
+/**
+ * Test datasource ingestions endpoints
+ * @author oroussel
+ */
+@MultitenantTransactional
+@TestPropertySource("classpath:test.properties")
+public class CrawlerControllerIT extends AbstractRegardsTransactionalIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrawlerControllerIT.class);
+
+    private static final String DS_ID = "logged_ds";
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private DatasourceIngestionLogService dsIngestionLogService;
+
+    @Autowired
+    private IDatasourceIngestionLogRepository dsIngestionLogRepos;
+
+    @Override
+    protected Logger getLogger() {
+        return LOGGER;
+    }
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver.forceTenant(getDefaultTenant());
+        dsIngestionLogRepos.deleteAll();
+    }
+
+    @Test
+    public void testGetDatasourceIngestionLogs() {
+        // Entries are still pending (below flush size), endpoint must return them anyway
+        for (int i = 0; i < 5; i++) {
+            dsIngestionLogService.append(getDefaultTenant(), DS_ID, "message " + i);
+        }
+        dsIngestionLogService.append(getDefaultTenant(), "other_ds", "other message");
+
+        performDefaultGet(CrawlerController.TYPE_MAPPING + CrawlerController.INGESTION_ID + CrawlerController.LOGS,
+                          customizer().expectStatusOk().addParameter("size", "2")
+                                  .expectValue("$.metadata.totalElements", 5)
+                                  .expect(MockMvcResultMatchers.jsonPath("$.content", Matchers.hasSize(2)))
+                                  .expectValue("$.content[0].content.message", "message 0")
+                                  .expectValue("$.content[1].content.message", "message 1"),
+                          "Cannot retrieve datasource ingestion logs", DS_ID);
+
+        // Oldest first
+        performDefaultGet(CrawlerController.TYPE_MAPPING + CrawlerController.INGESTION_ID + CrawlerController.LOGS,
+                          customizer().expectStatusOk().addParameter("page", "2").addParameter("size", "2")
+                                  .expect(MockMvcResultMatchers.jsonPath("$.content", Matchers.hasSize(1)))
+                                  .expectValue("$.content[0].content.message", "message 4"),
+                          "Cannot retrieve datasource ingestion logs", DS_ID);
+    }
+
+    @Test
+    public void testGetUnknownDatasourceIngestionLogs() {
+        performDefaultGet(CrawlerController.TYPE_MAPPING + CrawlerController.INGESTION_ID + CrawlerController.LOGS,
+                          customizer().expectStatusOk().expectValue("$.metadata.totalElements", 0),
+                          "Cannot retrieve datasource ingestion logs", "unknown_ds");
+    }
+}
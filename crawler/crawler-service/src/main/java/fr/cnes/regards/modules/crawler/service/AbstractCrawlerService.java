@@ -175,7 +175,7 @@ public abstract class AbstractCrawlerService<T extends AbstractEntityEvent> {
                 OffsetDateTime now = OffsetDateTime.now();
                 Arrays.stream(ipIds).forEach(ipId -> {
                     try {
-                        entityIndexerService.updateEntityIntoEs(runtimeTenantResolver.getTenant(), ipId, now, false);
+                        updateEntityIntoEs(runtimeTenantResolver.getTenant(), ipId, now);
                     } catch (ModuleException e) {
                         LOGGER.error("Error handling entity update events", e);
                         // FIXME notify
@@ -187,6 +187,21 @@ public abstract class AbstractCrawlerService<T extends AbstractEntityEvent> {
         return atLeastOnePoll;
     }
 
+    /**
+     * Update entity into Elasticsearch following a polled event. By default, update is immediately done.
+     */
+    protected void updateEntityIntoEs(String tenant, UniformResourceName ipId, OffsetDateTime updateDate)
+            throws ModuleException {
+        entityIndexerService.updateEntityIntoEs(tenant, ipId, updateDate, false);
+    }
+
+    /**
+     * Indicate whether some work asked by already polled events remains to be done (none by default)
+     */
+    protected boolean hasPendingWork() {
+        return false;
+    }
+
     public boolean working() { // NOSONAR : test purpose
         return delay.get() < MAX_DELAY_MS;
     }
@@ -217,7 +232,7 @@ public abstract class AbstractCrawlerService<T extends AbstractEntityEvent> {
         // In case work hasn't started yet.
         Thread.sleep(3_000);
         // As soon as something has been done, we wait for crawler service to no more be busy
-        while (inProgress || (!somethingDone && !strolling())) {
+        while (inProgress || hasPendingWork() || (!somethingDone && !strolling())) {
             Thread.sleep(1_000);
         }
         LOGGER.info("...Work ended");
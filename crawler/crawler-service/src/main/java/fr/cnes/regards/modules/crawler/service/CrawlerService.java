@@ -23,16 +23,31 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
@@ -55,9 +70,12 @@ import fr.cnes.regards.framework.oais.urn.OAISIdentifier;
 import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
 import fr.cnes.regards.framework.security.role.DefaultRole;
 import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.framework.utils.RsRuntimeException;
 import fr.cnes.regards.framework.utils.plugins.exception.NotAvailablePluginConfigurationException;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionLogRepository;
 import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
 import fr.cnes.regards.modules.crawler.domain.IngestionResult;
 import fr.cnes.regards.modules.crawler.service.conf.CrawlerPropertiesConfiguration;
 import fr.cnes.regards.modules.crawler.service.event.DataSourceMessageEvent;
@@ -65,10 +83,13 @@ import fr.cnes.regards.modules.crawler.service.exception.NotFinishedException;
 import fr.cnes.regards.modules.dam.domain.datasources.plugins.DataSourceException;
 import fr.cnes.regards.modules.dam.domain.datasources.plugins.IAipDataSourcePlugin;
 import fr.cnes.regards.modules.dam.domain.datasources.plugins.IDataSourcePlugin;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.IKeysetDataSourcePlugin;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.KeysetPage;
 import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.dam.domain.entities.Dataset;
 import fr.cnes.regards.modules.dam.domain.entities.event.NotDatasetEntityEvent;
 import fr.cnes.regards.modules.dam.domain.entities.feature.DataObjectFeature;
+import fr.cnes.regards.modules.indexer.dao.BulkIndexingSession;
 import fr.cnes.regards.modules.indexer.dao.BulkSaveLightResult;
 import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
 import fr.cnes.regards.modules.indexer.dao.IEsRepository;
@@ -125,6 +146,25 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
     @Autowired
     private CrawlerPropertiesConfiguration crawlerConf;
 
+    @Autowired
+    private DatasourceIngestionService dsIngestionService;
+
+    @Autowired
+    private DatasourceIngestionLogService dsIngestionLogService;
+
+    @Autowired
+    private IDatasourceIngestionLogRepository dsIngestionLogRepos;
+
+    /**
+     * Ingestion pipeline prepare stage executor (shared by all ingestions)
+     */
+    private ThreadPoolExecutor prepareExecutor;
+
+    /**
+     * Ingestion pipeline index stage executor (shared by all ingestions)
+     */
+    private ThreadPoolExecutor indexExecutor;
+
     /**
      * Build an URN for a {@link EntityType} of type DATA. The URN contains an UUID builds for a specific value, it used
      * {@link UUID#nameUUIDFromBytes(byte[])}.
@@ -138,6 +178,23 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
                 UUID.nameUUIDFromBytes((datasourceId + "$$" + providerId).getBytes()), 1);
     }
 
+    @PostConstruct
+    public void initPipelineExecutors() {
+        prepareExecutor = newFixedThreadPool(crawlerConf.getPipelinePrepareThreads());
+        indexExecutor = newFixedThreadPool(crawlerConf.getPipelineIndexThreads());
+    }
+
+    @PreDestroy
+    public void shutdownPipelineExecutors() {
+        prepareExecutor.shutdown();
+        indexExecutor.shutdown();
+    }
+
+    private static ThreadPoolExecutor newFixedThreadPool(int threadsCount) {
+        return new ThreadPoolExecutor(threadsCount, threadsCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+    }
+
     @Override
     @Async
     public void crawl() {
@@ -155,6 +212,8 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
             OffsetDateTime lastUpdateDate = dsi.getLastIngestDate();
             // In case last ingestion has finished with a NOT_FINISHED status, failed page number is given
             int pageNumber = dsi.getErrorPageNumber() == null ? 0 : dsi.getErrorPageNumber();
+            // and, for keyset paginated datasources, key of last entity read before failed page
+            String lastKey = dsi.getErrorLastKey();
             String dsiId = dsi.getId();
 
             IDataSourcePlugin dsPlugin;
@@ -175,17 +234,24 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
                         DataObject.class);
                 mergeNeeded = esRepos.count(searchKey, ICriterion.all()) != 0;
             }
-            if (mergeNeeded) {
-                // index exists, data objects may also exist
-                sendMessage("Start reading datasource and merging/creating objects...", dsiId);
-                saveResult = readDatasourceAndMergeDataObjects(lastUpdateDate, tenant, dsPlugin, now, datasourceId,
-                                                               dsiId, pageNumber);
-            } else {
-                sendMessage("Start reading datasource and creating objects...", dsiId);
-                saveResult = readDatasourceAndCreateDataObjects(lastUpdateDate, tenant, dsPlugin, now, datasourceId,
-                                                                dsiId, pageNumber);
+            // Index is neither refreshed nor replicated while data objects are saved, only once all have been saved
+            // (merge only needs to get objects by id which doesn't need a refresh)
+            try (BulkIndexingSession bulkSession = esRepos.openBulkIndexingSession(tenant)) {
+                if (mergeNeeded) {
+                    // index exists, data objects may also exist
+                    sendMessage("Start reading datasource and merging/creating objects...", dsiId);
+                    saveResult = readDatasourceAndIndexDataObjects(lastUpdateDate, tenant, dsPlugin, now,
+                                                                   datasourceId, dsiId, pageNumber, lastKey, true);
+                } else {
+                    sendMessage("Start reading datasource and creating objects...", dsiId);
+                    saveResult = readDatasourceAndIndexDataObjects(lastUpdateDate, tenant, dsPlugin, now,
+                                                                   datasourceId, dsiId, pageNumber, lastKey, false);
+                }
             }
             sendMessage(String.format("...End reading datasource %s.", dsi.getLabel()), dsiId);
+            // Closing the session only refreshes index if it was the last one opened on it (other ingestions of the
+            // same tenant may be running) so index is explicitly refreshed before searching saved data objects
+            esRepos.refresh(tenant);
             // In case Dataset associated with datasourceId already exists (or had been created between datasource creation
             // and its ingestion), we must search for it and do as it has been updated (to update all associated data
             // objects which have a lastUpdate date >= now)
@@ -212,133 +278,125 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
         return Optional.empty();
     }
 
-    private BulkSaveLightResult readDatasourceAndMergeDataObjects(OffsetDateTime lastUpdateDate, String tenant,
-            IDataSourcePlugin dsPlugin, OffsetDateTime now, Long datasourceId, String dsiId, int pageNumber)
-            throws InterruptedException, DataSourceException, ModuleException, NotFinishedException,
-            ExecutionException {
+    /**
+     * Read datasource and index its data objects through a pipeline of 3 stages :
+     * <ul>
+     * <li>datasource pages are read by current thread (sequentially, a page gives the next one),</li>
+     * <li>each page is then prepared (wrapped into data objects, merged with already indexed ones if needed, geometries
+     * normalized and data objects validated) by the prepare executor,</li>
+     * <li>and prepared data objects are bulk indexed by the index executor.</li>
+     * </ul>
+     * Pages are prepared and indexed concurrently, except pages sharing a data object : a data object may be found in
+     * several pages and the last one read must win, as if datasource was read sequentially. So a page is only indexed
+     * once all previously read pages still in progress sharing a data object with it are indexed and, when merging, it
+     * is also only prepared after them because merging reads indexed data objects.<br/>
+     * At most {@link CrawlerPropertiesConfiguration#getPipelineQueueDepth()} pages can be read and not yet indexed,
+     * datasource reading waits (and reports stalls) while this limit is reached.<br/>
+     * In case of failure after first page, a {@link NotFinishedException} is thrown with the lowest page number not
+     * indexed (and the key of the last entity read before it for keyset paginated datasources) to permit next
+     * ingestion to resume from it.<br/>
+     * Datasources implementing {@link IKeysetDataSourcePlugin} are read by key, others by page number.
+     * @param pageNumber page number to start from (page counter for keyset paginated datasources)
+     * @param lastKey key of last entity read before page to start from (keyset paginated datasources, may be null)
+     * @param merge whether data objects have to be merged with already indexed ones
+     */
+    private BulkSaveLightResult readDatasourceAndIndexDataObjects(OffsetDateTime lastUpdateDate, String tenant,
+            IDataSourcePlugin dsPlugin, OffsetDateTime now, Long datasourceId, String dsiId, int pageNumber,
+            String lastKey, boolean merge) throws InterruptedException, DataSourceException, ModuleException,
+            NotFinishedException, ExecutionException {
         BulkSaveLightResult saveResult = new BulkSaveLightResult();
+        // Retrieve target model
+        Model model = modelService.getModelByName(dsPlugin.getModelName());
+        boolean fromAipDatasource = IAipDataSourcePlugin.class.isAssignableFrom(dsPlugin.getClass());
+        // Pages read and not yet indexed
+        Semaphore pendingPages = new Semaphore(crawlerConf.getPipelineQueueDepth());
+        // Indexation tasks by page number
+        SortedMap<Integer, Future<BulkSaveResult>> tasks = new TreeMap<>();
+        AtomicBoolean indexationFailed = new AtomicBoolean(false);
         int availableRecordsCount = 0;
-        // Use a thread pool of size 1 to merge data while datasource pull other data
-        ExecutorService executor = Executors.newFixedThreadPool(1);
-        sendMessage(String.format("  Finding at most %d records from datasource...", crawlerConf.getMaxBulkSize()),
-                    dsiId);
-        Page<DataObject> page = null;
-        Future<BulkSaveResult> task = null;
-        try {
+        int size = crawlerConf.getMaxBulkSize();
+        // Key of last entity read before each page, by page number (only for keyset paginated datasources)
+        Map<Integer, String> lastKeys = new HashMap<>();
+        Integer currentPageNumber = pageNumber;
+        String currentLastKey = lastKey;
+        // Data objects keys of pages read and not yet indexed (see objectKey()), by page number
+        ConcurrentMap<Integer, Set<String>> inProgressKeys = new ConcurrentHashMap<>();
+        // Indexation tasks of pages read and not yet indexed, by page number
+        ConcurrentMap<Integer, CompletableFuture<BulkSaveResult>> inProgressTasks = new ConcurrentHashMap<>();
+        while ((currentPageNumber != null) && !indexationFailed.get()) {
+            awaitPendingPage(pendingPages, dsiId);
+            sendMessage(String.format("  Finding at most %d records from datasource...", size), dsiId);
+            lastKeys.put(currentPageNumber, currentLastKey);
+            List<DataObjectFeature> features;
+            boolean hasNext;
             try {
-                page = findAllFromDatasource(lastUpdateDate, tenant, dsPlugin, datasourceId, dsiId,
-                                             PageRequest.of(pageNumber, crawlerConf.getMaxBulkSize()));
-                sendMessage(String.format("  ...Found at most %d records from datasource", page.getNumberOfElements()),
-                            dsiId);
-                availableRecordsCount += page.getNumberOfElements();
-                final List<DataObject> list = page.getContent();
-                task = executor.submit(mergeDataObjectCallable(tenant, now, datasourceId, dsiId, list));
-
-                while (page.hasNext()) {
-                    sendMessage(String.format("  Finding %d records from datasource...",
-                                              page.getPageable().getPageSize()),
-                                dsiId);
-                    page = findAllFromDatasource(lastUpdateDate, tenant, dsPlugin, datasourceId, dsiId,
-                                                 page.nextPageable());
-                    availableRecordsCount += page.getNumberOfElements();
-                    sendMessage(String.format("  ...Found %d records from datasource. Total currently found=%d",
-                                              page.getNumberOfElements(), availableRecordsCount),
-                                dsiId);
-                    saveResult.append(task.get());
-                    final List<DataObject> otherList = page.getContent();
-                    task = executor.submit(mergeDataObjectCallable(tenant, now, datasourceId, dsiId, otherList));
+                if (dsPlugin instanceof IKeysetDataSourcePlugin) {
+                    KeysetPage<DataObjectFeature> page = findAllAfterFromDatasource(lastUpdateDate, tenant,
+                                                                                    (IKeysetDataSourcePlugin) dsPlugin,
+                                                                                    currentLastKey, size);
+                    features = page.getContent();
+                    hasNext = page.hasNext(size);
+                    currentLastKey = page.getLastKey();
+                } else {
+                    Page<DataObjectFeature> page = findAllFromDatasource(lastUpdateDate, tenant, dsPlugin,
+                                                                         PageRequest.of(currentPageNumber, size));
+                    features = page.getContent();
+                    hasNext = page.hasNext();
                 }
-            } catch (DataSourceException | ModuleException e) { // Find from datasource has failed
+            } catch (DataSourceException e) { // Find from datasource has failed
+                pendingPages.release();
+                // Don't forget current indexation tasks...(from previous pages)
+                SortedMap<Integer, ExecutionException> failures = awaitIndexation(tasks, saveResult);
+                int errorPageNumber = failures.isEmpty() ? currentPageNumber : failures.firstKey();
                 // Failed at first find from datasource => "classical" ERROR
-                if (page == null) {
+                if (errorPageNumber == pageNumber) {
                     throw e;
                 }
-                throw new NotFinishedException(e, saveResult, page.getNumber());
-            } finally { // Don't forget current indexation task...(from previous page) if it does exist of course
-                if (task != null) {
-                    saveResult.append(task.get());
-                }
+                throw new NotFinishedException(e, saveResult, errorPageNumber, lastKeys.get(errorPageNumber));
             }
-        } catch (ExecutionException e) { // ES indexation has failed
-            // Failed at first indexation => "classical" ERROR
-            int errorPageNumber = page.previousPageable().getPageNumber();
-            if (errorPageNumber == pageNumber) {
-                throw e;
-            }
-            throw new NotFinishedException(e, saveResult, errorPageNumber);
-        } finally {
-            // Remove thread used by executor
-            executor.shutdown();
-        }
-        sendMessage(String.format("  ...Finally indexed %d objects for %d availables records.",
-                                  saveResult.getSavedDocsCount(), availableRecordsCount),
-                    dsiId);
-        return saveResult;
-    }
-
-    private BulkSaveLightResult readDatasourceAndCreateDataObjects(OffsetDateTime lastUpdateDate, String tenant,
-            IDataSourcePlugin dsPlugin, OffsetDateTime now, Long datasourceId, String dsiId, int pageNumber)
-            throws InterruptedException, DataSourceException, ModuleException, NotFinishedException,
-            ExecutionException {
-        BulkSaveLightResult saveResult = new BulkSaveLightResult();
-        int availableRecordsCount = 0;
-        // Use a thread pool of size 1 to merge data while datasource pull other data
-        ExecutorService executor = Executors.newFixedThreadPool(1);
-        sendMessage(String.format("  Finding at most %d records from datasource...", crawlerConf.getMaxBulkSize()),
-                    dsiId);
-        Page<DataObject> page = null;
-        Future<BulkSaveResult> task = null;
-        try {
-            try {
-                page = findAllFromDatasource(lastUpdateDate, tenant, dsPlugin, datasourceId, dsiId,
-                                             PageRequest.of(pageNumber, crawlerConf.getMaxBulkSize()));
-                sendMessage(String.format("  ...Found %d records from datasource", page.getNumberOfElements()), dsiId);
-                availableRecordsCount += page.getNumberOfElements();
-                final List<DataObject> list = page.getContent();
-                task = executor.submit(createDataObjectsCallable(tenant, now, datasourceId, dsiId, list));
-
-                while (page.hasNext()) {
-                    sendMessage(String.format("  Finding %d records from datasource...",
-                                              page.getPageable().getPageSize()),
-                                dsiId);
-                    page = findAllFromDatasource(lastUpdateDate, tenant, dsPlugin, datasourceId, dsiId,
-                                                 page.nextPageable());
-                    availableRecordsCount += page.getNumberOfElements();
-                    sendMessage(String.format("  ...Found %d records from datasource. Total currently found=%d",
-                                              page.getNumberOfElements(), availableRecordsCount),
-                                dsiId);
-                    saveResult.append(task.get());
-                    final List<DataObject> otherList = page.getContent();
-                    task = executor.submit(createDataObjectsCallable(tenant, now, datasourceId, dsiId, otherList));
-                }
-            } catch (DataSourceException | ModuleException e) { // Find from datasource has failed
-                // Failed at first find from datasource => "classical" ERROR
-                if (page == null) {
-                    throw e;
+            availableRecordsCount += features.size();
+            sendMessage(String.format("  ...Found %d records from datasource. Total currently found=%d",
+                                      features.size(), availableRecordsCount),
+                        dsiId);
+            Set<String> keys = features.stream().map(CrawlerService::objectKey).collect(Collectors.toSet());
+            // Indexation end of previous pages in progress sharing a data object with this one, whatever their
+            // results (their failures are reported by their own tasks)
+            CompletableFuture<Void> previousIndexed = CompletableFuture
+                    .allOf(inProgressKeys.entrySet().stream()
+                            .filter(entry -> !Collections.disjoint(entry.getValue(), keys))
+                            .map(entry -> inProgressTasks.get(entry.getKey())).filter(Objects::nonNull)
+                            .map(previous -> previous.handle((result, t) -> null)).toArray(CompletableFuture[]::new));
+            CompletableFuture<Void> prepareStart = merge ? previousIndexed : CompletableFuture.completedFuture(null);
+            CompletableFuture<BulkSaveResult> task = prepareStart
+                    .thenApplyAsync(v -> prepareDataObjects(tenant, model, fromAipDatasource, now, datasourceId,
+                                                            features, merge),
+                                    prepareExecutor)
+                    .thenCombine(previousIndexed, (prepared, v) -> prepared)
+                    .thenApplyAsync(prepared -> saveDataObjects(tenant, dsiId, prepared), indexExecutor);
+            int taskPageNumber = currentPageNumber;
+            inProgressKeys.put(taskPageNumber, keys);
+            inProgressTasks.put(taskPageNumber, task);
+            task.whenComplete((result, t) -> {
+                if (t != null) {
+                    indexationFailed.set(true);
                 }
-                throw new NotFinishedException(e, saveResult, page.getNumber());
-            } finally { // Don't forget current indexation task...(from previous page)
-                if (task != null) {
-                    saveResult.append(task.get());
-                }
-            }
-        } catch (ExecutionException e) { // ES indexation has failed
+                inProgressKeys.remove(taskPageNumber);
+                inProgressTasks.remove(taskPageNumber);
+                pendingPages.release();
+            });
+            tasks.put(currentPageNumber, task);
+            currentPageNumber = hasNext ? currentPageNumber + 1 : null;
+        }
+        SortedMap<Integer, ExecutionException> failures = awaitIndexation(tasks, saveResult);
+        if (!failures.isEmpty()) { // ES indexation has failed
+            int errorPageNumber = failures.firstKey();
             // Failed at first indexation => "classical" ERROR
-            int errorPageNumber;
-            if (page.hasPrevious()) {
-                errorPageNumber = page.previousPageable().getPageNumber();
-            } else {
-                errorPageNumber = 0;
-            }
             if (errorPageNumber == pageNumber) {
-                throw e;
+                throw failures.get(errorPageNumber);
             }
-            throw new NotFinishedException(e, saveResult, errorPageNumber);
-        } finally {
-            // Remove thread used by executor
-            executor.shutdown();
+            throw new NotFinishedException(failures.get(errorPageNumber), saveResult, errorPageNumber,
+                    lastKeys.get(errorPageNumber));
         }
-
         sendMessage(String.format("  ...Finally indexed %d distinct objects for %d availables records.",
                                   saveResult.getSavedDocsCount(), availableRecordsCount),
                     dsiId);
@@ -346,84 +404,57 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
     }
 
     /**
-     * Get Callable to be used by parallel tasks to create a bulk of data objects
+     * Key identifying the data object of given feature into an ingestion : its ipId if given by datasource, else its
+     * provider id (from which its ipId is generated, see {@link #buildIpId(String, String, Long)})
      */
-    private Callable<BulkSaveResult> createDataObjectsCallable(String tenant, OffsetDateTime now, Long datasourceId,
-            String datasourceIngestionId, List<DataObject> list) {
-        return () -> {
-            runtimeTenantResolver.forceTenant(tenant);
-            sendMessage(String.format("  Indexing %d objects...", list.size()), datasourceIngestionId);
-            BulkSaveResult bulkSaveResult = entityIndexerService.createDataObjects(tenant, datasourceId, now, list,
-                                                                                   datasourceIngestionId);
-            if (bulkSaveResult.getInErrorDocsCount() > 0) {
-                sendMessage(String.format("  ...%d objects cannot be saved:\n%s", bulkSaveResult.getInErrorDocsCount(),
-                                          bulkSaveResult.getDetailedErrorMsg().replace("\n", "\n    ")),
-                            datasourceIngestionId);
-            }
-            sendMessage(String.format("  ...%d objects effectively indexed.", bulkSaveResult.getSavedDocsCount()),
-                        datasourceIngestionId);
-            return bulkSaveResult;
-        };
+    private static String objectKey(DataObjectFeature feature) {
+        return feature.getId().isRandomEntityId() ? feature.getProviderId() : feature.getId().toString();
     }
 
     /**
-     * Get Callable to be used by parallel tasks to merge a bulk of data objects
+     * Wait for a pipeline slot (a page read and not yet indexed) to be available, reporting stalls
      */
-    private Callable<BulkSaveResult> mergeDataObjectCallable(String tenant, OffsetDateTime now, Long datasourceId,
-            String datasourceIngestionId, List<DataObject> list) {
-        return () -> {
-            runtimeTenantResolver.forceTenant(tenant);
-            sendMessage(String.format("  Indexing %d objects...", list.size()), datasourceIngestionId);
-            BulkSaveResult bulkSaveResult = entityIndexerService.mergeDataObjects(tenant, datasourceId, now, list,
-                                                                                  datasourceIngestionId);
-            if (bulkSaveResult.getInErrorDocsCount() > 0) {
-                sendMessage(String.format("  ...%d objects cannot be saved:\n%s", bulkSaveResult.getInErrorDocsCount(),
-                                          bulkSaveResult.getDetailedErrorMsg().replace("\n", "\n    ")),
-                            datasourceIngestionId);
-            }
-            sendMessage(String.format("  ...%d objects effectively indexed.", bulkSaveResult.getSavedDocsCount()),
-                        datasourceIngestionId);
-            return bulkSaveResult;
-        };
+    private void awaitPendingPage(Semaphore pendingPages, String dsiId) throws InterruptedException {
+        long waitedMs = 0;
+        while (!pendingPages.tryAcquire(crawlerConf.getPipelineStallMs(), TimeUnit.MILLISECONDS)) {
+            waitedMs += crawlerConf.getPipelineStallMs();
+            String msg = String.format("  Ingestion pipeline stalled for %d s : %d page(s) waiting to be prepared, "
+                    + "%d page(s) waiting to be indexed...", waitedMs / 1000, prepareExecutor.getQueue().size(),
+                                       indexExecutor.getQueue().size());
+            LOGGER.warn(msg);
+            sendMessage(msg, dsiId);
+        }
     }
 
     /**
-     * Read datasource since given date page setting ipId to each objects
-     * @param date date from which to read datasource data
-     * @param datasourceId datasource id
-     * @param dsiId datasource ingestion id
+     * Wait for all given indexation tasks, appending results of successful ones to given save result
+     * @return failed indexation tasks exceptions by page number
      */
-    private Page<DataObject> findAllFromDatasource(OffsetDateTime date, String tenant, IDataSourcePlugin dsPlugin,
-            Long datasourceId, String dsiId, Pageable pageable) throws DataSourceException, ModuleException {
-        // Retrieve target model
-        Model model = modelService.getModelByName(dsPlugin.getModelName());
-
-        // Find all features
-        Page<DataObjectFeature> page;
-        try {
-            long start = System.currentTimeMillis();
-            page = dsPlugin.findAll(tenant, pageable, date);
-            LOGGER.info("Searching entities (page={}, size={}, total={}) from datasource plugin took {}ms",
-                        page.getNumber(), page.getSize(), page.getTotalElements(), System.currentTimeMillis() - start);
-        } catch (Exception e) {
-            // Catch Exception in order to catch all exceptions from plugins. Plugins can be out of our scope.
-            String message = "Error retriving features from datasource " + dsPlugin.getClass().getName();
-            if (e.getMessage() != null) {
-                message = message + ". Cause: " + e.getMessage();
+    private static SortedMap<Integer, ExecutionException> awaitIndexation(
+            SortedMap<Integer, Future<BulkSaveResult>> tasks, BulkSaveLightResult saveResult)
+            throws InterruptedException {
+        SortedMap<Integer, ExecutionException> failures = new TreeMap<>();
+        for (Map.Entry<Integer, Future<BulkSaveResult>> entry : tasks.entrySet()) {
+            try {
+                saveResult.append(entry.getValue().get());
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e);
             }
-            notificationClient.notify(message, "Datasource harvesting failure", NotificationLevel.ERROR,
-                                      DefaultRole.ADMIN);
-            LOGGER.error("Cannot retrieve data from datasource", e);
-            throw e;
         }
+        return failures;
+    }
 
+    /**
+     * Pipeline prepare stage : wrap features into data objects and prepare them to be created or merged
+     */
+    private PreparedDataObjects prepareDataObjects(String tenant, Model model, boolean fromAipDatasource,
+            OffsetDateTime now, Long datasourceId, List<DataObjectFeature> features, boolean merge) {
+        runtimeTenantResolver.forceTenant(tenant);
         // Decorate features with its related entity (i.e. DataObject)
         List<DataObject> dataObjects = new ArrayList<>();
-
-        for (DataObjectFeature feature : page.getContent()) {
+        for (DataObjectFeature feature : features) {
             // Wrap each feature into its decorator
-            DataObject dataObject = DataObject.wrap(model, feature,
-                                                    IAipDataSourcePlugin.class.isAssignableFrom(dsPlugin.getClass()));
+            DataObject dataObject = DataObject.wrap(model, feature, fromAipDatasource);
             dataObject.setDataSourceId(datasourceId);
             // Generate IpId only if datasource plugin hasn't yet generate it
             if (dataObject.getIpId().isRandomEntityId()) {
@@ -437,10 +468,86 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
             }
             dataObjects.add(dataObject);
         }
+        return entityIndexerService.prepareDataObjects(tenant, datasourceId, now, dataObjects, merge);
+    }
+
+    /**
+     * Pipeline index stage : bulk index prepared data objects
+     */
+    private BulkSaveResult saveDataObjects(String tenant, String datasourceIngestionId,
+            PreparedDataObjects prepared) {
+        runtimeTenantResolver.forceTenant(tenant);
+        sendMessage(String.format("  Indexing %d objects...", prepared.size()), datasourceIngestionId);
+        BulkSaveResult bulkSaveResult;
+        try {
+            bulkSaveResult = entityIndexerService.saveDataObjects(tenant, datasourceIngestionId, prepared);
+        } catch (ModuleException e) {
+            throw new RsRuntimeException(e);
+        }
+        if (bulkSaveResult.getInErrorDocsCount() > 0) {
+            sendMessage(String.format("  ...%d objects cannot be saved:\n%s", bulkSaveResult.getInErrorDocsCount(),
+                                      bulkSaveResult.getDetailedErrorMsg().replace("\n", "\n    ")),
+                        datasourceIngestionId);
+        }
+        sendMessage(String.format("  ...%d objects effectively indexed.", bulkSaveResult.getSavedDocsCount()),
+                    datasourceIngestionId);
+        return bulkSaveResult;
+    }
+
+    /**
+     * Read datasource page since given date
+     * @param date date from which to read datasource data
+     */
+    private Page<DataObjectFeature> findAllFromDatasource(OffsetDateTime date, String tenant,
+            IDataSourcePlugin dsPlugin, Pageable pageable) throws DataSourceException {
+        // Find all features
+        Page<DataObjectFeature> page;
+        try {
+            long start = System.currentTimeMillis();
+            page = dsPlugin.findAll(tenant, pageable, date);
+            LOGGER.info("Searching entities (page={}, size={}, total={}) from datasource plugin took {}ms",
+                        page.getNumber(), page.getSize(), page.getTotalElements(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Catch Exception in order to catch all exceptions from plugins. Plugins can be out of our scope.
+            notifyDatasourceFailure(dsPlugin, e);
+            throw e;
+        }
+        // Rebuild page with a valid pageable (page size cannot be 0)
+        return new PageImpl<>(page.getContent(),
+                PageRequest.of(page.getNumber(), page.getSize() == 0 ? 1 : page.getSize()), page.getTotalElements());
+    }
+
+    /**
+     * Read keyset paginated datasource page since given date
+     * @param date date from which to read datasource data
+     * @param lastKey key of last entity read (null to read first page)
+     */
+    private KeysetPage<DataObjectFeature> findAllAfterFromDatasource(OffsetDateTime date, String tenant,
+            IKeysetDataSourcePlugin dsPlugin, String lastKey, int size) throws DataSourceException {
+        try {
+            long start = System.currentTimeMillis();
+            KeysetPage<DataObjectFeature> page = dsPlugin.findAllAfter(tenant, lastKey, size, date);
+            LOGGER.info("Searching entities (after key={}, size={}) from datasource plugin took {}ms", lastKey,
+                        page.getContent().size(), System.currentTimeMillis() - start);
+            return page;
+        } catch (Exception e) {
+            // Catch Exception in order to catch all exceptions from plugins. Plugins can be out of our scope.
+            notifyDatasourceFailure(dsPlugin, e);
+            throw e;
+        }
+    }
 
-        // Build decorated page
-        return new PageImpl<>(dataObjects, PageRequest.of(page.getNumber(), page.getSize() == 0 ? 1 : page.getSize()),
-                page.getTotalElements());
+    /**
+     * Notify admin and log a datasource reading failure
+     */
+    private void notifyDatasourceFailure(IDataSourcePlugin dsPlugin, Exception e) {
+        String message = "Error retriving features from datasource " + dsPlugin.getClass().getName();
+        if (e.getMessage() != null) {
+            message = message + ". Cause: " + e.getMessage();
+        }
+        notificationClient.notify(message, "Datasource harvesting failure", NotificationLevel.ERROR,
+                                  DefaultRole.ADMIN);
+        LOGGER.error("Cannot retrieve data from datasource", e);
     }
 
     @Override
@@ -448,8 +555,16 @@ public class CrawlerService extends AbstractCrawlerService<NotDatasetEntityEvent
         return datasourceIngestionRepo.findAll(Sort.by("label"));
     }
 
+    @Override
+    public Page<DatasourceIngestionLog> getDatasourceIngestionLogs(String id, Pageable pageable) {
+        // Pending log entries must be seen
+        dsIngestionLogService.flush(runtimeTenantResolver.getTenant());
+        return dsIngestionLogRepos.findByDsId(id, pageable);
+    }
+
     @Override
     public void deleteDatasourceIngestion(String id) {
+        dsIngestionService.deleteIngestionLogs(id);
         datasourceIngestionRepo.deleteById(id);
     }
 
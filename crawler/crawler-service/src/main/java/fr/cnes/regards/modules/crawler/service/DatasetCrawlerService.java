@@ -1,11 +1,20 @@
 package fr.cnes.regards.modules.crawler.service;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
@@ -17,6 +26,10 @@ import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
 import fr.cnes.regards.framework.jpa.utils.RegardsTransactional;
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
+import fr.cnes.regards.framework.urn.UniformResourceName;
+import fr.cnes.regards.modules.crawler.domain.PendingDatasetUpdate;
 import fr.cnes.regards.modules.dam.dao.entities.IDatasetRepository;
 import fr.cnes.regards.modules.dam.domain.dataaccess.accessright.event.AccessRightEvent;
 import fr.cnes.regards.modules.dam.domain.entities.Dataset;
@@ -27,7 +40,12 @@ import fr.cnes.regards.modules.model.gson.ModelGsonReadyEvent;
 import fr.cnes.regards.modules.model.service.event.ComputedAttributeModelEvent;
 
 /**
- * Crawler service for Dataset. <b>This service need @EnableSchedule at Configuration</b>
+ * Crawler service for Dataset. <b>This service need @EnableSchedule at Configuration</b><br/>
+ * Dataset updates (from dataset events, access right events or computed attributes changes) are coalesced by dataset :
+ * an update is done once no new event has been received on the dataset for regards.crawler.dataset.update.coalescing.ms
+ * (postponed at most regards.crawler.dataset.update.coalescing.max.ms), and only once for all these events.<br/>
+ * Pending updates are saved (see {@link PendingDatasetUpdateService}) so they survive a stop of the crawler : those
+ * not done before stopping are done at next start.
  * @author oroussel
  */
 @Service
@@ -55,10 +73,80 @@ public class DatasetCrawlerService extends AbstractCrawlerService<DatasetEvent>
     @Lazy
     private IDatasetCrawlerService self;
 
+    /**
+     * All tenants resolver
+     */
+    @Autowired
+    private ITenantResolver tenantsResolver;
+
+    @Autowired
+    private PendingDatasetUpdateService pendingUpdateService;
+
+    /**
+     * Delay without new event on a dataset after which its pending update is done
+     */
+    @Value("${regards.crawler.dataset.update.coalescing.ms:5000}")
+    private long coalescingDelayMs;
+
+    /**
+     * Maximum delay a dataset update can be postponed by new events
+     */
+    @Value("${regards.crawler.dataset.update.coalescing.max.ms:60000}")
+    private long coalescingMaxDelayMs;
+
+    /**
+     * Delay between two checks of due pending dataset updates
+     */
+    @Value("${regards.crawler.dataset.update.check.ms:1000}")
+    private long checkDelayMs;
+
+    /**
+     * Maximum time waited for the executing dataset update when stopping
+     */
+    @Value("${regards.crawler.dataset.update.shutdown.timeout.ms:60000}")
+    private long shutdownTimeoutMs;
+
+    /**
+     * Count of dataset updates currently executing
+     */
+    private final AtomicInteger runningUpdatesCount = new AtomicInteger(0);
+
+    /**
+     * Executor of pending dataset updates (one at a time)
+     */
+    private ScheduledExecutorService updateExecutor;
+
+    @PostConstruct
+    public void initUpdateExecutor() {
+        updateExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Wait for executing dataset update, remaining pending ones are left to next start
+     */
+    @PreDestroy
+    public void shutdownUpdateExecutor() {
+        updateExecutor.shutdown();
+        try {
+            if (!updateExecutor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Executing dataset update not ended after {} ms, it will be done again at next start",
+                            shutdownTimeoutMs);
+                updateExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for executing dataset update");
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     @EventListener
     public void onApplicationReadyEvent(ModelGsonReadyEvent event) {
         subscriber.subscribeTo(AccessRightEvent.class, this);
+        // Updates left pending by a previous run are done first, then due ones are regularly checked
+        updateExecutor.execute(() -> executeDatasetUpdates(false));
+        updateExecutor.scheduleWithFixedDelay(() -> executeDatasetUpdates(true), checkDelayMs, checkDelayMs,
+                                              TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -70,13 +158,8 @@ public class DatasetCrawlerService extends AbstractCrawlerService<DatasetEvent>
         if (modelAttrAssoc.getComputationConf() != null) {
             Set<Dataset> datasets = datasetService.findAllByModel(modelAttrAssoc.getModel().getId());
             for (Dataset dataset : datasets) {
-                try {
-                    datasetRepository.save(dataset);
-                    entityIndexerService.updateEntityIntoEs(tenantResolver.getTenant(), dataset.getIpId(),
-                                                            OffsetDateTime.now(), true);
-                } catch (ModuleException e) {
-                    LOGGER.error("Cannot update dataset", e);
-                }
+                datasetRepository.save(dataset);
+                pendingUpdateService.plan(dataset.getIpId(), true);
             }
         }
     }
@@ -92,12 +175,96 @@ public class DatasetCrawlerService extends AbstractCrawlerService<DatasetEvent>
         if (wrapper.getContent() != null) {
             AccessRightEvent event = wrapper.getContent();
             try {
-                entityIndexerService.updateEntityIntoEs(wrapper.getTenant(), event.getDatasetIpId(),
-                                                        OffsetDateTime.now(), false);
-            } catch (ModuleException e) {
-                LOGGER.error("Cannot handle access right event", e);
-                // FIXME notify
+                tenantResolver.forceTenant(wrapper.getTenant());
+                pendingUpdateService.plan(event.getDatasetIpId(), false);
+            } finally {
+                tenantResolver.clearTenant();
+            }
+        }
+    }
+
+    /**
+     * Plan dataset update in polling transaction : event is consumed only if update has been planned
+     */
+    @Override
+    protected void updateEntityIntoEs(String tenant, UniformResourceName ipId, OffsetDateTime updateDate) {
+        pendingUpdateService.plan(ipId, false);
+    }
+
+    @Override
+    protected boolean hasPendingWork() {
+        if (runningUpdatesCount.get() > 0) {
+            return true;
+        }
+        String currentTenant = tenantResolver.getTenant();
+        try {
+            for (String tenant : tenantsResolver.getAllActiveTenants()) {
+                tenantResolver.forceTenant(tenant);
+                if (pendingUpdateService.hasPending()) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            if (currentTenant != null) {
+                tenantResolver.forceTenant(currentTenant);
+            } else {
+                tenantResolver.clearTenant();
+            }
+        }
+    }
+
+    /**
+     * Execute pending dataset updates of all tenants
+     * @param dueOnly only execute updates without new event for coalescing delay (or postponed for coalescing maximum
+     *            delay)
+     */
+    private void executeDatasetUpdates(boolean dueOnly) {
+        for (String tenant : tenantsResolver.getAllActiveTenants()) {
+            try {
+                tenantResolver.forceTenant(tenant);
+                List<PendingDatasetUpdate> updates = dueOnly
+                        ? pendingUpdateService.findDue(coalescingDelayMs, coalescingMaxDelayMs)
+                        : pendingUpdateService.findAll();
+                for (PendingDatasetUpdate pending : updates) {
+                    executeDatasetUpdate(tenant, pending);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Cannot execute pending dataset updates of tenant {}", tenant, e);
+            } finally {
+                tenantResolver.clearTenant();
+            }
+        }
+    }
+
+    /**
+     * Execute a pending dataset update and remove it (unless events have been merged into it meanwhile). A failed
+     * update is kept and postponed to be retried after coalescing delay.
+     */
+    private void executeDatasetUpdate(String tenant, PendingDatasetUpdate pending) {
+        runningUpdatesCount.incrementAndGet();
+        try {
+            boolean done = false;
+            try {
+                LOGGER.info("Updating dataset {} for {} coalesced event(s)", pending.getDatasetIpId(),
+                            pending.getEventsCount());
+                entityIndexerService.updateEntityIntoEs(tenant,
+                                                        OaisUniformResourceName.fromString(pending.getDatasetIpId()),
+                                                        OffsetDateTime.now(), pending.isForceDataObjectsUpdate());
+                done = true;
+            } catch (ModuleException | RuntimeException e) {
+                LOGGER.error("Cannot update dataset {}, it will be retried in {} ms", pending.getDatasetIpId(),
+                             coalescingDelayMs, e);
+            }
+            tenantResolver.forceTenant(tenant);
+            if (!done) {
+                pendingUpdateService.postpone(pending);
+            } else if (!pendingUpdateService.remove(pending)) {
+                LOGGER.debug("New events received on dataset {} during its update, updating it again later",
+                             pending.getDatasetIpId());
             }
+        } finally {
+            runningUpdatesCount.decrementAndGet();
         }
     }
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
+
+/**
+ * Buffered append-only datasource ingestion progress log.<br/>
+ * Progress messages are kept in memory (by tenant) and saved in batches, when
+ * regards.ingester.log.flush.size messages are pending or every regards.ingester.log.flush.delay.ms, and when
+ * stopping.
+ * @author oroussel
+ */
+@Service
+public class DatasourceIngestionLogService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasourceIngestionLogService.class);
+
+    @Value("${regards.ingester.log.flush.size:500}")
+    private int flushSize;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private DatasourceIngestionService dsIngestionService;
+
+    /**
+     * Pending log entries by tenant
+     */
+    private final ConcurrentMap<String, BlockingQueue<DatasourceIngestionLog>> pendingLogs = new ConcurrentHashMap<>();
+
+    /**
+     * Append a message to given datasource ingestion progress log
+     */
+    public void append(String tenant, String dsId, String message) {
+        BlockingQueue<DatasourceIngestionLog> queue = pendingLogs
+                .computeIfAbsent(tenant, t -> new LinkedBlockingQueue<>());
+        queue.add(new DatasourceIngestionLog(dsId, OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC),
+                message));
+        if (queue.size() >= flushSize) {
+            flush(tenant);
+        }
+    }
+
+    /**
+     * Save all pending log entries of given tenant (current tenant is restored after)
+     */
+    public void flush(String tenant) {
+        BlockingQueue<DatasourceIngestionLog> queue = pendingLogs.get(tenant);
+        if (queue == null) {
+            return;
+        }
+        // Keep entries order between concurrent flushes
+        synchronized (queue) {
+            List<DatasourceIngestionLog> logs = new ArrayList<>(queue.size());
+            queue.drainTo(logs);
+            if (!logs.isEmpty()) {
+                String currentTenant = runtimeTenantResolver.getTenant();
+                try {
+                    runtimeTenantResolver.forceTenant(tenant);
+                    dsIngestionService.saveIngestionLogs(logs);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Cannot save {} datasource ingestion log entries for tenant {}", logs.size(), tenant,
+                                 e);
+                } finally {
+                    if (currentTenant != null) {
+                        runtimeTenantResolver.forceTenant(currentTenant);
+                    } else {
+                        runtimeTenantResolver.clearTenant();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Save all pending log entries of all tenants
+     */
+    @Scheduled(fixedDelayString = "${regards.ingester.log.flush.delay.ms:5000}")
+    public void flushAll() {
+        for (String tenant : pendingLogs.keySet()) {
+            flush(tenant);
+        }
+    }
+
+    /**
+     * Save pending log entries before stopping, they would be lost otherwise
+     */
+    @PreDestroy
+    public void flushAllBeforeStopping() {
+        flushAll();
+    }
+}
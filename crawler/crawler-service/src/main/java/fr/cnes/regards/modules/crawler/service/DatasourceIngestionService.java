@@ -20,20 +20,30 @@ package fr.cnes.regards.modules.crawler.service;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import fr.cnes.regards.framework.jpa.multitenant.transactional.MultitenantTransactional;
@@ -47,8 +57,10 @@ import fr.cnes.regards.framework.notification.client.INotificationClient;
 import fr.cnes.regards.framework.security.role.DefaultRole;
 import fr.cnes.regards.framework.utils.RsRuntimeException;
 import fr.cnes.regards.framework.utils.plugins.exception.NotAvailablePluginConfigurationException;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionLogRepository;
 import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
 import fr.cnes.regards.modules.crawler.domain.IngestionResult;
 import fr.cnes.regards.modules.crawler.domain.IngestionStatus;
 import fr.cnes.regards.modules.crawler.service.exception.NotFinishedException;
@@ -69,7 +81,7 @@ public class DatasourceIngestionService {
     private static final Logger LOGGER = LoggerFactory.getLogger(DatasourceIngestionService.class);
 
     /**
-     * Only used to delete all data objects from a removed datasource
+     * Only used to delete all data objects from a removed datasource and to restore index settings
      */
     @Autowired
     private IEsRepository esRepos;
@@ -77,6 +89,28 @@ public class DatasourceIngestionService {
     @Autowired
     private IDatasourceIngestionRepository dsIngestionRepos;
 
+    @Autowired
+    private IDatasourceIngestionLogRepository dsIngestionLogRepos;
+
+    /**
+     * Maximum count of progress log entries kept for a datasource ingestion (oldest ones are removed)
+     */
+    @Value("${regards.ingester.log.max.entries:10000}")
+    private int maxLogEntries;
+
+    /**
+     * Identifier of this crawler instance, owner of the ingestions it runs. It should be kept across restarts (host
+     * name by default) so that ingestions interrupted by a crash are reset as soon as the instance restarts.
+     */
+    @Value("${regards.ingester.instance.id:}")
+    private String instanceId;
+
+    /**
+     * Delay after which a STARTED ingestion whom owner has not given any sign of life is considered as lost
+     */
+    @Value("${regards.ingester.heartbeat.lease.ms:600000}")
+    private long heartbeatLeaseMs;
+
     @Autowired
     private IPluginService pluginService;
 
@@ -88,8 +122,26 @@ public class DatasourceIngestionService {
 
     private final ExecutorService threadPoolExecutor = Executors.newFixedThreadPool(1);
 
+    @PostConstruct
+    public void initInstanceId() {
+        if (instanceId.isEmpty()) {
+            try {
+                instanceId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                instanceId = UUID.randomUUID().toString();
+                LOGGER.warn("Cannot get host name, crawler instance identifier set to {}", instanceId, e);
+            }
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
     public void updateAndCleanTenantDatasourceIngestions() {
         String currentTenant = runtimeTenantResolver.getTenant();
+        // Ingestions of lost instances must not stay STARTED forever
+        resetLostIngestions();
         // First, check if all existing datasource plugins are managed
         // Find all current datasource ingestions
         Map<String, DatasourceIngestion> dsIngestionsMap = dsIngestionRepos.findAll().stream()
@@ -107,7 +159,7 @@ public class DatasourceIngestionService {
         // Remove DatasourceIngestion for removed datasources and plan data objects deletion from Elasticsearch
         dsIngestionsMap.keySet().stream().filter(id -> !pluginService.exists(id))
                 .peek(id -> this.planDatasourceDataObjectsDeletion(currentTenant, id))
-                .forEach(dsIngestionRepos::deleteById);
+                .peek(dsIngestionLogRepos::deleteByDsId).forEach(dsIngestionRepos::deleteById);
         // For previously ingested datasources, compute next planned ingestion date
         pluginConfs.forEach(pluginConf -> {
             try {
@@ -119,23 +171,21 @@ public class DatasourceIngestionService {
     }
 
     /**
-     * Find the next ready data source to be ingested and mark it at "STARTED" in a transaction
+     * Find the next ready data source to be ingested and mark it at "STARTED" in a transaction.<br/>
+     * Claiming is optimistic : ready data sources are tried in planned order and a data source is only marked as
+     * STARTED if nobody else (another thread or another instance) did it meanwhile, otherwise next one is tried.
      */
     public Optional<String> pickAndStartDatasourceIngestion() {
-        Optional<String> startedDatasourceIngestionId = Optional.empty();
-        Optional<DatasourceIngestion> dsIngestionOpt = dsIngestionRepos
-                .findNextReady(OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC));
-        if (dsIngestionOpt.isPresent()) {
-            DatasourceIngestion dsIngestion = dsIngestionOpt.get();
-            // Reinit old DatasourceIngestion properties
-            dsIngestion.setStackTrace(null);
-            dsIngestion.setSavedObjectsCount(0);
-            dsIngestion.setInErrorObjectsCount(0);
-            dsIngestion.setStatus(IngestionStatus.STARTED);
-            dsIngestion = dsIngestionRepos.save(dsIngestion);
-            startedDatasourceIngestionId = Optional.of(dsIngestion.getId());
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        for (DatasourceIngestion dsIngestion : dsIngestionRepos.findAllReady(now)) {
+            if (dsIngestionRepos.claim(dsIngestion.getId(), instanceId, now)) {
+                // Only current ingestion progress is logged
+                dsIngestionLogRepos.deleteByDsId(dsIngestion.getId());
+                return Optional.of(dsIngestion.getId());
+            }
+            LOGGER.debug("Datasource ingestion {} already claimed, trying next one", dsIngestion.getId());
         }
-        return startedDatasourceIngestionId;
+        return Optional.empty();
     }
 
     /**
@@ -152,7 +202,6 @@ public class DatasourceIngestionService {
         Optional<DatasourceIngestion> oDsIngestion = dsIngestionRepos.findById(dsIngestionId);
         if (oDsIngestion.isPresent()) {
             DatasourceIngestion dsIngestion = oDsIngestion.get();
-            // dsIngestion.stackTrace has been updated by handleMessageEvent transactional method
             if (summary.getInErrorObjectsCount() > 0) {
                 dsIngestion.setStatus(IngestionStatus.FINISHED_WITH_WARNINGS);
             } else {
@@ -161,6 +210,9 @@ public class DatasourceIngestionService {
             dsIngestion.setSavedObjectsCount(summary.getSavedObjectsCount());
             dsIngestion.setInErrorObjectsCount(summary.getInErrorObjectsCount());
             dsIngestion.setLastIngestDate(summary.getDate());
+            // Ingestion has finished, next one must not resume from a previous NOT_FINISHED one
+            dsIngestion.setErrorPageNumber(null);
+            dsIngestion.setErrorLastKey(null);
             // To avoid redoing an ingestion in this "do...while" (must be at next call to manage)
             dsIngestion.setNextPlannedIngestDate(null);
             // Save ingestion status
@@ -206,6 +258,7 @@ public class DatasourceIngestionService {
             DatasourceIngestion dsIngestion = oDsIngestion.get();
             dsIngestion.setStatus(IngestionStatus.NOT_FINISHED);
             dsIngestion.setErrorPageNumber(notFinishedException.getPageNumber());
+            dsIngestion.setErrorLastKey(notFinishedException.getLastKey());
             // and log stack trace into database
             StringWriter sw = new StringWriter();
             notFinishedException.getCause().printStackTrace(new PrintWriter(sw));
@@ -221,14 +274,95 @@ public class DatasourceIngestionService {
         }
     }
 
-    public Optional<DatasourceIngestion> addMessageToStackTrace(String dsId, String newMessage) {
-        Optional<DatasourceIngestion> dsiOpt = dsIngestionRepos.findById(dsId);
-        if (dsiOpt.isPresent()) {
-            DatasourceIngestion dsi = dsiOpt.get();
-            dsi.setStackTrace(dsi.getStackTrace() == null ? newMessage : dsi.getStackTrace() + "\n" + newMessage);
-            return Optional.of(dsIngestionRepos.save(dsi));
+    /**
+     * Refresh heartbeat of given ingestions currently run by this instance
+     */
+    public void refreshHeartbeats(Collection<String> dsIngestionIds) {
+        if (!dsIngestionIds.isEmpty()) {
+            dsIngestionRepos.updateHeartbeat(dsIngestionIds, instanceId, IngestionStatus.STARTED,
+                                             OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC));
         }
-        return Optional.empty();
+    }
+
+    /**
+     * Set ERROR status to current tenant ingestions left STARTED by a previous run of this instance (crash) or by a
+     * lost instance. Their next planned date is kept so they are launched again as soon as possible.
+     * Must be called at startup, before any ingestion is launched by this instance.
+     */
+    public void resetInterruptedIngestions() {
+        int count = dsIngestionRepos.updateStatusByOwner(IngestionStatus.STARTED, instanceId, IngestionStatus.ERROR,
+                                                         "Ingestion interrupted by crawler stop",
+                                                         OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC));
+        if (count > 0) {
+            LOGGER.warn("{} datasource ingestion(s) interrupted by crawler stop have been reset", count);
+        }
+        resetLostIngestions();
+    }
+
+    /**
+     * Set ERROR status to current tenant STARTED ingestions whom owner has not given any sign of life for heartbeat
+     * lease delay
+     */
+    private void resetLostIngestions() {
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        int count = dsIngestionRepos
+                .updateStatusByHeartbeatBefore(IngestionStatus.STARTED, now.minus(heartbeatLeaseMs, ChronoUnit.MILLIS),
+                                               IngestionStatus.ERROR,
+                                               "Ingestion lost (crawler instance running it is not alive anymore)",
+                                               now);
+        if (count > 0) {
+            LOGGER.warn("{} datasource ingestion(s) of lost crawler instances have been reset", count);
+        }
+    }
+
+    /**
+     * Restore current tenant index settings if they have been left with bulk indexing values by an interrupted
+     * ingestion. Nothing is done while an ingestion is STARTED (on another instance, those of this one have to be
+     * reset first, see {@link #resetInterruptedIngestions()}) because its bulk indexing settings must be kept, they
+     * will be restored at its end.
+     */
+    public void restoreIndexSettingsIfBulkInterrupted() {
+        String tenant = runtimeTenantResolver.getTenant();
+        if (dsIngestionRepos.existsByStatus(IngestionStatus.STARTED)) {
+            LOGGER.info("Datasource ingestion in progress on tenant {}, index settings are left unchanged", tenant);
+        } else {
+            esRepos.restoreSettingsIfBulkInterrupted(tenant);
+        }
+    }
+
+    /**
+     * Unblock current tenant index writes if they have been left blocked by an index rebuild interrupted by a crash
+     * (see {@link IEntityIndexerService#rebuildIndexNRecreateEntities(String)})
+     */
+    public void unblockIndexWritesIfRebuildInterrupted() {
+        esRepos.unblockWritesIfInterrupted(runtimeTenantResolver.getTenant());
+    }
+
+    /**
+     * Save given progress log entries (from any datasource ingestion) and remove oldest ones exceeding retention
+     */
+    public void saveIngestionLogs(List<DatasourceIngestionLog> logs) {
+        dsIngestionLogRepos.saveAll(logs);
+        logs.stream().map(DatasourceIngestionLog::getDsId).distinct().forEach(this::applyIngestionLogsRetention);
+    }
+
+    private void applyIngestionLogsRetention(String dsId) {
+        long count = dsIngestionLogRepos.countByDsId(dsId);
+        if (count > maxLogEntries) {
+            // Find oldest entry to keep and remove all previous ones
+            Page<DatasourceIngestionLog> oldestKept = dsIngestionLogRepos
+                    .findByDsId(dsId, PageRequest.of((int) (count - maxLogEntries), 1, Sort.by("id")));
+            if (oldestKept.hasContent()) {
+                dsIngestionLogRepos.deleteByDsIdAndIdLessThan(dsId, oldestKept.getContent().get(0).getId());
+            }
+        }
+    }
+
+    /**
+     * Delete all progress log entries of given datasource ingestion
+     */
+    public void deleteIngestionLogs(String dsId) {
+        dsIngestionLogRepos.deleteByDsId(dsId);
     }
 
     /**
@@ -18,6 +18,7 @@
  */
 package fr.cnes.regards.modules.crawler.service;
 
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -32,8 +33,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -42,6 +45,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.search.aggregations.Aggregations;
 import org.locationtech.spatial4j.exception.InvalidShapeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,17 +91,21 @@ import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.dam.domain.entities.Dataset;
 import fr.cnes.regards.modules.dam.domain.entities.feature.DataObjectFeature;
 import fr.cnes.regards.modules.dam.domain.entities.metadata.DatasetMetadata.DataObjectGroup;
+import fr.cnes.regards.modules.dam.plugin.entities.IDataObjectAggregationComputePlugin;
+import fr.cnes.regards.modules.dam.plugin.entities.IDataObjectComputedAttribute;
 import fr.cnes.regards.modules.dam.service.dataaccess.IAccessRightService;
 import fr.cnes.regards.modules.dam.service.entities.DataObjectService;
 import fr.cnes.regards.modules.dam.service.entities.ICollectionService;
 import fr.cnes.regards.modules.dam.service.entities.IDatasetService;
 import fr.cnes.regards.modules.dam.service.entities.IEntitiesService;
 import fr.cnes.regards.modules.dam.service.entities.visitor.AttributeBuilderVisitor;
+import fr.cnes.regards.modules.indexer.dao.BulkIndexingSession;
 import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
 import fr.cnes.regards.modules.indexer.dao.IEsRepository;
 import fr.cnes.regards.modules.indexer.dao.spatial.GeoHelper;
 import fr.cnes.regards.modules.indexer.dao.spatial.ProjectGeoSettings;
 import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
 import fr.cnes.regards.modules.indexer.domain.spatial.Crs;
 import fr.cnes.regards.modules.model.domain.IComputedAttribute;
@@ -174,6 +182,24 @@ public class EntityIndexerService implements IEntityIndexerService {
     @Value("${regards.crawler.max.bulk.size:10000}")
     private Integer maxBulkSize;
 
+    /**
+     * Number of parallel slices used to scroll data objects while updating datasets associations
+     */
+    @Value("${regards.crawler.scroll.slices:4}")
+    private Integer scrollSlices;
+
+    /**
+     * Number of data objects retrieved by each scroll request while updating datasets associations
+     */
+    @Value("${regards.crawler.scroll.page.size:500}")
+    private Integer scrollPageSize;
+
+    /**
+     * Number of data objects bulks saved at the same time while updating datasets associations
+     */
+    @Value("${regards.crawler.bulk.save.threads:4}")
+    private Integer bulkSaveThreads;
+
     private static List<String> toErrors(Errors errorsObject) {
         List<String> errors = new ArrayList<>(errorsObject.getErrorCount());
         for (ObjectError objError : errorsObject.getAllErrors()) {
@@ -205,6 +231,19 @@ public class EntityIndexerService implements IEntityIndexerService {
     @Override
     public void updateEntityIntoEs(String tenant, UniformResourceName ipId, OffsetDateTime lastUpdateDate,
             OffsetDateTime updateDate, boolean forceAssociatedEntitiesUpdate, String dsiId) throws ModuleException {
+        updateEntityIntoIndex(tenant, tenant, ipId, lastUpdateDate, updateDate, forceAssociatedEntitiesUpdate, dsiId);
+    }
+
+    /**
+     * Load given entity from database and update it into given Elasticsearch index
+     *
+     * @param tenant concerned tenant
+     * @param index  index to update (tenant one or a new one being filled before replacing it)
+     * @see #updateEntityIntoEs(String, UniformResourceName, OffsetDateTime, OffsetDateTime, boolean, String)
+     */
+    private void updateEntityIntoIndex(String tenant, String index, UniformResourceName ipId,
+            OffsetDateTime lastUpdateDate, OffsetDateTime updateDate, boolean forceAssociatedEntitiesUpdate,
+            String dsiId) throws ModuleException {
         LOGGER.info("Updating {}", ipId.toString());
         runtimeTenantResolver.forceTenant(tenant);
         AbstractEntity<?> entity = entitiesService.loadWithRelations(ipId);
@@ -214,12 +253,12 @@ public class EntityIndexerService implements IEntityIndexerService {
             if (ipId.getEntityType() == EntityType.DATASET) {
                 sendDataSourceMessage(String.format("    Dataset with IP_ID %s no more exists...", ipId.toString()),
                                       dsiId);
-                manageDatasetDelete(tenant, ipId.toString(), dsiId);
+                manageDatasetDelete(index, ipId.toString(), dsiId);
             }
-            esRepos.delete(tenant, ipId.getEntityType().toString(), ipId.toString());
+            esRepos.delete(index, ipId.getEntityType().toString(), ipId.toString());
             sendDataSourceMessage(String.format("    ...Dataset with IP_ID %s de-indexed.", ipId.toString()), dsiId);
         } else { // entity has been created or updated, it must be saved into ES
-            createIndexIfNeeded(tenant);
+            createIndexIfNeeded(index);
             ICriterion savedSubsettingClause = null;
             // Remove parameters of dataset datasource to avoid expose security values
             if (entity instanceof Dataset) {
@@ -259,14 +298,14 @@ public class EntityIndexerService implements IEntityIndexerService {
             if (!needAssociatedDataObjectsUpdate && (entity instanceof Dataset)) {
                 Dataset dataset = (Dataset) entity;
                 needAssociatedDataObjectsUpdate |= needAssociatedDataObjectsUpdate(dataset,
-                                                                                   esRepos.get(tenant, dataset));
+                                                                                   esRepos.get(index, dataset));
             }
-            boolean created = esRepos.save(tenant, entity);
+            boolean created = esRepos.save(index, entity);
             LOGGER.debug("Elasticsearch saving result : {}", created);
             if ((entity instanceof Dataset) && needAssociatedDataObjectsUpdate) {
                 // Subsetting clause is needed by many things
                 ((Dataset) entity).setSubsettingClause(savedSubsettingClause);
-                manageDatasetUpdate((Dataset) entity, lastUpdateDate, updateDate, dsiId);
+                manageDatasetUpdate((Dataset) entity, index, lastUpdateDate, updateDate, dsiId);
             }
         }
         LOGGER.info(ipId.toString() + " managed into Elasticsearch");
@@ -310,11 +349,11 @@ public class EntityIndexerService implements IEntityIndexerService {
     /**
      * Search and update associated dataset data objects (ie remove dataset IpId from tags)
      *
-     * @param tenant concerned tenant
-     * @param ipId   dataset identifier
+     * @param index concerned index
+     * @param ipId  dataset identifier
      * @throws ModuleException
      */
-    private void manageDatasetDelete(String tenant, String ipId, String dsiId) throws ModuleException {
+    private void manageDatasetDelete(String index, String ipId, String dsiId) throws ModuleException {
         // Search all DataObjects tagging this Dataset (only DataObjects because all other entities are already managed
         // with the system Postgres/RabbitMQ)
         sendDataSourceMessage(String.format("      Searching for all data objects tagging dataset IP_ID %s", ipId),
@@ -325,6 +364,7 @@ public class EntityIndexerService implements IEntityIndexerService {
         Set<DataObject> toSaveObjects = new HashSet<>();
         OffsetDateTime updateDate = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
         // Function to update an object (tags, groups, lastUpdate, ...)
+        // (called from several threads by parallel sliced scroll)
         Consumer<DataObject> updateDataObject = object -> {
             object.removeTags(Arrays.asList(ipId));
             // reset datasetModelIds
@@ -336,25 +376,28 @@ public class EntityIndexerService implements IEntityIndexerService {
             // update modelNames
             object.setDatasetModelNames(object.getMetadata().getModelNames());
             object.setLastUpdate(updateDate);
-            toSaveObjects.add(object);
-            if (toSaveObjects.size() == maxBulkSize) {
-                try {
-                    esRepos.saveBulk(tenant, toSaveObjects);
-                    objectsCount.addAndGet(toSaveObjects.size());
-                    toSaveObjects.clear();
-                } catch (ElasticsearchException e) {
-                    LOGGER.error(e.getMessage(), e);
+            synchronized (toSaveObjects) {
+                toSaveObjects.add(object);
+                if (toSaveObjects.size() >= maxBulkSize) {
+                    try {
+                        esRepos.saveBulk(index, toSaveObjects);
+                        objectsCount.addAndGet(toSaveObjects.size());
+                        toSaveObjects.clear();
+                    } catch (ElasticsearchException e) {
+                        LOGGER.error(e.getMessage(), e);
+                    }
                 }
             }
         };
         // Apply updateTag function to all tagging objects
         SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
-        addProjectInfos(tenant, searchKey);
-        try {
-            esRepos.searchAll(searchKey, updateDataObject, taggingObjectsCrit);
+        addProjectInfos(index, searchKey);
+        // Index is refreshed once all objects have been updated
+        try (BulkIndexingSession bulkSession = esRepos.openBulkIndexingSession(index)) {
+            esRepos.searchAll(searchKey, updateDataObject, taggingObjectsCrit, scrollSlices, scrollPageSize);
             // Bulk save remaining objects to save
             if (!toSaveObjects.isEmpty()) {
-                esRepos.saveBulk(tenant, toSaveObjects);
+                esRepos.saveBulk(index, toSaveObjects);
                 objectsCount.addAndGet(toSaveObjects.size());
             }
             sendDataSourceMessage(String.format("      ...Removed dataset IP_ID from %d data objects tags.",
@@ -369,9 +412,10 @@ public class EntityIndexerService implements IEntityIndexerService {
      * Search and update associated dataset data objects (ie add dataset IpId into tags)
      *
      * @param dataset concerned dataset
+     * @param index   concerned index
      */
-    private void manageDatasetUpdate(Dataset dataset, OffsetDateTime lastUpdateDate, OffsetDateTime updateDate,
-            String dsiId) {
+    private void manageDatasetUpdate(Dataset dataset, String index, OffsetDateTime lastUpdateDate,
+            OffsetDateTime updateDate, String dsiId) {
         String tenant = runtimeTenantResolver.getTenant();
         sendDataSourceMessage(String
                 .format("      Updating dataset %s indexation and all its associated data objects...",
@@ -380,53 +424,68 @@ public class EntityIndexerService implements IEntityIndexerService {
                                             dataset.getLabel()),
                               dsiId);
         SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
-        addProjectInfos(tenant, searchKey);
+        addProjectInfos(index, searchKey);
 
-        ExecutorService executor = Executors.newFixedThreadPool(1);
+        // Bounded save stage : when all threads are busy and as many bulks are waiting, scroll threads save their bulks
+        // themselves (so that scrolling is slowed down instead of accumulating bulks in memory)
+        ExecutorService executor = new ThreadPoolExecutor(bulkSaveThreads, bulkSaveThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bulkSaveThreads), new ThreadPoolExecutor.CallerRunsPolicy());
 
         // Create a callable which bulk save into ES a set of data objects
         SaveDataObjectsCallable saveDataObjectsCallable = new SaveDataObjectsCallable(runtimeTenantResolver, esRepos,
-                tenant, dataset.getId());
-        // Remove association between dataobjects and dataset for all dataobjects which does not match the dataset filter anymore.
-        try {
-            removeOldDatasetDataObjectsAssoc(dataset, updateDate, searchKey, executor, saveDataObjectsCallable, dsiId);
-        } catch (ModuleException e) {
-            LOGGER.error(e.getMessage(), e);
-            sendDataSourceMessage(String.format("Error removing all dataset objects. Cause: %s.", e.getMessage()),
-                                  dsiId);
-        }
-        // Associate dataset to all dataobjets. Associate groups of dataset to the dataobjets through metadata
-        try {
-            addOrUpdateDatasetDataObjectsAssoc(dataset, lastUpdateDate, updateDate, searchKey, executor,
-                                               saveDataObjectsCallable, dsiId);
-        } catch (ModuleException e) {
-            LOGGER.error(e.getMessage(), e);
-            sendDataSourceMessage(String.format("Error updating new dataset objects. Cause: %s.", e.getMessage()),
-                                  dsiId);
-        }
+                tenant, index, dataset.getId());
+        // Data objects are saved without index refresh, only when updated ones must be searchable
+        try (BulkIndexingSession bulkSession = esRepos.openBulkIndexingSession(index)) {
+            // Remove association between dataobjects and dataset for all dataobjects which does not match the dataset filter anymore.
+            try {
+                removeOldDatasetDataObjectsAssoc(dataset, updateDate, searchKey, executor, saveDataObjectsCallable,
+                                                 dsiId);
+            } catch (ModuleException e) {
+                LOGGER.error(e.getMessage(), e);
+                sendDataSourceMessage(String.format("Error removing all dataset objects. Cause: %s.",
+                                                    e.getMessage()),
+                                      dsiId);
+            }
+            // Associate dataset to all dataobjets. Associate groups of dataset to the dataobjets through metadata
+            try {
+                addOrUpdateDatasetDataObjectsAssoc(dataset, lastUpdateDate, updateDate, searchKey, executor,
+                                                   saveDataObjectsCallable, dsiId);
+            } catch (ModuleException e) {
+                LOGGER.error(e.getMessage(), e);
+                sendDataSourceMessage(String.format("Error updating new dataset objects. Cause: %s.",
+                                                    e.getMessage()),
+                                      dsiId);
+            }
+            // Newly associated data objects must be searchable to have their groups updated
+            bulkSession.refresh();
 
-        // Update dataset access groups for dynamic plugin access rights
-        try {
-            manageDatasetUpdateFilteredAccessrights(tenant, dataset, updateDate, executor, saveDataObjectsCallable,
-                                                    dsiId);
-        } catch (ModuleException e) {
-            LOGGER.error(e.getMessage(), e);
-            sendDataSourceMessage(String.format("Error updating dataset access rights. Cause: %s.", e.getMessage()),
-                                  dsiId);
+            // Update dataset access groups for dynamic plugin access rights
+            try {
+                manageDatasetUpdateFilteredAccessrights(index, dataset, updateDate, executor,
+                                                        saveDataObjectsCallable, dsiId, bulkSession);
+            } catch (ModuleException e) {
+                LOGGER.error(e.getMessage(), e);
+                sendDataSourceMessage(String.format("Error updating dataset access rights. Cause: %s.",
+                                                    e.getMessage()),
+                                      dsiId);
+            }
+            // Computed attributes need all updated data objects (session may be nested into another one so it may
+            // not refresh index when closed)
+            bulkSession.refresh();
+        } finally {
+            // To remove thread used by executor
+            executor.shutdown();
         }
 
-        // To remove thread used by executor
-        executor.shutdown();
-
-        computeComputedAttributes(dataset, dsiId, tenant);
+        computeComputedAttributes(dataset, dsiId, tenant, index);
 
-        esRepos.save(tenant, dataset);
+        esRepos.save(index, dataset);
         LOGGER.info("Dataset {} updated", dataset.getId());
         sendDataSourceMessage("      ...Dataset indexation updated.", dsiId);
     }
 
-    private void addProjectInfos(String tenant, SimpleSearchKey<DataObject> searchKey) {
-        searchKey.setSearchIndex(tenant);
+    private void addProjectInfos(String index, SimpleSearchKey<DataObject> searchKey) {
+        searchKey.setSearchIndex(index);
         searchKey.setCrs(projectGeoSettings.getCrs());
     }
 
@@ -434,11 +493,11 @@ public class EntityIndexerService implements IEntityIndexerService {
      * Handle Access rights filter for the given dataset. An Access right filter is an accessRight with a {@link IDataObjectAccessFilterPlugin}.
      * @throws ModuleException
      */
-    private void manageDatasetUpdateFilteredAccessrights(String tenant, Dataset dataset, OffsetDateTime updateDate,
-            ExecutorService executor, SaveDataObjectsCallable saveDataObjectsCallable, String dsiId)
-            throws ModuleException {
+    private void manageDatasetUpdateFilteredAccessrights(String index, Dataset dataset, OffsetDateTime updateDate,
+            ExecutorService executor, SaveDataObjectsCallable saveDataObjectsCallable, String dsiId,
+            BulkIndexingSession bulkSession) throws ModuleException {
         SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
-        addProjectInfos(tenant, searchKey);
+        addProjectInfos(index, searchKey);
         // handle association between dataobjects and groups for all access rights set by plugin
         for (DataObjectGroup group : dataset.getMetadata().getDataObjectsGroupsMap().values()) {
             // If access to the dataset is allowed and a plugin access filter is set on dataobject metadata, calculate which dataObjects are in the given group
@@ -461,6 +520,8 @@ public class EntityIndexerService implements IEntityIndexerService {
                     removeOldDataObjectsGroupAssoc(dataset, updateDate, searchKey, executor, saveDataObjectsCallable,
                                                    dsiId, group.getGroupName(), ICriterion.all());
                 }
+                // Data objects updated for this group may be updated again for next one
+                bulkSession.refresh();
             }
         }
     }
@@ -473,15 +534,49 @@ public class EntityIndexerService implements IEntityIndexerService {
      */
     @Override
     public void computeComputedAttributes(Dataset dataset, String dsiId, String tenant) {
+        computeComputedAttributes(dataset, dsiId, tenant, tenant);
+    }
+
+    /**
+     * Manage computed attributes computation from data objects of given index
+     */
+    private void computeComputedAttributes(Dataset dataset, String dsiId, String tenant, String index) {
         // lets compute computed attributes from the dataset model
         Set<IComputedAttribute<Dataset, ?>> computationPlugins = entitiesService.getComputationPlugins(dataset);
-        LOGGER.info("Starting parallel computing of {} attributes (dataset {})...", computationPlugins.size(),
+        LOGGER.info("Starting computing of {} attributes (dataset {})...", computationPlugins.size(),
                     dataset.getId());
 
         sendDataSourceMessage(String.format("        Starting computing of %d attributes...",
                                             computationPlugins.size()),
                               dsiId);
-        computationPlugins.parallelStream().forEach(p -> {
+        runtimeTenantResolver.forceTenant(tenant);
+        // Gather requirements of all data objects computation plugins : all needed aggregations are asked within a
+        // single request and all other plugins share a single scroll
+        Map<IDataObjectAggregationComputePlugin<?>, AttributeAggregation> aggPlugins = new HashMap<>();
+        List<Consumer<DataObject>> scrollConsumers = new ArrayList<>();
+        List<IComputedAttribute<Dataset, ?>> otherPlugins = new ArrayList<>();
+        for (IComputedAttribute<Dataset, ?> plugin : computationPlugins) {
+            if (plugin instanceof IDataObjectAggregationComputePlugin) {
+                IDataObjectAggregationComputePlugin<?> aggPlugin = (IDataObjectAggregationComputePlugin<?>) plugin;
+                aggPlugins.put(aggPlugin, aggPlugin.getAggregation());
+            } else if (plugin instanceof IDataObjectComputedAttribute) {
+                scrollConsumers.add(((IDataObjectComputedAttribute<?>) plugin).startScrollComputation());
+            } else {
+                otherPlugins.add(plugin);
+            }
+        }
+        SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
+        addProjectInfos(index, searchKey);
+        if (!aggPlugins.isEmpty()) {
+            Aggregations aggs = esRepos.aggregate(searchKey, dataset.getSubsettingClause(), aggPlugins.values());
+            aggPlugins.forEach((plugin, aggregation) -> plugin.computeFromAggregation(aggs.get(aggregation.getName())));
+        }
+        if (!scrollConsumers.isEmpty()) {
+            esRepos.searchAll(searchKey, object -> scrollConsumers.forEach(consumer -> consumer.accept(object)),
+                              dataset.getSubsettingClause());
+        }
+        // Remaining plugins (ie not based on data objects properties) compute themselves
+        otherPlugins.parallelStream().forEach(p -> {
             runtimeTenantResolver.forceTenant(tenant);
             p.compute(dataset);
         });
@@ -528,7 +623,7 @@ public class EntityIndexerService implements IEntityIndexerService {
             subsettingCrit = ICriterion.and(subsettingCrit, ICriterion.gt(Dataset.LAST_UPDATE, lastUpdateDate));
         }
         try {
-            esRepos.searchAll(searchKey, dataObjectUpdater, subsettingCrit);
+            esRepos.searchAll(searchKey, dataObjectUpdater, subsettingCrit, scrollSlices, scrollPageSize);
         } catch (ElasticsearchException e) {
             throw new ModuleException(e);
         }
@@ -569,7 +664,7 @@ public class EntityIndexerService implements IEntityIndexerService {
         DataObjectGroupAssocUpdater dataObjectAssocUpdater = new DataObjectGroupAssocUpdater(dataset, updateDate,
                 toSaveObjects, saveDataObjectsCallable, executor, groupName, maxBulkSize);
         try {
-            esRepos.searchAll(searchKey, dataObjectAssocUpdater, subsettingCrit);
+            esRepos.searchAll(searchKey, dataObjectAssocUpdater, subsettingCrit, scrollSlices, scrollPageSize);
             // Saving remaining objects...
             dataObjectAssocUpdater.finalSave();
             sendDataSourceMessage(String.format("          ...%d data objects group <%s> association saved.",
@@ -610,7 +705,8 @@ public class EntityIndexerService implements IEntityIndexerService {
         DataObjectAssocRemover dataObjectAssocRemover = new DataObjectAssocRemover(dataset, updateDate, toSaveObjects,
                 saveDataObjectsCallable, executor, maxBulkSize);
         try {
-            esRepos.searchAll(searchKey, dataObjectAssocRemover, oldAssociatedObjectsCrit);
+            esRepos.searchAll(searchKey, dataObjectAssocRemover, oldAssociatedObjectsCrit, scrollSlices,
+                              scrollPageSize);
             // Saving remaining objects...
             dataObjectAssocRemover.finalSave();
             sendDataSourceMessage(String.format("          ...%d data objects dataset association removed.",
@@ -651,7 +747,8 @@ public class EntityIndexerService implements IEntityIndexerService {
         DataObjectGroupAssocRemover dataObjectAssocRemover = new DataObjectGroupAssocRemover(dataset, updateDate,
                 toSaveObjects, saveDataObjectsCallable, executor, groupName, maxBulkSize);
         try {
-            esRepos.searchAll(searchKey, dataObjectAssocRemover, oldAssociatedObjectsCrit);
+            esRepos.searchAll(searchKey, dataObjectAssocRemover, oldAssociatedObjectsCrit, scrollSlices,
+                              scrollPageSize);
         } catch (ElasticsearchException e) {
             throw new ModuleException(e);
         }
@@ -722,10 +819,19 @@ public class EntityIndexerService implements IEntityIndexerService {
     @MultitenantTransactional
     public void updateDatasets(String tenant, Collection<Dataset> datasets, OffsetDateTime lastUpdateDate,
             OffsetDateTime updateDate, boolean forceDataObjectsUpdate, String dsiId) throws ModuleException {
+        updateDatasets(tenant, tenant, datasets, lastUpdateDate, updateDate, forceDataObjectsUpdate, dsiId);
+    }
+
+    @Override
+    @MultitenantTransactional
+    public void updateDatasets(String tenant, String index, Collection<Dataset> datasets,
+            OffsetDateTime lastUpdateDate, OffsetDateTime updateDate, boolean forceDataObjectsUpdate, String dsiId)
+            throws ModuleException {
         for (Dataset dataset : datasets) {
             LOGGER.info("Updating dataset {} ...", dataset.getLabel());
             sendDataSourceMessage(String.format("  Updating dataset %s...", dataset.getLabel()), dsiId);
-            updateEntityIntoEs(tenant, dataset.getIpId(), lastUpdateDate, updateDate, forceDataObjectsUpdate, dsiId);
+            updateEntityIntoIndex(tenant, index, dataset.getIpId(), lastUpdateDate, updateDate,
+                                  forceDataObjectsUpdate, dsiId);
             sendDataSourceMessage(String.format("  ...Dataset %s updated.", dataset.getLabel()), dsiId);
             LOGGER.info("Dataset {} updated.", dataset.getLabel());
         }
@@ -741,10 +847,58 @@ public class EntityIndexerService implements IEntityIndexerService {
         //1. Delete existing index
         deleteIndex(tenant);
         sessionNotifier.notifyIndexDeletion();
-        //2. Then re-create all entities
-        OffsetDateTime updateDate = OffsetDateTime.now();
-        updateAllDatasets(tenant, updateDate);
-        updateAllCollections(tenant, updateDate);
+        //2. Then re-create all entities (into a new index without refresh nor replicas until all are created)
+        createIndexIfNeeded(tenant);
+        try (BulkIndexingSession bulkSession = esRepos.openBulkIndexingSession(tenant)) {
+            OffsetDateTime updateDate = OffsetDateTime.now();
+            updateAllDatasets(tenant, updateDate);
+            updateAllCollections(tenant, updateDate);
+        }
+    }
+
+    @Override
+    public void rebuildIndexNRecreateEntities(String tenant) throws ModuleException {
+        // Nothing to copy
+        if (!esRepos.indexExists(tenant)) {
+            deleteIndexNRecreateEntities(tenant);
+            return;
+        }
+        //1. Block writes on current index (it is still searchable) so that no document indexed during the rebuild is
+        // lost with it. Meanwhile, writes fail : pending dataset updates are postponed and retried, ingestions end in
+        // error until their next planned date and feature deletions are notified as failed after their last attempt.
+        // A block left by a crash is removed at next start (see IngesterService)
+        esRepos.blockWrites(tenant, true);
+        String newIndex = null;
+        boolean swapped = false;
+        try {
+            //2. Copy all documents into a new index
+            try {
+                newIndex = esRepos.copyIntoNewIndex(tenant);
+            } catch (IOException e) {
+                throw new ModuleException(e);
+            }
+            if (newIndex == null) {
+                throw new ModuleException(String.format("Index %s cannot be copied into a new one", tenant));
+            }
+            //3. Then re-create all entities into new index
+            try (BulkIndexingSession bulkSession = esRepos.openBulkIndexingSession(newIndex)) {
+                OffsetDateTime updateDate = OffsetDateTime.now();
+                updateAllDatasets(tenant, newIndex, updateDate);
+                updateAllCollections(tenant, newIndex, updateDate);
+            }
+            //4. Finally replace current index by new one (current one is deleted)
+            swapped = esRepos.swapAlias(tenant, newIndex);
+            if (!swapped) {
+                throw new ModuleException(String.format("Index %s cannot be replaced by %s", tenant, newIndex));
+            }
+        } finally {
+            if (!swapped) {
+                if ((newIndex != null) && esRepos.indexExists(newIndex)) {
+                    esRepos.deleteIndex(newIndex);
+                }
+                esRepos.blockWrites(tenant, false);
+            }
+        }
     }
 
     /**
@@ -794,48 +948,61 @@ public class EntityIndexerService implements IEntityIndexerService {
     @Override
     public BulkSaveResult createDataObjects(String tenant, Long datasourceId, OffsetDateTime now,
             List<DataObject> objects, String datasourceIngestionId) throws ModuleException {
-        StringBuilder buf = new StringBuilder();
-        BulkSaveResult bulkSaveResult = new BulkSaveResult();
-        // For all objects, it is necessary to set datasourceId, creation date AND to validate them
-        OffsetDateTime creationDate = now;
-        Set<DataObject> toSaveObjects = new HashSet<>();
-        for (DataObject dataObject : objects) {
-            dataObject.setDataSourceId(datasourceId);
-            dataObject.setCreationDate(creationDate);
-            dataObject.setLastUpdate(creationDate);
-            if (Strings.isNullOrEmpty(dataObject.getLabel())) {
-                dataObject.setLabel(dataObject.getIpId().toString());
-            }
-            normalizeAndReprojectGeometry(dataObject, bulkSaveResult, buf);
-            // Validate data object
-            validateDataObject(toSaveObjects, dataObject, bulkSaveResult, buf, datasourceId);
-        }
-        try {
-            esRepos.saveBulk(tenant, bulkSaveResult, toSaveObjects, buf);
-        } catch (ElasticsearchException e) {
-            throw new ModuleException(e);
-        } finally {
-            publishEventsAndManageErrors(tenant, datasourceIngestionId, buf, bulkSaveResult);
-        }
-
-        return bulkSaveResult;
+        return saveDataObjects(tenant, datasourceIngestionId,
+                               prepareDataObjects(tenant, datasourceId, now, objects, false));
     }
 
     @Override
     public BulkSaveResult mergeDataObjects(String tenant, Long datasourceId, OffsetDateTime now,
             List<DataObject> objects, String datasourceIngestionId) throws ModuleException {
-        StringBuilder buf = new StringBuilder();
-        BulkSaveResult bulkSaveResult = new BulkSaveResult();
-        // Set of data objects to be saved (depends on existence of data objects into ES)
-        Set<DataObject> toSaveObjects = new HashSet<>();
+        return saveDataObjects(tenant, datasourceIngestionId,
+                               prepareDataObjects(tenant, datasourceId, now, objects, true));
+    }
 
-        for (DataObject dataObject : objects) {
-            normalizeAndReprojectGeometry(dataObject, bulkSaveResult, buf);
-            mergeDataObject(tenant, datasourceId, now, dataObject);
-            validateDataObject(toSaveObjects, dataObject, bulkSaveResult, buf, datasourceId);
+    @Override
+    public PreparedDataObjects prepareDataObjects(String tenant, Long datasourceId, OffsetDateTime now,
+            List<DataObject> objects, boolean merge) {
+        PreparedDataObjects prepared = new PreparedDataObjects(objects.size());
+        StringBuilder buf = prepared.getErrorBuffer();
+        BulkSaveResult bulkSaveResult = prepared.getBulkSaveResult();
+        // Set of data objects to be saved (depends on existence of data objects into ES)
+        Set<DataObject> toSaveObjects = prepared.getToSaveObjects();
+        if (merge) {
+            // Retrieve all current indexed data objects of the page at once (instead of one get request per object)
+            Map<String, DataObject> curObjectsMap = esRepos
+                    .multiGet(tenant, EntityType.DATA.toString(),
+                              objects.stream().map(DataObject::getDocId).collect(Collectors.toList()),
+                              DataObject.class);
+            for (DataObject dataObject : objects) {
+                normalizeAndReprojectGeometry(dataObject, bulkSaveResult, buf);
+                mergeDataObject(curObjectsMap.get(dataObject.getDocId()), datasourceId, now, dataObject);
+                validateDataObject(toSaveObjects, dataObject, bulkSaveResult, buf, datasourceId);
+            }
+        } else {
+            // For all objects, it is necessary to set datasourceId, creation date AND to validate them
+            OffsetDateTime creationDate = now;
+            for (DataObject dataObject : objects) {
+                dataObject.setDataSourceId(datasourceId);
+                dataObject.setCreationDate(creationDate);
+                dataObject.setLastUpdate(creationDate);
+                if (Strings.isNullOrEmpty(dataObject.getLabel())) {
+                    dataObject.setLabel(dataObject.getIpId().toString());
+                }
+                normalizeAndReprojectGeometry(dataObject, bulkSaveResult, buf);
+                // Validate data object
+                validateDataObject(toSaveObjects, dataObject, bulkSaveResult, buf, datasourceId);
+            }
         }
+        return prepared;
+    }
+
+    @Override
+    public BulkSaveResult saveDataObjects(String tenant, String datasourceIngestionId, PreparedDataObjects prepared)
+            throws ModuleException {
+        StringBuilder buf = prepared.getErrorBuffer();
+        BulkSaveResult bulkSaveResult = prepared.getBulkSaveResult();
         try {
-            esRepos.saveBulk(tenant, bulkSaveResult, toSaveObjects, buf);
+            esRepos.saveBulk(tenant, bulkSaveResult, prepared.getToSaveObjects(), buf);
         } catch (ElasticsearchException e) {
             throw new ModuleException(e);
         } finally {
@@ -896,9 +1063,9 @@ public class EntityIndexerService implements IEntityIndexerService {
 
     /**
      * Merge data object with current indexed one if it does exist
+     * @param curObject current indexed data object (null if it doesn't exist)
      */
-    private void mergeDataObject(String tenant, Long datasourceId, OffsetDateTime now, DataObject dataObject) {
-        DataObject curObject = esRepos.get(tenant, dataObject);
+    private void mergeDataObject(DataObject curObject, Long datasourceId, OffsetDateTime now, DataObject dataObject) {
         // Be careful : in some case, some data objects from another datasource can be retrieved (AipDataSource
         // search objects from storage only using tags so if this tag has been used
         // if current object does already exist into ES, the new one wins. It is then mandatory to retrieve from
@@ -964,6 +1131,11 @@ public class EntityIndexerService implements IEntityIndexerService {
         return esRepos.delete(tenant, EntityType.DATA.toString(), ipId);
     }
 
+    @Override
+    public Map<String, Exception> deleteDataObjects(String tenant, Collection<String> ipIds) {
+        return esRepos.deleteBulk(tenant, EntityType.DATA.toString(), ipIds);
+    }
+
     @Override
     public long deleteDataObjectsFromDatasource(String tenant, Long datasourceId) {
         return esRepos.deleteByDatasource(tenant, datasourceId);
@@ -971,13 +1143,23 @@ public class EntityIndexerService implements IEntityIndexerService {
 
     @Override
     public void updateAllDatasets(String tenant, OffsetDateTime updateDate) throws ModuleException {
-        self.updateDatasets(tenant, datasetService.findAll(), null, updateDate, true, null);
+        updateAllDatasets(tenant, tenant, updateDate);
+    }
+
+    @Override
+    public void updateAllDatasets(String tenant, String index, OffsetDateTime updateDate) throws ModuleException {
+        self.updateDatasets(tenant, index, datasetService.findAll(), null, updateDate, true, null);
     }
 
     @Override
     public void updateAllCollections(String tenant, OffsetDateTime updateDate) throws ModuleException {
+        updateAllCollections(tenant, tenant, updateDate);
+    }
+
+    @Override
+    public void updateAllCollections(String tenant, String index, OffsetDateTime updateDate) throws ModuleException {
         for (fr.cnes.regards.modules.dam.domain.entities.Collection col : collectionService.findAll()) {
-            updateEntityIntoEs(tenant, col.getIpId(), null, updateDate, false, null);
+            updateEntityIntoIndex(tenant, index, col.getIpId(), null, updateDate, false, null);
         }
     }
 
@@ -18,7 +18,24 @@
  */
 package fr.cnes.regards.modules.crawler.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
@@ -26,13 +43,24 @@ import fr.cnes.regards.framework.amqp.ISubscriber;
 import fr.cnes.regards.framework.amqp.domain.IHandler;
 import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.framework.notification.NotificationLevel;
+import fr.cnes.regards.framework.notification.client.INotificationClient;
+import fr.cnes.regards.framework.security.role.DefaultRole;
 import fr.cnes.regards.framework.utils.RsRuntimeException;
+import fr.cnes.regards.modules.crawler.domain.PendingFeatureDeletion;
 import fr.cnes.regards.modules.dam.dto.FeatureEvent;
 import fr.cnes.regards.modules.dam.dto.FeatureEventType;
 import fr.cnes.regards.modules.model.gson.ModelGsonReadyEvent;
 
 /**
- * Handle {@link FeatureEvent}s to delete features from index.
+ * Handle {@link FeatureEvent}s to delete features from index.<br/>
+ * Deletions are saved (see {@link PendingFeatureDeletionService}) while handling their events so an event is only
+ * acknowledged once its deletion is saved and no deletion is lost if the crawler stops before sending it.<br/>
+ * Deletions are sent by tenant as bulk delete requests as soon as regards.crawler.feature.delete.bulk.size deletions
+ * have been received or at least every regards.crawler.feature.delete.bulk.delay.ms. Deletions in error are retried
+ * with next bulk (at most regards.crawler.feature.delete.max.attempts times) before being notified as failed.
+ * Deletions not sent when stopping are sent at next start.
  *
  * @author Sébastien Binda
  *
@@ -43,28 +71,177 @@ public class FeatureEventHandler implements IHandler<FeatureEvent> {
     @Autowired
     private IRuntimeTenantResolver runtimeTenantResolver;
 
+    /**
+     * All tenants resolver
+     */
+    @Autowired
+    private ITenantResolver tenantsResolver;
+
     @Autowired
     private IEntityIndexerService entityIndexerService;
 
+    @Autowired
+    private PendingFeatureDeletionService pendingDeletionService;
+
     @Autowired
     private ISubscriber subscriber;
 
+    @Autowired
+    private INotificationClient notificationClient;
+
+    @Value("${regards.crawler.feature.delete.bulk.size:1000}")
+    private int bulkSize;
+
+    @Value("${regards.crawler.feature.delete.bulk.delay.ms:1000}")
+    private long bulkDelayMs;
+
+    @Value("${regards.crawler.feature.delete.max.attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Count of deletions received since last sending, by tenant
+     */
+    private final ConcurrentMap<String, AtomicInteger> receivedCountByTenant = new ConcurrentHashMap<>();
+
+    /**
+     * Locks allowing only one sending at a time for a tenant, by tenant
+     */
+    private final ConcurrentMap<String, Object> flushLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Executor sending pending deletions at least every bulkDelayMs
+     */
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Wait for current sending, remaining pending deletions are left to next start
+     */
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("Pending features deletions still being sent after 1 minute");
+                flushExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for pending features deletions to be sent");
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @EventListener
     public void handleApplicationReady(ModelGsonReadyEvent event) {
         subscriber.subscribeTo(FeatureEvent.class, this);
+        // Deletions left pending by a previous run are sent with first bulks
+        flushExecutor.scheduleWithFixedDelay(this::flushAll, 0, bulkDelayMs, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void handle(TenantWrapper<FeatureEvent> wrapper) {
         FeatureEvent event = wrapper.getContent();
         if (event.getType() == FeatureEventType.DELETE) {
-            runtimeTenantResolver.forceTenant(wrapper.getTenant());
+            String tenant = wrapper.getTenant();
             try {
-                entityIndexerService.deleteDataObject(wrapper.getTenant(), event.getFeatureId());
-            } catch (RsRuntimeException e) {
-                String msg = String.format("Cannot delete Feature (%s)", event.getFeatureId());
-                LOGGER.error(msg, e);
+                runtimeTenantResolver.forceTenant(tenant);
+                pendingDeletionService.add(event.getFeatureId());
+            } finally {
+                runtimeTenantResolver.clearTenant();
             }
+            if (receivedCountByTenant.computeIfAbsent(tenant, t -> new AtomicInteger(0)).incrementAndGet()
+                    >= bulkSize) {
+                flush(tenant);
+            }
+        }
+    }
+
+    /**
+     * Send pending deletions of all tenants
+     */
+    private void flushAll() {
+        for (String tenant : tenantsResolver.getAllActiveTenants()) {
+            try {
+                flush(tenant);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Cannot delete features of tenant %s", tenant), e);
+            }
+        }
+    }
+
+    /**
+     * Send pending deletions of given tenant by bulks of at most bulkSize deletions, until a bulk has deletions to be
+     * retried (they are retried with next sending)
+     */
+    private void flush(String tenant) {
+        synchronized (flushLocks.computeIfAbsent(tenant, t -> new Object())) {
+            receivedCountByTenant.computeIfAbsent(tenant, t -> new AtomicInteger(0)).set(0);
+            try {
+                runtimeTenantResolver.forceTenant(tenant);
+                List<PendingFeatureDeletion> bulk;
+                do {
+                    bulk = pendingDeletionService.findOldest(bulkSize);
+                } while (!bulk.isEmpty() && deleteBulk(tenant, bulk) && (bulk.size() == bulkSize));
+            } finally {
+                runtimeTenantResolver.clearTenant();
+            }
+        }
+    }
+
+    /**
+     * Delete given features with one bulk request then remove sent deletions and those that have failed too many times
+     * (current tenant must be set)
+     * @return true if all deletions have been sent
+     */
+    private boolean deleteBulk(String tenant, List<PendingFeatureDeletion> bulk) {
+        List<String> featureIds = bulk.stream().map(PendingFeatureDeletion::getFeatureId)
+                .collect(Collectors.toList());
+        Set<String> failedIds;
+        try {
+            Map<String, Exception> failures = entityIndexerService.deleteDataObjects(tenant, featureIds);
+            LOGGER.debug("{} features deleted, {} in error", bulk.size() - failures.size(), failures.size());
+            failedIds = failures.keySet();
+        } catch (RsRuntimeException e) {
+            LOGGER.error(String.format("Cannot delete %d features", bulk.size()), e);
+            failedIds = new HashSet<>(featureIds);
+        }
+        Set<String> toRetryIds = new HashSet<>();
+        Set<String> toRemoveIds = new HashSet<>();
+        List<String> definitelyFailedIds = new ArrayList<>();
+        for (PendingFeatureDeletion deletion : bulk) {
+            if (!failedIds.contains(deletion.getFeatureId())) {
+                toRemoveIds.add(deletion.getFeatureId());
+            } else if ((deletion.getAttempts() + 1) < maxAttempts) {
+                toRetryIds.add(deletion.getFeatureId());
+            } else {
+                definitelyFailedIds.add(deletion.getFeatureId());
+                toRemoveIds.add(deletion.getFeatureId());
+            }
+        }
+        pendingDeletionService.countFailedAttempt(toRetryIds);
+        pendingDeletionService.remove(toRemoveIds);
+        if (!definitelyFailedIds.isEmpty()) {
+            notifyFailedDeletions(definitelyFailedIds);
+        }
+        return failedIds.isEmpty();
+    }
+
+    /**
+     * Report deletions that have failed maximum attempts times (current tenant must be set)
+     */
+    private void notifyFailedDeletions(List<String> failedIds) {
+        String featureIds = String.join(", ", failedIds);
+        LOGGER.error(String.format("Cannot delete Features (%s) after %d attempts", featureIds, maxAttempts));
+        try {
+            notificationClient.notify(String.format("%d feature(s) cannot be deleted from index after %d attempts: %s",
+                                                    failedIds.size(), maxAttempts, featureIds),
+                                      "Feature deletion failure", NotificationLevel.ERROR, DefaultRole.ADMIN);
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot notify features deletion failure", e);
         }
     }
 }
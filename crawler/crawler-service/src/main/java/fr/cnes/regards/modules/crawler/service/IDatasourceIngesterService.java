@@ -4,9 +4,13 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
 import fr.cnes.regards.framework.module.rest.exception.InactiveDatasourceException;
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
 import fr.cnes.regards.modules.crawler.domain.IngestionResult;
 import fr.cnes.regards.modules.crawler.service.exception.NotFinishedException;
 import fr.cnes.regards.modules.dam.domain.datasources.plugins.DataSourceException;
@@ -29,6 +33,12 @@ public interface IDatasourceIngesterService {
      */
     List<DatasourceIngestion> getDatasourceIngestions();
 
+    /**
+     * Retrieve a page of given {@link DatasourceIngestion} progress log entries
+     * @param id DatasourceIngestion id
+     */
+    Page<DatasourceIngestionLog> getDatasourceIngestionLogs(String id, Pageable pageable);
+
     /**
      * Delete given {@link DatasourceIngestion}
      * @param id DatasourceIngestion id
@@ -21,6 +21,7 @@ package fr.cnes.regards.modules.crawler.service;
 import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
 import fr.cnes.regards.framework.notification.NotificationLevel;
@@ -103,6 +104,17 @@ public interface IEntityIndexerService {
     void updateDatasets(String tenant, Collection<Dataset> datasets, OffsetDateTime lastUpdateDate,
             OffsetDateTime updateDate, boolean forceDataObjectsUpdate, String dsiId) throws ModuleException;
 
+    /**
+     * Transactional method updating a set of datasets into given index (which may not be the tenant one yet, ie
+     * while rebuilding it)
+     *
+     * @param tenant concerned tenant
+     * @param index  index to update
+     * @see #updateDatasets(String, Collection, OffsetDateTime, OffsetDateTime, boolean, String)
+     */
+    void updateDatasets(String tenant, String index, Collection<Dataset> datasets, OffsetDateTime lastUpdateDate,
+            OffsetDateTime updateDate, boolean forceDataObjectsUpdate, String dsiId) throws ModuleException;
+
     /**
      * Force update of all {@link Dataset}s
      *
@@ -112,6 +124,16 @@ public interface IEntityIndexerService {
      */
     void updateAllDatasets(String tenant, OffsetDateTime updateDate) throws ModuleException;
 
+    /**
+     * Force update of all {@link Dataset}s into given index
+     *
+     * @param tenant concerned tenant
+     * @param index  index to update
+     * @param updateDate
+     * @throws ModuleException
+     */
+    void updateAllDatasets(String tenant, String index, OffsetDateTime updateDate) throws ModuleException;
+
     /**
      * Force update of all {@link fr.cnes.regards.modules.dam.domain.entities.Collection}s
      *
@@ -121,6 +143,16 @@ public interface IEntityIndexerService {
      */
     void updateAllCollections(String tenant, OffsetDateTime updateDate) throws ModuleException;
 
+    /**
+     * Force update of all {@link fr.cnes.regards.modules.dam.domain.entities.Collection}s into given index
+     *
+     * @param tenant concerned tenant
+     * @param index  index to update
+     * @param updateDate
+     * @throws ModuleException
+     */
+    void updateAllCollections(String tenant, String index, OffsetDateTime updateDate) throws ModuleException;
+
     /**
      * Create given data objects into Elasticsearch
      *
@@ -149,6 +181,33 @@ public interface IEntityIndexerService {
     BulkSaveResult mergeDataObjects(String tenant, Long datasourceId, OffsetDateTime now, List<DataObject> objects,
             String datasourceIngestionId) throws ModuleException;
 
+    /**
+     * Prepare given data objects to be created or merged into Elasticsearch (set datasource id and dates, normalize
+     * geometries and validate). Nothing is saved.
+     *
+     * @param tenant       concerned tenant
+     * @param datasourceId id of data source from where data objects come
+     * @param now          update date (usually now)
+     * @param objects      objects to prepare
+     * @param merge        whether data objects have to be merged with already indexed ones
+     * @return prepared data objects
+     */
+    PreparedDataObjects prepareDataObjects(String tenant, Long datasourceId, OffsetDateTime now,
+            List<DataObject> objects, boolean merge);
+
+    /**
+     * Save prepared data objects into Elasticsearch
+     *
+     * @param tenant                concerned tenant
+     * @param datasourceIngestionId
+     * @param prepared              data objects prepared by
+     *                              {@link #prepareDataObjects(String, Long, OffsetDateTime, List, boolean)}
+     * @return bulk save result
+     * @throws ModuleException
+     */
+    BulkSaveResult saveDataObjects(String tenant, String datasourceIngestionId, PreparedDataObjects prepared)
+            throws ModuleException;
+
     /**
      * Delete given data object from Elasticsearch
      *
@@ -158,6 +217,15 @@ public interface IEntityIndexerService {
      */
     boolean deleteDataObject(String tenant, String ipId);
 
+    /**
+     * Delete given data objects from Elasticsearch with a single bulk request
+     *
+     * @param tenant concerned tenant
+     * @param ipIds  ids of Data objects
+     * @return data objects that cannot be deleted associated to failure cause
+     */
+    Map<String, Exception> deleteDataObjects(String tenant, Collection<String> ipIds);
+
     /**
      * Delete given data object from Elasticsearch
      *
@@ -182,4 +250,13 @@ public interface IEntityIndexerService {
      * @param tenant
      */
     void deleteIndexNRecreateEntities(String tenant) throws ModuleException;
+
+    /**
+     * Rebuild index without search interruption : all documents are copied into a new index into which entities are
+     * then recreated. New index finally replaces current one (tenant becomes an alias on it). Writes on current index
+     * are blocked during the whole rebuild (and unblocked if it fails or at next start after a crash) : writes
+     * requested meanwhile fail and are only retried by their own mechanism (pending dataset updates, next ingestion).
+     * @param tenant
+     */
+    void rebuildIndexNRecreateEntities(String tenant) throws ModuleException;
 }
@@ -21,12 +21,27 @@ package fr.cnes.regards.modules.crawler.service;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -46,7 +61,10 @@ import fr.cnes.regards.modules.dam.domain.datasources.plugins.IDataSourcePlugin;
 import fr.cnes.regards.modules.model.gson.ModelGsonReadyEvent;
 
 /**
- * Component used to schedule new {@link DatasourceIngestion} to ingest features in ES catalog for each tenants
+ * Component used to schedule new {@link DatasourceIngestion} to ingest features in ES catalog for each tenants.<br/>
+ * Ingestions are executed by a pool of workers (regards.ingester.workers) with a maximum of
+ * regards.ingester.workers.per.tenant concurrent ingestions per tenant. Tenants are served round-robin so that a
+ * tenant with many datasources cannot starve the others.
  *
  * @author oroussel
  * @author Sébastien Binda
@@ -83,13 +101,83 @@ public class IngesterService implements IHandler<PluginConfEvent> {
     @Autowired
     private IDatasourceIngesterService datasourceIngester;
 
+    @Autowired
+    private DatasourceIngestionLogService dsIngestionLogService;
+
+    /**
+     * Maximum number of concurrent ingestions (all tenants)
+     */
+    @Value("${regards.ingester.workers:4}")
+    private int maxWorkers;
+
+    /**
+     * Maximum number of concurrent ingestions for one tenant.<br/>
+     * Concurrent ingestions of a tenant share its index : bulk indexing sessions are counted by index (the first one
+     * disables refresh and replicas, the last one restores original settings and refreshes index) and datasets are
+     * updated after an explicit refresh. A value greater than 1 relies on these two points (without them, an ingestion
+     * ending while another one is running leaves the index without refresh nor replicas or updates datasets from
+     * unrefreshed data objects).
+     */
+    @Value("${regards.ingester.workers.per.tenant:1}")
+    private int maxWorkersPerTenant;
+
+    /**
+     * Ingestion workers
+     */
+    private ExecutorService workers;
+
+    /**
+     * Number of ingestions currently executing (all tenants)
+     */
+    private final AtomicInteger runningCount = new AtomicInteger(0);
+
+    /**
+     * Number of ended ingestions whom worker is dispatching next ready ingestions
+     */
+    private final AtomicInteger redispatchingCount = new AtomicInteger(0);
+
+    /**
+     * Ingestions (datasource ids) currently executing by tenant
+     */
+    private final ConcurrentMap<String, Set<String>> runningIngestionsByTenant = new ConcurrentHashMap<>();
+
+    /**
+     * Index (into sorted active tenants) of the first tenant to be served by next dispatch (round-robin)
+     */
+    private int nextTenantIndex = 0;
+
     /**
      * Boolean indicating whether or not crawler service is in "consume only" mode (to be used by tests only)
      */
     private boolean consumeOnlyMode = false;
 
+    @PostConstruct
+    public void init() {
+        workers = Executors.newFixedThreadPool(Math.max(1, maxWorkers));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
     @EventListener
     public void handleApplicationReadyEvent(ModelGsonReadyEvent event) {
+        // Index settings may have been left without refresh nor replicas by a crash during an ingestion and writes
+        // blocked by a crash during an index rebuild
+        for (String tenant : tenantResolver.getAllActiveTenants()) {
+            try {
+                runtimeTenantResolver.forceTenant(tenant);
+                // Ingestions left STARTED by a crash are reset first so that their index settings are restored
+                dsIngestionService.resetInterruptedIngestions();
+                dsIngestionService.unblockIndexWritesIfRebuildInterrupted();
+                dsIngestionService.restoreIndexSettingsIfBulkInterrupted();
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Cannot check ingestions and index settings of tenant %s", tenant), e);
+            } finally {
+                runtimeTenantResolver.clearTenant();
+            }
+        }
         subscriber.subscribeTo(PluginConfEvent.class, this);
     }
 
@@ -98,8 +186,7 @@ public class IngesterService implements IHandler<PluginConfEvent> {
      */
     @EventListener
     public void handleMessageEvent(DataSourceMessageEvent event) {
-        runtimeTenantResolver.forceTenant(event.getTenant());
-        dsIngestionService.addMessageToStackTrace(event.getDataSourceId(), event.getMessage());
+        dsIngestionLogService.append(event.getTenant(), event.getDataSourceId(), event.getMessage());
     }
 
     @Override
@@ -120,6 +207,8 @@ public class IngesterService implements IHandler<PluginConfEvent> {
     /**
      * By default, launched 5 mn after last one. BUT this method is also executed each time a datasource is created
      * Initial delay of 2 mn to avoid been launched too soon.
+     * This method only dispatches ready ingestions to workers, it doesn't wait for them to end. Each time a worker
+     * ends an ingestion, a new dispatch is done to give the freed slot to next ready ingestion.
      */
     @Scheduled(initialDelay = 300000, fixedDelayString = "${regards.ingester.rate.ms:300000}")
     public void manage() {
@@ -138,48 +227,137 @@ public class IngesterService implements IHandler<PluginConfEvent> {
                     dsIngestionService.updateAndCleanTenantDatasourceIngestions();
                 }
                 // Then ingest...
-                boolean atLeastOneIngestionDone;
-                do {
-                    atLeastOneIngestionDone = false;
-                    for (String tenant : tenantResolver.getAllActiveTenants()) {
-                        runtimeTenantResolver.forceTenant(tenant);
-                        // Pick an available dsIngestion marking it as STARTED if present
-                        Optional<String> dsIngestionOpt = dsIngestionService.pickAndStartDatasourceIngestion();
-                        if (dsIngestionOpt.isPresent()) {
-                            String dsId = dsIngestionOpt.get();
-                            atLeastOneIngestionDone = true;
-                            try {
-                                Optional<IngestionResult> summary = datasourceIngester.ingest(dsId);
-                                if (summary.isPresent()) {
-                                    dsIngestionService.updateIngesterResult(dsId, summary.get());
-                                }
-                            } catch (InactiveDatasourceException ide) {
-                                LOGGER.error(ide.getMessage(), ide);
-                                dsIngestionService.setInactive(dsId, ide.getMessage());
-                            } catch (NotFinishedException nfe) {
-                                LOGGER.error(nfe.getMessage(), nfe);
-                                dsIngestionService.setNotFinished(dsId, nfe);
-                            } catch (Exception e) {
-                                // Catch all other possible exceptions to set ingestion to error status
-                                LOGGER.error(e.getMessage(), e);
-                                try (StringWriter sw = new StringWriter()) {
-                                    e.printStackTrace(new PrintWriter(sw));
-                                    dsIngestionService.setError(dsId, sw.toString());
-                                } catch (IOException e1) {
-                                    LOGGER.error(e.getMessage(), e);
-                                }
-                            }
-                        }
-                    }
-                    // At least one ingestion has to be done while looping through all tenants
-                } while (atLeastOneIngestionDone);
+                dispatch();
                 // set doItAgain to false in all cases and redo if asked to (this means a datasource has been created
                 // or updated while manage() method was currently executing
             } while (doItAgain.getAndSet(false));
         } finally { // In all cases, set managing to false
             managing.set(false);
         }
-        LOGGER.info("...IngesterService.manage() ended.");
+        LOGGER.info("...IngesterService.manage() ended ({} ingestion(s) running).", runningCount.get());
+    }
+
+    /**
+     * Give a sign of life for ingestions running on this instance so that other instances don't consider them as lost
+     * (see {@link DatasourceIngestionService#resetInterruptedIngestions()})
+     */
+    @Scheduled(fixedDelayString = "${regards.ingester.heartbeat.ms:60000}")
+    public void heartbeat() {
+        for (Map.Entry<String, Set<String>> entry : runningIngestionsByTenant.entrySet()) {
+            try {
+                runtimeTenantResolver.forceTenant(entry.getKey());
+                dsIngestionService.refreshHeartbeats(new ArrayList<>(entry.getValue()));
+            } catch (RuntimeException e) {
+                LOGGER.error("Cannot refresh heartbeat of running ingestions of tenant {}", entry.getKey(), e);
+            } finally {
+                runtimeTenantResolver.clearTenant();
+            }
+        }
+    }
+
+    /**
+     * Pick ready ingestions and give them to workers while global and per tenant limits are not reached.
+     * Tenants are served round-robin (one ingestion per tenant and per round), starting from the tenant following the
+     * last served one.
+     */
+    private synchronized void dispatch() {
+        List<String> tenants = new ArrayList<>(tenantResolver.getAllActiveTenants());
+        if (tenants.isEmpty()) {
+            return;
+        }
+        Collections.sort(tenants);
+        boolean atLeastOneIngestionDispatched;
+        do {
+            atLeastOneIngestionDispatched = false;
+            int firstTenantIndex = nextTenantIndex % tenants.size();
+            for (int i = 0; (i < tenants.size()) && (runningCount.get() < maxWorkers); i++) {
+                int tenantIndex = (firstTenantIndex + i) % tenants.size();
+                String tenant = tenants.get(tenantIndex);
+                Set<String> tenantRunningIngestions = runningIngestionsByTenant
+                        .computeIfAbsent(tenant, t -> ConcurrentHashMap.newKeySet());
+                if (tenantRunningIngestions.size() >= maxWorkersPerTenant) {
+                    continue;
+                }
+                runtimeTenantResolver.forceTenant(tenant);
+                // Pick an available dsIngestion marking it as STARTED if present
+                Optional<String> dsIngestionOpt = dsIngestionService.pickAndStartDatasourceIngestion();
+                if (dsIngestionOpt.isPresent()) {
+                    String dsId = dsIngestionOpt.get();
+                    atLeastOneIngestionDispatched = true;
+                    nextTenantIndex = tenantIndex + 1;
+                    tenantRunningIngestions.add(dsId);
+                    runningCount.incrementAndGet();
+                    try {
+                        workers.execute(() -> this.ingest(tenant, dsId));
+                    } catch (RejectedExecutionException e) {
+                        tenantRunningIngestions.remove(dsId);
+                        runningCount.decrementAndGet();
+                        LOGGER.error("Cannot launch ingestion of datasource {} (tenant {})", dsId, tenant, e);
+                        dsIngestionService.setError(dsId, "Ingestion has been rejected by ingester : " + e.getMessage());
+                    }
+                }
+            }
+            // At least one ingestion has to be dispatched while looping through all tenants
+        } while (atLeastOneIngestionDispatched && (runningCount.get() < maxWorkers));
+    }
+
+    /**
+     * Worker task : ingest given datasource then give freed slot to next ready ingestion
+     */
+    private void ingest(String tenant, String dsId) {
+        try {
+            runtimeTenantResolver.forceTenant(tenant);
+            Optional<IngestionResult> summary = datasourceIngester.ingest(dsId);
+            if (summary.isPresent()) {
+                dsIngestionService.updateIngesterResult(dsId, summary.get());
+            }
+        } catch (InactiveDatasourceException ide) {
+            LOGGER.error(ide.getMessage(), ide);
+            dsIngestionService.setInactive(dsId, ide.getMessage());
+        } catch (NotFinishedException nfe) {
+            LOGGER.error(nfe.getMessage(), nfe);
+            dsIngestionService.setNotFinished(dsId, nfe);
+        } catch (Exception e) {
+            // Catch all other possible exceptions to set ingestion to error status
+            LOGGER.error(e.getMessage(), e);
+            try (StringWriter sw = new StringWriter()) {
+                e.printStackTrace(new PrintWriter(sw));
+                dsIngestionService.setError(dsId, sw.toString());
+            } catch (IOException e1) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        } finally {
+            dsIngestionLogService.flush(tenant);
+            redispatchingCount.incrementAndGet();
+            runningIngestionsByTenant.get(tenant).remove(dsId);
+            runningCount.decrementAndGet();
+        }
+        try {
+            if (!consumeOnlyMode) {
+                dispatch();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot dispatch next ingestions", e);
+        } finally {
+            redispatchingCount.decrementAndGet();
+            runtimeTenantResolver.clearTenant();
+        }
+    }
+
+    /**
+     * Wait until no ingestion is running nor being dispatched (test purpose)
+     * @param timeoutMs maximum waiting duration
+     * @return true if all ingestions have ended, false if timeout has been reached
+     */
+    public boolean waitForEndOfIngestions(long timeoutMs) throws InterruptedException { // NOSONAR : test purpose
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (managing.get() || (runningCount.get() > 0) || (redispatchingCount.get() > 0)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import fr.cnes.regards.framework.jpa.multitenant.transactional.MultitenantTransactional;
+import fr.cnes.regards.framework.urn.UniformResourceName;
+import fr.cnes.regards.modules.crawler.dao.IPendingDatasetUpdateRepository;
+import fr.cnes.regards.modules.crawler.domain.PendingDatasetUpdate;
+
+/**
+ * Pending dataset updates of current tenant (see {@link PendingDatasetUpdate}).<br/>
+ * A dataset update is planned in the transaction consuming the event asking for it and removed only once done so an
+ * update is done at least once even if the crawler stops meanwhile.
+ * @author oroussel
+ */
+@Service
+@MultitenantTransactional
+public class PendingDatasetUpdateService {
+
+    @Autowired
+    private IPendingDatasetUpdateRepository pendingUpdateRepos;
+
+    /**
+     * Plan a dataset update or merge it with an already pending one
+     * @param forceDataObjectsUpdate whether all dataset data objects must be updated
+     */
+    public void plan(UniformResourceName ipId, boolean forceDataObjectsUpdate) {
+        pendingUpdateRepos.plan(ipId.toString(), LocalDateTime.now(ZoneOffset.UTC), forceDataObjectsUpdate);
+    }
+
+    /**
+     * Find pending updates without new event for given delay or postponed by new events for given maximum delay
+     */
+    public List<PendingDatasetUpdate> findDue(long delayMs, long maxDelayMs) {
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        return pendingUpdateRepos.findDue(now.minus(delayMs, ChronoUnit.MILLIS),
+                                          now.minus(maxDelayMs, ChronoUnit.MILLIS));
+    }
+
+    public List<PendingDatasetUpdate> findAll() {
+        return pendingUpdateRepos.findAll();
+    }
+
+    public boolean hasPending() {
+        return pendingUpdateRepos.count() > 0;
+    }
+
+    /**
+     * Postpone given failed update so that it is retried after coalescing delay (events merged into it meanwhile are
+     * kept)
+     */
+    public void postpone(PendingDatasetUpdate failed) {
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        pendingUpdateRepos.postpone(failed.getDatasetIpId(), now);
+    }
+
+    /**
+     * Remove given done update. If events have been merged into it meanwhile, it is kept to be done again.
+     * @return true if pending update has been removed
+     */
+    public boolean remove(PendingDatasetUpdate done) {
+        return pendingUpdateRepos.deleteIfUnchanged(done.getDatasetIpId(), done.getEventsCount()) == 1;
+    }
+}
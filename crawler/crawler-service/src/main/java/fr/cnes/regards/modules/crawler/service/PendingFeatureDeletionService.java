@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import fr.cnes.regards.framework.jpa.multitenant.transactional.MultitenantTransactional;
+import fr.cnes.regards.modules.crawler.dao.IPendingFeatureDeletionRepository;
+import fr.cnes.regards.modules.crawler.domain.PendingFeatureDeletion;
+
+/**
+ * Pending feature deletions of current tenant (see {@link PendingFeatureDeletion}).<br/>
+ * A feature deletion is saved in the transaction consuming the event asking for it and removed only once sent (or
+ * failed too many times) so a deletion is sent at least once even if the crawler stops meanwhile.
+ * @author oroussel
+ */
+@Service
+@MultitenantTransactional
+public class PendingFeatureDeletionService {
+
+    @Autowired
+    private IPendingFeatureDeletionRepository pendingDeletionRepos;
+
+    /**
+     * Save a feature deletion to be sent (only once if already pending)
+     */
+    public void add(String featureId) {
+        pendingDeletionRepos.add(featureId, LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Find at most given count of oldest pending deletions
+     */
+    public List<PendingFeatureDeletion> findOldest(int count) {
+        return pendingDeletionRepos.findOldest(PageRequest.of(0, count));
+    }
+
+    /**
+     * Count a failed attempt of given pending deletions, they are kept to be sent again
+     */
+    public void countFailedAttempt(Collection<String> featureIds) {
+        if (!featureIds.isEmpty()) {
+            pendingDeletionRepos.countFailedAttempt(featureIds);
+        }
+    }
+
+    /**
+     * Remove given sent (or definitely failed) deletions
+     */
+    public void remove(Collection<String> featureIds) {
+        if (!featureIds.isEmpty()) {
+            pendingDeletionRepos.deleteByFeatureIds(featureIds);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
+
+/**
+ * A bulk of data objects ready to be saved into Elasticsearch : datasource id and dates have been set, geometries
+ * normalized and data objects validated. Invalid ones are already reported into bulk save result.
+ * @author oroussel
+ */
+public class PreparedDataObjects {
+
+    /**
+     * Valid data objects to be saved
+     */
+    private final Set<DataObject> toSaveObjects = new HashSet<>();
+
+    /**
+     * Bulk save result (already containing data objects in error)
+     */
+    private final BulkSaveResult bulkSaveResult = new BulkSaveResult();
+
+    /**
+     * Detailed error message buffer
+     */
+    private final StringBuilder errorBuffer = new StringBuilder();
+
+    /**
+     * Count of data objects given to be prepared (valid or not)
+     */
+    private final int size;
+
+    public PreparedDataObjects(int size) {
+        this.size = size;
+    }
+
+    public Set<DataObject> getToSaveObjects() {
+        return toSaveObjects;
+    }
+
+    public BulkSaveResult getBulkSaveResult() {
+        return bulkSaveResult;
+    }
+
+    public StringBuilder getErrorBuffer() {
+        return errorBuffer;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -32,8 +32,49 @@ public class CrawlerPropertiesConfiguration {
     @Value("${regards.crawler.max.bulk.size:10000}")
     private Integer maxBulkSize;
 
+    /**
+     * Number of threads preparing (wrapping, normalizing geometries, validating) datasource pages, 0 means as many
+     * threads as available processors
+     */
+    @Value("${regards.crawler.pipeline.prepare.threads:0}")
+    private Integer pipelinePrepareThreads;
+
+    /**
+     * Number of threads bulk indexing prepared datasource pages into Elasticsearch
+     */
+    @Value("${regards.crawler.pipeline.index.threads:2}")
+    private Integer pipelineIndexThreads;
+
+    /**
+     * Maximum number of datasource pages read but not yet indexed, for one ingestion
+     */
+    @Value("${regards.crawler.pipeline.queue.depth:4}")
+    private Integer pipelineQueueDepth;
+
+    /**
+     * Delay after which a datasource read waiting for its pages to be indexed is reported as stalled
+     */
+    @Value("${regards.crawler.pipeline.stall.ms:60000}")
+    private Long pipelineStallMs;
+
     public Integer getMaxBulkSize() {
         return maxBulkSize;
     }
 
+    public Integer getPipelinePrepareThreads() {
+        return pipelinePrepareThreads <= 0 ? Runtime.getRuntime().availableProcessors() : pipelinePrepareThreads;
+    }
+
+    public Integer getPipelineIndexThreads() {
+        return Math.max(1, pipelineIndexThreads);
+    }
+
+    public Integer getPipelineQueueDepth() {
+        return Math.max(1, pipelineQueueDepth);
+    }
+
+    public Long getPipelineStallMs() {
+        return pipelineStallMs;
+    }
+
 }
@@ -1,7 +1,9 @@
 package fr.cnes.regards.modules.crawler.service.consumer;
 
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -30,9 +32,9 @@ public abstract class AbstractDataObjectBulkSaver {
     private final SaveDataObjectsCallable saveDataObjectsCallable;
 
     /**
-     * Saving task
+     * Saving tasks not yet waited for
      */
-    private Future<Void> saveBulkTask = null;
+    private final Queue<Future<Void>> saveBulkTasks = new ConcurrentLinkedQueue<>();
 
     /**
      * Executor used to create tasks
@@ -60,39 +62,54 @@ public abstract class AbstractDataObjectBulkSaver {
         this.maxBulkSize = maxBulkSize;
     }
 
+    /**
+     * Add data object to set of objects to save and ask for set saving if max bulk size is reached.
+     * This method is thread-safe so that data objects can be provided by several threads (ie parallel sliced scroll).
+     * Lock is only held while adding so that other threads keep on adding data objects while a full set is saved.
+     */
+    @SuppressWarnings("unchecked")
     protected void addDataObject(DataObject object) {
-        this.toSaveObjects.add(object);
-    }
-
-    protected boolean needToSave() {
-        return (toSaveObjects.size() == maxBulkSize);
+        Set<DataObject> fullSet = null;
+        synchronized (this) {
+            this.toSaveObjects.add(object);
+            if (toSaveObjects.size() >= maxBulkSize) {
+                this.objectsCount += toSaveObjects.size();
+                fullSet = (Set<DataObject>) toSaveObjects.clone();
+                toSaveObjects.clear();
+            }
+        }
+        if (fullSet != null) {
+            this.saveSet(fullSet);
+        }
     }
 
     /**
-     * Ask for set saving
+     * Ask for set saving (executor may be bounded, set is then saved by current thread)
      */
-    protected void saveSet() {
-        this.waitForEndOfTask();
-        LOGGER.info("Launching Saving of {} data objects task (dataset {})...", toSaveObjects.size(), datasetId);
-        this.objectsCount += toSaveObjects.size();
-        // Give a clone of data objects to save set
-        saveDataObjectsCallable.setSet((Set<DataObject>) toSaveObjects.clone());
-        // Clear data objects to save set
-        toSaveObjects.clear();
-        // Add task to thread pool executor
-        saveBulkTask = executor.submit(saveDataObjectsCallable);
-
+    private void saveSet(Set<DataObject> set) {
+        LOGGER.info("Launching Saving of {} data objects task (dataset {})...", set.size(), datasetId);
+        saveBulkTasks.add(executor.submit(() -> {
+            saveDataObjectsCallable.save(set);
+            return null;
+        }));
     }
 
     /**
-     * Waiting for currently task to end
+     * Waiting for all currently tasks to end
      */
-    protected void waitForEndOfTask() {
-        if (saveBulkTask != null) {
-            LOGGER.info("Waiting for previous task to end (dataset {})...", datasetId);
+    protected void waitForEndOfTasks() {
+        if (!saveBulkTasks.isEmpty()) {
+            LOGGER.info("Waiting for previous tasks to end (dataset {})...", datasetId);
+        }
+        Future<Void> saveBulkTask;
+        while ((saveBulkTask = saveBulkTasks.poll()) != null) {
             try {
                 saveBulkTask.get();
-            } catch (InterruptedException | ExecutionException e) {
+            } catch (InterruptedException e) {
+                LOGGER.error(String.format("Unable to save data objects (dataset %d)", datasetId), e);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
                 LOGGER.error(String.format("Unable to save data objects (dataset %d)", datasetId), e);
             }
         }
@@ -101,22 +118,21 @@ public abstract class AbstractDataObjectBulkSaver {
     /**
      * To directly save remaining data objects
      */
-    public void finalSave() {
-        this.waitForEndOfTask();
+    public synchronized void finalSave() {
+        this.waitForEndOfTasks();
         if (!toSaveObjects.isEmpty()) {
             try {
                 this.objectsCount += toSaveObjects.size();
                 // Directly call on current thread without doing a clone
-                saveDataObjectsCallable.setSet(toSaveObjects);
-                saveDataObjectsCallable.call();
+                saveDataObjectsCallable.save(toSaveObjects);
                 toSaveObjects.clear();
-            } catch (Exception e) {
+            } catch (RuntimeException e) {
                 LOGGER.error(String.format("Unable to save data objects (dataset %d)", datasetId), e);
             }
         }
     }
 
-    public int getObjectsCount() {
+    public synchronized int getObjectsCount() {
         return objectsCount;
     }
 }
@@ -34,8 +34,5 @@ public class DataObjectAssocRemover extends AbstractDataObjectBulkSaver implemen
         object.setDatasetModelNames(object.getMetadata().getModelNames());
         object.setLastUpdate(updateDate);
         super.addDataObject(object);
-        if (super.needToSave()) {
-            super.saveSet();
-        }
     }
 }
@@ -31,9 +31,6 @@ public class DataObjectGroupAssocUpdater extends AbstractDataObjectBulkSaver imp
         object.setGroups(object.getMetadata().getGroups());
         object.setLastUpdate(updateDate);
         super.addDataObject(object);
-        if (super.needToSave()) {
-            super.saveSet();
-        }
     }
 
 }
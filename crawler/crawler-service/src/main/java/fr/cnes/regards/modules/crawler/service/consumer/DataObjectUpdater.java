@@ -53,9 +53,6 @@ public class DataObjectUpdater extends AbstractDataObjectBulkSaver implements Co
         object.setDatasetModelNames(object.getMetadata().getModelNames());
         object.setLastUpdate(updateDate);
         super.addDataObject(object);
-        if (super.needToSave()) {
-            super.saveSet();
-        }
     }
 
 }
\ No newline at end of file
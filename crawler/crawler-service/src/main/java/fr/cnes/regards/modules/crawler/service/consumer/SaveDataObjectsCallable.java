@@ -11,12 +11,20 @@ import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.indexer.dao.IEsRepository;
 
 /**
- * Callable used to parallelize data objects bulk save into Elasticsearch
+ * Callable used to parallelize data objects bulk save into Elasticsearch.<br/>
+ * Data objects are only partially updated : dataset association only concerns tags, groups, metadata and dataset
+ * model names so only these fields are sent to Elasticsearch (not geometries nor properties).
  * @author oroussel
  */
 public class SaveDataObjectsCallable implements Callable<Void> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SaveDataObjectsCallable.class);
 
+    /**
+     * Data object fields modified by dataset association consumers
+     */
+    private static final String[] ASSOCIATION_FIELDS = { "tags", "feature.tags", "groups", "metadata",
+            "datasetModelNames", "lastUpdate" };
+
     /**
      * Tenant resolver needed to force tenant because ot multi-threading
      */
@@ -32,6 +40,11 @@ public class SaveDataObjectsCallable implements Callable<Void> {
      */
     private final String tenant;
 
+    /**
+     * Index into which data objects are saved
+     */
+    private final String index;
+
     /**
      * Set of objects to save
      */
@@ -44,9 +57,15 @@ public class SaveDataObjectsCallable implements Callable<Void> {
 
     public SaveDataObjectsCallable(IRuntimeTenantResolver runtimeTenantResolver, IEsRepository esRepos, String tenant,
             long datasetId) {
+        this(runtimeTenantResolver, esRepos, tenant, tenant, datasetId);
+    }
+
+    public SaveDataObjectsCallable(IRuntimeTenantResolver runtimeTenantResolver, IEsRepository esRepos, String tenant,
+            String index, long datasetId) {
         this.runtimeTenantResolver = runtimeTenantResolver;
         this.esRepos = esRepos;
         this.tenant = tenant;
+        this.index = index;
         this.datasetId = datasetId;
     }
 
@@ -60,12 +79,19 @@ public class SaveDataObjectsCallable implements Callable<Void> {
 
     @Override
     public Void call() throws Exception {
-        if ((set != null) && !set.isEmpty()) {
-            LOGGER.info("Saving {} data objects (dataset {})...", set.size(), datasetId);
+        save(set);
+        return null;
+    }
+
+    /**
+     * Save given data objects (may be called concurrently from several threads)
+     */
+    public void save(Set<DataObject> dataObjects) {
+        if ((dataObjects != null) && !dataObjects.isEmpty()) {
+            LOGGER.info("Saving {} data objects (dataset {})...", dataObjects.size(), datasetId);
             runtimeTenantResolver.forceTenant(tenant);
-            esRepos.saveBulk(tenant, set);
+            esRepos.updateBulk(index, dataObjects, ASSOCIATION_FIELDS);
             LOGGER.info("...data objects saved");
         }
-        return null;
     }
 }
\ No newline at end of file
@@ -31,10 +31,20 @@ public class NotFinishedException extends Exception {
 
     private final int pageNumber;
 
+    /**
+     * Key of last entity read before failed page (only for keyset paginated datasources)
+     */
+    private final String lastKey;
+
     public NotFinishedException(Throwable cause, BulkSaveLightResult saveResult, int pageNumber) {
+        this(cause, saveResult, pageNumber, null);
+    }
+
+    public NotFinishedException(Throwable cause, BulkSaveLightResult saveResult, int pageNumber, String lastKey) {
         super(cause);
         this.saveResult = saveResult;
         this.pageNumber = pageNumber;
+        this.lastKey = lastKey;
     }
 
     public BulkSaveLightResult getSaveResult() {
@@ -44,4 +54,8 @@ public class NotFinishedException extends Exception {
     public int getPageNumber() {
         return pageNumber;
     }
+
+    public String getLastKey() {
+        return lastKey;
+    }
 }
@@ -0,0 +1,105 @@
+package fr.cnes.regards.modules.crawler.plugins;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
+import fr.cnes.regards.framework.modules.plugins.annotations.PluginParameter;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.DataSourceException;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.IKeysetDataSourcePlugin;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.KeysetPage;
+import fr.cnes.regards.modules.dam.domain.entities.feature.DataObjectFeature;
+import fr.cnes.regards.modules.model.domain.Model;
+
+/**
+ * Keyset paginated data source from json file for tests (key is provider id).<br/>
+ * Reading entities after {@link #failAfterKey} fails, keys asked are recorded into {@link #askedKeys}.
+ * @author oroussel
+ */
+@Plugin(id = "TestKeysetDataSourcePlugin", version = "2.0-SNAPSHOT",
+        description = "Allows keyset paginated data extraction from a json file for tests", author = "REGARDS Team",
+        contact = "regards@c-s.fr", license = "GPLv3", owner = "CSSI", url = "https://github.com/RegardsOss")
+public class TestKeysetDataSourcePlugin implements IKeysetDataSourcePlugin {
+
+    public static final String MODEL = "model";
+
+    /**
+     * Key after which reading fails (null for no failure)
+     */
+    public static volatile String failAfterKey = null;
+
+    /**
+     * Keys asked by crawler (null for first page)
+     */
+    public static final List<String> askedKeys = new CopyOnWriteArrayList<>();
+
+    @PluginParameter(label = MODEL, name = MODEL)
+    private Model dataModel;
+
+    @Autowired
+    private Gson gson;
+
+    @Override
+    public int getRefreshRate() {
+        return 0;
+    }
+
+    @Override
+    public String getModelName() {
+        return dataModel.getName();
+    }
+
+    @Override
+    public KeysetPage<DataObjectFeature> findAllAfter(String tenant, String lastKey, int size, OffsetDateTime date)
+            throws DataSourceException {
+        askedKeys.add(lastKey);
+        if ((lastKey != null) && lastKey.equals(failAfterKey)) {
+            throw new DataSourceException("Cannot read entities after key " + lastKey);
+        }
+        List<DataObjectFeature> content = readAll().stream()
+                .filter(feature -> (lastKey == null) || (key(feature) > Integer.parseInt(lastKey)))
+                .sorted(Comparator.comparingInt(TestKeysetDataSourcePlugin::key)).limit(size)
+                .collect(Collectors.toList());
+        return new KeysetPage<>(content,
+                content.isEmpty() ? null : content.get(content.size() - 1).getProviderId());
+    }
+
+    @Override
+    public Page<DataObjectFeature> findAll(String tenant, Pageable pageable, OffsetDateTime date)
+            throws DataSourceException {
+        List<DataObjectFeature> content = readAll();
+        return new PageImpl<>(content, pageable, content.size());
+    }
+
+    private static int key(DataObjectFeature feature) {
+        return Integer.parseInt(feature.getProviderId());
+    }
+
+    private List<DataObjectFeature> readAll() throws DataSourceException {
+        File file = Paths.get("src", "test", "resources", "validation", "json", "validationData.json").toFile();
+        TypeToken<List<DataObjectFeature>> typeToken = new TypeToken<List<DataObjectFeature>>() {
+
+        };
+        try {
+            return gson.fromJson(new JsonReader(new FileReader(file)), typeToken.getType());
+        } catch (FileNotFoundException e) {
+            throw new DataSourceException("Could not find the file for validation data 1", e);
+        }
+    }
+}
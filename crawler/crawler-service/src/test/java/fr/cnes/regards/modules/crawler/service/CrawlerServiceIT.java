@@ -110,6 +110,9 @@ public class CrawlerServiceIT {
     @Autowired
     private ICrawlerService crawlerService;
 
+    @Autowired
+    private IngesterService ingesterService;
+
     @Autowired
     private IModelService modelService;
 
@@ -152,7 +155,10 @@ public class CrawlerServiceIT {
     }
 
     @After
-    public void clean() {
+    public void clean() throws InterruptedException {
+        // Ingestions dispatched by datasource creation run asynchronously, they must end before their datasource is
+        // deleted
+        Assert.assertTrue(ingesterService.waitForEndOfIngestions(60_000));
         // Don't use entity service to clean because events are published on RabbitMQ
         Utils.execute(entityRepos::deleteById, dataset1.getId());
         Utils.execute(entityRepos::deleteById, dataset2.getId());
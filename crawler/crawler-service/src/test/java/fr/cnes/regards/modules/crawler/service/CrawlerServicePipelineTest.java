@@ -0,0 +1,402 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.cnes.regards.framework.modules.plugins.domain.PluginConfiguration;
+import fr.cnes.regards.framework.modules.plugins.service.IPluginService;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.notification.client.INotificationClient;
+import fr.cnes.regards.framework.oais.urn.OAISIdentifier;
+import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.service.conf.CrawlerPropertiesConfiguration;
+import fr.cnes.regards.modules.crawler.service.event.DataSourceMessageEvent;
+import fr.cnes.regards.modules.crawler.service.exception.NotFinishedException;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.DataSourceException;
+import fr.cnes.regards.modules.dam.domain.datasources.plugins.IDataSourcePlugin;
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.dam.domain.entities.feature.DataObjectFeature;
+import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
+import fr.cnes.regards.modules.indexer.dao.IEsRepository;
+import fr.cnes.regards.modules.indexer.dao.spatial.ProjectGeoSettings;
+import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
+import fr.cnes.regards.modules.model.domain.Model;
+import fr.cnes.regards.modules.model.service.IModelService;
+
+/**
+ * Check datasource ingestion pipeline : backpressure, stall reporting, failed page given to resume and indexation
+ * order of pages, with a stub datasource plugin and mocked Elasticsearch indexation
+ * @author oroussel
+ */
+public class CrawlerServicePipelineTest {
+
+    private static final String TENANT = "tenant";
+
+    private static final String DSI_ID = "dsi";
+
+    private static final int PAGE_SIZE = 3;
+
+    private static final int PAGE_COUNT = 6;
+
+    private CrawlerService crawlerService;
+
+    private IEntityIndexerService entityIndexerService;
+
+    private IEsRepository esRepos;
+
+    private StubDataSourcePlugin dsPlugin;
+
+    private CrawlerPropertiesConfiguration crawlerConf;
+
+    /**
+     * Published ingestion messages
+     */
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    /**
+     * Pipeline events ("prepare:&lt;page>", "saved:&lt;page>") in occurrence order
+     */
+    private final List<String> pipelineEvents = new CopyOnWriteArrayList<>();
+
+    /**
+     * Pages whom indexation fails
+     */
+    private final Set<Integer> failingIndexPages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Indexations are blocked until this latch is released
+     */
+    private CountDownLatch indexLatch;
+
+    /**
+     * Indexations of these pages are blocked until blockedPagesLatch is released
+     */
+    private final Set<Integer> blockedIndexPages = ConcurrentHashMap.newKeySet();
+
+    private final CountDownLatch blockedPagesLatch = new CountDownLatch(1);
+
+    private ExecutorService testExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        indexLatch = new CountDownLatch(0);
+        testExecutor = Executors.newSingleThreadExecutor();
+        Model model = new Model();
+        model.setName("model");
+        model.setType(EntityType.DATA);
+        dsPlugin = new StubDataSourcePlugin(model.getName());
+
+        IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+
+        PluginConfiguration pluginConf = Mockito.mock(PluginConfiguration.class);
+        Mockito.when(pluginConf.getBusinessId()).thenReturn(DSI_ID);
+        Mockito.when(pluginConf.getId()).thenReturn(1L);
+        IPluginService pluginService = Mockito.mock(IPluginService.class);
+        Mockito.when(pluginService.getPluginConfiguration(DSI_ID)).thenReturn(pluginConf);
+        Mockito.doReturn(dsPlugin).when(pluginService).getPlugin(DSI_ID);
+
+        IDatasourceIngestionRepository dsIngestionRepos = Mockito.mock(IDatasourceIngestionRepository.class);
+        Mockito.when(dsIngestionRepos.findById(DSI_ID)).thenReturn(Optional.of(new DatasourceIngestion(DSI_ID)));
+
+        IModelService modelService = Mockito.mock(IModelService.class);
+        Mockito.when(modelService.getModelByName(model.getName())).thenReturn(model);
+
+        ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        Mockito.doAnswer(invocation -> {
+            messages.add(((DataSourceMessageEvent) invocation.getArgument(0)).getMessage());
+            return null;
+        }).when(eventPublisher).publishEvent(Mockito.any(DataSourceMessageEvent.class));
+
+        esRepos = Mockito.mock(IEsRepository.class);
+        entityIndexerService = Mockito.mock(IEntityIndexerService.class);
+        Mockito.when(entityIndexerService.prepareDataObjects(Mockito.eq(TENANT), Mockito.eq(1L), Mockito.any(),
+                                                             Mockito.any(), Mockito.anyBoolean()))
+                .thenAnswer(invocation -> {
+                    List<DataObject> dataObjects = new ArrayList<>(invocation.getArgument(3));
+                    pipelineEvents.add("prepare:" + pageOf(dataObjects));
+                    PreparedDataObjects prepared = new PreparedDataObjects(dataObjects.size());
+                    prepared.getToSaveObjects().addAll(dataObjects);
+                    return prepared;
+                });
+        Mockito.when(entityIndexerService.saveDataObjects(Mockito.eq(TENANT), Mockito.eq(DSI_ID), Mockito.any()))
+                .thenAnswer(invocation -> {
+                    PreparedDataObjects prepared = invocation.getArgument(2);
+                    int page = pageOf(prepared.getToSaveObjects());
+                    indexLatch.await(30, TimeUnit.SECONDS);
+                    if (blockedIndexPages.contains(page)) {
+                        blockedPagesLatch.await(30, TimeUnit.SECONDS);
+                    }
+                    if (failingIndexPages.contains(page)) {
+                        throw new IllegalStateException("Indexation of page " + page + " has failed");
+                    }
+                    pipelineEvents.add("saved:" + page);
+                    return new BulkSaveResult();
+                });
+
+        crawlerConf = new CrawlerPropertiesConfiguration();
+        ReflectionTestUtils.setField(crawlerConf, "maxBulkSize", PAGE_SIZE);
+        ReflectionTestUtils.setField(crawlerConf, "pipelinePrepareThreads", 4);
+        ReflectionTestUtils.setField(crawlerConf, "pipelineIndexThreads", 4);
+        ReflectionTestUtils.setField(crawlerConf, "pipelineQueueDepth", 4);
+        ReflectionTestUtils.setField(crawlerConf, "pipelineStallMs", 100L);
+
+        crawlerService = new CrawlerService();
+        ReflectionTestUtils.setField(crawlerService, "runtimeTenantResolver", runtimeTenantResolver);
+        ReflectionTestUtils.setField(crawlerService, "entityIndexerService", entityIndexerService);
+        ReflectionTestUtils.setField(crawlerService, "pluginService", pluginService);
+        ReflectionTestUtils.setField(crawlerService, "dsIngestionRepos", dsIngestionRepos);
+        ReflectionTestUtils.setField(crawlerService, "modelService", modelService);
+        ReflectionTestUtils.setField(crawlerService, "esRepos", esRepos);
+        ReflectionTestUtils.setField(crawlerService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(crawlerService, "projectGeoSettings", Mockito.mock(ProjectGeoSettings.class));
+        ReflectionTestUtils.setField(crawlerService, "notificationClient", Mockito.mock(INotificationClient.class));
+        ReflectionTestUtils.setField(crawlerService, "crawlerConf", crawlerConf);
+    }
+
+    @After
+    public void tearDown() {
+        indexLatch.countDown();
+        blockedPagesLatch.countDown();
+        testExecutor.shutdownNow();
+        crawlerService.shutdownPipelineExecutors();
+    }
+
+    private void setMerge(boolean merge) {
+        // Index exists and contains data objects => merge
+        Mockito.when(entityIndexerService.createIndexIfNeeded(TENANT)).thenReturn(merge);
+        Mockito.when(esRepos.count(Mockito.any(), Mockito.any(ICriterion.class))).thenReturn(merge ? 1L : 0L);
+    }
+
+    /**
+     * Wait (at most 10 s) for given pipeline event
+     */
+    private void waitForEvent(String event) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10_000;
+        while (!pipelineEvents.contains(event) && (System.currentTimeMillis() < end)) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue(event + " not occurred", pipelineEvents.contains(event));
+    }
+
+    /**
+     * Page of data objects is given by their provider id ("&lt;page>_&lt;index>")
+     */
+    private static int pageOf(Collection<DataObject> dataObjects) {
+        String providerId = dataObjects.iterator().next().getProviderId();
+        return Integer.parseInt(providerId.substring(0, providerId.indexOf('_')));
+    }
+
+    @Test
+    public void testAllPagesIngested() throws Exception {
+        setMerge(false);
+        crawlerService.initPipelineExecutors();
+        Assert.assertTrue(crawlerService.ingest(DSI_ID).isPresent());
+        Assert.assertEquals(PAGE_COUNT, dsPlugin.readPages.get());
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            Assert.assertTrue(pipelineEvents.contains("saved:" + page));
+        }
+    }
+
+    @Test
+    public void testReadFailureGivesFailedPage() throws Exception {
+        setMerge(false);
+        dsPlugin.failingPage = 3;
+        crawlerService.initPipelineExecutors();
+        try {
+            crawlerService.ingest(DSI_ID);
+            Assert.fail("Ingestion must not be finished");
+        } catch (NotFinishedException e) {
+            Assert.assertEquals(3, e.getPageNumber());
+            Assert.assertTrue(e.getCause() instanceof DataSourceException);
+        }
+        // Pages read before failure have been indexed
+        for (int page = 0; page < 3; page++) {
+            Assert.assertTrue(pipelineEvents.contains("saved:" + page));
+        }
+    }
+
+    @Test(expected = DataSourceException.class)
+    public void testFirstPageReadFailureIsAnError() throws Exception {
+        setMerge(false);
+        dsPlugin.failingPage = 0;
+        crawlerService.initPipelineExecutors();
+        crawlerService.ingest(DSI_ID);
+    }
+
+    @Test
+    public void testIndexFailureGivesLowestFailedPage() throws Exception {
+        setMerge(false);
+        failingIndexPages.add(4);
+        failingIndexPages.add(2);
+        crawlerService.initPipelineExecutors();
+        try {
+            crawlerService.ingest(DSI_ID);
+            Assert.fail("Ingestion must not be finished");
+        } catch (NotFinishedException e) {
+            Assert.assertEquals(2, e.getPageNumber());
+        }
+    }
+
+    @Test
+    public void testBackpressureAndStallReporting() throws Exception {
+        setMerge(false);
+        ReflectionTestUtils.setField(crawlerConf, "pipelineQueueDepth", 2);
+        indexLatch = new CountDownLatch(1);
+        crawlerService.initPipelineExecutors();
+        Future<?> ingestion = testExecutor.submit(() -> crawlerService.ingest(DSI_ID));
+        Thread.sleep(1_000);
+        // Reading waits for pages to be indexed
+        Assert.assertEquals(2, dsPlugin.readPages.get());
+        Assert.assertTrue(messages.stream().anyMatch(msg -> msg.contains("Ingestion pipeline stalled")));
+
+        indexLatch.countDown();
+        ingestion.get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(PAGE_COUNT, dsPlugin.readPages.get());
+    }
+
+    @Test
+    public void testPagesWithoutCommonObjectIndexedConcurrently() throws Exception {
+        setMerge(false);
+        blockedIndexPages.add(0);
+        crawlerService.initPipelineExecutors();
+        Future<?> ingestion = testExecutor.submit(() -> crawlerService.ingest(DSI_ID));
+        // Following pages don't wait for first one to be indexed
+        waitForEvent("saved:" + (PAGE_COUNT - 1));
+        Assert.assertFalse(pipelineEvents.contains("saved:0"));
+
+        blockedPagesLatch.countDown();
+        ingestion.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(pipelineEvents.contains("saved:0"));
+    }
+
+    @Test
+    public void testPagesSharingObjectIndexedInReadingOrder() throws Exception {
+        setMerge(false);
+        dsPlugin.sharingPages.add(0);
+        dsPlugin.sharingPages.add(3);
+        blockedIndexPages.add(0);
+        crawlerService.initPipelineExecutors();
+        Future<?> ingestion = testExecutor.submit(() -> crawlerService.ingest(DSI_ID));
+        waitForEvent("saved:" + (PAGE_COUNT - 1));
+        // Page 3 shares a data object with page 0 => it waits for page 0 indexation, others don't
+        Assert.assertFalse(pipelineEvents.contains("saved:3"));
+        Assert.assertTrue(pipelineEvents.contains("saved:1"));
+        Assert.assertTrue(pipelineEvents.contains("prepare:3"));
+
+        blockedPagesLatch.countDown();
+        ingestion.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(pipelineEvents.indexOf("saved:3") > pipelineEvents.indexOf("saved:0"));
+    }
+
+    @Test
+    public void testMergedPageSharingObjectPreparedOncePreviousOneIsIndexed() throws Exception {
+        setMerge(true);
+        dsPlugin.sharingPages.add(0);
+        dsPlugin.sharingPages.add(3);
+        blockedIndexPages.add(0);
+        crawlerService.initPipelineExecutors();
+        Future<?> ingestion = testExecutor.submit(() -> crawlerService.ingest(DSI_ID));
+        waitForEvent("saved:" + (PAGE_COUNT - 1));
+        // Merging reads indexed data objects => page 3 isn't prepared before page 0 is indexed, others are
+        Assert.assertFalse(pipelineEvents.contains("prepare:3"));
+        Assert.assertTrue(pipelineEvents.contains("saved:1"));
+
+        blockedPagesLatch.countDown();
+        ingestion.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(pipelineEvents.indexOf("prepare:3") > pipelineEvents.indexOf("saved:0"));
+        Assert.assertTrue(pipelineEvents.indexOf("saved:3") > pipelineEvents.indexOf("prepare:3"));
+    }
+
+    /**
+     * Datasource of PAGE_COUNT pages of PAGE_SIZE features, reading of failingPage fails. Last feature of each of
+     * sharingPages is the same data object (provider id "shared")
+     */
+    private static class StubDataSourcePlugin implements IDataSourcePlugin {
+
+        private final String modelName;
+
+        private final AtomicInteger readPages = new AtomicInteger(0);
+
+        private volatile int failingPage = -1;
+
+        private final Set<Integer> sharingPages = ConcurrentHashMap.newKeySet();
+
+        public StubDataSourcePlugin(String modelName) {
+            this.modelName = modelName;
+        }
+
+        @Override
+        public String getModelName() {
+            return modelName;
+        }
+
+        @Override
+        public int getRefreshRate() {
+            return 0;
+        }
+
+        @Override
+        public Page<DataObjectFeature> findAll(String tenant, Pageable pageable, OffsetDateTime date)
+                throws DataSourceException {
+            if (pageable.getPageNumber() == failingPage) {
+                throw new DataSourceException("Cannot read page " + failingPage);
+            }
+            readPages.incrementAndGet();
+            List<DataObjectFeature> features = new ArrayList<>();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                boolean shared = (i == (PAGE_SIZE - 1)) && sharingPages.contains(pageable.getPageNumber());
+                String providerId = shared ? "shared" : pageable.getPageNumber() + "_" + i;
+                features.add(new DataObjectFeature(
+                        OaisUniformResourceName.pseudoRandomUrn(OAISIdentifier.AIP, EntityType.DATA, tenant, 1),
+                        providerId, providerId));
+            }
+            return new PageImpl<>(Collections.unmodifiableList(features), pageable, PAGE_COUNT * PAGE_SIZE);
+        }
+    }
+}
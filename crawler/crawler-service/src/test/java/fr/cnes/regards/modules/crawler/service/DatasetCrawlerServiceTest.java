@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.cnes.regards.framework.amqp.ISubscriber;
+import fr.cnes.regards.framework.module.rest.exception.ModuleException;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.framework.oais.urn.OAISIdentifier;
+import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.framework.urn.UniformResourceName;
+import fr.cnes.regards.modules.crawler.domain.PendingDatasetUpdate;
+
+/**
+ * Check that polled dataset events only plan a saved dataset update and that pending updates are done at start, not
+ * when stopping
+ * @author oroussel
+ */
+public class DatasetCrawlerServiceTest {
+
+    private static final String TENANT = "tenant";
+
+    private final UniformResourceName datasetIpId1 = OaisUniformResourceName
+            .pseudoRandomUrn(OAISIdentifier.AIP, EntityType.DATASET, TENANT, 1);
+
+    private final UniformResourceName datasetIpId2 = OaisUniformResourceName
+            .pseudoRandomUrn(OAISIdentifier.AIP, EntityType.DATASET, TENANT, 1);
+
+    private DatasetCrawlerService datasetCrawlerService;
+
+    private PendingDatasetUpdateService pendingUpdateService;
+
+    private IEntityIndexerService entityIndexerService;
+
+    @Before
+    public void setUp() {
+        ITenantResolver tenantsResolver = Mockito.mock(ITenantResolver.class);
+        Mockito.when(tenantsResolver.getAllActiveTenants()).thenReturn(Collections.singleton(TENANT));
+        pendingUpdateService = Mockito.mock(PendingDatasetUpdateService.class);
+        Mockito.when(pendingUpdateService.remove(ArgumentMatchers.any())).thenReturn(true);
+        entityIndexerService = Mockito.mock(IEntityIndexerService.class);
+
+        datasetCrawlerService = new DatasetCrawlerService();
+        ReflectionTestUtils.setField(datasetCrawlerService, "tenantsResolver", tenantsResolver);
+        ReflectionTestUtils.setField(datasetCrawlerService, "tenantResolver",
+                                     Mockito.mock(IRuntimeTenantResolver.class));
+        ReflectionTestUtils.setField(datasetCrawlerService, "subscriber", Mockito.mock(ISubscriber.class));
+        ReflectionTestUtils.setField(datasetCrawlerService, "pendingUpdateService", pendingUpdateService);
+        ReflectionTestUtils.setField(datasetCrawlerService, "entityIndexerService", entityIndexerService);
+        ReflectionTestUtils.setField(datasetCrawlerService, "coalescingDelayMs", 5_000L);
+        ReflectionTestUtils.setField(datasetCrawlerService, "coalescingMaxDelayMs", 60_000L);
+        ReflectionTestUtils.setField(datasetCrawlerService, "checkDelayMs", 100L);
+        ReflectionTestUtils.setField(datasetCrawlerService, "shutdownTimeoutMs", 10_000L);
+        datasetCrawlerService.initUpdateExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        datasetCrawlerService.shutdownUpdateExecutor();
+    }
+
+    @Test
+    public void testPolledEventOnlyPlansUpdate() throws ModuleException {
+        datasetCrawlerService.updateEntityIntoEs(TENANT, datasetIpId1, OffsetDateTime.now());
+
+        Mockito.verify(pendingUpdateService).plan(datasetIpId1, false);
+        Mockito.verify(entityIndexerService, Mockito.never())
+                .updateEntityIntoEs(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                                    ArgumentMatchers.anyBoolean());
+    }
+
+    @Test
+    public void testPendingUpdatesLeftToNextStartWhenStopping() throws ModuleException {
+        Mockito.when(pendingUpdateService.findAll())
+                .thenReturn(Arrays.asList(newPending(datasetIpId1, false), newPending(datasetIpId2, true)));
+
+        datasetCrawlerService.shutdownUpdateExecutor();
+
+        // Pending updates are saved, stopping doesn't wait for them to be done
+        Mockito.verify(pendingUpdateService, Mockito.never()).findAll();
+        Mockito.verify(entityIndexerService, Mockito.never())
+                .updateEntityIntoEs(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                                    ArgumentMatchers.anyBoolean());
+        Mockito.verify(pendingUpdateService, Mockito.never()).remove(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void testPendingUpdatesDoneAtStart() throws ModuleException {
+        // Left by a previous run, not due yet
+        Mockito.when(pendingUpdateService.findAll())
+                .thenReturn(Collections.singletonList(newPending(datasetIpId1, true)));
+
+        datasetCrawlerService.onApplicationReadyEvent(null);
+
+        Mockito.verify(entityIndexerService, Mockito.timeout(5_000))
+                .updateEntityIntoEs(ArgumentMatchers.eq(TENANT), ArgumentMatchers.eq(datasetIpId1),
+                                    ArgumentMatchers.any(), ArgumentMatchers.eq(true));
+        // Then only due ones are regularly checked
+        Mockito.verify(pendingUpdateService, Mockito.timeout(5_000).atLeast(2)).findDue(5_000L, 60_000L);
+    }
+
+    @Test
+    public void testFailedUpdateKeptWithoutStoppingOthers() throws ModuleException {
+        PendingDatasetUpdate failing = newPending(datasetIpId1, false);
+        PendingDatasetUpdate merged = newPending(datasetIpId2, false);
+        Mockito.when(pendingUpdateService.findAll()).thenReturn(Arrays.asList(failing, merged));
+        Mockito.doThrow(new IllegalStateException("Update failed")).when(entityIndexerService)
+                .updateEntityIntoEs(ArgumentMatchers.eq(TENANT), ArgumentMatchers.eq(datasetIpId1),
+                                    ArgumentMatchers.any(), ArgumentMatchers.anyBoolean());
+        // An event has been merged into second one while updating
+        Mockito.when(pendingUpdateService.remove(merged)).thenReturn(false);
+
+        datasetCrawlerService.onApplicationReadyEvent(null);
+
+        Mockito.verify(entityIndexerService, Mockito.timeout(5_000))
+                .updateEntityIntoEs(ArgumentMatchers.eq(TENANT), ArgumentMatchers.eq(datasetIpId2),
+                                    ArgumentMatchers.any(), ArgumentMatchers.eq(false));
+        Mockito.verify(pendingUpdateService, Mockito.timeout(5_000)).remove(merged);
+        // Failed one is kept to be retried later
+        Mockito.verify(pendingUpdateService).postpone(failing);
+        Mockito.verify(pendingUpdateService, Mockito.never()).remove(failing);
+    }
+
+    private static PendingDatasetUpdate newPending(UniformResourceName ipId, boolean forceDataObjectsUpdate) {
+        return new PendingDatasetUpdate(ipId.toString(), forceDataObjectsUpdate,
+                OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC));
+    }
+}
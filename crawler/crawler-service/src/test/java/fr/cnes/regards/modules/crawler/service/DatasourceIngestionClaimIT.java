@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.IngestionStatus;
+import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
+
+/**
+ * Check that a ready datasource ingestion is claimed by only one of several concurrent claimers (each claimer uses
+ * its own transaction as different workers or instances do)
+ * @author oroussel
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { CrawlerConfiguration.class })
+@ActiveProfiles("noschedule")
+@TestPropertySource(locations = { "classpath:test.properties" })
+public class DatasourceIngestionClaimIT {
+
+    private static final int CLAIMER_COUNT = 8;
+
+    @Value("${regards.tenant}")
+    private String tenant;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private DatasourceIngestionService dsIngestionService;
+
+    @Autowired
+    private IDatasourceIngestionRepository dsIngestionRepos;
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver.forceTenant(tenant);
+        dsIngestionRepos.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        runtimeTenantResolver.forceTenant(tenant);
+        dsIngestionRepos.deleteAll();
+    }
+
+    @Test
+    public void testConcurrentClaimersOnSameIngestion() throws Exception {
+        dsIngestionRepos.save(new DatasourceIngestion("claimed_ds",
+                OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC).minusMinutes(1), "claimed"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLAIMER_COUNT);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Optional<String>>> results = new ArrayList<>();
+        for (int i = 0; i < CLAIMER_COUNT; i++) {
+            Callable<Optional<String>> claimer = () -> {
+                runtimeTenantResolver.forceTenant(tenant);
+                try {
+                    startLatch.await();
+                    return dsIngestionService.pickAndStartDatasourceIngestion();
+                } finally {
+                    runtimeTenantResolver.clearTenant();
+                }
+            };
+            results.add(executor.submit(claimer));
+        }
+        startLatch.countDown();
+        int claimedCount = 0;
+        for (Future<Optional<String>> result : results) {
+            Optional<String> claimed = result.get();
+            if (claimed.isPresent()) {
+                Assert.assertEquals("claimed_ds", claimed.get());
+                claimedCount++;
+            }
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, claimedCount);
+        Assert.assertEquals(IngestionStatus.STARTED, dsIngestionRepos.findById("claimed_ds").get().getStatus());
+        // Nothing more to claim
+        Assert.assertFalse(dsIngestionService.pickAndStartDatasourceIngestion().isPresent());
+    }
+
+    @Test
+    public void testClaimersShareReadyIngestions() throws Exception {
+        OffsetDateTime planned = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC).minusMinutes(1);
+        for (int i = 0; i < CLAIMER_COUNT; i++) {
+            dsIngestionRepos.save(new DatasourceIngestion("ds_" + i, planned.minusSeconds(i), "ds " + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(CLAIMER_COUNT);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Optional<String>>> results = new ArrayList<>();
+        for (int i = 0; i < CLAIMER_COUNT; i++) {
+            results.add(executor.submit(() -> {
+                runtimeTenantResolver.forceTenant(tenant);
+                try {
+                    startLatch.await();
+                    return dsIngestionService.pickAndStartDatasourceIngestion();
+                } finally {
+                    runtimeTenantResolver.clearTenant();
+                }
+            }));
+        }
+        startLatch.countDown();
+        List<String> claimedIds = new ArrayList<>();
+        for (Future<Optional<String>> result : results) {
+            result.get().ifPresent(claimedIds::add);
+        }
+        executor.shutdown();
+        // Losers of a claim try next candidate so every claimer gets a distinct ingestion
+        Assert.assertEquals(CLAIMER_COUNT, claimedIds.size());
+        Assert.assertEquals(CLAIMER_COUNT, claimedIds.stream().distinct().count());
+    }
+
+    @Test
+    public void testInterruptedIngestionsReset() {
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        dsIngestionRepos.save(new DatasourceIngestion("own_ds", now.minusMinutes(1), "own"));
+        Assert.assertEquals("own_ds", dsIngestionService.pickAndStartDatasourceIngestion().get());
+        DatasourceIngestion own = dsIngestionRepos.findById("own_ds").get();
+        Assert.assertEquals(dsIngestionService.getInstanceId(), own.getOwner());
+        Assert.assertNotNull(own.getHeartbeatDate());
+        // Ingestion running on another alive instance
+        dsIngestionRepos.save(newStarted("alive_ds", "other", now));
+        // Ingestion of a lost instance
+        dsIngestionRepos.save(newStarted("lost_ds", "lost", now.minusDays(1)));
+
+        // Restart of this instance
+        dsIngestionService.resetInterruptedIngestions();
+
+        Assert.assertEquals(IngestionStatus.ERROR, dsIngestionRepos.findById("own_ds").get().getStatus());
+        Assert.assertEquals(IngestionStatus.STARTED, dsIngestionRepos.findById("alive_ds").get().getStatus());
+        Assert.assertEquals(IngestionStatus.ERROR, dsIngestionRepos.findById("lost_ds").get().getStatus());
+        // Reset ingestions are ready to be launched again
+        Assert.assertTrue(dsIngestionService.pickAndStartDatasourceIngestion().isPresent());
+    }
+
+    @Test
+    public void testHeartbeatKeepsIngestionAlive() {
+        OffsetDateTime now = OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC);
+        dsIngestionRepos.save(newStarted("running_ds", dsIngestionService.getInstanceId(), now.minusDays(1)));
+        dsIngestionService.refreshHeartbeats(Collections.singletonList("running_ds"));
+        Assert.assertTrue(dsIngestionRepos.findById("running_ds").get().getHeartbeatDate().isAfter(now.minusHours(1)));
+        // Heartbeat of an ingestion owned by another instance is not refreshed
+        dsIngestionRepos.save(newStarted("other_ds", "other", now.minusDays(1)));
+        dsIngestionService.refreshHeartbeats(Collections.singletonList("other_ds"));
+        Assert.assertTrue(dsIngestionRepos.findById("other_ds").get().getHeartbeatDate().isBefore(now.minusHours(1)));
+    }
+
+    private static DatasourceIngestion newStarted(String id, String owner, OffsetDateTime heartbeatDate) {
+        DatasourceIngestion dsIngestion = new DatasourceIngestion(id, heartbeatDate.minusMinutes(1), id);
+        dsIngestion.setStatus(IngestionStatus.STARTED);
+        dsIngestion.setOwner(owner);
+        dsIngestion.setHeartbeatDate(heartbeatDate);
+        return dsIngestion;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionLogRepository;
+import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
+import fr.cnes.regards.modules.crawler.domain.DatasourceIngestionLog;
+import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
+
+/**
+ * Check datasource ingestion progress log batching (buffered appends saved by flush size) and retention (oldest
+ * entries removed beyond maximum count per ingestion)
+ * @author oroussel
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { CrawlerConfiguration.class })
+@ActiveProfiles("noschedule")
+@TestPropertySource(locations = { "classpath:test.properties" },
+        properties = { "regards.ingester.log.flush.size=10", "regards.ingester.log.max.entries=25" })
+public class DatasourceIngestionLogIT {
+
+    private static final String DS_ID = "log_ds";
+
+    private static final String OTHER_DS_ID = "other_log_ds";
+
+    @Value("${regards.tenant}")
+    private String tenant;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private DatasourceIngestionLogService dsIngestionLogService;
+
+    @Autowired
+    private DatasourceIngestionService dsIngestionService;
+
+    @Autowired
+    private IDatasourceIngestionRepository dsIngestionRepos;
+
+    @Autowired
+    private IDatasourceIngestionLogRepository dsIngestionLogRepos;
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver.forceTenant(tenant);
+        // Do not keep pending entries of a previous test
+        dsIngestionLogService.flush(tenant);
+        dsIngestionLogRepos.deleteAll();
+        dsIngestionRepos.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        runtimeTenantResolver.forceTenant(tenant);
+        dsIngestionLogRepos.deleteAll();
+        dsIngestionRepos.deleteAll();
+    }
+
+    @Test
+    public void testAppendIsSavedByBatch() {
+        for (int i = 0; i < 9; i++) {
+            dsIngestionLogService.append(tenant, DS_ID, "message " + i);
+        }
+        // Below flush size, nothing saved yet
+        Assert.assertEquals(0, dsIngestionLogRepos.countByDsId(DS_ID));
+
+        dsIngestionLogService.append(tenant, DS_ID, "message 9");
+        Assert.assertEquals(10, dsIngestionLogRepos.countByDsId(DS_ID));
+
+        dsIngestionLogService.append(tenant, DS_ID, "message 10");
+        Assert.assertEquals(10, dsIngestionLogRepos.countByDsId(DS_ID));
+        // Explicit flush saves remaining entries
+        dsIngestionLogService.flush(tenant);
+        Assert.assertEquals(11, dsIngestionLogRepos.countByDsId(DS_ID));
+
+        // Entries are saved in appending order
+        List<String> messages = dsIngestionLogRepos.findByDsId(DS_ID, PageRequest.of(0, 20, Sort.by("id")))
+                .getContent().stream().map(DatasourceIngestionLog::getMessage).collect(Collectors.toList());
+        for (int i = 0; i < messages.size(); i++) {
+            Assert.assertEquals("message " + i, messages.get(i));
+        }
+    }
+
+    @Test
+    public void testFlushAllTenants() {
+        dsIngestionLogService.append(tenant, DS_ID, "pending");
+        runtimeTenantResolver.clearTenant();
+        dsIngestionLogService.flushAll();
+        runtimeTenantResolver.forceTenant(tenant);
+        Assert.assertEquals(1, dsIngestionLogRepos.countByDsId(DS_ID));
+    }
+
+    @Test
+    public void testFlushRestoresCurrentTenant() {
+        dsIngestionLogService.append(tenant, DS_ID, "pending");
+        runtimeTenantResolver.forceTenant("caller_tenant");
+        dsIngestionLogService.flush(tenant);
+        Assert.assertEquals("caller_tenant", runtimeTenantResolver.getTenant());
+
+        dsIngestionLogService.append(tenant, DS_ID, "pending again");
+        runtimeTenantResolver.clearTenant();
+        dsIngestionLogService.flush(tenant);
+        Assert.assertNull(runtimeTenantResolver.getTenant());
+
+        runtimeTenantResolver.forceTenant(tenant);
+        Assert.assertEquals(2, dsIngestionLogRepos.countByDsId(DS_ID));
+    }
+
+    @Test
+    public void testPendingEntriesSavedWhenStopping() {
+        dsIngestionLogService.append(tenant, DS_ID, "pending");
+        dsIngestionLogService.flushAllBeforeStopping();
+        Assert.assertEquals(1, dsIngestionLogRepos.countByDsId(DS_ID));
+    }
+
+    @Test
+    public void testSaveIngestionLogsRetention() {
+        // 30 entries for retained ingestion, mixed with 5 entries of another one
+        List<DatasourceIngestionLog> logs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            logs.add(newLog(DS_ID, "message " + i));
+            if (i % 6 == 0) {
+                logs.add(newLog(OTHER_DS_ID, "other " + i));
+            }
+        }
+        dsIngestionService.saveIngestionLogs(logs);
+
+        // Only last 25 entries are kept
+        Assert.assertEquals(25, dsIngestionLogRepos.countByDsId(DS_ID));
+        Page<DatasourceIngestionLog> kept = dsIngestionLogRepos.findByDsId(DS_ID,
+                                                                            PageRequest.of(0, 30, Sort.by("id")));
+        Assert.assertEquals("message 5", kept.getContent().get(0).getMessage());
+        Assert.assertEquals("message 29", kept.getContent().get(24).getMessage());
+        // Other ingestion is untouched
+        Assert.assertEquals(5, dsIngestionLogRepos.countByDsId(OTHER_DS_ID));
+
+        // Retention also applies through several saves
+        dsIngestionService.saveIngestionLogs(Collections.singletonList(newLog(DS_ID, "message 30")));
+        kept = dsIngestionLogRepos.findByDsId(DS_ID, PageRequest.of(0, 30, Sort.by("id")));
+        Assert.assertEquals(25, kept.getTotalElements());
+        Assert.assertEquals("message 6", kept.getContent().get(0).getMessage());
+        Assert.assertEquals("message 30", kept.getContent().get(24).getMessage());
+    }
+
+    @Test
+    public void testNewRunClearsPreviousLogs() {
+        dsIngestionRepos.save(new DatasourceIngestion(DS_ID,
+                OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC).minusMinutes(1), "logged"));
+        dsIngestionService.saveIngestionLogs(Arrays.asList(newLog(DS_ID, "previous run"),
+                                                           newLog(OTHER_DS_ID, "other")));
+
+        Assert.assertEquals(DS_ID, dsIngestionService.pickAndStartDatasourceIngestion().get());
+        // Only entries of the started ingestion are removed
+        Assert.assertEquals(0, dsIngestionLogRepos.countByDsId(DS_ID));
+        Assert.assertEquals(1, dsIngestionLogRepos.countByDsId(OTHER_DS_ID));
+    }
+
+    private static DatasourceIngestionLog newLog(String dsId, String message) {
+        return new DatasourceIngestionLog(dsId, OffsetDateTime.now().withOffsetSameInstant(ZoneOffset.UTC), message);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.cnes.regards.framework.amqp.ISubscriber;
+import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.framework.notification.NotificationLevel;
+import fr.cnes.regards.framework.notification.client.INotificationClient;
+import fr.cnes.regards.framework.security.role.DefaultRole;
+import fr.cnes.regards.modules.crawler.domain.PendingFeatureDeletion;
+import fr.cnes.regards.modules.dam.dto.FeatureEvent;
+
+/**
+ * Check that feature deletions are saved before their events are acknowledged, sent by bulks, left to next start when
+ * stopping and that deletions failing too many times are notified
+ * @author oroussel
+ */
+public class FeatureEventHandlerTest {
+
+    private static final String TENANT = "tenant";
+
+    private FeatureEventHandler handler;
+
+    private IEntityIndexerService entityIndexerService;
+
+    private INotificationClient notificationClient;
+
+    private PendingFeatureDeletionService pendingDeletionService;
+
+    /**
+     * Saved pending deletions, in event order
+     */
+    private final Map<String, PendingFeatureDeletion> pendingDeletions = new LinkedHashMap<>();
+
+    @Before
+    public void setUp() {
+        entityIndexerService = Mockito.mock(IEntityIndexerService.class);
+        notificationClient = Mockito.mock(INotificationClient.class);
+        pendingDeletionService = mockPendingDeletionService();
+        ITenantResolver tenantsResolver = Mockito.mock(ITenantResolver.class);
+        Mockito.when(tenantsResolver.getAllActiveTenants()).thenReturn(Collections.singleton(TENANT));
+        handler = new FeatureEventHandler();
+        ReflectionTestUtils.setField(handler, "runtimeTenantResolver", Mockito.mock(IRuntimeTenantResolver.class));
+        ReflectionTestUtils.setField(handler, "tenantsResolver", tenantsResolver);
+        ReflectionTestUtils.setField(handler, "entityIndexerService", entityIndexerService);
+        ReflectionTestUtils.setField(handler, "pendingDeletionService", pendingDeletionService);
+        ReflectionTestUtils.setField(handler, "subscriber", Mockito.mock(ISubscriber.class));
+        ReflectionTestUtils.setField(handler, "notificationClient", notificationClient);
+        ReflectionTestUtils.setField(handler, "bulkSize", 1000);
+        // Pending deletions are only sent when asked by tests
+        ReflectionTestUtils.setField(handler, "bulkDelayMs", 3_600_000L);
+        ReflectionTestUtils.setField(handler, "maxAttempts", 3);
+        handler.init();
+    }
+
+    @After
+    public void tearDown() {
+        handler.destroy();
+    }
+
+    /**
+     * In memory pending deletions service
+     */
+    private PendingFeatureDeletionService mockPendingDeletionService() {
+        PendingFeatureDeletionService service = Mockito.mock(PendingFeatureDeletionService.class);
+        Mockito.doAnswer(invocation -> {
+            String featureId = invocation.getArgument(0);
+            pendingDeletions.putIfAbsent(featureId, new PendingFeatureDeletion(featureId, OffsetDateTime.now()));
+            return null;
+        }).when(service).add(ArgumentMatchers.anyString());
+        Mockito.when(service.findOldest(ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> pendingDeletions.values().stream()
+                        .limit((int) invocation.getArgument(0)).collect(Collectors.toList()));
+        Mockito.doAnswer(invocation -> {
+            Collection<String> featureIds = invocation.getArgument(0);
+            for (String featureId : featureIds) {
+                PendingFeatureDeletion deletion = pendingDeletions.get(featureId);
+                ReflectionTestUtils.setField(deletion, "attempts", deletion.getAttempts() + 1);
+            }
+            return null;
+        }).when(service).countFailedAttempt(ArgumentMatchers.any());
+        Mockito.doAnswer(invocation -> {
+            Collection<String> featureIds = invocation.getArgument(0);
+            pendingDeletions.keySet().removeAll(featureIds);
+            return null;
+        }).when(service).remove(ArgumentMatchers.any());
+        return service;
+    }
+
+    private void flushAll() {
+        ReflectionTestUtils.invokeMethod(handler, "flushAll");
+    }
+
+    @Test
+    public void testDeletionSavedBeforeAcknowledgement() {
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("feature1"), TENANT));
+
+        Mockito.verify(pendingDeletionService).add("feature1");
+        Mockito.verify(entityIndexerService, Mockito.never()).deleteDataObjects(ArgumentMatchers.any(),
+                                                                                ArgumentMatchers.any());
+        // Event is not acknowledged if its deletion cannot be saved
+        Mockito.doThrow(new IllegalStateException("Cannot save")).when(pendingDeletionService).add("feature2");
+        try {
+            handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("feature2"), TENANT));
+            Assert.fail("Handling must fail");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(Collections.singleton("feature1"), pendingDeletions.keySet());
+        }
+    }
+
+    @Test
+    public void testPendingDeletionsSentByBulk() {
+        ReflectionTestUtils.setField(handler, "bulkSize", 2);
+        Mockito.when(entityIndexerService.deleteDataObjects(ArgumentMatchers.eq(TENANT), ArgumentMatchers.any()))
+                .thenReturn(Collections.emptyMap());
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("feature1"), TENANT));
+        Mockito.verify(entityIndexerService, Mockito.never()).deleteDataObjects(ArgumentMatchers.any(),
+                                                                                ArgumentMatchers.any());
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("feature2"), TENANT));
+
+        Mockito.verify(entityIndexerService).deleteDataObjects(TENANT, Arrays.asList("feature1", "feature2"));
+        Assert.assertTrue(pendingDeletions.isEmpty());
+        Mockito.verifyZeroInteractions(notificationClient);
+    }
+
+    @Test
+    public void testPendingDeletionsLeftToNextStartWhenStopping() {
+        Mockito.when(entityIndexerService.deleteDataObjects(ArgumentMatchers.eq(TENANT), ArgumentMatchers.any()))
+                .thenReturn(Collections.emptyMap());
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("feature1"), TENANT));
+
+        handler.destroy();
+        Mockito.verify(entityIndexerService, Mockito.never()).deleteDataObjects(ArgumentMatchers.any(),
+                                                                                ArgumentMatchers.any());
+        Assert.assertEquals(1, pendingDeletions.size());
+
+        // Next start
+        handler.init();
+        handler.handleApplicationReady(null);
+        Mockito.verify(entityIndexerService, Mockito.timeout(5_000))
+                .deleteDataObjects(TENANT, Collections.singletonList("feature1"));
+    }
+
+    @Test
+    public void testFailedDeletionRetriedThenNotified() {
+        Map<String, Exception> failures = new HashMap<>();
+        failures.put("failing", new IllegalStateException("Cannot delete"));
+        Mockito.when(entityIndexerService.deleteDataObjects(ArgumentMatchers.eq(TENANT), ArgumentMatchers.any()))
+                .thenReturn(failures);
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("failing"), TENANT));
+        handler.handle(TenantWrapper.build(FeatureEvent.buildFeatureDeleted("deleted"), TENANT));
+
+        for (int i = 0; i < 3; i++) {
+            flushAll();
+        }
+
+        // First attempt with both deletions, then retries of failing one only
+        Mockito.verify(entityIndexerService).deleteDataObjects(TENANT, Arrays.asList("failing", "deleted"));
+        Mockito.verify(entityIndexerService, Mockito.times(2))
+                .deleteDataObjects(TENANT, Collections.singletonList("failing"));
+        Mockito.verify(notificationClient).notify(ArgumentMatchers.contains("failing"), ArgumentMatchers.anyString(),
+                                                  ArgumentMatchers.eq(NotificationLevel.ERROR),
+                                                  ArgumentMatchers.eq(DefaultRole.ADMIN));
+        Assert.assertTrue(pendingDeletions.isEmpty());
+    }
+}
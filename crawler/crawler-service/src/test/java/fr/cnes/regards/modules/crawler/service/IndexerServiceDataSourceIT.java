@@ -65,6 +65,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
@@ -85,7 +86,10 @@ import fr.cnes.regards.framework.utils.plugins.PluginParameterTransformer;
 import fr.cnes.regards.modules.crawler.dao.IDatasourceIngestionRepository;
 import fr.cnes.regards.modules.crawler.domain.DatasourceIngestion;
 import fr.cnes.regards.modules.crawler.domain.IngestionResult;
+import fr.cnes.regards.modules.crawler.domain.IngestionStatus;
 import fr.cnes.regards.modules.crawler.plugins.TestDataSourcePlugin;
+import fr.cnes.regards.modules.crawler.plugins.TestKeysetDataSourcePlugin;
+import fr.cnes.regards.modules.crawler.service.conf.CrawlerPropertiesConfiguration;
 import fr.cnes.regards.modules.crawler.service.exception.NotFinishedException;
 import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
 import fr.cnes.regards.modules.dam.dao.entities.IAbstractEntityRepository;
@@ -99,6 +103,7 @@ import fr.cnes.regards.modules.dam.domain.entities.StaticProperties;
 import fr.cnes.regards.modules.dam.domain.entities.event.DatasetEvent;
 import fr.cnes.regards.modules.dam.domain.entities.event.NotDatasetEntityEvent;
 import fr.cnes.regards.modules.dam.service.entities.IDatasetService;
+import fr.cnes.regards.modules.dam.service.entities.IEntitiesService;
 import fr.cnes.regards.modules.indexer.dao.FacetPage;
 import fr.cnes.regards.modules.indexer.dao.IEsRepository;
 import fr.cnes.regards.modules.indexer.dao.builder.QueryBuilderCriterionVisitor;
@@ -114,6 +119,7 @@ import fr.cnes.regards.modules.model.dao.IAttributeModelRepository;
 import fr.cnes.regards.modules.model.dao.IFragmentRepository;
 import fr.cnes.regards.modules.model.dao.IModelAttrAssocRepository;
 import fr.cnes.regards.modules.model.dao.IModelRepository;
+import fr.cnes.regards.modules.model.domain.IComputedAttribute;
 import fr.cnes.regards.modules.model.domain.Model;
 import fr.cnes.regards.modules.model.domain.attributes.AttributeModel;
 import fr.cnes.regards.modules.model.dto.properties.IProperty;
@@ -192,6 +198,9 @@ public class IndexerServiceDataSourceIT {
     @Autowired
     private IDatasetService dsService;
 
+    @Autowired
+    private IEntitiesService entitiesService;
+
     @Autowired
     private IAttributeModelService attributeModelService;
 
@@ -228,6 +237,12 @@ public class IndexerServiceDataSourceIT {
     @Autowired
     private IDatasourceIngestionRepository dsIngestionRepos;
 
+    @Autowired
+    private DatasourceIngestionService dsIngestionService;
+
+    @Autowired
+    private CrawlerPropertiesConfiguration crawlerConf;
+
     private Model dataModel;
 
     private Model datasetModel;
@@ -315,6 +330,49 @@ public class IndexerServiceDataSourceIT {
         Assert.assertEquals(0, result.getContent().size());
     }
 
+    @Test
+    public void testResumeKeysetIngestionAfterNotFinished() throws Exception {
+        String tenant = runtimeTenantResolver.getTenant();
+        // One entity per page
+        ReflectionTestUtils.setField(crawlerConf, "maxBulkSize", 1);
+        Set<IPluginParam> param = IPluginParam
+                .set(IPluginParam.build(TestKeysetDataSourcePlugin.MODEL, PluginParameterTransformer.toJson(dataModel)),
+                     IPluginParam.build(DataSourcePluginConstants.MODEL_NAME_PARAM, dataModel.getName()));
+        PluginConfiguration keysetPluginConf = PluginConfiguration.build(TestKeysetDataSourcePlugin.class, null, param);
+        pluginService.savePluginConfiguration(keysetPluginConf);
+        DatasourceIngestion dsi = new DatasourceIngestion(keysetPluginConf.getBusinessId());
+        dsi.setLabel("Keyset");
+        dsIngestionRepos.save(dsi);
+
+        // Reading of third page fails
+        TestKeysetDataSourcePlugin.askedKeys.clear();
+        TestKeysetDataSourcePlugin.failAfterKey = "2";
+        try {
+            crawlerService.ingest(dsi.getId());
+            Assert.fail("Ingestion must not be finished");
+        } catch (NotFinishedException e) {
+            Assert.assertEquals(2, e.getPageNumber());
+            Assert.assertEquals("2", e.getLastKey());
+            dsIngestionService.setNotFinished(dsi.getId(), e);
+        } finally {
+            TestKeysetDataSourcePlugin.failAfterKey = null;
+        }
+        dsi = dsIngestionRepos.findById(dsi.getId()).get();
+        Assert.assertEquals(IngestionStatus.NOT_FINISHED, dsi.getStatus());
+        Assert.assertEquals("2", dsi.getErrorLastKey());
+
+        // Next ingestion resumes from failed page key (already indexed entities are not read again)
+        TestKeysetDataSourcePlugin.askedKeys.clear();
+        IngestionResult summary = crawlerService.ingest(dsi.getId()).get();
+        Assert.assertEquals("2", TestKeysetDataSourcePlugin.askedKeys.get(0));
+        Assert.assertFalse(TestKeysetDataSourcePlugin.askedKeys.contains(null));
+        Assert.assertEquals(2, summary.getSavedObjectsCount());
+
+        SimpleSearchKey<DataObject> key = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
+        key.setSearchIndex(tenant);
+        Assert.assertEquals(Long.valueOf(4), esRepos.count(key, ICriterion.all()));
+    }
+
     @After
     public void clean() {
         entityRepos.deleteAll();
@@ -398,6 +456,8 @@ public class IndexerServiceDataSourceIT {
         objectSearchKey.setSearchIndex(tenant);
         // check that computed attribute were correclty done
         checkDatasetComputedAttribute(dataset1, objectSearchKey, summary1.getSavedObjectsCount());
+        // check that computing attributes one plugin at a time gives the same values as the gathered computation
+        checkDatasetComputedAttributePerPlugin(dataset1);
         // Search for DataObjects tagging dataset1
         Page<DataObject> objectsPage = searchService.search(objectSearchKey, 10000,
                                                             ICriterion.eq("tags", dataset1.getIpId().toString()));
@@ -540,6 +600,28 @@ public class IndexerServiceDataSourceIT {
         client.close();
     }
 
+    /**
+     * Compute each computed attribute of given dataset through its own plugin (one aggregation request or one scroll by
+     * plugin) and check it gives the same value as the one computed by the crawler with all plugins gathered
+     */
+    private void checkDatasetComputedAttributePerPlugin(Dataset indexedDataset) throws ModuleException {
+        Dataset dataset = dsService.load(indexedDataset.getId());
+        Set<IComputedAttribute<Dataset, ?>> plugins = entitiesService.getComputationPlugins(dataset);
+        Assert.assertFalse(plugins.isEmpty());
+        for (IComputedAttribute<Dataset, ?> plugin : plugins) {
+            plugin.compute(dataset);
+            String attributeName = plugin.getAttributeToCompute().getName();
+            Object expected = plugin.getResult();
+            Object actual = getDatasetProperty(indexedDataset, attributeName).getValue();
+            if (expected instanceof OffsetDateTime) {
+                Assert.assertEquals(attributeName, ((OffsetDateTime) expected).toInstant(),
+                                    ((OffsetDateTime) actual).toInstant());
+            } else {
+                Assert.assertEquals(attributeName, expected, actual);
+            }
+        }
+    }
+
     private IProperty<?> getDatasetProperty(final Dataset pDataset, final String pPropertyName) {
         return pDataset.getProperties().stream().filter(p -> p.getName().equals(pPropertyName)).findAny().orElse(null);
     }
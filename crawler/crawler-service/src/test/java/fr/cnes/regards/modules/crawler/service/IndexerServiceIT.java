@@ -19,12 +19,16 @@
 package fr.cnes.regards.modules.crawler.service;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -48,7 +52,10 @@ import fr.cnes.regards.framework.urn.EntityType;
 import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
 import fr.cnes.regards.modules.dam.domain.entities.AbstractEntity;
 import fr.cnes.regards.modules.dam.domain.entities.Collection;
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
+import fr.cnes.regards.modules.indexer.dao.EsHelper;
+import fr.cnes.regards.modules.indexer.domain.IIndexable;
 import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
 import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
 import fr.cnes.regards.modules.indexer.service.IIndexerService;
@@ -82,6 +89,8 @@ public class IndexerServiceIT {
 
     private static final String SEARCH = "project_search";
 
+    private static final int HITS_COUNT = 10_000;
+
     @Value("${regards.tenant}")
     private String tenant;
 
@@ -288,4 +297,66 @@ public class IndexerServiceIT {
         }
         Assert.assertEquals(26, count);
     }
-}
\ No newline at end of file
+
+    /**
+     * Compare allocated bytes per hit when deserializing a real DataObject document : from String (old way), streamed
+     * as IIndexable (IndexableAdapterFactory parses the whole document into a JsonElement tree to read its type before
+     * binding it) and streamed as DataObject.
+     * Measurement only (depends on JVM and JIT), run it manually.
+     */
+    @Test
+    @Ignore("Performance measurement, run manually")
+    public void benchDataObjectDeserializationAllocations() throws IOException {
+        final Model model = new Model();
+        model.setName("dataModel");
+        model.setType(EntityType.DATA);
+        gsonAttributeFactory.registerSubtype(tenant, IntegerProperty.class, "altitude");
+        gsonAttributeFactory.registerSubtype(tenant, DoubleProperty.class, "latitude");
+        gsonAttributeFactory.registerSubtype(tenant, DoubleProperty.class, "longitude");
+        gsonAttributeFactory.registerSubtype(tenant, StringProperty.class, "string");
+        final DataObject dataObject = new DataObject(model, tenant, "DO1", "data object 1");
+        final HashSet<IProperty<?>> attributes = new HashSet<>();
+        attributes.add(IProperty.buildInteger("altitude", 3700));
+        attributes.add(IProperty.buildDouble("longitude", 12.5));
+        attributes.add(IProperty.buildDouble("latitude", 43.6));
+        attributes.add(IProperty.buildString("string", "Esope reste et se repose"));
+        dataObject.setProperties(attributes);
+        dataObject.setTags(new ImmutableSet.Builder<String>().add("TAG1").add("TAG2").add("TAG3").build());
+        BytesReference source = new BytesArray(gson.toJson(dataObject).getBytes(StandardCharsets.UTF_8));
+
+        // Same document whatever the way
+        IIndexable fromString = gson.fromJson(source.utf8ToString(), IIndexable.class);
+        Assert.assertEquals(dataObject.getIpId(), ((DataObject) fromString).getIpId());
+        Assert.assertEquals(dataObject.getIpId(),
+                            ((DataObject) EsHelper.fromJson(gson, source, IIndexable.class)).getIpId());
+        Assert.assertEquals(dataObject.getIpId(),
+                            EsHelper.<DataObject> fromJson(gson, source, DataObject.class).getIpId());
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int pass = 0; pass < 2; pass++) { // First pass is a warm up
+            long start = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < HITS_COUNT; i++) {
+                gson.fromJson(source.utf8ToString(), IIndexable.class);
+            }
+            long stringBytesPerHit = (bean.getThreadAllocatedBytes(threadId) - start) / HITS_COUNT;
+
+            start = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < HITS_COUNT; i++) {
+                EsHelper.fromJson(gson, source, IIndexable.class);
+            }
+            long streamIndexableBytesPerHit = (bean.getThreadAllocatedBytes(threadId) - start) / HITS_COUNT;
+
+            start = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < HITS_COUNT; i++) {
+                EsHelper.fromJson(gson, source, DataObject.class);
+            }
+            long streamDataObjectBytesPerHit = (bean.getThreadAllocatedBytes(threadId) - start) / HITS_COUNT;
+
+            LOGGER.info("DataObject source of {} bytes, allocated bytes per hit: String {}, "
+                    + "streaming as IIndexable {}, streaming as DataObject {}", source.length(), stringBytesPerHit,
+                        streamIndexableBytesPerHit, streamDataObjectBytesPerHit);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.modules.crawler.domain.IngestionResult;
+
+/**
+ * Check dispatch of ready ingestions to workers : global and per tenant limits and fairness between tenants
+ * @author oroussel
+ */
+public class IngesterServiceTest {
+
+    private static final String TENANT1 = "tenant1";
+
+    private static final String TENANT2 = "tenant2";
+
+    private IngesterService ingesterService;
+
+    /**
+     * Ready ingestions by tenant
+     */
+    private final Map<String, Deque<String>> readyIngestions = new HashMap<>();
+
+    /**
+     * Tenant of each started ingestion, in start order
+     */
+    private final List<String> startedTenants = new CopyOnWriteArrayList<>();
+
+    private final Map<String, AtomicInteger> runningByTenant = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> maxRunningByTenant = new ConcurrentHashMap<>();
+
+    private final AtomicInteger running = new AtomicInteger(0);
+
+    private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+    private final AtomicInteger ended = new AtomicInteger(0);
+
+    /**
+     * Ingestions are blocked until this latch is released
+     */
+    private CountDownLatch ingestionLatch;
+
+    private final ThreadLocal<String> currentTenant = new ThreadLocal<>();
+
+    @Before
+    public void setUp() throws Exception {
+        ingestionLatch = new CountDownLatch(1);
+        ITenantResolver tenantResolver = Mockito.mock(ITenantResolver.class);
+        Mockito.when(tenantResolver.getAllActiveTenants())
+                .thenReturn(new HashSet<>(Arrays.asList(TENANT1, TENANT2)));
+        // Runtime tenant is thread local
+        IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.doAnswer(invocation -> {
+            currentTenant.set(invocation.getArgument(0));
+            return null;
+        }).when(runtimeTenantResolver).forceTenant(Mockito.anyString());
+        Mockito.when(runtimeTenantResolver.getTenant()).thenAnswer(invocation -> currentTenant.get());
+
+        DatasourceIngestionService dsIngestionService = Mockito.mock(DatasourceIngestionService.class);
+        Mockito.when(dsIngestionService.pickAndStartDatasourceIngestion()).thenAnswer(invocation -> {
+            synchronized (readyIngestions) {
+                Deque<String> ready = readyIngestions.get(currentTenant.get());
+                return Optional.ofNullable(ready == null ? null : ready.poll());
+            }
+        });
+
+        IDatasourceIngesterService datasourceIngester = Mockito.mock(IDatasourceIngesterService.class);
+        Mockito.when(datasourceIngester.ingest(Mockito.anyString())).thenAnswer(invocation -> {
+            String tenant = currentTenant.get();
+            startedTenants.add(tenant);
+            int tenantCount = runningByTenant.computeIfAbsent(tenant, t -> new AtomicInteger()).incrementAndGet();
+            maxRunningByTenant.computeIfAbsent(tenant, t -> new AtomicInteger()).accumulateAndGet(tenantCount,
+                                                                                                  Math::max);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                ingestionLatch.await(30, TimeUnit.SECONDS);
+            } finally {
+                runningByTenant.get(tenant).decrementAndGet();
+                running.decrementAndGet();
+                ended.incrementAndGet();
+            }
+            return Optional.<IngestionResult> empty();
+        });
+
+        ingesterService = new IngesterService();
+        ReflectionTestUtils.setField(ingesterService, "tenantResolver", tenantResolver);
+        ReflectionTestUtils.setField(ingesterService, "runtimeTenantResolver", runtimeTenantResolver);
+        ReflectionTestUtils.setField(ingesterService, "dsIngestionService", dsIngestionService);
+        ReflectionTestUtils.setField(ingesterService, "datasourceIngester", datasourceIngester);
+        ReflectionTestUtils.setField(ingesterService, "dsIngestionLogService",
+                                     Mockito.mock(DatasourceIngestionLogService.class));
+    }
+
+    @After
+    public void tearDown() {
+        ingestionLatch.countDown();
+        ingesterService.destroy();
+    }
+
+    private void init(int maxWorkers, int maxWorkersPerTenant) {
+        ReflectionTestUtils.setField(ingesterService, "maxWorkers", maxWorkers);
+        ReflectionTestUtils.setField(ingesterService, "maxWorkersPerTenant", maxWorkersPerTenant);
+        ingesterService.init();
+    }
+
+    private void addReadyIngestions(String tenant, int count) {
+        Deque<String> ready = readyIngestions.computeIfAbsent(tenant, t -> new ArrayDeque<>());
+        for (int i = 0; i < count; i++) {
+            ready.add(tenant + "_ds" + i);
+        }
+    }
+
+    private void waitForStartedCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((startedTenants.size() < count) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testTenantsAreServedRoundRobin() throws InterruptedException {
+        // Global limit allows tenant1 to take all workers if it was served first until it has no more ingestions
+        init(2, 2);
+        addReadyIngestions(TENANT1, 5);
+        addReadyIngestions(TENANT2, 5);
+        ingesterService.manage();
+        waitForStartedCount(2);
+        // Both tenants got a worker
+        Assert.assertEquals(2, startedTenants.size());
+        Assert.assertTrue(startedTenants.contains(TENANT1));
+        Assert.assertTrue(startedTenants.contains(TENANT2));
+
+        ingestionLatch.countDown();
+        Assert.assertTrue(ingesterService.waitForEndOfIngestions(10_000));
+        Assert.assertEquals(10, ended.get());
+    }
+
+    @Test
+    public void testTenantWithFewIngestionsIsNotStarved() throws InterruptedException {
+        init(2, 2);
+        addReadyIngestions(TENANT1, 20);
+        addReadyIngestions(TENANT2, 1);
+        ingesterService.manage();
+        waitForStartedCount(2);
+        Assert.assertTrue(startedTenants.contains(TENANT2));
+
+        ingestionLatch.countDown();
+        Assert.assertTrue(ingesterService.waitForEndOfIngestions(10_000));
+        Assert.assertEquals(21, ended.get());
+    }
+
+    @Test
+    public void testLimitsAreEnforced() throws InterruptedException {
+        init(3, 1);
+        addReadyIngestions(TENANT1, 4);
+        addReadyIngestions(TENANT2, 4);
+        ingesterService.manage();
+        waitForStartedCount(2);
+        // Let dispatch a chance to (wrongly) give the third worker to one of the tenants
+        Thread.sleep(500);
+        Assert.assertEquals(2, running.get());
+        Assert.assertEquals(2, startedTenants.size());
+
+        ingestionLatch.countDown();
+        Assert.assertTrue(ingesterService.waitForEndOfIngestions(10_000));
+        Assert.assertEquals(8, ended.get());
+        Assert.assertEquals(1, maxRunningByTenant.get(TENANT1).get());
+        Assert.assertEquals(1, maxRunningByTenant.get(TENANT2).get());
+        Assert.assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testGlobalLimitIsEnforced() throws InterruptedException {
+        init(3, 3);
+        addReadyIngestions(TENANT1, 6);
+        addReadyIngestions(TENANT2, 6);
+        ingesterService.manage();
+        waitForStartedCount(3);
+        Thread.sleep(500);
+        Assert.assertEquals(3, running.get());
+
+        ingestionLatch.countDown();
+        Assert.assertTrue(ingesterService.waitForEndOfIngestions(10_000));
+        Assert.assertEquals(12, ended.get());
+        Assert.assertEquals(3, maxRunning.get());
+    }
+}
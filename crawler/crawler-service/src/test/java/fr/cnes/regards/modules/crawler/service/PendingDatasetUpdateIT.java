@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.oais.urn.OAISIdentifier;
+import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.framework.urn.UniformResourceName;
+import fr.cnes.regards.modules.crawler.dao.IPendingDatasetUpdateRepository;
+import fr.cnes.regards.modules.crawler.domain.PendingDatasetUpdate;
+import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
+
+/**
+ * Check saved pending dataset updates : merging of events, due updates and removal of done updates
+ * @author oroussel
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { CrawlerConfiguration.class })
+@ActiveProfiles("noschedule")
+@TestPropertySource(locations = { "classpath:test.properties" })
+public class PendingDatasetUpdateIT {
+
+    @Value("${regards.tenant}")
+    private String tenant;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private PendingDatasetUpdateService pendingUpdateService;
+
+    @Autowired
+    private IPendingDatasetUpdateRepository pendingUpdateRepos;
+
+    private UniformResourceName datasetIpId;
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver.forceTenant(tenant);
+        pendingUpdateRepos.deleteAll();
+        datasetIpId = OaisUniformResourceName.pseudoRandomUrn(OAISIdentifier.AIP, EntityType.DATASET, tenant, 1);
+    }
+
+    @After
+    public void tearDown() {
+        runtimeTenantResolver.forceTenant(tenant);
+        pendingUpdateRepos.deleteAll();
+    }
+
+    @Test
+    public void testEventsAreMerged() {
+        Assert.assertFalse(pendingUpdateService.hasPending());
+        pendingUpdateService.plan(datasetIpId, false);
+        pendingUpdateService.plan(datasetIpId, true);
+        pendingUpdateService.plan(datasetIpId, false);
+
+        List<PendingDatasetUpdate> pendings = pendingUpdateService.findAll();
+        Assert.assertEquals(1, pendings.size());
+        PendingDatasetUpdate pending = pendings.get(0);
+        Assert.assertEquals(datasetIpId.toString(), pending.getDatasetIpId());
+        Assert.assertEquals(3, pending.getEventsCount());
+        // Data objects update forced by one event is kept
+        Assert.assertTrue(pending.isForceDataObjectsUpdate());
+        Assert.assertFalse(pending.getLastEventDate().isBefore(pending.getFirstEventDate()));
+        Assert.assertTrue(pendingUpdateService.hasPending());
+    }
+
+    @Test
+    public void testConcurrentFirstEventsAreMerged() throws Exception {
+        int eventsCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(eventsCount);
+        try {
+            CountDownLatch startLatch = new CountDownLatch(1);
+            List<Future<?>> plannings = new ArrayList<>();
+            for (int i = 0; i < eventsCount; i++) {
+                plannings.add(executor.submit(() -> {
+                    runtimeTenantResolver.forceTenant(tenant);
+                    startLatch.await();
+                    pendingUpdateService.plan(datasetIpId, false);
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            // None fails on an already existing pending update
+            for (Future<?> planning : plannings) {
+                planning.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        List<PendingDatasetUpdate> pendings = pendingUpdateService.findAll();
+        Assert.assertEquals(1, pendings.size());
+        Assert.assertEquals(eventsCount, pendings.get(0).getEventsCount());
+        Assert.assertFalse(pendings.get(0).isForceDataObjectsUpdate());
+    }
+
+    @Test
+    public void testDueUpdates() throws InterruptedException {
+        pendingUpdateService.plan(datasetIpId, false);
+        Assert.assertTrue(pendingUpdateService.findDue(60_000, 120_000).isEmpty());
+
+        Thread.sleep(200);
+        // No new event for delay
+        Assert.assertEquals(1, pendingUpdateService.findDue(100, 120_000).size());
+        // New event postpones update...
+        pendingUpdateService.plan(datasetIpId, false);
+        Assert.assertTrue(pendingUpdateService.findDue(100, 120_000).isEmpty());
+        // ...but not beyond maximum delay
+        Assert.assertEquals(1, pendingUpdateService.findDue(100, 150).size());
+    }
+
+    @Test
+    public void testDoneUpdateRemoval() {
+        pendingUpdateService.plan(datasetIpId, false);
+        PendingDatasetUpdate done = pendingUpdateService.findAll().get(0);
+        // Event received during update : update must be done again
+        pendingUpdateService.plan(datasetIpId, false);
+        Assert.assertFalse(pendingUpdateService.remove(done));
+        Assert.assertTrue(pendingUpdateService.hasPending());
+
+        done = pendingUpdateService.findAll().get(0);
+        Assert.assertTrue(pendingUpdateService.remove(done));
+        Assert.assertFalse(pendingUpdateService.hasPending());
+    }
+
+    @Test
+    public void testFailedUpdatePostponed() throws InterruptedException {
+        pendingUpdateService.plan(datasetIpId, true);
+        Thread.sleep(200);
+        PendingDatasetUpdate failed = pendingUpdateService.findDue(100, 150).get(0);
+
+        pendingUpdateService.postpone(failed);
+        // Kept (with its forced data objects update) but not due before delay
+        Assert.assertTrue(pendingUpdateService.findDue(100, 150).isEmpty());
+        PendingDatasetUpdate pending = pendingUpdateService.findAll().get(0);
+        Assert.assertTrue(pending.isForceDataObjectsUpdate());
+        Thread.sleep(200);
+        Assert.assertEquals(1, pendingUpdateService.findDue(100, 150).size());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.crawler.dao.IPendingFeatureDeletionRepository;
+import fr.cnes.regards.modules.crawler.domain.PendingFeatureDeletion;
+import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
+
+/**
+ * Check saved pending feature deletions : duplicates, oldest first, failed attempts and removal
+ * @author oroussel
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { CrawlerConfiguration.class })
+@ActiveProfiles("noschedule")
+@TestPropertySource(locations = { "classpath:test.properties" })
+public class PendingFeatureDeletionIT {
+
+    @Value("${regards.tenant}")
+    private String tenant;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Autowired
+    private PendingFeatureDeletionService pendingDeletionService;
+
+    @Autowired
+    private IPendingFeatureDeletionRepository pendingDeletionRepos;
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver.forceTenant(tenant);
+        pendingDeletionRepos.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        runtimeTenantResolver.forceTenant(tenant);
+        pendingDeletionRepos.deleteAll();
+    }
+
+    @Test
+    public void testPendingDeletions() throws InterruptedException {
+        pendingDeletionService.add("feature1");
+        Thread.sleep(10);
+        pendingDeletionService.add("feature2");
+        // Same event received twice
+        pendingDeletionService.add("feature1");
+
+        List<PendingFeatureDeletion> oldest = pendingDeletionService.findOldest(10);
+        Assert.assertEquals(2, oldest.size());
+        Assert.assertEquals("feature1", oldest.get(0).getFeatureId());
+        Assert.assertEquals(1, pendingDeletionService.findOldest(1).size());
+
+        pendingDeletionService.countFailedAttempt(Collections.singleton("feature1"));
+        pendingDeletionService.remove(Collections.singleton("feature2"));
+        oldest = pendingDeletionService.findOldest(10);
+        Assert.assertEquals(1, oldest.size());
+        Assert.assertEquals(1, oldest.get(0).getAttempts());
+
+        pendingDeletionService.remove(Arrays.asList("feature1", "unknown"));
+        Assert.assertTrue(pendingDeletionService.findOldest(10).isEmpty());
+    }
+}
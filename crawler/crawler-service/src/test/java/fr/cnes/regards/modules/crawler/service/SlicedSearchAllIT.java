@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.modules.crawler.test.CrawlerConfiguration;
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.indexer.dao.IEsRepository;
+import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
+import fr.cnes.regards.modules.indexer.service.Searches;
+import fr.cnes.regards.modules.model.domain.Model;
+import fr.cnes.regards.modules.model.dto.properties.IProperty;
+import fr.cnes.regards.modules.model.dto.properties.IntegerProperty;
+import fr.cnes.regards.modules.model.dto.properties.ObjectProperty;
+import fr.cnes.regards.modules.model.dto.properties.StringProperty;
+import fr.cnes.regards.modules.model.gson.MultitenantFlattenedAttributeAdapterFactory;
+import fr.cnes.regards.modules.model.gson.MultitenantFlattenedAttributeAdapterFactoryEventHandler;
+
+/**
+ * Check that a parallel sliced searchAll deserializes dynamic properties of data objects, ie that slices threads
+ * know the tenant, and that a sliced searchAll nested into a slice action doesn't block
+ * @author oroussel
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = { CrawlerConfiguration.class })
+@ActiveProfiles("noschedule")
+@TestPropertySource(locations = { "classpath:test.properties" })
+public class SlicedSearchAllIT {
+
+    private static final int OBJECT_COUNT = 2_000;
+
+    private static final int SLICE_COUNT = 4;
+
+    @Value("${regards.tenant}")
+    private String tenant;
+
+    @Autowired
+    private MultitenantFlattenedAttributeAdapterFactoryEventHandler gsonAttributeFactoryHandler;
+
+    @Autowired
+    private MultitenantFlattenedAttributeAdapterFactory gsonAttributeFactory;
+
+    @Autowired
+    private IEsRepository esRepos;
+
+    @Autowired
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    @Before
+    public void setUp() {
+        // Simulate spring boot ApplicationStarted event to start mapping for each tenants.
+        gsonAttributeFactoryHandler.onApplicationEvent(null);
+        gsonAttributeFactory.registerSubtype(tenant, IntegerProperty.class, "num");
+        gsonAttributeFactory.registerSubtype(tenant, ObjectProperty.class, "frag");
+        gsonAttributeFactory.registerSubtype(tenant, StringProperty.class, "name", "frag");
+
+        runtimeTenantResolver.forceTenant(tenant);
+        if (esRepos.indexExists(tenant)) {
+            esRepos.deleteIndex(tenant);
+        }
+        esRepos.createIndex(tenant);
+    }
+
+    @After
+    public void tearDown() {
+        runtimeTenantResolver.clearTenant();
+    }
+
+    private SimpleSearchKey<DataObject> createObjects() {
+        Model model = new Model();
+        model.setName("SLICED_MODEL");
+        model.setType(EntityType.DATA);
+
+        List<DataObject> objects = new ArrayList<>(OBJECT_COUNT);
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            DataObject object = new DataObject(model, tenant, "PROVIDER_" + i, "object " + i);
+            object.addProperty(IProperty.buildInteger("num", i));
+            object.addProperty(IProperty.buildObject("frag", IProperty.buildString("name", "name " + i)));
+            objects.add(object);
+        }
+        esRepos.saveBulk(tenant, objects);
+        esRepos.refresh(tenant);
+
+        SimpleSearchKey<DataObject> searchKey = Searches.onSingleEntity(EntityType.DATA);
+        searchKey.setSearchIndex(tenant);
+        return searchKey;
+    }
+
+    @Test
+    public void testSlicedSearchAllWithDynamicProperties() {
+        SimpleSearchKey<DataObject> searchKey = createObjects();
+        Set<Integer> nums = ConcurrentHashMap.newKeySet();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger count = new AtomicInteger();
+        esRepos.searchAll(searchKey, object -> {
+            count.incrementAndGet();
+            threads.add(Thread.currentThread().getName());
+            nums.add((Integer) object.getProperty("num").getValue());
+            Assert.assertEquals("name " + object.getProperty("num").getValue(),
+                                object.getProperty("frag.name").getValue());
+        }, ICriterion.all(), SLICE_COUNT, 100);
+
+        Assert.assertEquals(OBJECT_COUNT, count.get());
+        Assert.assertEquals(OBJECT_COUNT, nums.size());
+        // Action must have been called by slices threads, not by the calling one
+        Assert.assertTrue(threads.stream().allMatch(name -> name.startsWith("es-sliced-scroll-")));
+    }
+
+    @Test(timeout = 120_000)
+    public void testNestedSlicedSearchAll() {
+        SimpleSearchKey<DataObject> searchKey = createObjects();
+        // More nested scrolls than slices threads : would block if nested slices were queued into the same pool
+        AtomicInteger remainingNestedCount = new AtomicInteger(64);
+        AtomicInteger nestedObjectsCount = new AtomicInteger();
+        Set<Boolean> nestedOnCallingThread = ConcurrentHashMap.newKeySet();
+        esRepos.searchAll(searchKey, object -> {
+            if (remainingNestedCount.getAndDecrement() > 0) {
+                String outerThread = Thread.currentThread().getName();
+                esRepos.searchAll(searchKey, nested -> {
+                    nestedObjectsCount.incrementAndGet();
+                    nestedOnCallingThread.add(outerThread.equals(Thread.currentThread().getName()));
+                }, ICriterion.eq("properties.num", 0), SLICE_COUNT, 100);
+            }
+        }, ICriterion.all(), SLICE_COUNT, 100);
+
+        Assert.assertEquals(64, nestedObjectsCount.get());
+        // Nested scrolls are simple ones executed by outer slices threads
+        Assert.assertEquals(Collections.singleton(Boolean.TRUE), nestedOnCallingThread);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.crawler.service.consumer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.indexer.dao.BulkSaveResult;
+import fr.cnes.regards.modules.indexer.dao.IEsRepository;
+import fr.cnes.regards.modules.model.domain.Model;
+
+/**
+ * Check that data objects added concurrently are all saved and that full sets are saved concurrently
+ * @author oroussel
+ */
+public class AbstractDataObjectBulkSaverTest {
+
+    private static final String TENANT = "tenant";
+
+    private static final int MAX_BULK_SIZE = 10;
+
+    private static final int ADDING_THREADS = 4;
+
+    private static final int OBJECTS_BY_THREAD = 100;
+
+    private final Set<String> savedProviderIds = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger runningSaves = new AtomicInteger();
+
+    private final AtomicInteger maxRunningSaves = new AtomicInteger();
+
+    private ExecutorService saveExecutor;
+
+    private ExecutorService addingExecutor;
+
+    private AbstractDataObjectBulkSaver saver;
+
+    @Before
+    public void setUp() {
+        IEsRepository esRepos = Mockito.mock(IEsRepository.class);
+        Mockito.when(esRepos.updateBulk(ArgumentMatchers.eq(TENANT), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> {
+                    maxRunningSaves.accumulateAndGet(runningSaves.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    Collection<DataObject> saved = invocation.getArgument(1);
+                    saved.forEach(object -> savedProviderIds.add(object.getProviderId()));
+                    runningSaves.decrementAndGet();
+                    return new BulkSaveResult();
+                });
+        SaveDataObjectsCallable callable = new SaveDataObjectsCallable(Mockito.mock(IRuntimeTenantResolver.class),
+                esRepos, TENANT, 1L);
+        // Same bounded save stage as dataset update
+        saveExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        addingExecutor = Executors.newFixedThreadPool(ADDING_THREADS);
+        saver = new AbstractDataObjectBulkSaver(callable, saveExecutor, new HashSet<>(), 1L, MAX_BULK_SIZE) {
+        };
+    }
+
+    @After
+    public void tearDown() {
+        saveExecutor.shutdownNow();
+        addingExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentAddsAreAllSaved() throws Exception {
+        Model model = new Model();
+        model.setName("model");
+        model.setType(EntityType.DATA);
+        List<Future<?>> addings = new ArrayList<>();
+        for (int t = 0; t < ADDING_THREADS; t++) {
+            int thread = t;
+            addings.add(addingExecutor.submit(() -> {
+                // Last set of each thread is not full
+                for (int i = 0; i < (OBJECTS_BY_THREAD + 3); i++) {
+                    saver.addDataObject(new DataObject(model, TENANT, thread + "_" + i, "object"));
+                }
+            }));
+        }
+        for (Future<?> adding : addings) {
+            adding.get(30, TimeUnit.SECONDS);
+        }
+        saver.finalSave();
+
+        int expectedCount = ADDING_THREADS * (OBJECTS_BY_THREAD + 3);
+        Assert.assertEquals(expectedCount, saver.getObjectsCount());
+        Assert.assertEquals(expectedCount, savedProviderIds.size());
+        // Full sets are saved while other threads keep on adding objects
+        Assert.assertTrue(maxRunningSaves.get() > 1);
+    }
+}
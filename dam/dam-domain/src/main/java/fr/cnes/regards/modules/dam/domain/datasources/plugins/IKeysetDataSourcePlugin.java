@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.dam.domain.datasources.plugins;
+
+import java.time.OffsetDateTime;
+
+import fr.cnes.regards.framework.modules.plugins.annotations.PluginInterface;
+import fr.cnes.regards.modules.dam.domain.entities.feature.DataObjectFeature;
+
+/**
+ * Data source plugin supporting keyset (seek) pagination : instead of skipping all previous entities (offset
+ * pagination), next entities are searched from the key of the last read one, so reading a page costs the same
+ * whatever its position.<br/>
+ * When a data source plugin implements this interface, crawler uses
+ * {@link #findAllAfter(String, String, int, OffsetDateTime)} instead of
+ * {@link IDataSourcePlugin#findAll(String, org.springframework.data.domain.Pageable, OffsetDateTime)}.<br/>
+ * A single table database data source ({@link IDBDataSourceFromSingleTablePlugin}) typically uses a unique indexed
+ * column as key : a page is then read with "... WHERE key &gt; :lastKey ORDER BY key LIMIT :size" (no WHERE clause for
+ * first page), its last key being the key column value of the last row.
+ * @author oroussel
+ */
+@PluginInterface(description = "Plugin to search in a data source using keyset pagination")
+public interface IKeysetDataSourcePlugin extends IDataSourcePlugin {
+
+    /**
+     * Returns at most given count of new entities whose key is strictly greater than given one, ordered by key.
+     * @param tenant tenant to build URN
+     * @param lastKey key of last entity read (as given by {@link KeysetPage#getLastKey()}), null to start from the first
+     *            one
+     * @param size maximum count of entities to return
+     * @param date Allows to filter the new entities created after this date parameter (can be null)
+     * @return a page of entities with the key of its last entity
+     * @throws DataSourceException
+     */
+    KeysetPage<DataObjectFeature> findAllAfter(String tenant, String lastKey, int size, OffsetDateTime date)
+            throws DataSourceException;
+
+}
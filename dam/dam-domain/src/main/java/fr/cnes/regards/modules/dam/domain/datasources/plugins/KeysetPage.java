@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.dam.domain.datasources.plugins;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page of entities returned by a keyset paginated search, see {@link IKeysetDataSourcePlugin}.
+ * The key is opaque to its users, it is only given back to the data source to read next page.
+ * @param <T> entity type
+ * @author oroussel
+ */
+public class KeysetPage<T> {
+
+    /**
+     * Entities ordered by key
+     */
+    private final List<T> content;
+
+    /**
+     * Key of last entity (null if page is empty)
+     */
+    private final String lastKey;
+
+    public KeysetPage(List<T> content, String lastKey) {
+        this.content = content == null ? Collections.emptyList() : content;
+        this.lastKey = lastKey;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * A page of given size which is full may be followed by other entities, a page which is not can't
+     */
+    public boolean hasNext(int size) {
+        return (lastKey != null) && (content.size() >= size);
+    }
+}
@@ -25,7 +25,6 @@ import fr.cnes.regards.modules.dam.domain.entities.Collection;
 import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.dam.domain.entities.Dataset;
 import fr.cnes.regards.modules.indexer.domain.IIndexable;
-import fr.cnes.regards.modules.indexer.domain.reminder.SearchAfterReminder;
 
 /**
  * IIndexable document adapter factory
@@ -44,7 +43,5 @@ public class IndexableAdapterFactory extends PolymorphicTypeAdapterFactory<IInde
         registerSubtype(Collection.class, EntityType.COLLECTION);
         registerSubtype(Dataset.class, EntityType.DATASET);
         registerSubtype(DataObject.class, EntityType.DATA, true);
-        // Reminder
-        registerSubtype(SearchAfterReminder.class, SearchAfterReminder.TYPE);
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.dam.plugin.entities;
+
+import java.util.Collections;
+
+import org.elasticsearch.search.aggregations.Aggregations;
+
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.dam.domain.entities.Dataset;
+import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
+
+/**
+ * {@link AbstractDataObjectComputePlugin} letting Elasticsearch compute the result through the plugin aggregation
+ * instead of scrolling all data objects.
+ * @param <R> type of the result attribute value
+ * @author oroussel
+ */
+public abstract class AbstractDataObjectAggregationComputePlugin<R> extends AbstractDataObjectComputePlugin<R>
+        implements IDataObjectAggregationComputePlugin<R> {
+
+    @Override
+    protected void computeOn(SimpleSearchKey<DataObject> searchKey, Dataset dataset) {
+        AttributeAggregation aggregation = getAggregation();
+        Aggregations aggs = esRepo.aggregate(searchKey, dataset.getSubsettingClause(),
+                                             Collections.singleton(aggregation));
+        computeFromAggregation(aggs.get(aggregation.getName()));
+    }
+}
@@ -44,11 +44,11 @@ import fr.cnes.regards.modules.model.dto.properties.IProperty;
 import fr.cnes.regards.modules.model.dto.properties.ObjectProperty;
 
 /**
- * Implementation of {@link IComputedAttribute} plugin interface.
+ * Implementation of {@link IComputedAttribute} plugin interface (through {@link IDataObjectComputedAttribute}).
  * @param <R> type of the result attribute value
  * @author Sylvain Vissiere-Guerinet
  */
-public abstract class AbstractDataObjectComputePlugin<R> implements IComputedAttribute<Dataset, R> {
+public abstract class AbstractDataObjectComputePlugin<R> implements IDataObjectComputedAttribute<R> {
 
     /**
      * The plugin parameter name for the attribute name
@@ -140,16 +140,33 @@ public abstract class AbstractDataObjectComputePlugin<R> implements IComputedAtt
         SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
         searchKey.setSearchIndex(tenantResolver.getTenant());
         searchKey.setCrs(projectGeoSettings.getCrs());
-        esRepo.searchAll(searchKey, this.doCompute(), dataset.getSubsettingClause());
+        computeOn(searchKey, dataset);
         log.debug("Attribute {} computed for Dataset {}. Result: {}", parameterAttribute.getFullJsonPath(),
                   dataset.getIpId().toString(), result);
     }
 
+    /**
+     * Compute result on data objects of given dataset by scrolling all of them. Plugins whose computation can be
+     * expressed as an Elasticsearch aggregation override this method (see
+     * {@link AbstractDataObjectAggregationComputePlugin}).
+     * @param searchKey search key on data objects of current tenant
+     * @param dataset dataset on which the attribute, once computed, will be added
+     */
+    protected void computeOn(SimpleSearchKey<DataObject> searchKey, Dataset dataset) {
+        esRepo.searchAll(searchKey, this.startScrollComputation(), dataset.getSubsettingClause());
+    }
+
     @Override
     public AttributeModel getAttributeToCompute() {
         return attributeToCompute;
     }
 
+    @Override
+    public Consumer<DataObject> startScrollComputation() {
+        result = null;
+        return doCompute();
+    }
+
     protected abstract Consumer<DataObject> doCompute();
 
     /**
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.dam.plugin.entities;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
+
+/**
+ * {@link IDataObjectComputedAttribute} whose computation is expressed as an Elasticsearch aggregation. The caller
+ * asks {@link #getAggregation()} (possibly gathered with other plugins ones within a single request) then gives the
+ * result to {@link #computeFromAggregation(Aggregation)}.
+ * @param <R> type of the result attribute value
+ * @author oroussel
+ */
+public interface IDataObjectAggregationComputePlugin<R> extends IDataObjectComputedAttribute<R> {
+
+    /**
+     * @return aggregation needed to compute the attribute
+     */
+    AttributeAggregation getAggregation();
+
+    /**
+     * Set result from aggregation computed by Elasticsearch
+     * @param aggregation aggregation result
+     */
+    void computeFromAggregation(Aggregation aggregation);
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.dam.plugin.entities;
+
+import java.util.function.Consumer;
+
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.dam.domain.entities.Dataset;
+import fr.cnes.regards.modules.model.domain.IComputedAttribute;
+
+/**
+ * {@link IComputedAttribute} computed from dataset data objects whose computation can be gathered with other ones.
+ * Instead of calling {@link #compute(Dataset)} on each plugin (one Elasticsearch request per plugin), the caller can
+ * ask all needed aggregations within one request and scroll dataset data objects once for all plugins that cannot be
+ * expressed as an aggregation.
+ * @param <R> type of the result attribute value
+ * @author oroussel
+ */
+public interface IDataObjectComputedAttribute<R> extends IComputedAttribute<Dataset, R> {
+
+    /**
+     * Reset result and provide the consumer computing it (used when plugin is not an
+     * {@link IDataObjectAggregationComputePlugin})
+     * @return consumer to be called on each dataset data object
+     */
+    Consumer<DataObject> startScrollComputation();
+}
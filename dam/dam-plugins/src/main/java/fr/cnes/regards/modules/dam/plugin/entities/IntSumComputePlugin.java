@@ -21,13 +21,14 @@ package fr.cnes.regards.modules.dam.plugin.entities;
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+
 import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginInit;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginParameter;
-import fr.cnes.regards.framework.urn.EntityType;
 import fr.cnes.regards.modules.dam.domain.entities.DataObject;
-import fr.cnes.regards.modules.dam.domain.entities.Dataset;
-import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.model.domain.ComputationPlugin;
 import fr.cnes.regards.modules.model.domain.models.PluginComputationIdentifierEnum;
 import fr.cnes.regards.modules.model.dto.properties.IProperty;
@@ -45,7 +46,7 @@ import fr.cnes.regards.modules.model.dto.properties.PropertyType;
         author = "REGARDS Team", contact = "regards@c-s.fr", license = "GPLv3", owner = "CSSI",
         url = "https://github.com/RegardsOss")
 @ComputationPlugin(supportedType = PropertyType.INTEGER)
-public class IntSumComputePlugin extends AbstractDataObjectComputePlugin<Integer> {
+public class IntSumComputePlugin extends AbstractDataObjectAggregationComputePlugin<Integer> {
 
     @PluginParameter(name = PARAMETER_ATTRIBUTE_NAME, label = "Parameter attribute name",
             description = "Name of parameter attribute used to compute result attribute.")
@@ -75,22 +76,14 @@ public class IntSumComputePlugin extends AbstractDataObjectComputePlugin<Integer
         }
     }
 
-    /**
-     * @param dataset dataset on which the attribute, once computed, will be added. This allows us to know which
-     * DataObject should be used.
-     */
     @Override
-    public void compute(Dataset dataset) {
-        result = null;
-        // create the search
-        SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
-        searchKey.setSearchIndex(tenantResolver.getTenant());
-        searchKey.setCrs(projectGeoSettings.getCrs());
-        Double doubleResult = esRepo.sum(searchKey, dataset.getSubsettingClause(),
-                                         parameterAttribute.getFullJsonPath());
-        result = doubleResult.intValue();
-        log.debug("Attribute {} computed for Dataset {}. Result: {}", parameterAttribute.getFullJsonPath(),
-                  dataset.getIpId().toString(), result);
+    public AttributeAggregation getAggregation() {
+        return AttributeAggregation.sum(parameterAttribute.getFullJsonPath());
+    }
+
+    @Override
+    public void computeFromAggregation(Aggregation aggregation) {
+        result = (int) ((Sum) aggregation).getValue();
     }
 
     @Override
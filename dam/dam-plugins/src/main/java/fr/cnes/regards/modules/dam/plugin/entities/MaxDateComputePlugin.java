@@ -22,13 +22,15 @@ import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+
+import fr.cnes.regards.framework.gson.adapters.OffsetDateTimeAdapter;
 import fr.cnes.regards.framework.modules.plugins.annotations.Plugin;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginInit;
 import fr.cnes.regards.framework.modules.plugins.annotations.PluginParameter;
-import fr.cnes.regards.framework.urn.EntityType;
 import fr.cnes.regards.modules.dam.domain.entities.DataObject;
-import fr.cnes.regards.modules.dam.domain.entities.Dataset;
-import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.model.domain.ComputationPlugin;
 import fr.cnes.regards.modules.model.domain.models.PluginComputationIdentifierEnum;
 import fr.cnes.regards.modules.model.dto.properties.DateProperty;
@@ -46,7 +48,7 @@ import fr.cnes.regards.modules.model.dto.properties.PropertyType;
         author = "REGARDS Team", contact = "regards@c-s.fr", license = "GPLv3", owner = "CSSI",
         url = "https://github.com/RegardsOss", version = "1.0.0")
 @ComputationPlugin(supportedType = PropertyType.DATE_ISO8601)
-public class MaxDateComputePlugin extends AbstractDataObjectComputePlugin<OffsetDateTime> {
+public class MaxDateComputePlugin extends AbstractDataObjectAggregationComputePlugin<OffsetDateTime> {
 
     @PluginParameter(name = PARAMETER_ATTRIBUTE_NAME, label = "Parameter attribute name",
             description = "Name of parameter attribute used to compute result attribute.")
@@ -66,20 +68,17 @@ public class MaxDateComputePlugin extends AbstractDataObjectComputePlugin<Offset
                    parameterAttributeFragmentName);
     }
 
-    /**
-     * @param dataset dataset on which the attribute, once computed, will be added. This allows us to know which
-     * DataObject should be used.
-     */
     @Override
-    public void compute(Dataset dataset) {
-        result = null;
-        // create the search
-        SimpleSearchKey<DataObject> searchKey = new SimpleSearchKey<>(EntityType.DATA.toString(), DataObject.class);
-        searchKey.setSearchIndex(tenantResolver.getTenant());
-        searchKey.setCrs(projectGeoSettings.getCrs());
-        result = esRepo.maxDate(searchKey, dataset.getSubsettingClause(), parameterAttribute.getFullJsonPath());
-        log.debug("Attribute {} computed for Dataset {}. Result: {}", parameterAttribute.getFullJsonPath(),
-                  dataset.getIpId().toString(), result);
+    public AttributeAggregation getAggregation() {
+        return AttributeAggregation.max(parameterAttribute.getFullJsonPath());
+    }
+
+    @Override
+    public void computeFromAggregation(Aggregation aggregation) {
+        Max max = (Max) aggregation;
+        // No value => no max date
+        result = (max == null) || !Double.isFinite(max.getValue()) ? null
+                : OffsetDateTimeAdapter.parse(max.getValueAsString());
     }
 
     private void getMaxDate(Optional<IProperty<?>> parameterOpt) {
@@ -26,6 +26,7 @@ import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -280,17 +281,15 @@ public abstract class AbstractEntityService<F extends EntityFeature, U extends A
     }
 
     /**
-     * Compute available validators
+     * Compute context dependent validators (model ones are provided by validation plan)
      * @param modelAttribute {@link ModelAttrAssoc}
      * @param attributeKey attribute key
      * @param mode manage update or not
      * @return {@link Validator} list
      */
     @Override
-    protected List<Validator> getValidators(ModelAttrAssoc modelAttribute, String attributeKey, ValidationMode mode,
-            F feature) {
-
-        List<Validator> validators = super.getValidators(modelAttribute, attributeKey, mode, feature);
+    protected List<Validator> getContextValidators(ModelAttrAssoc modelAttribute, String attributeKey,
+            ValidationMode mode, F feature) {
 
         AttributeModel attModel = modelAttribute.getAttribute();
 
@@ -302,9 +301,10 @@ public abstract class AbstractEntityService<F extends EntityFeature, U extends A
             IProperty<?> valueFromDb = extractProperty(fromDb.getFeature(), attModel);
             IProperty<?> valueFromEntity = extractProperty(feature, attModel);
             // retrieve entity from db, and then update the new one, but i do not have the entity here....
-            validators.add(new NotAlterableAttributeValidator(attributeKey, attModel, valueFromDb, valueFromEntity));
+            return Collections.singletonList(new NotAlterableAttributeValidator(attributeKey, attModel, valueFromDb,
+                    valueFromEntity));
         }
-        return validators;
+        return Collections.emptyList();
     }
 
     protected IProperty<?> extractProperty(EntityFeature feature, AttributeModel attribute) {
@@ -19,12 +19,15 @@
 package fr.cnes.regards.modules.dam.service.entities;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import fr.cnes.regards.modules.model.domain.Model;
 import fr.cnes.regards.modules.model.domain.ModelAttrAssoc;
 import fr.cnes.regards.modules.model.service.IModelAttrAssocService;
+import fr.cnes.regards.modules.model.service.IModelService;
 import fr.cnes.regards.modules.model.service.validation.AbstractCacheableModelFinder;
 import fr.cnes.regards.modules.model.service.validation.IModelFinder;
 
@@ -38,8 +41,16 @@ public class DamModelFinder extends AbstractCacheableModelFinder implements IMod
     @Autowired
     protected IModelAttrAssocService modelAttributeService;
 
+    @Autowired
+    protected IModelService modelService;
+
     @Override
     protected List<ModelAttrAssoc> loadAttributesByModel(String modelName) {
         return modelAttributeService.getModelAttrAssocs(modelName);
     }
+
+    @Override
+    protected List<String> loadModelNames() {
+        return modelService.getModels(null).stream().map(Model::getName).collect(Collectors.toList());
+    }
 }
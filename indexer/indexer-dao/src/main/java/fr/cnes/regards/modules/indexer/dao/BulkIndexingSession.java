@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.dao;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulk indexing session on an index (see {@link IEsRepository#openBulkIndexingSession(String)}).<br/>
+ * While at least one session is opened on an index, its refresh and its replicas are disabled and saved documents are
+ * not made searchable after each bulk. Closing the session (only first call has an effect) restores index settings
+ * and refreshes it once, so it must be used with a try-with-resources block.<br/>
+ * <b>Documents saved during the session are not searchable until {@link #refresh()} is called</b> (getting them
+ * by id is still possible).
+ * @author oroussel
+ */
+public class BulkIndexingSession implements AutoCloseable {
+
+    private final String index;
+
+    private final EsRepository repository;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    BulkIndexingSession(String index, EsRepository repository) {
+        this.index = index;
+        this.repository = repository;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Make documents saved until now searchable (needed before searching documents to update them)
+     */
+    public void refresh() {
+        repository.refresh(index);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            repository.closeBulkIndexingSession(index);
+        }
+    }
+}
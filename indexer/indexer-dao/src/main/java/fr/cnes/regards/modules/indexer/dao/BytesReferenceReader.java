@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.dao;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.bytes.BytesReference;
+
+/**
+ * UTF-8 decoding {@link Reader} reading directly Elasticsearch response bytes. Contrary to
+ * {@link java.io.InputStreamReader}, no intermediate byte buffer is allocated and contrary to
+ * {@link BytesReference#utf8ToString()}, no String copy of the whole source is created.
+ * @author oroussel
+ */
+class BytesReferenceReader extends Reader {
+
+    private final BytesRefIterator iterator;
+
+    /**
+     * Current bytes chunk
+     */
+    private BytesRef current;
+
+    private int pos;
+
+    private int end;
+
+    /**
+     * Low surrogate of a supplementary character that didn't fit into previous read buffer
+     */
+    private char pendingLowSurrogate = 0;
+
+    BytesReferenceReader(BytesReference bytes) {
+        this.iterator = bytes.iterator();
+    }
+
+    private int nextByte() throws IOException {
+        while ((current == null) || (pos >= end)) {
+            current = iterator.next();
+            if (current == null) {
+                return -1;
+            }
+            pos = current.offset;
+            end = current.offset + current.length;
+        }
+        return current.bytes[pos++] & 0xFF;
+    }
+
+    private int continuationByte() throws IOException {
+        int b = nextByte();
+        if ((b < 0) || ((b & 0xC0) != 0x80)) {
+            throw new IOException("Malformed UTF-8 sequence");
+        }
+        return b & 0x3F;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        if (pendingLowSurrogate != 0) {
+            cbuf[off + n++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+        while (n < len) {
+            int b = nextByte();
+            if (b < 0) {
+                break;
+            }
+            int codePoint;
+            if (b < 0x80) {
+                codePoint = b;
+            } else if ((b & 0xE0) == 0xC0) {
+                codePoint = ((b & 0x1F) << 6) | continuationByte();
+            } else if ((b & 0xF0) == 0xE0) {
+                codePoint = ((b & 0x0F) << 12) | (continuationByte() << 6) | continuationByte();
+            } else if ((b & 0xF8) == 0xF0) {
+                codePoint = ((b & 0x07) << 18) | (continuationByte() << 12) | (continuationByte() << 6)
+                        | continuationByte();
+            } else {
+                throw new IOException("Malformed UTF-8 sequence");
+            }
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                cbuf[off + n++] = Character.highSurrogate(codePoint);
+                if (n < len) {
+                    cbuf[off + n++] = Character.lowSurrogate(codePoint);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            } else {
+                cbuf[off + n++] = (char) codePoint;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release, bytes belong to Elasticsearch response
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.dao;
+
+import java.util.Objects;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Page request carrying a search after cursor token (see {@link FacetPage#getNextCursor()}) permitting to retrieve
+ * pages beyond {@link IEsRepository#MAX_RESULT_WINDOW} with a single Elasticsearch request
+ * @author oroussel
+ */
+@SuppressWarnings("serial")
+public class CursorPageRequest extends PageRequest {
+
+    private final String cursor;
+
+    protected CursorPageRequest(int page, int size, Sort sort, String cursor) {
+        super(page, size, sort);
+        this.cursor = cursor;
+    }
+
+    public static CursorPageRequest of(int page, int size, Sort sort, String cursor) {
+        return new CursorPageRequest(page, size, sort, cursor);
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Same page with another cursor is another request (a cursor page request is never equal to a plain
+     * {@link PageRequest})
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!super.equals(obj)) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        return Objects.equals(cursor, ((CursorPageRequest) obj).cursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * super.hashCode()) + Objects.hashCode(cursor);
+    }
+}
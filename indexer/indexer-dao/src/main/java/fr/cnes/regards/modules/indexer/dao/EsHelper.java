@@ -18,13 +18,19 @@
  */
 package fr.cnes.regards.modules.indexer.dao;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.elasticsearch.common.bytes.BytesReference;
+
 import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Helper class used by indexer operations
@@ -151,4 +157,23 @@ public class EsHelper {
         }
         return Double.parseDouble(numeric) * factor;
     }
+
+    /**
+     * Deserialize a document source directly from Elasticsearch response bytes through a streaming {@link JsonReader}
+     * (no intermediate String containing the whole source is created).<br/>
+     * <b>Only the String copy is avoided</b> : a type managed by a polymorphic adapter factory (IIndexable through
+     * IndexableAdapterFactory, and its registered subtypes when the factory also handles them) is still parsed into a
+     * JsonElement tree by the factory to read its discriminator before being bound (see
+     * IndexerServiceIT.benchDataObjectDeserializationAllocations in crawler-service to measure it on a DataObject)
+     * @param gson Json mapper
+     * @param source document source bytes (ie SearchHit.getSourceRef(), GetResponse.getSourceAsBytesRef())
+     * @param type type of document
+     * @param <T> type of document
+     * @return deserialized document
+     */
+    public static <T> T fromJson(Gson gson, BytesReference source, Type type) throws IOException {
+        try (JsonReader reader = new JsonReader(new BytesReferenceReader(source))) {
+            return gson.fromJson(reader, type);
+        }
+    }
 }
@@ -24,11 +24,17 @@ import static fr.cnes.regards.modules.indexer.dao.spatial.GeoHelper.AUTHALIC_SPH
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.time.OffsetDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,8 +47,14 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
@@ -50,6 +62,8 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import javax.crypto.spec.SecretKeySpec;
+
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
@@ -67,7 +81,10 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
@@ -76,12 +93,16 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.GetAliasesResponse;
 import org.elasticsearch.client.HttpAsyncResponseConsumerFactory.HeapBufferedResponseConsumerFactory;
 import org.elasticsearch.client.Request;
@@ -107,12 +128,17 @@ import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregation;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.TermsValuesSourceBuilder;
 import org.elasticsearch.search.aggregations.bucket.range.Range.Bucket;
 import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
@@ -124,6 +150,7 @@ import org.elasticsearch.search.aggregations.metrics.percentiles.Percentiles;
 import org.elasticsearch.search.aggregations.metrics.sum.Sum;
 import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCount;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.hipparchus.util.FastMath;
@@ -138,18 +165,23 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.ReflectionUtils;
 
 import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
-import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 
@@ -158,6 +190,7 @@ import fr.cnes.regards.framework.geojson.geometry.MultiPolygon;
 import fr.cnes.regards.framework.geojson.geometry.Polygon;
 import fr.cnes.regards.framework.gson.adapters.OffsetDateTimeAdapter;
 import fr.cnes.regards.framework.module.rest.exception.TooManyResultsException;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.framework.utils.RsRuntimeException;
 import fr.cnes.regards.modules.dam.domain.entities.DataObject;
 import fr.cnes.regards.modules.dam.domain.entities.StaticProperties;
@@ -171,6 +204,7 @@ import fr.cnes.regards.modules.indexer.dao.spatial.GeoHelper;
 import fr.cnes.regards.modules.indexer.domain.IDocFiles;
 import fr.cnes.regards.modules.indexer.domain.IIndexable;
 import fr.cnes.regards.modules.indexer.domain.SearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.indexer.domain.aggregation.QueryableAttribute;
 import fr.cnes.regards.modules.indexer.domain.criterion.CircleCriterion;
 import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
@@ -182,7 +216,6 @@ import fr.cnes.regards.modules.indexer.domain.facet.FacetType;
 import fr.cnes.regards.modules.indexer.domain.facet.IFacet;
 import fr.cnes.regards.modules.indexer.domain.facet.NumericFacet;
 import fr.cnes.regards.modules.indexer.domain.facet.StringFacet;
-import fr.cnes.regards.modules.indexer.domain.reminder.SearchAfterReminder;
 import fr.cnes.regards.modules.indexer.domain.spatial.Crs;
 import fr.cnes.regards.modules.indexer.domain.spatial.ILocalizable;
 import fr.cnes.regards.modules.indexer.domain.summary.DocFilesSubSummary;
@@ -228,6 +261,75 @@ public class EsRepository implements IEsRepository {
 
     }
 
+    /**
+     * Key of facet percentiles cache : search index, types, criterion (as Json) and facet attribute
+     */
+    private static class PercentilesCacheKey {
+
+        private final String index;
+
+        private final String types;
+
+        private final String criterionJson;
+
+        private final String attribute;
+
+        public PercentilesCacheKey(SearchKey<?, ?> searchKey, String criterionJson, String attribute) {
+            this.index = searchKey.getSearchIndex();
+            this.types = String.join(",", searchKey.getSearchTypes());
+            this.criterionJson = criterionJson;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            PercentilesCacheKey other = (PercentilesCacheKey) o;
+            return Objects.equals(index, other.index) && Objects.equals(types, other.types)
+                    && Objects.equals(criterionJson, other.criterionJson) && Objects.equals(attribute, other.attribute);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, types, criterionJson, attribute);
+        }
+    }
+
+    /**
+     * Field types of an index mapping (key is full attribute path like "feature.properties.toto", value is mapping
+     * type)
+     */
+    private static class IndexMapping {
+
+        private final Map<String, String> fieldTypes;
+
+        private final long loadDate = System.currentTimeMillis();
+
+        public IndexMapping(Map<String, String> fieldTypes) {
+            this.fieldTypes = fieldTypes;
+        }
+
+        public String getType(String attribute) {
+            return fieldTypes.get(attribute);
+        }
+
+        /**
+         * A missing attribute may have been added since by dynamic mapping, in this case, mapping can be reloaded.
+         * A model attribute (feature property) is added by dynamic mapping as soon as a document valuing it is saved
+         * so mapping is always reloaded, other attributes only if mapping is not too recent.
+         */
+        public boolean isReloadable(String attribute) {
+            return !fieldTypes.containsKey(attribute)
+                    && (attribute.startsWith(StaticProperties.FEATURE_PROPERTIES_PATH + ".")
+                            || ((System.currentTimeMillis() - loadDate) > MAPPING_CACHE_MISS_RELOAD_DELAY_MS));
+        }
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(EsRepository.class);
 
     /**
@@ -241,6 +343,11 @@ public class EsRepository implements IEsRepository {
      */
     private static final int DEFAULT_SCROLLING_HITS_SIZE = 100;
 
+    /**
+     * Maximum number of documents asked by a single multi-get request
+     */
+    private static final int MULTI_GET_BATCH_SIZE = 1_000;
+
     /**
      * Target forwarding search {@link EsRepository#searchAll} need to put in cache search because of pagination
      * restrictions. This constant specifies duration cache time in minutes (from last access)
@@ -248,14 +355,90 @@ public class EsRepository implements IEsRepository {
     private static final int TARGET_FORWARDING_CACHE_MN = 3;
 
     /**
-     * QueryBuilder visitor used for Elasticsearch search requests
+     * Estimated size in bytes of a cached non-String joined value (boxed number, UniformResourceName, ...) or of a
+     * String without its characters
      */
-    private static final QueryBuilderCriterionVisitor CRITERION_VISITOR = new QueryBuilderCriterionVisitor();
+    private static final int CACHED_VALUE_ESTIMATED_SIZE = 48;
+
+    /**
+     * Number of buckets retrieved per request by composite aggregation when all unique values of an attribute are
+     * needed
+     */
+    private static final int UNIQUE_COMPOSITE_PAGE_SIZE = 10_000;
+
+    /**
+     * Index setting name of refresh interval
+     */
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+
+    /**
+     * Refresh interval set during bulk indexing (refresh disabled)
+     */
+    private static final String BULK_REFRESH_INTERVAL = "-1";
+
+    /**
+     * Index setting name of replicas count
+     */
+    private static final String REPLICAS_SETTING = "index.number_of_replicas";
+
+    /**
+     * Index setting name of write block (documents can no more be indexed, updated nor deleted)
+     */
+    private static final String WRITE_BLOCK_SETTING = "index.blocks.write";
+
+    /**
+     * Index settings modified during bulk indexing
+     */
+    private static final String[] BULK_SETTINGS = { REFRESH_INTERVAL_SETTING, REPLICAS_SETTING };
+
+    /**
+     * Mapping "_meta" entry used to keep index settings as they were before bulk indexing (to be able to restore them
+     * after a crash)
+     */
+    private static final String BULK_SETTINGS_BACKUP_META = "bulkSettingsBackup";
+
+    /**
+     * Suffix format of indices created to replace another one
+     */
+    private static final DateTimeFormatter VERSIONED_INDEX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * Delay in ms between two checks of a reindex task completion
+     */
+    private static final long REINDEX_TASK_POLLING_DELAY_MS = 5_000L;
+
+    /**
+     * Maximum number of numeric and date facets percentiles kept into cache
+     */
+    private static final int FACET_PERCENTILES_CACHE_SIZE = 1_000;
+
+    /**
+     * Duration (in minutes, from computation) during which numeric and date facets percentiles are used as ranges
+     * boundaries without being computed again
+     */
+    private static final int FACET_PERCENTILES_CACHE_MN = 10;
+
+    /**
+     * Maximum number of search contexts whose deep pages sort values are kept into cache
+     */
+    private static final int SEARCH_AFTER_CACHE_SIZE = 1_000;
+
+    /**
+     * Maximum number of offsets whose sort values are kept into cache for a search context (lowest ones are removed
+     * first)
+     */
+    private static final int SEARCH_AFTER_CACHE_MAX_OFFSETS = 1_000;
+
+    /**
+     * Minimum duration in ms between two reloads of an index mapping cache because of an attribute (other than a model
+     * attribute) not found into it
+     */
+    private static final long MAPPING_CACHE_MISS_RELOAD_DELAY_MS = 10_000L;
 
     /**
-     * Index used to store search after cursors
+     * QueryBuilder visitor used for Elasticsearch search requests
      */
-    private static final String REMINDER_IDX = "reminder";
+    private static final QueryBuilderCriterionVisitor CRITERION_VISITOR = new QueryBuilderCriterionVisitor();
 
     /**
      * Suffix for text attributes
@@ -291,9 +474,28 @@ public class EsRepository implements IEsRepository {
     private static final String INDEX_NOT_FOUND_ERROR_MESSAGE = "Research won't work until you've ingested some features into ES";
 
     /**
-     * Single scheduled executor service to clean reminder tasks once expiration date is reached
+     * Maximum number of slices scrolled at the same time (all sliced scrolls together), other ones are queued
      */
-    private final ScheduledExecutorService reminderCleanExecutor = Executors.newSingleThreadScheduledExecutor();
+    private static final int SLICED_SCROLL_MAX_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Executor service used to scroll slices of parallel sliced scrolls
+     */
+    private final ExecutorService slicedScrollExecutor = Executors
+            .newFixedThreadPool(SLICED_SCROLL_MAX_THREADS,
+                                new ThreadFactoryBuilder().setNameFormat("es-sliced-scroll-%d").setDaemon(true).build());
+
+    /**
+     * Whether current thread is scrolling a slice of a parallel sliced scroll
+     */
+    private static final ThreadLocal<Boolean> SCROLLING_SLICE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Tenant resolver needed to force tenant into slices threads (dynamic properties deserialization depends on it).
+     * Not mandatory, only used if present.
+     */
+    @Autowired(required = false)
+    private IRuntimeTenantResolver runtimeTenantResolver;
 
     /**
      * AggregationBuilder visitor used for Elasticsearch search requests with facets
@@ -311,28 +513,77 @@ public class EsRepository implements IEsRepository {
      */
     private final Gson gson;
 
+    /**
+     * Maximum total weight in Mb of {@link EsRepository#searchAllCache}, weight being an estimation in bytes of cached
+     * values. A single joined search may use it all.
+     */
+    @Value("${regards.elasticsearch.search.join.cache.max.weight.mb:64}")
+    private long searchAllCacheMaxWeightMb = 64;
+
     /**
      * SearchAll cache used by {@link EsRepository#searchAll} to avoid redo same ES request while changing page.
-     * SortedSet is necessary to be sure several consecutive calls return same ordered set
-     */
-    private final LoadingCache<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>> searchAllCache = CacheBuilder
-            .newBuilder().expireAfterAccess(TARGET_FORWARDING_CACHE_MN, TimeUnit.MINUTES)
-            .build(new CacheLoader<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>>() {
-
-                @Override
-                public Tuple<SortedSet<Object>, Set<IFacet<?>>> load(CacheKey key) throws Exception {
-                    // Using method Objects.hashCode(Object) to compare to be sure that the set will always be returned
-                    // with same order
-                    //                    Tuple<SortedSet<Object>, Set<IFacet<?>>> results = new TreeSet<>(Comparator.comparing(Objects::hashCode));
-                    //                    results.addAll(searchJoined(key.getSearchKey(),
-                    //                                                key.getCriterion(),
-                    //                                                key.getSourceAttribute(),
-                    //                                                key.getFacetsMap()));
-                    //                    return results;
-                    return searchJoined(key.getSearchKey(), key.getCriterion(), key.getSourceAttribute(),
-                                        key.getFacetsMap());
-                }
-            });
+     * SortedSet is necessary to be sure several consecutive calls return same ordered set.
+     * Lazily created (see {@link #searchAllCache()}) because its maximum weight is injected after construction
+     */
+    private volatile LoadingCache<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>> searchAllCache;
+
+    /**
+     * Mapping cache by index (or alias) to avoid asking Elasticsearch for mapping each time ".keyword" suffix is needed
+     * on a text attribute. It is invalidated on index creation, deletion, reindexation and model changes.
+     */
+    private final ConcurrentMap<String, IndexMapping> mappingCache = new ConcurrentHashMap<>();
+
+    /**
+     * Number of opened bulk indexing sessions by index
+     */
+    private final ConcurrentMap<String, Integer> bulkSessionsCount = new ConcurrentHashMap<>();
+
+    /**
+     * Indices (or aliases) whose writes have been blocked by this repository
+     */
+    private final Set<String> writeBlockedIndices = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Explicitly set index settings as they were before bulk indexing, by index (settings not present were not
+     * explicitly set and so are reset to their default values when restored)
+     */
+    private final ConcurrentMap<String, Map<String, String>> settingsBeforeBulk = new ConcurrentHashMap<>();
+
+    /**
+     * Percentiles of numeric and date facets used as ranges boundaries by search index, types, criterion and
+     * attribute. A search with such facets then only needs one request when its percentiles are in cache.
+     */
+    private final Cache<PercentilesCacheKey, Percentiles> facetPercentilesCache = CacheBuilder.newBuilder()
+            .maximumSize(FACET_PERCENTILES_CACHE_SIZE).expireAfterWrite(FACET_PERCENTILES_CACHE_MN, TimeUnit.MINUTES)
+            .recordStats().build();
+
+    /**
+     * Sort values of the last document preceding already reached deep pages, by search context and offset. This is
+     * the server side fallback used when a deep page is asked without a valid cursor (for example a page number typed
+     * by a user) : search after then starts from the closest lower known offset instead of 0.<br/>
+     * It is kept into memory so it is only shared by requests reaching the same instance.
+     */
+    private final Cache<String, ConcurrentNavigableMap<Long, Object[]>> searchAfterSortValuesCache = CacheBuilder
+            .newBuilder().maximumSize(SEARCH_AFTER_CACHE_SIZE)
+            .expireAfterAccess(KEEP_ALIVE_SCROLLING_TIME_MN, TimeUnit.MINUTES).build();
+
+    /**
+     * Secret used to sign search after cursors. It must be shared by all instances, if not set, a random one is
+     * generated (cursors are then only valid on this instance)
+     */
+    @Value("${regards.elasticsearch.search.cursor.secret:}")
+    private String cursorSecret;
+
+    /**
+     * Maximum duration in minutes of an index copy, the reindex task is cancelled beyond it
+     */
+    @Value("${regards.elasticsearch.reindex.timeout.mn:120}")
+    private long reindexTimeoutMn = 120;
+
+    /**
+     * Key used to sign search after cursors (lazily created from cursorSecret)
+     */
+    private volatile SecretKeySpec cursorKey;
 
     private RequestOptions options = RequestOptions.DEFAULT;
 
@@ -407,39 +658,37 @@ public class EsRepository implements IEsRepository {
     }
 
     /**
-     * Tell if given attribute is of type "text" from all types mappings of specified index.
-     * @param map response of "mappings" rest request
-     * @return true is first type mapping found fro given attribute is of type "text"
+     * Collect mapping types of all fields (sub-objects and multi-fields included) from a "properties" mapping
+     * @param prefix path of "properties" parent ("" for root, with a final "." otherwise)
+     * @param properties "properties" mapping (can be null)
+     * @param fieldTypes map to fill (full attribute path -> mapping type)
      */
-    private static boolean isTextMapping(Map<String, Object> map, String attribute) {
-        String lastPathAttName = attribute.contains(".") ? attribute.substring(attribute.lastIndexOf('.') + 1)
-                : attribute;
-        try {
-            // Mapping map contain only one value, the concerned index mapping BUT in case index is an alias, map key
-            // is true index name, not alias one so DON'T retrieve mapping from its name !!!
-            Iterator<Object> i = map.values().iterator();
-            if (i.hasNext()) {
-                Map<String, Object> allTypesMapping = toMap(toMap(i.next()).get("mappings"));
-                // Search from all types mapping if one contains asked attribute (frankly, all must contain it but maybe
-                // automatic mapping isn't present for all
-                // Since ES6, single type so this loop isn't really one
-                for (Object oTypeMap : allTypesMapping.values()) {
-                    Map<String, Object> typeMap = toMap(oTypeMap);
-                    if (typeMap.containsKey(attribute)) {
-                        return toMap(toMap(toMap(typeMap.get(attribute)).get("mapping")).get(lastPathAttName))
-                                .get("type").equals("text");
-                    }
+    private static void collectFieldTypes(String prefix, Map<String, Object> properties,
+            Map<String, String> fieldTypes) {
+        if (properties != null) {
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                String path = prefix + entry.getKey();
+                Map<String, Object> fieldMapping = toMap(entry.getValue());
+                Object type = fieldMapping.get("type");
+                if (type != null) {
+                    fieldTypes.putIfAbsent(path, type.toString());
                 }
+                collectFieldTypes(path + ".", toMap(fieldMapping.get("properties")), fieldTypes);
+                collectFieldTypes(path + ".", toMap(fieldMapping.get("fields")), fieldTypes);
             }
-            return false;
-        } catch (NullPointerException e) { // NOSONAR (better catch a NPE than testing all imbricated maps)
-            return false;
         }
     }
 
     @Override
     public void close() {
+        // Restore settings of indices on which bulk indexing sessions are still opened
+        for (String index : bulkSessionsCount.keySet()) {
+            LOGGER.warn("Bulk indexing session still opened on index {} while closing connection", index);
+            restoreSettingsAfterBulk(index);
+        }
+        bulkSessionsCount.clear();
         LOGGER.info("Closing connection");
+        slicedScrollExecutor.shutdown();
         try {
             client.close();
         } catch (IOException e) {
@@ -483,6 +732,7 @@ public class EsRepository implements IEsRepository {
                     .startObject("feature").startObject("properties").startObject("session").field("type", "keyword")
                     .endObject().endObject().endObject().endObject().endObject());
             CreateIndexResponse response = client.indices().create(request, RequestOptions.DEFAULT);
+            mappingCache.clear();
             return response.isAcknowledged();
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
@@ -498,6 +748,7 @@ public class EsRepository implements IEsRepository {
                     .alias(alias.toLowerCase());
             request.addAliasAction(createAliasAction);
             AcknowledgedResponse response = client.indices().updateAliases(request, RequestOptions.DEFAULT);
+            mappingCache.clear();
             return response.isAcknowledged();
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
@@ -506,11 +757,19 @@ public class EsRepository implements IEsRepository {
     }
 
     @Override
-    public boolean setSettingsForBulk(String index) {
+    public boolean setSettingsForBulk(String inIndex) {
+        String index = inIndex.toLowerCase();
         try {
-            UpdateSettingsRequest request = Requests.updateSettingsRequest(index.toLowerCase());
-            Settings.Builder builder = Settings.builder().put("index.refresh_interval", -1)
-                    .put("index.number_of_replicas", 0);
+            Map<String, String> currentSettings = getBulkSettings(index);
+            // Settings already set for bulk indexing (by another instance or by an interrupted bulk indexing) must
+            // not be kept as original ones
+            if (!BULK_REFRESH_INTERVAL.equals(currentSettings.get(REFRESH_INTERVAL_SETTING))) {
+                settingsBeforeBulk.put(index, currentSettings);
+                saveBulkSettingsBackup(index, currentSettings);
+            }
+            UpdateSettingsRequest request = Requests.updateSettingsRequest(index);
+            Settings.Builder builder = Settings.builder().put(REFRESH_INTERVAL_SETTING, BULK_REFRESH_INTERVAL)
+                    .put(REPLICAS_SETTING, 0);
             request.settings(builder);
             AcknowledgedResponse response = client.indices().putSettings(request, RequestOptions.DEFAULT);
             return response.isAcknowledged();
@@ -522,11 +781,29 @@ public class EsRepository implements IEsRepository {
     }
 
     @Override
-    public boolean unsetSettingsForBulk(String index) {
+    public boolean unsetSettingsForBulk(String inIndex) {
+        String index = inIndex.toLowerCase();
         try {
-            UpdateSettingsRequest request = Requests.updateSettingsRequest(index.toLowerCase());
-            Settings.Builder builder = Settings.builder().put("index.refresh_interval", "1s")
-                    .put("index.number_of_replicas", 1);
+            Map<String, String> originalSettings = settingsBeforeBulk.remove(index);
+            if (originalSettings == null) {
+                originalSettings = loadBulkSettingsBackup(index);
+            }
+            if (originalSettings == null) {
+                LOGGER.warn("Settings of index {} before bulk indexing are unknown, resetting them to default values",
+                            index);
+                originalSettings = Collections.emptyMap();
+            }
+            UpdateSettingsRequest request = Requests.updateSettingsRequest(index);
+            Settings.Builder builder = Settings.builder();
+            for (String setting : BULK_SETTINGS) {
+                String value = originalSettings.get(setting);
+                if (value == null) {
+                    // Not explicitly set before bulk indexing => back to default value
+                    builder.putNull(setting);
+                } else {
+                    builder.put(setting, value);
+                }
+            }
             request.settings(builder);
             AcknowledgedResponse response = client.indices().putSettings(request, RequestOptions.DEFAULT);
             return response.isAcknowledged();
@@ -537,6 +814,136 @@ public class EsRepository implements IEsRepository {
 
     }
 
+    /**
+     * Retrieve explicitly set values of settings modified by bulk indexing
+     * @param index index or alias
+     */
+    private Map<String, String> getBulkSettings(String index) throws IOException {
+        GetSettingsRequest request = new GetSettingsRequest().indices(index).names(BULK_SETTINGS);
+        GetSettingsResponse response = client.indices().getSettings(request, options);
+        Map<String, String> settings = new HashMap<>();
+        // In case index is an alias, key is true index name
+        for (Iterator<Settings> i = response.getIndexToSettings().valuesIt(); i.hasNext();) {
+            Settings indexSettings = i.next();
+            for (String setting : BULK_SETTINGS) {
+                String value = indexSettings.get(setting);
+                if (value != null) {
+                    settings.put(setting, value);
+                }
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Keep given settings into index mapping "_meta" so they can be restored even after a crash. Backup is not
+     * removed after restoration, it is replaced at next bulk indexing.
+     */
+    private void saveBulkSettingsBackup(String index, Map<String, String> settings) throws IOException {
+        Request request = new Request("PUT", index + "/_mapping/" + TYPE);
+        request.setJsonEntity(gson.toJson(Collections
+                .singletonMap("_meta", Collections.singletonMap(BULK_SETTINGS_BACKUP_META, settings))));
+        client.getLowLevelClient().performRequest(request);
+    }
+
+    /**
+     * Retrieve settings kept by {@link #saveBulkSettingsBackup(String, Map)}
+     * @return settings or null if no backup exists
+     */
+    private Map<String, String> loadBulkSettingsBackup(String index) throws IOException {
+        Response response = client.getLowLevelClient().performRequest(new Request("GET", index + "/_mapping/" + TYPE));
+        try (InputStream is = response.getEntity().getContent()) {
+            Map<String, Object> map = XContentHelper.convertToMap(XContentType.JSON.xContent(), is, true);
+            // In case index is an alias, key is true index name
+            if (map != null) {
+                for (Object indexMapping : map.values()) {
+                    Map<String, Object> allTypesMapping = toMap(toMap(indexMapping).get("mappings"));
+                    Map<String, Object> typeMapping = allTypesMapping == null ? null
+                            : toMap(allTypesMapping.get(TYPE));
+                    Map<String, Object> meta = typeMapping == null ? null : toMap(typeMapping.get("_meta"));
+                    Map<String, Object> backup = meta == null ? null : toMap(meta.get(BULK_SETTINGS_BACKUP_META));
+                    if (backup != null) {
+                        Map<String, String> settings = new HashMap<>();
+                        backup.forEach((setting, value) -> settings.put(setting, value.toString()));
+                        return settings;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public BulkIndexingSession openBulkIndexingSession(String inIndex) {
+        String index = inIndex.toLowerCase();
+        bulkSessionsCount.compute(index, (k, count) -> {
+            if (count == null) {
+                LOGGER.info("Opening bulk indexing session on index {}", index);
+                setSettingsForBulk(index);
+                return 1;
+            }
+            return count + 1;
+        });
+        return new BulkIndexingSession(index, this);
+    }
+
+    /**
+     * Close a bulk indexing session, restoring index settings if it is the last opened one on this index
+     */
+    void closeBulkIndexingSession(String index) {
+        bulkSessionsCount.computeIfPresent(index, (k, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            LOGGER.info("Closing bulk indexing session on index {}", index);
+            restoreSettingsAfterBulk(index);
+            return null;
+        });
+    }
+
+    /**
+     * Restore index settings modified for bulk indexing and refresh index (errors are only logged to not hide a
+     * previous one)
+     */
+    private void restoreSettingsAfterBulk(String index) {
+        try {
+            unsetSettingsForBulk(index);
+            refresh(index);
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Cannot restore settings of index %s after bulk indexing", index), e);
+        }
+    }
+
+    @Override
+    public boolean restoreSettingsIfBulkInterrupted(String inIndex) {
+        String index = inIndex.toLowerCase();
+        if (bulkSessionsCount.containsKey(index)) {
+            return false;
+        }
+        try {
+            GetSettingsRequest request = new GetSettingsRequest().indices(index).names(REFRESH_INTERVAL_SETTING);
+            GetSettingsResponse response = client.indices().getSettings(request, options);
+            for (Iterator<Settings> i = response.getIndexToSettings().valuesIt(); i.hasNext();) {
+                if (BULK_REFRESH_INTERVAL.equals(i.next().get(REFRESH_INTERVAL_SETTING))) {
+                    LOGGER.warn("Index {} settings have been left by an interrupted bulk indexing session, "
+                            + "restoring them", index);
+                    restoreSettingsAfterBulk(index);
+                    return true;
+                }
+            }
+            return false;
+        } catch (ElasticsearchException e) {
+            if (e.status() == RestStatus.NOT_FOUND) {
+                return false;
+            }
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
     @Override
     public boolean indexExists(String name) {
         try {
@@ -590,6 +997,7 @@ public class EsRepository implements IEsRepository {
         try {
             DeleteIndexRequest request = Requests.deleteIndexRequest(index);
             AcknowledgedResponse response = client.indices().delete(request, RequestOptions.DEFAULT);
+            mappingCache.clear();
             return response.isAcknowledged();
         } catch (ElasticsearchException e) {
             if (e.status() == RestStatus.NOT_FOUND) {
@@ -701,24 +1109,260 @@ public class EsRepository implements IEsRepository {
                 Request request = new Request("POST", "_reindex");
                 request.setEntity(entity);
                 Response response = client.getLowLevelClient().performRequest(request);
+                mappingCache.clear();
                 if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
                     return newIndex;
                 } else {
                     LOGGER.error(response.getStatusLine().toString());
                 }
-            } finally {
-                ((NStringEntity) entity).close();
+            } finally {
+                ((NStringEntity) entity).close();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String copyIntoNewIndex(String inIndex) throws IOException {
+        String index = inIndex.toLowerCase();
+        String newIndex = index + "_" + VERSIONED_INDEX_FORMATTER.format(OffsetDateTime.now(ZoneOffset.UTC));
+        if (!this.createIndex(newIndex)) {
+            return null;
+        }
+        String result = null;
+        try {
+            // New index is neither refreshed nor replicated while documents are copied
+            boolean copied;
+            try (BulkIndexingSession session = openBulkIndexingSession(newIndex)) {
+                copied = copyDocuments(index, newIndex);
+            }
+            if (copied) {
+                // New index won't be modified until it is used so all its segments can be merged into one
+                client.indices().forcemerge(new ForceMergeRequest(newIndex).maxNumSegments(1), options);
+                result = newIndex;
+            }
+        } finally {
+            if (result == null) {
+                try {
+                    deleteIndex0(newIndex);
+                } catch (RuntimeException e) { // NOSONAR (let's focus on first exception)
+                    LOGGER.error(String.format("Cannot delete index %s after a failed copy", newIndex), e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy all documents of an index into another one with Elasticsearch reindex API. Copy can be long so it is
+     * launched as an Elasticsearch task which is polled until it is completed (instead of waiting for the response).
+     * @return true if all documents have been copied
+     */
+    private boolean copyDocuments(String index, String newIndex) throws IOException {
+        Request request = new Request("POST", "_reindex");
+        request.addParameter("wait_for_completion", "false");
+        request.setJsonEntity(String.format("{\"source\": {\"index\": \"%s\"}, \"dest\": {\"index\": \"%s\"}}",
+                                            index, newIndex));
+        Object taskId = responseToMap(client.getLowLevelClient().performRequest(request)).get("task");
+        LOGGER.info("Copying index {} into {} (task {})...", index, newIndex, taskId);
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(reindexTimeoutMn);
+        while (true) {
+            if (System.currentTimeMillis() > deadline) {
+                LOGGER.error("...Copy of index {} into {} has not been completed after {} minutes, it is cancelled",
+                             index, newIndex, reindexTimeoutMn);
+                cancelTask(taskId);
+                return false;
+            }
+            try {
+                Thread.sleep(REINDEX_TASK_POLLING_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RsRuntimeException(e);
+            }
+            Map<String, Object> task = responseToMap(client.getLowLevelClient()
+                    .performRequest(new Request("GET", "_tasks/" + taskId)));
+            if (Boolean.TRUE.equals(task.get("completed"))) {
+                Map<String, Object> taskResponse = toMap(task.get("response"));
+                Object failures = taskResponse == null ? null : taskResponse.get("failures");
+                if ((task.get("error") != null) || ((failures instanceof List) && !((List<?>) failures).isEmpty())) {
+                    LOGGER.error("...Copy of index {} into {} has failed: {}", index, newIndex,
+                                 task.get("error") != null ? task.get("error") : failures);
+                    return false;
+                }
+                LOGGER.info("...Index {} copied into {}", index, newIndex);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Cancel an Elasticsearch task (documents already copied by a reindex task are not removed)
+     */
+    private void cancelTask(Object taskId) {
+        try {
+            client.getLowLevelClient().performRequest(new Request("POST", "_tasks/" + taskId + "/_cancel"));
+        } catch (IOException e) { // NOSONAR (task may already be completed, nothing more can be done)
+            LOGGER.error(String.format("Cannot cancel task %s", taskId), e);
+        }
+    }
+
+    @Override
+    public boolean blockWrites(String inIndex, boolean blocked) {
+        String index = inIndex.toLowerCase();
+        try {
+            UpdateSettingsRequest request = Requests.updateSettingsRequest(index);
+            Settings.Builder builder = Settings.builder();
+            if (blocked) {
+                builder.put(WRITE_BLOCK_SETTING, true);
+            } else {
+                builder.putNull(WRITE_BLOCK_SETTING);
+            }
+            request.settings(builder);
+            AcknowledgedResponse response = client.indices().putSettings(request, RequestOptions.DEFAULT);
+            if (blocked) {
+                writeBlockedIndices.add(index);
+            } else {
+                writeBlockedIndices.remove(index);
+            }
+            return response.isAcknowledged();
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean unblockWritesIfInterrupted(String inIndex) {
+        String index = inIndex.toLowerCase();
+        if (writeBlockedIndices.contains(index)) {
+            return false;
+        }
+        try {
+            GetSettingsRequest request = new GetSettingsRequest().indices(index).names(WRITE_BLOCK_SETTING);
+            GetSettingsResponse response = client.indices().getSettings(request, options);
+            for (Iterator<Settings> i = response.getIndexToSettings().valuesIt(); i.hasNext();) {
+                if (i.next().getAsBoolean(WRITE_BLOCK_SETTING, false)) {
+                    LOGGER.warn("Writes on index {} have been left blocked by an interrupted index rebuild, "
+                            + "unblocking them", index);
+                    return blockWrites(index, false);
+                }
+            }
+            return false;
+        } catch (ElasticsearchException e) {
+            if (e.status() == RestStatus.NOT_FOUND) {
+                return false;
+            }
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    private static Map<String, Object> responseToMap(Response response) throws IOException {
+        try (InputStream is = response.getEntity().getContent()) {
+            return XContentHelper.convertToMap(XContentType.JSON.xContent(), is, true);
+        }
+    }
+
+    @Override
+    public boolean swapAlias(String inAlias, String newIndex) {
+        String alias = inAlias.toLowerCase();
+        try {
+            IndicesAliasesRequest request = new IndicesAliasesRequest();
+            request.addAliasAction(new AliasActions(Type.ADD).index(newIndex.toLowerCase()).alias(alias));
+            // Indices currently behind alias (or index named as alias) are deleted into the same atomic request
+            GetAliasesRequest getAliasesRequest = new GetAliasesRequest(alias);
+            if (client.indices().existsAlias(getAliasesRequest, options)) {
+                for (String oldIndex : client.indices().getAlias(getAliasesRequest, options).getAliases().keySet()) {
+                    request.addAliasAction(new AliasActions(Type.REMOVE_INDEX).index(oldIndex));
+                }
+            } else if (indexExists(alias)) {
+                request.addAliasAction(new AliasActions(Type.REMOVE_INDEX).index(alias));
+            }
+            AcknowledgedResponse response = client.indices().updateAliases(request, options);
+            // Write block (if any) has been deleted with old index
+            writeBlockedIndices.remove(alias);
+            mappingCache.clear();
+            searchAllCache().invalidateAll();
+            facetPercentilesCache.invalidateAll();
+            return response.isAcknowledged();
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void invalidateMappingCache(String index) {
+        mappingCache.remove(index.toLowerCase());
+    }
+
+    @Override
+    public void refresh(String index) {
+        // To make just saved documents searchable, the associated index must be refreshed
+        try {
+            RefreshRequest request = Requests.refreshRequest(index.toLowerCase());
+            client.indices().refresh(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    @Override
+    public <T extends IIndexable> T get(String index, String type, String id, Class<T> clazz) {
+        GetRequest request = new GetRequest(index.toLowerCase(), TYPE, id);
+        try {
+            GetResponse response = client.get(request, RequestOptions.DEFAULT);
+            if (!response.isExists()) {
+                return null;
+            }
+            return EsHelper.fromJson(gson, response.getSourceAsBytesRef(), clazz);
+        } catch (final JsonSyntaxException | IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    @Override
+    public <T extends IIndexable> Map<String, T> multiGet(String inIndex, String type, Collection<String> ids,
+            Class<T> clazz) {
+        String index = inIndex.toLowerCase();
+        Map<String, T> results = new HashMap<>(ids.size());
+        try {
+            for (List<String> batchIds : Iterables.partition(ids, MULTI_GET_BATCH_SIZE)) {
+                MultiGetRequest request = new MultiGetRequest();
+                for (String id : batchIds) {
+                    request.add(index, TYPE, id);
+                }
+                MultiGetResponse response = client.mget(request, options);
+                for (MultiGetItemResponse itemResponse : response.getResponses()) {
+                    if (itemResponse.isFailed()) {
+                        // Same behavior as get(...) : a failure is not a missing document
+                        throw new RsRuntimeException(itemResponse.getFailure().getFailure());
+                    }
+                    GetResponse getResponse = itemResponse.getResponse();
+                    if (getResponse.isExists()) {
+                        results.put(getResponse.getId(), EsHelper.fromJson(gson, getResponse.getSourceAsBytesRef(),
+                                                                          clazz));
+                    }
+                }
             }
+            return results;
+        } catch (final JsonSyntaxException | IOException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(e);
         }
-        return null;
     }
 
     @Override
-    public void refresh(String index) {
-        // To make just saved documents searchable, the associated index must be refreshed
+    public boolean delete(String index, String type, String id) {
+        DeleteRequest request = new DeleteRequest(index.toLowerCase(), TYPE, id);
         try {
-            RefreshRequest request = Requests.refreshRequest(index.toLowerCase());
-            client.indices().refresh(request, RequestOptions.DEFAULT);
+            DeleteResponse response = client.delete(request, RequestOptions.DEFAULT);
+            return (response.getResult() == Result.DELETED) || (response.getResult() == Result.NOT_FOUND);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RsRuntimeException(e);
@@ -726,32 +1370,117 @@ public class EsRepository implements IEsRepository {
     }
 
     @Override
-    public <T extends IIndexable> T get(String index, String type, String id, Class<T> clazz) {
-        GetRequest request = new GetRequest(index.toLowerCase(), TYPE, id);
+    public Map<String, Exception> deleteBulk(String index, String type, Collection<String> ids) {
+        Map<String, Exception> failures = new HashMap<>();
+        if (ids.isEmpty()) {
+            return failures;
+        }
+        BulkRequest bulkRequest = new BulkRequest();
+        for (String id : ids) {
+            bulkRequest.add(new DeleteRequest(index.toLowerCase(), TYPE, id));
+        }
         try {
-            GetResponse response = client.get(request, RequestOptions.DEFAULT);
-            if (!response.isExists()) {
-                return null;
+            BulkResponse response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+            for (BulkItemResponse itemResponse : response.getItems()) {
+                if (itemResponse.isFailed()) {
+                    LOGGER.warn("Document of type {} and id {} cannot be deleted", type, itemResponse.getId(),
+                                itemResponse.getFailure().getCause());
+                    failures.put(itemResponse.getId(), itemResponse.getFailure().getCause());
+                }
             }
-            return gson.fromJson(response.getSourceAsString(), clazz);
-        } catch (final JsonSyntaxException | IOException e) {
+            return failures;
+        } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RsRuntimeException(e);
         }
     }
 
     @Override
-    public boolean delete(String index, String type, String id) {
-        DeleteRequest request = new DeleteRequest(index.toLowerCase(), TYPE, id);
+    public BulkSaveResult updateBulk(String inIndex, Collection<? extends IIndexable> documents, String... fields) {
+        BulkSaveResult result = new BulkSaveResult();
+        if (documents.isEmpty()) {
+            return result;
+        }
+        String index = inIndex.toLowerCase();
+        // Same script source for all documents (only params differ) so Elasticsearch compiles it once
+        StringBuilder scriptSource = new StringBuilder();
+        for (String field : fields) {
+            scriptSource.append("ctx._source.").append(field).append(" = params['").append(field).append("'];");
+        }
+        BulkRequest bulkRequest = new BulkRequest();
+        Map<String, IIndexable> map = new HashMap<>();
+        for (IIndexable doc : documents) {
+            checkDocument(doc);
+            // Only updated fields are serialized, not the whole document
+            Map<String, Object> params = new HashMap<>();
+            for (String field : fields) {
+                JsonElement value = toJsonField(doc, field);
+                params.put(field, value.isJsonNull() ? null : gson.fromJson(value, Object.class));
+            }
+            bulkRequest.add(new UpdateRequest(index, TYPE, doc.getDocId())
+                    .script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, scriptSource.toString(),
+                                       params)));
+            map.put(doc.getDocId(), doc);
+        }
         try {
-            DeleteResponse response = client.delete(request, RequestOptions.DEFAULT);
-            return (response.getResult() == Result.DELETED) || (response.getResult() == Result.NOT_FOUND);
+            BulkResponse response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+            for (BulkItemResponse itemResponse : response.getItems()) {
+                IIndexable document = map.get(itemResponse.getId());
+                Optional<String> session = Optional.empty();
+                Optional<String> sessionOwner = Optional.empty();
+                if (document instanceof DataObject) {
+                    DataObjectFeature docFeature = ((DataObject) document).getFeature();
+                    session = Optional.ofNullable(docFeature.getSession());
+                    sessionOwner = Optional.ofNullable(docFeature.getSessionOwner());
+                }
+                if (itemResponse.isFailed()) {
+                    LOGGER.warn("Document of type {} and id {} cannot be updated", document.getType(),
+                                itemResponse.getId(), itemResponse.getFailure().getCause());
+                    result.addInErrorDoc(itemResponse.getId(), itemResponse.getFailure().getCause(), session,
+                                         sessionOwner);
+                } else {
+                    result.addSavedDoc(itemResponse.getId(), itemResponse.getResponse().getResult(), session,
+                                       sessionOwner);
+                }
+            }
+            if (!bulkSessionsCount.containsKey(index)) {
+                this.refresh(index);
+            }
+            return result;
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RsRuntimeException(e);
         }
     }
 
+    /**
+     * Serialize value of given document field as it is into document source
+     * @param path dotted path of field (ie "feature.tags") following Java fields (named as their source counterparts)
+     */
+    private JsonElement toJsonField(Object doc, String path) {
+        Object value = doc;
+        java.lang.reflect.Type valueType = doc.getClass();
+        for (String name : path.split("\\.")) {
+            if (value == null) {
+                return JsonNull.INSTANCE;
+            }
+            Field field = ReflectionUtils.findField(value.getClass(), name);
+            if (field == null) {
+                throw new IllegalArgumentException(
+                        String.format("No field %s into %s", path, doc.getClass().getSimpleName()));
+            }
+            ReflectionUtils.makeAccessible(field);
+            value = ReflectionUtils.getField(field, value);
+            valueType = field.getGenericType();
+        }
+        if (value == null) {
+            return JsonNull.INSTANCE;
+        }
+        // Generic fields (ie feature of AbstractEntity) are serialized with their actual type
+        return gson.toJsonTree(value, (valueType instanceof Class) || (valueType instanceof ParameterizedType)
+                ? valueType : value.getClass());
+    }
+
     private void checkDocument(IIndexable doc) {
         if (Strings.isNullOrEmpty(doc.getDocId()) || Strings.isNullOrEmpty(doc.getType())) {
             throw new IllegalArgumentException("docId and type are mandatory on an IIndexable object");
@@ -865,8 +1594,11 @@ public class EsRepository implements IEsRepository {
                     }
                 }
             }
-            // To make just saved documents searchable, the associated index must be refreshed
-            this.refresh(index);
+            // To make just saved documents searchable, the associated index must be refreshed (except during a bulk
+            // indexing session, index is then refreshed once when closing it)
+            if (!bulkSessionsCount.containsKey(index)) {
+                this.refresh(index);
+            }
             return result;
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
@@ -874,37 +1606,105 @@ public class EsRepository implements IEsRepository {
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public <T extends IIndexable> void searchAll(SearchKey<T, T> searchKey, Consumer<T> action, ICriterion inCrit) {
         try {
-
-            SearchSourceBuilder builder = createSourceBuilder4Agg(addTypes(inCrit, searchKey.getSearchTypes()));
-            SearchRequest request = new SearchRequest(searchKey.getSearchIndex()).types(TYPE).source(builder);
-            ICriterion crit = inCrit == null ? ICriterion.all() : inCrit;
-            crit = addTypes(crit, searchKey.getSearchTypes());
-            builder.query(crit.accept(CRITERION_VISITOR)).size(DEFAULT_SCROLLING_HITS_SIZE);
-            request.source(builder);
-            request.scroll(TimeValue.timeValueMinutes(KEEP_ALIVE_SCROLLING_TIME_MN));
-            SearchResponse scrollResp = getSearchResponse(request);
-
-            // Scroll until no hits are returned
-            do {
-                for (final SearchHit hit : scrollResp.getHits().getHits()) {
-                    action.accept(gson.fromJson(hit.getSourceAsString(), (Class<T>) IIndexable.class));
-                }
-
-                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollResp.getScrollId());
-                scrollRequest.scroll(TimeValue.timeValueMinutes(KEEP_ALIVE_SCROLLING_TIME_MN));
-                scrollResp = client.scroll(scrollRequest, RequestOptions.DEFAULT);
-            } while (scrollResp.getHits().getHits().length != 0); // Zero hits mark the end of the scroll and the while
-            // loop.
+            scroll(createScrollRequest(searchKey, inCrit, DEFAULT_SCROLLING_HITS_SIZE), action);
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RsRuntimeException(e);
         }
     }
 
+    @Override
+    public <T extends IIndexable> void searchAll(SearchKey<T, T> searchKey, Consumer<T> action, ICriterion inCrit,
+            int sliceCount, int pageSize) {
+        // Nested sliced scroll (from a slice action) would wait for slices queued behind the running ones
+        if ((sliceCount < 2) || SCROLLING_SLICE.get()) {
+            try {
+                scroll(createScrollRequest(searchKey, inCrit, pageSize), action);
+                return;
+            } catch (IOException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new RsRuntimeException(e);
+            }
+        }
+        // Each slice is scrolled by its own thread, with the tenant of the calling one
+        String tenant = runtimeTenantResolver == null ? null : runtimeTenantResolver.getTenant();
+        List<Future<Void>> slicesTasks = new ArrayList<>(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            SearchRequest request = createScrollRequest(searchKey, inCrit, pageSize);
+            request.source().slice(new SliceBuilder(i, sliceCount));
+            slicesTasks.add(slicedScrollExecutor.submit(() -> {
+                if (tenant != null) {
+                    runtimeTenantResolver.forceTenant(tenant);
+                }
+                SCROLLING_SLICE.set(Boolean.TRUE);
+                try {
+                    scroll(request, action);
+                } finally {
+                    SCROLLING_SLICE.remove();
+                    if (tenant != null) {
+                        runtimeTenantResolver.clearTenant();
+                    }
+                }
+                return null;
+            }));
+        }
+        // Wait for all slices, first error is thrown after all tasks have ended
+        RsRuntimeException error = null;
+        for (Future<Void> task : slicesTasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                LOGGER.error(e.getCause().getMessage(), e.getCause());
+                if (error == null) {
+                    error = e.getCause() instanceof RsRuntimeException ? (RsRuntimeException) e.getCause()
+                            : new RsRuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                slicesTasks.forEach(t -> t.cancel(true));
+                throw new RsRuntimeException(e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Create scroll search request of given page size
+     */
+    private <T extends IIndexable> SearchRequest createScrollRequest(SearchKey<T, T> searchKey, ICriterion inCrit,
+            int pageSize) {
+        ICriterion crit = addTypes(inCrit, searchKey.getSearchTypes());
+        SearchSourceBuilder builder = createSourceBuilder4Agg(crit);
+        builder.query(crit.accept(CRITERION_VISITOR)).size(pageSize);
+        SearchRequest request = new SearchRequest(searchKey.getSearchIndex()).types(TYPE).source(builder);
+        request.scroll(TimeValue.timeValueMinutes(KEEP_ALIVE_SCROLLING_TIME_MN));
+        return request;
+    }
+
+    /**
+     * Execute given scroll request and call action on all hits until no more hits are returned
+     */
+    private <T extends IIndexable> void scroll(SearchRequest request, Consumer<T> action) throws IOException {
+        SearchResponse scrollResp = getSearchResponse(request);
+
+        // Scroll until no hits are returned
+        do {
+            for (final SearchHit hit : scrollResp.getHits().getHits()) {
+                action.accept(EsHelper.fromJson(gson, hit.getSourceRef(), IIndexable.class));
+            }
+
+            SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollResp.getScrollId());
+            scrollRequest.scroll(TimeValue.timeValueMinutes(KEEP_ALIVE_SCROLLING_TIME_MN));
+            scrollResp = client.scroll(scrollRequest, RequestOptions.DEFAULT);
+        } while (scrollResp.getHits().getHits().length != 0); // Zero hits mark the end of the scroll and the while
+        // loop.
+    }
+
     private SearchResponse getSearchResponse(SearchRequest request) throws IOException {
         try {
             return client.search(request, options);
@@ -917,6 +1717,61 @@ public class EsRepository implements IEsRepository {
         }
     }
 
+    /**
+     * Get (creating it if needed) joined searches cache. Cache has only one segment (concurrency level 1) : Guava
+     * splits maximum weight between segments and an entry heavier than its segment share would be evicted as soon as
+     * loaded.
+     */
+    private LoadingCache<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>> searchAllCache() {
+        LoadingCache<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>> cache = searchAllCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = searchAllCache;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder().concurrencyLevel(1)
+                            .expireAfterAccess(TARGET_FORWARDING_CACHE_MN, TimeUnit.MINUTES)
+                            .maximumWeight(searchAllCacheMaxWeightMb * 1024 * 1024)
+                            .weigher(EsRepository::weighSearchAllEntry).recordStats()
+                            .build(new CacheLoader<CacheKey, Tuple<SortedSet<Object>, Set<IFacet<?>>>>() {
+
+                                @Override
+                                public Tuple<SortedSet<Object>, Set<IFacet<?>>> load(CacheKey key) {
+                                    Tuple<SortedSet<Object>, Set<IFacet<?>>> result = searchJoined(key.getSearchKey(),
+                                            key.getCriterion(), key.getSourceAttribute(), key.getFacetsMap());
+                                    LOGGER.debug("Joined search of {} values loaded into cache", result.v1().size());
+                                    return result;
+                                }
+                            });
+                    searchAllCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Estimate size in bytes of a {@link EsRepository#searchAllCache} entry : joined values count times their mean
+     * size, facets being negligible
+     */
+    private static int weighSearchAllEntry(CacheKey key, Tuple<SortedSet<Object>, Set<IFacet<?>>> value) {
+        long weight = CACHED_VALUE_ESTIMATED_SIZE;
+        for (Object o : value.v1()) {
+            weight += (o instanceof String) ? CACHED_VALUE_ESTIMATED_SIZE + 2 * ((String) o).length()
+                    : CACHED_VALUE_ESTIMATED_SIZE;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public CacheStats getSearchAllCacheStats() {
+        return searchAllCache().stats();
+    }
+
+    @Override
+    public CacheStats getFacetPercentilesCacheStats() {
+        return facetPercentilesCache.stats();
+    }
+
     /**
      * Returns a tuple containing at the same time attribute values from search documents and facets
      * @param <R> Type of document to apply search
@@ -957,7 +1812,7 @@ public class EsRepository implements IEsRepository {
             SearchResponse response = client.search(request, options);
             SearchHits hits = response.getHits();
             for (SearchHit hit : hits) {
-                results.add(gson.fromJson(hit.getSourceAsString(), clazz));
+                results.add(EsHelper.fromJson(gson, hit.getSourceRef(), clazz));
             }
             return new PageImpl<>(results, pageRequest, response.getHits().getTotalHits());
         } catch (final JsonSyntaxException | IOException e) {
@@ -1083,7 +1938,6 @@ public class EsRepository implements IEsRepository {
      * Inner search on WGS84 method.
      * <b>NOTE : criterion already contains restricition on types !!</b>
      */
-    @SuppressWarnings("unchecked")
     private <T extends IIndexable> FacetPage<T> search0(SearchKey<T, T> searchKey, Pageable pageRequest,
             ICriterion criterion, Map<String, FacetType> facetsMap) {
         String index = searchKey.getSearchIndex();
@@ -1101,9 +1955,11 @@ public class EsRepository implements IEsRepository {
                 }
             }
             Object[] lastSearchAfterSortValues = null;
+            String searchContext = null;
             // If page starts over index 10 000, advance with searchAfter just before last request
             if (pageRequest.getOffset() >= MAX_RESULT_WINDOW) {
-                lastSearchAfterSortValues = advanceWithSearchAfter(criterion, searchKey, pageRequest, index, sort);
+                searchContext = SearchAfterCursor.context(gson, criterion, searchKey, sort);
+                lastSearchAfterSortValues = advanceWithSearchAfter(criterion, pageRequest, searchContext, index, sort);
             }
 
             final Object[] finalLastSearchAfterSortValues = lastSearchAfterSortValues;
@@ -1124,14 +1980,14 @@ public class EsRepository implements IEsRepository {
             };
 
             Tuple<SearchResponse, Set<IFacet<?>>> responseNFacets = searchWithFacets(searchKey, criterion, pageRequest,
-                                                                                     lastSearchAfterCustomizer, sort,
+                                                                                     lastSearchAfterCustomizer,
                                                                                      facetsMap);
             SearchResponse response = responseNFacets.v1();
             long start = System.currentTimeMillis();
             SearchHits hits = response.getHits();
             for (SearchHit hit : hits) {
                 try {
-                    results.add(gson.fromJson(hit.getSourceAsString(), (Class<T>) IIndexable.class));
+                    results.add(EsHelper.fromJson(gson, hit.getSourceRef(), IIndexable.class));
                 } catch (JsonParseException e) {
                     LOGGER.error("Unable to jsonify entity with id {}, source: \"{}\"", hit.getId(),
                                  hit.getSourceAsString());
@@ -1140,26 +1996,41 @@ public class EsRepository implements IEsRepository {
             }
             LOGGER.debug("After Elasticsearch request execution, gsonification : {} ms",
                          System.currentTimeMillis() - start);
-            return new FacetPage<>(results, responseNFacets.v2(), pageRequest, response.getHits().getTotalHits());
+            // If offset >= MAX_RESULT_WINDOW or page size = MAX_RESULT_WINDOW, this means a next page should exist
+            // (not necessarly) so a cursor is given to retrieve it with a single request
+            String nextCursor = null;
+            if (((pageRequest.getOffset() >= MAX_RESULT_WINDOW) || (pageRequest.getPageSize() == MAX_RESULT_WINDOW))
+                    && (hits.getHits().length != 0)) {
+                if (searchContext == null) {
+                    searchContext = SearchAfterCursor.context(gson, criterion, searchKey, sort);
+                }
+                Object[] sortValues = hits.getAt(hits.getHits().length - 1).getSortValues();
+                long nextOffset = pageRequest.getOffset() + pageRequest.getPageSize();
+                nextCursor = new SearchAfterCursor(nextOffset, searchContext, sortValues).encode(getCursorKey());
+                rememberSortValues(searchContext, nextOffset, sortValues);
+            }
+            return new FacetPage<>(results, responseNFacets.v2(), pageRequest, response.getHits().getTotalHits(),
+                    nextCursor);
         } catch (final JsonSyntaxException | IOException e) {
             throw new RsRuntimeException(e);
         }
     }
 
     private Tuple<SearchResponse, Set<IFacet<?>>> searchWithFacets(SearchKey<?, ?> searchKey, ICriterion criterion,
-            Pageable pageRequest, Consumer<SearchSourceBuilder> searchSourceBuilderCustomizer, Sort sort,
+            Pageable pageRequest, Consumer<SearchSourceBuilder> searchSourceBuilderCustomizer,
             Map<String, FacetType> facetsMap) throws IOException {
         String index = searchKey.getSearchIndex();
+        // Numeric and date facets need percentiles to create range aggregations
+        Map<String, Percentiles> percentilesMap = getFacetsPercentiles(searchKey, criterion, facetsMap);
+
         SearchRequest request = new SearchRequest(index).types(TYPE);
         SearchSourceBuilder builder = createSourceBuilder4Agg(criterion, (int) pageRequest.getOffset(),
                                                               pageRequest.getPageSize());
-
         if (searchSourceBuilderCustomizer != null) {
             searchSourceBuilderCustomizer.accept(builder);
         }
-
         // Managing aggregations if some facets are asked
-        boolean twoPassRequestNeeded = manageFirstPassRequestAggregations(facetsMap, builder);
+        manageRequestAggregations(facetsMap, builder, percentilesMap);
         request.source(builder);
         // Launch the request
         long start = System.currentTimeMillis();
@@ -1170,37 +2041,66 @@ public class EsRepository implements IEsRepository {
         start = System.currentTimeMillis();
         Set<IFacet<?>> facetResults = new HashSet<>();
         if (response.getHits().getTotalHits() != 0) {
-            // At least one numeric facet is present, we need to replace all numeric facets by associated range
-            // facets
-            if (twoPassRequestNeeded) {
-                // Rebuild request
-                request = new SearchRequest(index).types(TYPE);
-                builder = createSourceBuilder4Agg(criterion, (int) pageRequest.getOffset(), pageRequest.getPageSize());
-
-                if (searchSourceBuilderCustomizer != null) {
-                    searchSourceBuilderCustomizer.accept(builder);
-                }
-                Map<String, Aggregation> aggsMap = response.getAggregations().asMap();
-                manageSecondPassRequestAggregations(facetsMap, builder, aggsMap);
-                // Relaunch the request with replaced facets
-                request.source(builder);
-                LOGGER.trace("ElasticsearchRequest (2nd pass): {}", request.toString());
-                response = client.search(request, options);
-            }
-
-            // If offset >= MAX_RESULT_WINDOW or page size = MAX_RESULT_WINDOW, this means a next page should exist
-            // (not necessarly)
-            if ((pageRequest.getOffset() >= MAX_RESULT_WINDOW) || (pageRequest.getPageSize() == MAX_RESULT_WINDOW)) {
-                saveReminder(searchKey, pageRequest, criterion, sort, response);
-            }
-
             extractFacetsFromResponse(facetsMap, response, facetResults);
         }
-        LOGGER.debug("After Elasticsearch request execution, aggs and searchAfter management : {} ms",
+        LOGGER.debug("After Elasticsearch request execution, aggs management : {} ms",
                      System.currentTimeMillis() - start);
         return new Tuple<>(response, facetResults);
     }
 
+    /**
+     * Retrieve percentiles of all asked numeric and date facets, from cache or, for those not in cache, with an
+     * aggregations only request (no hits)
+     * @return percentiles by attribute name (empty if no numeric or date facet is asked)
+     */
+    private Map<String, Percentiles> getFacetsPercentiles(SearchKey<?, ?> searchKey, ICriterion criterion,
+            Map<String, FacetType> facetsMap) throws IOException {
+        Map<String, Percentiles> percentilesMap = new HashMap<>();
+        if (facetsMap == null) {
+            return percentilesMap;
+        }
+        String criterionJson = null;
+        Map<String, FacetType> toComputeFacetsMap = new HashMap<>();
+        for (Map.Entry<String, FacetType> entry : facetsMap.entrySet()) {
+            FacetType facetType = entry.getValue();
+            if ((facetType == FacetType.NUMERIC) || (facetType == FacetType.DATE)) {
+                if (criterionJson == null) {
+                    criterionJson = gson.toJson(criterion);
+                }
+                Percentiles percentiles = facetPercentilesCache
+                        .getIfPresent(new PercentilesCacheKey(searchKey, criterionJson, entry.getKey()));
+                if (percentiles != null) {
+                    percentilesMap.put(entry.getKey(), percentiles);
+                } else {
+                    toComputeFacetsMap.put(entry.getKey(), facetType);
+                }
+            }
+        }
+        if (!toComputeFacetsMap.isEmpty()) {
+            SearchSourceBuilder builder = createSourceBuilder4Agg(criterion);
+            for (Map.Entry<String, FacetType> entry : toComputeFacetsMap.entrySet()) {
+                // Percentiles aggregation retrieves values corresponding to 10%, 20 %, ..., 90 % of the values
+                builder.aggregation(entry.getValue().accept(aggBuilderFacetTypeVisitor, entry.getKey()));
+            }
+            SearchRequest request = new SearchRequest(searchKey.getSearchIndex()).types(TYPE).source(builder);
+            LOGGER.trace("ElasticsearchRequest (facets percentiles): {}", request.toString());
+            SearchResponse response = getSearchResponse(request);
+            Map<String, Aggregation> aggsMap = response.getAggregations().asMap();
+            for (Map.Entry<String, FacetType> entry : toComputeFacetsMap.entrySet()) {
+                String attName = entry.getValue() == FacetType.NUMERIC ? entry.getKey() + NUMERIC_FACET_SUFFIX
+                        : entry.getKey() + DATE_FACET_SUFFIX;
+                Percentiles percentiles = (Percentiles) aggsMap.get(attName);
+                percentilesMap.put(entry.getKey(), percentiles);
+                // No document, no percentile values : nothing is put into cache so they are computed again next time
+                if (response.getHits().getTotalHits() != 0) {
+                    facetPercentilesCache.put(new PercentilesCacheKey(searchKey, criterionJson, entry.getKey()),
+                                              percentiles);
+                }
+            }
+        }
+        return percentilesMap;
+    }
+
     /**
      * extract facets according to response and facetsMap and put them into facetResults
      */
@@ -1218,121 +2118,99 @@ public class EsRepository implements IEsRepository {
         }
     }
 
-    private void saveReminder(SearchKey<?, ?> searchKey, Pageable pageRequest, ICriterion crit, Sort sort,
-            SearchResponse response) {
-        if (response.getHits().getHits().length != 0) {
-            // Store last sort value in order to use searchAfter next time
-            Object[] sortValues = response.getHits().getAt(response.getHits().getHits().length - 1).getSortValues();
-            OffsetDateTime expirationDate = OffsetDateTime.now().plus(KEEP_ALIVE_SCROLLING_TIME_MN, ChronoUnit.MINUTES);
-            // Create a AbstractReminder and save it into ES for next page
-            SearchAfterReminder reminder = new SearchAfterReminder(crit, searchKey, sort, pageRequest.next());
-            reminder.setExpirationDate(expirationDate);
-            reminder.setSearchAfterSortValues(sortValues);
-
-            save(REMINDER_IDX, reminder);
-            // Create a task to be executed after KEEP_ALIVE_SCROLLING_TIME_MN that delete all reminders whom
-            // expiration date has been reached
-            // No need to add reminder type criterion because reminder type is useless since ES6
-            reminderCleanExecutor
-                    .schedule(() -> deleteByQuery(REMINDER_IDX, ICriterion.le("expirationDate", OffsetDateTime.now())),
-                              KEEP_ALIVE_SCROLLING_TIME_MN, TimeUnit.MINUTES);
-        }
-    }
-
     /**
+     * Retrieve sort values of the document preceding asked page, using given cursor if it is valid, sort values kept
+     * into cache for this offset otherwise or, at last, advancing with search after requests (only asking for sort
+     * values) from the closest lower offset kept into cache (or from start).
      * <b>NOTE: critBuilder already contains restriction on types</b>
      */
-    private <T extends IIndexable> Object[] advanceWithSearchAfter(ICriterion crit, SearchKey<T, T> searchKey,
-            Pageable pageRequest, String index, Sort sort) {
-        try {
-            Object[] sortValues = null;
-            int searchPageNumber = 0;
-            Pageable searchReminderPageRequest;
-            if (indexExists(REMINDER_IDX)) {
-                // First check existence of AbstractReminder for exact given pageRequest from ES
-                SearchAfterReminder reminder = new SearchAfterReminder(crit, searchKey, sort, pageRequest);
-                reminder = get(REMINDER_IDX, reminder);
-                if (reminder != null) {
-                    LOGGER.debug("Found search after for offset {}", pageRequest.getOffset());
-                    return reminder.getSearchAfterSortValues();
-                }
-                // Then check if a closer one exists (advance is done by MAX_RESULT_WINDOW steps so we must take this
-                // into account)
-                searchPageNumber = (int) ((pageRequest.getOffset() - (pageRequest.getOffset() % MAX_RESULT_WINDOW))
-                        / MAX_RESULT_WINDOW);
-                while (searchPageNumber > 0) {
-                    searchReminderPageRequest = PageRequest.of(searchPageNumber, MAX_RESULT_WINDOW);
-                    reminder = new SearchAfterReminder(crit, searchKey, sort, searchReminderPageRequest);
-                    reminder = get(REMINDER_IDX, reminder);
-                    // A reminder has been found ! Let's start from it
-                    if (reminder != null) {
-                        LOGGER.debug("Found search after for offset {}", searchReminderPageRequest.getOffset());
-                        sortValues = reminder.getSearchAfterSortValues();
-                        break;
-                    }
-                    searchPageNumber--;
-                }
+    private Object[] advanceWithSearchAfter(ICriterion crit, Pageable pageRequest, String searchContext, String index,
+            Sort sort) {
+        long pageOffset = pageRequest.getOffset();
+        if (pageRequest instanceof CursorPageRequest) {
+            String token = ((CursorPageRequest) pageRequest).getCursor();
+            SearchAfterCursor cursor = token == null ? null : SearchAfterCursor.decode(token, getCursorKey());
+            if ((cursor != null) && (cursor.getOffset() == pageOffset) && cursor.getContext().equals(searchContext)) {
+                LOGGER.debug("Using search after cursor for offset {}", pageOffset);
+                return cursor.getSortValues();
             }
-
-            // No reminder found (first request or last one is too old) => advance to next to last page
+            LOGGER.debug("Invalid or outdated search after cursor for offset {}", pageOffset);
+        }
+        ConcurrentNavigableMap<Long, Object[]> knownSortValues = searchAfterSortValuesCache
+                .getIfPresent(searchContext);
+        Map.Entry<Long, Object[]> closest = knownSortValues == null ? null : knownSortValues.floorEntry(pageOffset);
+        if ((closest != null) && (closest.getKey() == pageOffset)) {
+            LOGGER.debug("Using cached search after sort values for offset {}", pageOffset);
+            return closest.getValue();
+        }
+        try {
+            // Advance to asked offset launching requests of at most MAX_RESULT_WINDOW documents (without
+            // aggregations and only retrieving sort values)...
             SearchRequest request = new SearchRequest(index).types(TYPE);
-            // By default, launch request from 0 to 10_000 (without aggregations)...
-            int offset = 0;
-            int pageSize = MAX_RESULT_WINDOW;
-            SearchSourceBuilder builder = createSourceBuilder4Agg(crit, offset, pageSize);
+            SearchSourceBuilder builder = createSourceBuilder4Agg(crit, 0, MAX_RESULT_WINDOW).fetchSource(false);
             manageSortRequest(index, builder, sort);
             request.source(builder);
-            // ...Except if a closer reminder has already been found
-            if (sortValues != null) {
-                offset = searchPageNumber * MAX_RESULT_WINDOW;
-            } else {
-                LOGGER.debug("Search (after) : offset {}", offset);
-                SearchResponse response = getSearchResponse(request);
-                sortValues = response.getHits().getAt(response.getHits().getHits().length - 1).getSortValues();
-                offset += MAX_RESULT_WINDOW;
-            }
-            OffsetDateTime expirationDate = OffsetDateTime.now().plus(KEEP_ALIVE_SCROLLING_TIME_MN, ChronoUnit.MINUTES);
-
-            int nextToLastOffset = (int) (pageRequest.getOffset() - (pageRequest.getOffset() % MAX_RESULT_WINDOW));
-            // Execute as many request with search after as necessary to advance to next to last page of
-            // MAX_RESULT_WINDOW size until offset
-            while (offset < nextToLastOffset) {
-                // Change offset
-                LOGGER.debug("Search after : offset {}", offset);
-                builder.from(0).searchAfter(sortValues);
-                SearchResponse response = getSearchResponse(request);
-                sortValues = response.getHits().getAt(response.getHits().getHits().length - 1).getSortValues();
-                // Create a AbstractReminder and save it into ES for next page
-                SearchAfterReminder reminder = new SearchAfterReminder(crit, searchKey, sort,
-                        PageRequest.of(offset / MAX_RESULT_WINDOW, MAX_RESULT_WINDOW).next());
-                reminder.setExpirationDate(expirationDate);
-                reminder.setSearchAfterSortValues(response.getHits().getAt(response.getHits().getHits().length - 1)
-                        .getSortValues());
-
-                save(REMINDER_IDX, reminder);
-                offset += MAX_RESULT_WINDOW;
-            }
-            // Beware of offset that is a multiple of MAX_RESULT_WINDOW
-            if (pageRequest.getOffset() != offset) {
-                int size = (int) (pageRequest.getOffset() - offset);
+            long offset = 0;
+            Object[] sortValues = null;
+            // ...from the closest known lower offset if any
+            if (closest != null) {
+                offset = closest.getKey();
+                sortValues = closest.getValue();
+            }
+            while (offset < pageOffset) {
+                int size = (int) Math.min(MAX_RESULT_WINDOW, pageOffset - offset);
                 LOGGER.debug("Search after : offset {}, size {}", offset, size);
-                builder.size(size).searchAfter(sortValues).from(0); // needed by searchAfter
+                builder.size(size).from(0); // needed by searchAfter
+                if (sortValues != null) {
+                    builder.searchAfter(sortValues);
+                }
                 SearchResponse response = getSearchResponse(request);
-                sortValues = response.getHits().getAt(response.getHits().getHits().length - 1).getSortValues();
+                SearchHit[] hits = response.getHits().getHits();
+                // No more documents, asked page is empty
+                if (hits.length == 0) {
+                    break;
+                }
+                sortValues = hits[hits.length - 1].getSortValues();
+                offset += hits.length;
+                rememberSortValues(searchContext, offset, sortValues);
             }
-
-            // Create a task to be executed after KEEP_ALIVE_SCROLLING_TIME_MN that delete all reminders whom
-            // expiration date has been reached
-            // No need to add type restriction, reminder is useless since ES6
-            reminderCleanExecutor
-                    .schedule(() -> deleteByQuery(REMINDER_IDX, ICriterion.le("expirationDate", OffsetDateTime.now())),
-                              KEEP_ALIVE_SCROLLING_TIME_MN, TimeUnit.MINUTES);
             return sortValues;
         } catch (IOException e) {
             throw new RsRuntimeException(e);
         }
     }
 
+    /**
+     * Keep into cache sort values of the document preceding given offset for given search context
+     */
+    private void rememberSortValues(String searchContext, long offset, Object[] sortValues) {
+        ConcurrentNavigableMap<Long, Object[]> knownSortValues = searchAfterSortValuesCache.asMap()
+                .computeIfAbsent(searchContext, k -> new ConcurrentSkipListMap<>());
+        knownSortValues.put(offset, sortValues);
+        if (knownSortValues.size() > SEARCH_AFTER_CACHE_MAX_OFFSETS) {
+            knownSortValues.pollFirstEntry();
+        }
+    }
+
+    private SecretKeySpec getCursorKey() {
+        if (cursorKey == null) {
+            synchronized (this) {
+                if (cursorKey == null) {
+                    byte[] secret;
+                    if (Strings.isEmpty(cursorSecret)) {
+                        LOGGER.warn("No search cursor secret set, cursors are only valid on this instance");
+                        secret = new byte[32];
+                        new SecureRandom().nextBytes(secret);
+                    } else {
+                        secret = cursorSecret.getBytes(StandardCharsets.UTF_8);
+                    }
+                    cursorKey = SearchAfterCursor.createKey(secret);
+                }
+            }
+        }
+        return cursorKey;
+    }
+
     private SearchSourceBuilder createSourceBuilder4Agg(ICriterion criterion) {
         return createSourceBuilder4Agg(criterion, 0, 0);
     }
@@ -1450,6 +2328,49 @@ public class EsRepository implements IEsRepository {
         }
     }
 
+    @Override
+    public <T extends IIndexable> Aggregations aggregate(SearchKey<?, T> searchKey, ICriterion criterion,
+            Collection<AttributeAggregation> aggregations) {
+        try {
+            SearchSourceBuilder builder = createSourceBuilder4Agg(addTypes(criterion, searchKey.getSearchTypes()));
+            // Same aggregation asked several times is only computed once (AttributeAggregation equality)
+            for (AttributeAggregation aggregation : new HashSet<>(aggregations)) {
+                builder.aggregation(toAggregationBuilder(aggregation));
+            }
+            SearchRequest request = new SearchRequest(searchKey.getSearchIndex()).types(TYPE).source(builder);
+            // Launch the request
+            SearchResponse response = getSearchResponse(request);
+            return response.getAggregations() != null ? response.getAggregations()
+                    : new Aggregations(Lists.newArrayList());
+        } catch (IOException e) {
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    /**
+     * Create Elasticsearch aggregation builder associated to given attribute aggregation
+     */
+    private static AggregationBuilder toAggregationBuilder(AttributeAggregation aggregation) {
+        String name = aggregation.getName();
+        String attName = aggregation.getAttributePath();
+        switch (aggregation.getType()) {
+            case SUM:
+                return AggregationBuilders.sum(name).field(attName);
+            case MIN:
+                return AggregationBuilders.min(name).field(attName);
+            case MAX:
+                return AggregationBuilders.max(name).field(attName);
+            case AVG:
+                return AggregationBuilders.avg(name).field(attName);
+            case CARDINALITY:
+                return AggregationBuilders.cardinality(name).field(attName);
+            case STATS:
+                return AggregationBuilders.stats(name).field(attName);
+            default:
+                throw new IllegalArgumentException("Unmanaged aggregation type " + aggregation.getType());
+        }
+    }
+
     /**
      * Retrieve sorted set of given attribute unique string values following request
      * @param searchKey search key
@@ -1483,7 +2404,9 @@ public class EsRepository implements IEsRepository {
     }
 
     /**
-     * Retrieve set of given attribute unique typed values following request
+     * Retrieve set of given attribute unique typed values following request.
+     * When more than {@link #UNIQUE_COMPOSITE_PAGE_SIZE} values are wanted, they are retrieved page by page with a
+     * composite aggregation (sorted by value) instead of one huge terms aggregation (sorted by doc count)
      * @param searchKey search key
      * @param crit criterion
      * @param inAttName attribute name (full path)
@@ -1501,12 +2424,15 @@ public class EsRepository implements IEsRepository {
 
             String attName = isTextMapping(searchKey.getSearchIndex(), inAttName) ? inAttName + KEYWORD_SUFFIX
                     : inAttName;
+            if (maxCount > UNIQUE_COMPOSITE_PAGE_SIZE) {
+                return uniqueByPages(searchKey, crit, attName, maxCount, set, facetsMap);
+            }
             Consumer<SearchSourceBuilder> addUniqueTermAgg = (builder) -> builder
                     .aggregation(AggregationBuilders.terms(attName).field(attName).size(maxCount));
 
             Tuple<SearchResponse, Set<IFacet<?>>> responseNFacets = searchWithFacets(searchKey, crit,
                                                                                      PageRequest.of(0, 1),
-                                                                                     addUniqueTermAgg, null, facetsMap);
+                                                                                     addUniqueTermAgg, facetsMap);
             Terms terms = responseNFacets.v1().getAggregations().get(attName);
             for (Terms.Bucket bucket : terms.getBuckets()) {
                 set.add((R) bucket.getKey());
@@ -1517,11 +2443,48 @@ public class EsRepository implements IEsRepository {
         }
     }
 
+    /**
+     * Retrieve set of given attribute unique typed values following request, {@link #UNIQUE_COMPOSITE_PAGE_SIZE} by
+     * {@link #UNIQUE_COMPOSITE_PAGE_SIZE} using a composite aggregation (facets are computed with first page)
+     * @param attName attribute name (full path, with ".keyword" suffix if needed)
+     * @see #unique(SearchKey, ICriterion, String, int, Set, Map)
+     */
+    @SuppressWarnings("unchecked")
+    private <T, R, S extends Set<R>> Set<IFacet<?>> uniqueByPages(SearchKey<?, T> searchKey, ICriterion crit,
+            String attName, int maxCount, S set, Map<String, FacetType> facetsMap) throws IOException {
+        CompositeAggregationBuilder compositeAgg = AggregationBuilders
+                .composite(attName, Collections.singletonList(new TermsValuesSourceBuilder(attName).field(attName)))
+                .size(UNIQUE_COMPOSITE_PAGE_SIZE);
+        Tuple<SearchResponse, Set<IFacet<?>>> responseNFacets = searchWithFacets(searchKey, crit,
+                                                                                 PageRequest.of(0, 1),
+                                                                                 builder -> builder
+                                                                                         .aggregation(compositeAgg),
+                                                                                 facetsMap);
+        CompositeAggregation composite = responseNFacets.v1().getAggregations().get(attName);
+        while (true) {
+            for (CompositeAggregation.Bucket bucket : composite.getBuckets()) {
+                set.add((R) bucket.getKey().get(attName));
+                if (set.size() >= maxCount) {
+                    return responseNFacets.v2();
+                }
+            }
+            // Last page reached
+            if ((composite.getBuckets().size() < UNIQUE_COMPOSITE_PAGE_SIZE) || (composite.afterKey() == null)) {
+                return responseNFacets.v2();
+            }
+            // Facets already computed, only next composite page is asked
+            SearchSourceBuilder builder = createSourceBuilder4Agg(crit)
+                    .aggregation(compositeAgg.aggregateAfter(composite.afterKey()));
+            SearchRequest request = new SearchRequest(searchKey.getSearchIndex()).types(TYPE).source(builder);
+            composite = getSearchResponse(request).getAggregations().get(attName);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <R> List<R> search(SearchKey<?, R> searchKey, ICriterion criterion, String sourceAttribute) {
         try {
-            SortedSet<Object> objects = searchAllCache.getUnchecked(new CacheKey(searchKey,
+            SortedSet<Object> objects = searchAllCache().getUnchecked(new CacheKey(searchKey,
                     addTypes(criterion, searchKey.getSearchTypes()), sourceAttribute)).v1();
             return objects.stream().map(o -> (R) o).collect(Collectors.toList());
         } catch (final JsonSyntaxException e) {
@@ -1534,7 +2497,7 @@ public class EsRepository implements IEsRepository {
     public <R, U> List<U> search(SearchKey<?, R> searchKey, ICriterion criterion, String sourceAttribute,
             Function<R, U> transformFct) {
         try {
-            SortedSet<Object> objects = searchAllCache.getUnchecked(new CacheKey(searchKey,
+            SortedSet<Object> objects = searchAllCache().getUnchecked(new CacheKey(searchKey,
                     addTypes(criterion, searchKey.getSearchTypes()), sourceAttribute)).v1();
             return objects.stream().map(o -> (R) o).map(transformFct).collect(Collectors.toList());
         } catch (final JsonSyntaxException e) {
@@ -1548,7 +2511,7 @@ public class EsRepository implements IEsRepository {
             String sourceAttribute, Predicate<R> filterPredicate, Function<R, U> transformFct,
             Map<String, FacetType> facetsMap) {
         try {
-            Tuple<SortedSet<Object>, Set<IFacet<?>>> objects = searchAllCache.getUnchecked(new CacheKey(searchKey,
+            Tuple<SortedSet<Object>, Set<IFacet<?>>> objects = searchAllCache().getUnchecked(new CacheKey(searchKey,
                     addTypes(criterion, searchKey.getSearchTypes()), sourceAttribute, facetsMap));
             return new Tuple<>(objects.v1().stream().map(o -> (R) o).distinct().filter(filterPredicate)
                     .map(transformFct).collect(Collectors.toList()), objects.v2());
@@ -1565,134 +2528,118 @@ public class EsRepository implements IEsRepository {
      * @return true or false
      */
     private boolean isTextMapping(String inIndex, String attribute) throws IOException {
-        String index = inIndex.toLowerCase();
         try {
-            Response response = client.getLowLevelClient()
-                    .performRequest(new Request("GET", index + "/_mapping/" + TYPE + "/field/" + attribute));
-            try (InputStream is = response.getEntity().getContent()) {
-                Map<String, Object> map = XContentHelper.convertToMap(XContentType.JSON.xContent(), is, true);
-                // If attribute exists, response should contain this chain of several maps :
-                // <index>."mappings".<type>.<attribute>."mapping".<attribute_last_path>."type"
-                if ((map != null) && !map.isEmpty()) {
-                    // In case attribute is toto.titi.tutu, we will need "tutu" further
-                    String lastPathAtt = attribute.contains(".") ? attribute.substring(attribute.lastIndexOf('.') + 1)
-                            : attribute;
-                    // BEWARE : instead of map.get(index) on the innermost map value retrieval, we use directly
-                    // map.values().iterator().next() to get value associated to singleton element whatever the key is
-                    // Indeed, because of Elasticsearch version 6 single type update, some indices are retrieved through
-                    // an alias. Asking an alias mapping returned a block with index name, not alias name
-                    return toMap(toMap(toMap(toMap(toMap(toMap(map.values().iterator().next()).get("mappings"))
-                            .get(TYPE)).get(attribute)).get("mapping")).get(lastPathAtt)).get("type").equals("text");
-
-                }
-            }
-        } catch (ResponseException e) {
-            // In case index does not exist and/or mapping not available
-            if (e.getResponse().getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                return false;
-            }
-            throw e;
+            return "text".equals(getMappingType(inIndex, attribute));
+        } catch (IndexNotFoundException e) {
+            return false;
         }
-        return false;
     }
 
     /**
-     * Add sort to the request
-     * @param builder search request
-     * @param sort map(attribute name, true if ascending)
+     * Retrieve mapping type of given attribute from mapping cache (loading index mapping if needed)
+     * @param inIndex concerned index
+     * @param attribute attribute full path (can be a composite attribute like toto.titi)
+     * @return mapping type or null if attribute isn't mapped
+     * @throws IndexNotFoundException if index doesn't exist
      */
-    private void manageSortRequest(String index, SearchSourceBuilder builder, Sort sort) throws IOException {
-        // Convert Sort into linked hash map
-        LinkedHashMap<String, Boolean> ascSortMap = new SortToLinkedHashMap().convert(sort);
+    private String getMappingType(String inIndex, String attribute) throws IOException {
+        String index = inIndex.toLowerCase();
+        IndexMapping mapping = mappingCache.get(index);
+        if ((mapping == null) || mapping.isReloadable(attribute)) {
+            mapping = loadIndexMapping(index);
+            mappingCache.put(index, mapping);
+        }
+        return mapping.getType(attribute);
+    }
 
-        // Because string attributes are not indexed with Elasticsearch, it is necessary to add ".keyword" at
-        // end of attribute name into sort request. So we need to know string attributes
+    /**
+     * Retrieve whole mapping of given index from Elasticsearch
+     * @param index concerned index (or alias)
+     * @throws IndexNotFoundException if index doesn't exist
+     */
+    private IndexMapping loadIndexMapping(String index) throws IOException {
         Response response;
         try {
-            response = client.getLowLevelClient().performRequest(new Request("GET",
-                    index + "/_mapping/field/" + Joiner.on(",").join(ascSortMap.keySet())));
+            response = client.getLowLevelClient().performRequest(new Request("GET", index + "/_mapping/" + TYPE));
         } catch (ResponseException e) {
-            LOGGER.error(e.getMessage(), e);
-            if (e.getMessage().contains(INDEX_NOT_FOUND_EXCEPTION)) {
-                throw new RsRuntimeException(INDEX_NOT_FOUND_ERROR_MESSAGE);
+            if (e.getResponse().getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                throw new IndexNotFoundException(index);
             }
             throw e;
         }
+        Map<String, String> fieldTypes = new HashMap<>();
         try (InputStream is = response.getEntity().getContent()) {
             Map<String, Object> map = XContentHelper.convertToMap(XContentType.JSON.xContent(), is, true);
-            if ((map != null) && !map.isEmpty()) {
-                // NOTE: in our context, attributes have same metada for all types so once we found one, we stop.
-                // To do that, we create a new LinkedHashMap to KEEPS keys order !!! (crucial)
-                LinkedHashMap<String, Boolean> updatedAscSortMap = new LinkedHashMap<>(ascSortMap.size());
-                for (Map.Entry<String, Boolean> sortEntry : ascSortMap.entrySet()) {
-                    String attribute = sortEntry.getKey();
-                    if (isTextMapping(map, attribute)) {
-                        updatedAscSortMap.put(attribute + KEYWORD_SUFFIX, sortEntry.getValue());
-                    } else {
-                        updatedAscSortMap.put(attribute, sortEntry.getValue());
+            // BEWARE : in case index is an alias, map key is true index name, not alias one so all values are taken
+            // into account whatever the key is
+            if (map != null) {
+                for (Object indexMapping : map.values()) {
+                    Map<String, Object> allTypesMapping = toMap(toMap(indexMapping).get("mappings"));
+                    if ((allTypesMapping != null) && (allTypesMapping.get(TYPE) != null)) {
+                        collectFieldTypes("", toMap(toMap(allTypesMapping.get(TYPE)).get("properties")),
+                                          fieldTypes);
                     }
                 }
-
-                // Add sort to request
-                updatedAscSortMap.forEach((key, value) -> builder.sort(SortBuilders.fieldSort(key)
-                        .order(value ? SortOrder.ASC : SortOrder.DESC).unmappedType("double")));
-                // "double" because a type is necessary. This has only an impact when seaching on several indices if
-                // property is mapped on one and no on the other(s). Will see this when it happens (if it happens a day)
-                // entry -> builder.sort(entry.getKey(), entry.getValue() ? SortOrder.ASC : SortOrder.DESC));
             }
         }
+        return new IndexMapping(fieldTypes);
     }
 
     /**
-     * Add aggregations to the search request.
-     * @param facetsMap asked facets
+     * Add sort to the request
      * @param builder search request
-     * @return true if a second pass is needed (managing range facets)
-     */
-    private boolean manageFirstPassRequestAggregations(Map<String, FacetType> facetsMap, SearchSourceBuilder builder) {
-        boolean twoPassRequestNeeded = false;
-        if (facetsMap != null) {
-            // Numeric/date facets needs :
-            // First to add a percentiles aggregation to retrieved 9 values corresponding to
-            // 10%, 20 %, ..., 90 % of the values
-            // Secondly to add a range aggregation with these 9 values in order to retrieve 10 buckets of equal
-            // size of values
-            for (Map.Entry<String, FacetType> entry : facetsMap.entrySet()) {
-                FacetType facetType = entry.getValue();
-                if ((facetType == FacetType.NUMERIC) || (facetType == FacetType.DATE)) {
-                    // Add min aggregation and max aggregagtion when a range aggregagtion is asked for (NUMERIC and DATE
-                    // facets leed to range aggregagtion at second pass) to avoid ranges with Infinties values
-                    builder.aggregation(FacetType.MIN.accept(aggBuilderFacetTypeVisitor, entry.getKey()));
-                    builder.aggregation(FacetType.MAX.accept(aggBuilderFacetTypeVisitor, entry.getKey()));
+     * @param sort map(attribute name, true if ascending)
+     */
+    private void manageSortRequest(String index, SearchSourceBuilder builder, Sort sort) throws IOException {
+        // Convert Sort into linked hash map
+        LinkedHashMap<String, Boolean> ascSortMap = new SortToLinkedHashMap().convert(sort);
 
-                    twoPassRequestNeeded = true;
+        // Because string attributes are not indexed with Elasticsearch, it is necessary to add ".keyword" at
+        // end of attribute name into sort request. So we need to know string attributes
+        // NOTE: To do that, we create a new LinkedHashMap to KEEPS keys order !!! (crucial)
+        LinkedHashMap<String, Boolean> updatedAscSortMap = new LinkedHashMap<>(ascSortMap.size());
+        try {
+            for (Map.Entry<String, Boolean> sortEntry : ascSortMap.entrySet()) {
+                String attribute = sortEntry.getKey();
+                if ("text".equals(getMappingType(index, attribute))) {
+                    updatedAscSortMap.put(attribute + KEYWORD_SUFFIX, sortEntry.getValue());
+                } else {
+                    updatedAscSortMap.put(attribute, sortEntry.getValue());
                 }
-                builder.aggregation(facetType.accept(aggBuilderFacetTypeVisitor, entry.getKey()));
             }
+        } catch (IndexNotFoundException e) {
+            LOGGER.error(e.getMessage(), e);
+            throw new RsRuntimeException(INDEX_NOT_FOUND_ERROR_MESSAGE);
         }
-        return twoPassRequestNeeded;
+
+        // Add sort to request
+        updatedAscSortMap.forEach((key, value) -> builder.sort(SortBuilders.fieldSort(key)
+                .order(value ? SortOrder.ASC : SortOrder.DESC).unmappedType("double")));
+        // "double" because a type is necessary. This has only an impact when seaching on several indices if
+        // property is mapped on one and no on the other(s). Will see this when it happens (if it happens a day)
     }
 
     /**
-     * Add aggregations to the search request (second pass). For range aggregations, use percentiles results (from first
-     * pass request results) to create range aggregagtions.
+     * Add aggregations to the search request. Numeric and date facets lead to range aggregations created from their
+     * percentiles values (in order to retrieve 10 buckets of equal size of values) added with min and max
+     * aggregations (to avoid ranges with infinite values).
      * @param facetsMap asked facets
      * @param builder search request
-     * @param aggsMap first pass aggregagtions results
+     * @param percentilesMap numeric and date facets percentiles by attribute name
      */
-    private void manageSecondPassRequestAggregations(Map<String, FacetType> facetsMap, SearchSourceBuilder builder,
-            Map<String, Aggregation> aggsMap) {
+    private void manageRequestAggregations(Map<String, FacetType> facetsMap, SearchSourceBuilder builder,
+            Map<String, Percentiles> percentilesMap) {
+        if (facetsMap == null) {
+            return;
+        }
         for (Map.Entry<String, FacetType> entry : facetsMap.entrySet()) {
             FacetType facetType = entry.getValue();
             String attributeName = entry.getKey();
-            String attName;
             // Replace percentiles aggregations by range aggregations
             if ((facetType == FacetType.NUMERIC) || (facetType == FacetType.DATE)) {
-                attName = facetType == FacetType.NUMERIC ? attributeName + NUMERIC_FACET_SUFFIX
-                        : attributeName + DATE_FACET_SUFFIX;
-                Percentiles percentiles = (Percentiles) aggsMap.get(attName);
+                Percentiles percentiles = percentilesMap.get(attributeName);
                 // No percentile values for this property => skip aggregation
-                if (Iterables.all(percentiles, p -> Double.isNaN(p.getValue()))) {
+                if ((percentiles == null) || Iterables.all(percentiles, p -> Double.isNaN(p.getValue()))) {
                     continue;
                 }
                 AggregationBuilder aggBuilder = facetType == FacetType.NUMERIC
@@ -1700,7 +2647,6 @@ public class EsRepository implements IEsRepository {
                         : FacetType.RANGE_DATE.accept(aggBuilderFacetTypeVisitor, attributeName, percentiles);
                 // In case range contains only one value, better remove facet
                 if (aggBuilder != null) {
-                    // And add max and min aggregations
                     builder.aggregation(aggBuilder);
                     // And add max and min aggregations
                     builder.aggregation(FacetType.MIN.accept(aggBuilderFacetTypeVisitor, attributeName));
@@ -1872,7 +2818,7 @@ public class EsRepository implements IEsRepository {
             SearchResponse response = getSearchResponse(request);
             SearchHits hits = response.getHits();
             for (SearchHit hit : hits) {
-                results.add(gson.fromJson(hit.getSourceAsString(), searchKey.fromType(hit.getType())));
+                results.add(EsHelper.fromJson(gson, hit.getSourceRef(), searchKey.fromType(hit.getType())));
             }
             return new PageImpl<>(results, pageRequest, response.getHits().getTotalHits());
         } catch (final JsonSyntaxException | IOException e) {
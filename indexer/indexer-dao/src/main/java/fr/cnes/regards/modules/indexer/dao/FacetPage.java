@@ -39,17 +39,29 @@ public class FacetPage<T> extends PageImpl<T> {
 
     private final Pageable pageable;
 
+    /**
+     * Search after cursor token to retrieve next page (only set when paginating beyond or up to
+     * {@link IEsRepository#MAX_RESULT_WINDOW}).<br/>
+     * It is only available to Java callers (through {@link #nextPageable()}), it is not part of any REST response.
+     */
+    private final String nextCursor;
+
     public FacetPage(List<T> content, Set<IFacet<?>> facets, Pageable pageable, long total) {
+        this(content, facets, pageable, total, null);
+    }
+
+    public FacetPage(List<T> content, Set<IFacet<?>> facets, Pageable pageable, long total, String nextCursor) {
         super(content, pageable, total);
         this.pageable = pageable;
         this.facets = facets;
-
+        this.nextCursor = nextCursor;
     }
 
     public FacetPage(List<T> content, Set<IFacet<?>> facets) {
         super(content);
         this.pageable = null;
         this.facets = facets;
+        this.nextCursor = null;
     }
 
     public Set<IFacet<?>> getFacets() {
@@ -60,6 +72,22 @@ public class FacetPage<T> extends PageImpl<T> {
         return pageable;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Next page request carries next cursor if any
+     */
+    @Override
+    public Pageable nextPageable() {
+        Pageable next = super.nextPageable();
+        if ((nextCursor == null) || next.isUnpaged()) {
+            return next;
+        }
+        return CursorPageRequest.of(next.getPageNumber(), next.getPageSize(), next.getSort(), nextCursor);
+    }
+
     @Override
     public int hashCode() {
         return super.hashCode();
@@ -37,10 +37,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import com.google.common.cache.CacheStats;
+
 import fr.cnes.regards.modules.indexer.dao.converter.LinkedHashMapToSort;
 import fr.cnes.regards.modules.indexer.domain.IDocFiles;
 import fr.cnes.regards.modules.indexer.domain.IIndexable;
 import fr.cnes.regards.modules.indexer.domain.SearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.indexer.domain.aggregation.QueryableAttribute;
 import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
 import fr.cnes.regards.modules.indexer.domain.facet.FacetType;
@@ -74,10 +77,42 @@ public interface IEsRepository {
      */
     boolean createAlias(String index, String alias);
 
+    /**
+     * Disable refresh and replicas of given index for bulk indexing, keeping current settings (in memory and into
+     * index mapping "_meta" to survive a crash) to restore them with {@link #unsetSettingsForBulk(String)}
+     * @param index index name
+     * @return true if acknowledged by Elasticsearch
+     */
     boolean setSettingsForBulk(String index);
 
+    /**
+     * Restore index settings as they were before {@link #setSettingsForBulk(String)} (settings that were not explicitly
+     * set are reset to their default values)
+     * @param index index name
+     * @return true if acknowledged by Elasticsearch
+     */
     boolean unsetSettingsForBulk(String index);
 
+    /**
+     * Open a bulk indexing session on given index : until it is closed, index refresh and replicas are disabled and
+     * {@link #saveBulk(String, BulkSaveResult, StringBuilder, IIndexable[])} doesn't refresh index anymore. Several
+     * sessions can be opened at the same time on the same index, settings are restored and index is refreshed once
+     * when the last one is closed.
+     * @param index index name
+     * @return session to be closed (use a try-with-resources block)
+     */
+    BulkIndexingSession openBulkIndexingSession(String index);
+
+    /**
+     * Restore index settings if they have been left with bulk indexing values by a session that has never been closed
+     * (application crash), only if no session is currently opened on the index by this repository.<br/>
+     * <b>Sessions opened by other instances are not known, caller must check that no bulk indexing is running on the
+     * index</b>
+     * @param index index name
+     * @return true if settings have been restored
+     */
+    boolean restoreSettingsIfBulkInterrupted(String index);
+
     /**
      * Delete specified index <b>or associated index if an alias is specified</b>
      * @param index index or alias
@@ -110,6 +145,42 @@ public interface IEsRepository {
      */
     String reindex(String index) throws IOException;
 
+    /**
+     * Copy all documents of an index (or alias) into a new index named "&lt;index>_&lt;yyyyMMddHHmmss>". New index is
+     * filled without refresh nor replicas and its segments are then merged. Given index is still usable during copy.
+     * Copy is cancelled if it lasts more than "regards.elasticsearch.reindex.timeout.mn" minutes (120 by default).
+     * @param index index (or alias) to copy
+     * @return new index name or null if copy has failed (new index is then deleted)
+     */
+    String copyIntoNewIndex(String index) throws IOException;
+
+    /**
+     * Block (or unblock) all writes on given index (or indices designated by given alias). While blocked, index is
+     * still searchable but every indexation, update or deletion fails.
+     * @param index index (or alias)
+     * @param blocked true to block writes, false to remove the block
+     * @return true if acknowledged by Elasticsearch
+     */
+    boolean blockWrites(String index, boolean blocked);
+
+    /**
+     * Remove write block of given index (or alias) if it has been left by an index rebuild that has never ended
+     * (application crash), only if writes have not been blocked by this repository.<br/>
+     * <b>Rebuilds running on other instances are not known, caller must check that none is running</b>
+     * @param index index (or alias)
+     * @return true if write block has been removed
+     */
+    boolean unblockWritesIfInterrupted(String index);
+
+    /**
+     * Atomically make given alias designate given index, deleting index(es) currently designated by it (or index
+     * whom name is the alias one)
+     * @param alias alias name
+     * @param newIndex index to be designated by alias
+     * @return true if acknowledged by Elasticsearch, false otherwise.
+     */
+    boolean swapAlias(String alias, String newIndex);
+
     /**
      * Method only used for tests. Elasticsearch performs refreshes every second. So, il a search is called just after a save, the document will not be available. A manual refresh is necessary (on
      * saveBulkEntities, it is automaticaly called)
@@ -117,6 +188,26 @@ public interface IEsRepository {
      */
     void refresh(String index);
 
+    /**
+     * Invalidate cached mapping of given index (needed after a model change, mapping is then reloaded on next search
+     * needing it)
+     * @param index index (or alias)
+     */
+    void invalidateMappingCache(String index);
+
+    /**
+     * Statistics (hits, misses, evictions, load time) of the cache used by joined searches to avoid redoing the same
+     * Elasticsearch requests while changing page
+     * @return cache statistics since repository creation
+     */
+    CacheStats getSearchAllCacheStats();
+
+    /**
+     * Statistics (hits, misses) of the cache of numeric and date facets percentiles used as ranges boundaries
+     * @return cache statistics since repository creation
+     */
+    CacheStats getFacetPercentilesCacheStats();
+
     /**
      * Create or update several documents into same index. Errors are logged.
      * @param index index
@@ -173,6 +264,18 @@ public interface IEsRepository {
         return this.saveBulk(index, errorBuffer, documents.toArray(new IIndexable[documents.size()]));
     }
 
+    /**
+     * Partially update already indexed documents with a single bulk request. Only given fields are sent (with a script
+     * replacing their whole values), others are left untouched into Elasticsearch so full documents (geometries,
+     * properties, ...) don't need to be sent again.
+     * @param index index
+     * @param documents documents holding up to date values of given fields
+     * @param fields source paths of fields to update (ie "tags", "feature.tags", "metadata", ...), only these document
+     *            fields are serialized
+     * @return bulk update result (documents no more existing are in error)
+     */
+    BulkSaveResult updateBulk(String index, Collection<? extends IIndexable> documents, String... fields);
+
     /**
      * Retrieve a Document from its id
      * @param index index
@@ -196,6 +299,19 @@ public interface IEsRepository {
         return (T) get(index, document.getType(), document.getDocId(), document.getClass());
     }
 
+    /**
+     * Retrieve several documents from their ids using Elasticsearch multi-get API (documents are retrieved by batches
+     * so that a whole page of documents costs only a few requests instead of one request per document)
+     * @param index index
+     * @param docType document type
+     * @param docIds documents ids
+     * @param clazz class of document type
+     * @param <T> document type
+     * @return found documents associated to their id (ids of not found documents are absent from the map)
+     */
+    <T extends IIndexable> Map<String, T> multiGet(String index, String docType, Collection<String> docIds,
+            Class<T> clazz);
+
     /**
      * Delete specified document
      * @param index index
@@ -205,6 +321,15 @@ public interface IEsRepository {
      */
     boolean delete(String index, String type, String id);
 
+    /**
+     * Delete specified documents with a single bulk request
+     * @param index index
+     * @param type documents type
+     * @param ids documents ids
+     * @return documents that cannot be deleted associated to failure cause (not existing documents are not in error)
+     */
+    Map<String, Exception> deleteBulk(String index, String type, Collection<String> ids);
+
     /**
      * Delete all documents from index
      * @param index index
@@ -427,6 +552,16 @@ public interface IEsRepository {
     <T extends IIndexable> Aggregations getAggregations(SearchKey<?, T> searchKey, ICriterion crit,
             Collection<QueryableAttribute> attributes);
 
+    /**
+     * Compute all given metric aggregations with a single request (no hits are returned)
+     * @param searchKey the search key
+     * @param crit search criterion
+     * @param aggregations aggregations to compute (each one is retrieved from result through its name)
+     * @return the aggregations results
+     */
+    <T extends IIndexable> Aggregations aggregate(SearchKey<?, T> searchKey, ICriterion crit,
+            Collection<AttributeAggregation> aggregations);
+
     /**
      * Retrieve unique sorted string attribute values following given request
      * @param searchKey the search key
@@ -473,6 +608,23 @@ public interface IEsRepository {
      */
     <T extends IIndexable> void searchAll(SearchKey<T, T> searchKey, Consumer<T> pAction, ICriterion crit);
 
+    /**
+     * Execute specified action for all search results using a parallel sliced scroll, each slice being scrolled by
+     * its own thread.<br/>
+     * <b>No 10000 offset Elasticsearch limitation</b><br/>
+     * <b>Action is concurrently called from several threads so it MUST be thread-safe</b>
+     * @param searchKey the search key specifying the index and type to search and the result class used
+     * @param action thread-safe action to be executed for each search result element
+     * @param crit search criterion
+     * <b>Slices of all sliced scrolls share a bounded thread pool : when called from an action of another sliced
+     * scroll, a simple scroll is used on the calling thread (waiting for slices from a slice thread could block all
+     * pool threads)</b>
+     * @param sliceCount number of slices (ie of parallel scrolls), if lower than 2, a simple scroll is used
+     * @param pageSize number of hits retrieved by each scroll request
+     */
+    <T extends IIndexable> void searchAll(SearchKey<T, T> searchKey, Consumer<T> action, ICriterion crit,
+            int sliceCount, int pageSize);
+
     /**
      * Fill DocFilesSummary for given request distributing results based on discriminantProperty for given file
      * types. Only internal data files with a strictly positive size are taken into account. This size is used to count
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.data.domain.Sort;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import fr.cnes.regards.framework.utils.RsRuntimeException;
+import fr.cnes.regards.modules.indexer.domain.SearchKey;
+import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
+
+/**
+ * Stateless search after cursor.<br/>
+ * It contains sort values of the last document of a page, the offset of the next page and a hash of the search
+ * context (criterion, index, types and sort). It is exchanged as an opaque token signed with an HMAC so that it cannot
+ * be forged by a client.
+ * @author oroussel
+ */
+public final class SearchAfterCursor {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final char TOKEN_SEPARATOR = '.';
+
+    /**
+     * Plain Gson to (de)serialize cursor payload (no need for application one)
+     */
+    private static final Gson PAYLOAD_GSON = new Gson();
+
+    /**
+     * Offset of page following the one from which cursor has been created
+     */
+    private long offset;
+
+    /**
+     * Search context hash
+     */
+    private String context;
+
+    /**
+     * Typed sort values (first character gives the type, see {@link #encodeValue(Object)})
+     */
+    private String[] sortValues;
+
+    private SearchAfterCursor() {
+    }
+
+    public SearchAfterCursor(long offset, String context, Object[] sortValues) {
+        this.offset = offset;
+        this.context = context;
+        this.sortValues = new String[sortValues.length];
+        for (int i = 0; i < sortValues.length; i++) {
+            this.sortValues[i] = encodeValue(sortValues[i]);
+        }
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public Object[] getSortValues() {
+        Object[] values = new Object[sortValues.length];
+        for (int i = 0; i < sortValues.length; i++) {
+            values[i] = decodeValue(sortValues[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Compute hash of search context
+     * @param gson Json mapper used to serialize criterion
+     */
+    public static String context(Gson gson, ICriterion crit, SearchKey<?, ?> searchKey, Sort sort) {
+        String unique = gson.toJson(crit) + "__" + searchKey.getSearchIndex() + "__"
+                + String.join(",", searchKey.getSearchTypes()) + "__" + sort;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(unique.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) { // Does not occur
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a secret key to sign cursors
+     * @param secret secret shared by all instances
+     */
+    public static SecretKeySpec createKey(byte[] secret) {
+        return new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    /**
+     * @return signed token
+     */
+    public String encode(SecretKeySpec key) {
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(PAYLOAD_GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+        return payload + TOKEN_SEPARATOR + sign(payload, key);
+    }
+
+    /**
+     * @return cursor from given token or null if token is malformed or its signature invalid
+     */
+    public static SearchAfterCursor decode(String token, SecretKeySpec key) {
+        int sepIdx = token.lastIndexOf(TOKEN_SEPARATOR);
+        if (sepIdx < 0) {
+            return null;
+        }
+        String payload = token.substring(0, sepIdx);
+        byte[] expectedSignature = sign(payload, key).getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = token.substring(sepIdx + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expectedSignature, signature)) {
+            return null;
+        }
+        try {
+            SearchAfterCursor cursor = PAYLOAD_GSON
+                    .fromJson(new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8),
+                              SearchAfterCursor.class);
+            return ((cursor == null) || (cursor.sortValues == null)) ? null : cursor;
+        } catch (IllegalArgumentException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static String sign(String payload, SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) { // Does not occur
+            throw new RsRuntimeException(e);
+        }
+    }
+
+    /**
+     * Sort values are typed to be given back exactly as Elasticsearch returned them (a long must not become a double)
+     */
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "N";
+        } else if (value instanceof Long) {
+            return "L" + value;
+        } else if (value instanceof Integer) {
+            return "I" + value;
+        } else if (value instanceof Double) {
+            return "D" + value;
+        } else if (value instanceof Float) {
+            return "F" + value;
+        } else if (value instanceof Boolean) {
+            return "B" + value;
+        } else {
+            return "S" + value;
+        }
+    }
+
+    private static Object decodeValue(String encoded) {
+        String value = encoded.substring(1);
+        switch (encoded.charAt(0)) {
+            case 'N':
+                return null;
+            case 'L':
+                return Long.valueOf(value);
+            case 'I':
+                return Integer.valueOf(value);
+            case 'D':
+                return Double.valueOf(value);
+            case 'F':
+                return Float.valueOf(value);
+            case 'B':
+                return Boolean.valueOf(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -102,9 +102,10 @@ public class GeoHelper {
     private static final Table<Crs, Crs, MathTransform> TRANSFORM_TABLE = HashBasedTable.create();
 
     /**
-     * Geodetic calculator map
+     * Geodetic calculator map.<br/>
+     * GeodeticCalculator holds starting and destination points so it isn't thread-safe, each thread has its own one
      */
-    private static EnumMap<Crs, GeodeticCalculator> calcMap = new EnumMap<>(Crs.class);
+    private static EnumMap<Crs, ThreadLocal<GeodeticCalculator>> calcMap = new EnumMap<>(Crs.class);
 
     private static EnumMap<Crs, CoordinateReferenceSystem> crsMap = new EnumMap<>(Crs.class);
 
@@ -116,7 +117,7 @@ public class GeoHelper {
             try {
                 CoordinateReferenceSystem coordinateReferenceSystem = CRS.parseWKT(crs.getWkt());
                 crsMap.put(crs, coordinateReferenceSystem);
-                calcMap.put(crs, new GeodeticCalculator(coordinateReferenceSystem));
+                calcMap.put(crs, ThreadLocal.withInitial(() -> new GeodeticCalculator(coordinateReferenceSystem)));
             } catch (FactoryException e) {
                 LOGGER.error("Bad WKT", e);
             }
@@ -168,7 +169,7 @@ public class GeoHelper {
     }
 
     public static double getDistance(double lon1, double lat1, double lon2, double lat2, Crs crs) {
-        GeodeticCalculator calc = calcMap.get(crs);
+        GeodeticCalculator calc = calcMap.get(crs).get();
         calc.setStartingGeographicPoint(lon1, lat1);
         calc.setDestinationGeographicPoint(lon2, lat2);
         return calc.getOrthodromicDistance();
@@ -196,7 +197,7 @@ public class GeoHelper {
 
     public static double[] getPointAtDirection(double[] srcLonLat, double azimuth, double distance, Crs crs)
             throws TransformException {
-        GeodeticCalculator calc = calcMap.get(crs);
+        GeodeticCalculator calc = calcMap.get(crs).get();
         calc.setStartingGeographicPoint(srcLonLat[0], srcLonLat[1]);
         calc.setDirection(azimuth, distance);
         return calc.getDestinationPosition().getCoordinate();
@@ -204,7 +205,7 @@ public class GeoHelper {
 
     public static double[] getPointAtDirection(double srcLon, double srcLat, double azimuth, double distance, Crs crs)
             throws TransformException {
-        GeodeticCalculator calc = calcMap.get(crs);
+        GeodeticCalculator calc = calcMap.get(crs).get();
         calc.setStartingGeographicPoint(srcLon, srcLat);
         calc.setDirection(azimuth, distance);
         return calc.getDestinationPosition().getCoordinate();
@@ -223,20 +224,11 @@ public class GeoHelper {
     }
 
     public static double[][] transform(double[][] fromPoints, Crs fromCrs, Crs toCrs) {
-        MathTransform transform = TRANSFORM_TABLE.get(fromCrs, toCrs);
-        double[][] toPoints = new double[fromPoints.length][];
-        for (int i = 0; i < fromPoints.length; i++) {
-            double[] fromPoint = fromPoints[i];
-            DirectPosition srcPos = new DirectPosition2D(fromPoint[0], fromPoint[1]);
-            DirectPosition destPos = null;
-            try {
-                destPos = transform.transform(srcPos, null);
-            } catch (TransformException e) {
-                throw new RsRuntimeException(e);
-            }
-            toPoints[i] = destPos.getCoordinate();
+        try {
+            return transform(TRANSFORM_TABLE.get(fromCrs, toCrs), fromPoints);
+        } catch (TransformException e) {
+            throw new RsRuntimeException(e);
         }
-        return toPoints;
     }
 
     public static double[][][] transform(double[][][] fromPointsLines, Crs fromCrs, Crs toCrs) {
@@ -244,13 +236,7 @@ public class GeoHelper {
         double[][][] toPointsLines = new double[fromPointsLines.length][][];
         try {
             for (int i = 0; i < fromPointsLines.length; i++) {
-                toPointsLines[i] = new double[fromPointsLines[i].length][];
-                for (int j = 0; j < fromPointsLines[i].length; j++) {
-                    double[] fromPoint = fromPointsLines[i][j];
-                    DirectPosition srcPos = new DirectPosition2D(fromPoint[0], fromPoint[1]);
-                    DirectPosition destPos = transform.transform(srcPos, null);
-                    toPointsLines[i][j] = destPos.getCoordinate();
-                }
+                toPointsLines[i] = transform(transform, fromPointsLines[i]);
             }
         } catch (TransformException e) {
             throw new RsRuntimeException(e);
@@ -259,6 +245,24 @@ public class GeoHelper {
         return toPointsLines;
     }
 
+    /**
+     * Transform all points (only longitude and latitude are taken into account) with a single MathTransform call
+     */
+    private static double[][] transform(MathTransform transform, double[][] fromPoints) throws TransformException {
+        double[] srcPts = new double[fromPoints.length * 2];
+        for (int i = 0; i < fromPoints.length; i++) {
+            srcPts[i * 2] = fromPoints[i][0];
+            srcPts[(i * 2) + 1] = fromPoints[i][1];
+        }
+        double[] destPts = new double[srcPts.length];
+        transform.transform(srcPts, 0, destPts, 0, fromPoints.length);
+        double[][] toPoints = new double[fromPoints.length][];
+        for (int i = 0; i < fromPoints.length; i++) {
+            toPoints[i] = new double[] { destPts[i * 2], destPts[(i * 2) + 1] };
+        }
+        return toPoints;
+    }
+
     /**
      * Transform geometry from one Crs to another
      */
@@ -18,14 +18,32 @@
  */
 package fr.cnes.regards.modules.indexer.dao;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * @author oroussel
  */
 public class EsHelperTest {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EsHelperTest.class);
+
+    private static final int HITS_COUNT = 10_000;
+
     @Test
     public void testToMeters() {
         Assert.assertEquals(25.4, EsHelper.toMeters("1e3 in"), 0.01);
@@ -36,4 +54,59 @@ public class EsHelperTest {
 
 
     }
+
+    @Test
+    public void testFromJson() throws IOException {
+        Gson gson = new Gson();
+        String json = "{\"label\":\"Fr\u00e9d\u00e9ric \u20ac \ud83d\ude00\",\"tags\":[\"a\",\"\u00e9t\u00e9\"]}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> expected = gson.fromJson(json, new TypeToken<Map<String, Object>>() {
+
+        }.getType());
+        Assert.assertEquals(expected, EsHelper.fromJson(gson, new BytesArray(bytes), Map.class));
+        // Cut bytes into several chunks (in the middle of multi-bytes characters too)
+        BytesReference composite = new CompositeBytesReference(new BytesArray(bytes, 0, 15),
+                new BytesArray(bytes, 15, 17), new BytesArray(bytes, 32, bytes.length - 32));
+        Assert.assertEquals(expected, EsHelper.fromJson(gson, composite, Map.class));
+    }
+
+    /**
+     * Compare allocated bytes per hit between old way (getSourceAsString() then Gson) and streaming deserialization.
+     * Measurement only (depends on JVM and JIT), nothing is asserted, run it manually.
+     */
+    @Test
+    @Ignore("Performance measurement, run manually")
+    public void benchFromJsonAllocations() throws IOException {
+        Gson gson = new Gson();
+        StringBuilder buf = new StringBuilder("{\"properties\":{");
+        for (int i = 0; i < 100; i++) {
+            buf.append(i == 0 ? "" : ",").append("\"attribute").append(i).append("\":\"value \u00e9t\u00e9 ").append(i)
+                    .append("\"");
+        }
+        BytesReference source = new BytesArray(buf.append("}}").toString().getBytes(StandardCharsets.UTF_8));
+
+        // Warm up
+        for (int i = 0; i < HITS_COUNT; i++) {
+            gson.fromJson(source.utf8ToString(), Map.class);
+            EsHelper.fromJson(gson, source, Map.class);
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < HITS_COUNT; i++) {
+            gson.fromJson(source.utf8ToString(), Map.class);
+        }
+        long stringBytesPerHit = (bean.getThreadAllocatedBytes(threadId) - start) / HITS_COUNT;
+
+        start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < HITS_COUNT; i++) {
+            EsHelper.fromJson(gson, source, Map.class);
+        }
+        long streamBytesPerHit = (bean.getThreadAllocatedBytes(threadId) - start) / HITS_COUNT;
+
+        LOGGER.info("Source of {} bytes, allocated bytes per hit: String {}, streaming {}", source.length(),
+                    stringBytesPerHit, streamBytesPerHit);
+    }
 }
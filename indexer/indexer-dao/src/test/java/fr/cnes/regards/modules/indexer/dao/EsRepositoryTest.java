@@ -1,11 +1,16 @@
 package fr.cnes.regards.modules.indexer.dao;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -13,6 +18,10 @@ import java.util.stream.Stream;
 
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Assume;
@@ -21,11 +30,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -35,8 +49,11 @@ import fr.cnes.regards.modules.indexer.dao.builder.AggregationBuilderFacetTypeVi
 import fr.cnes.regards.modules.indexer.domain.IIndexable;
 import fr.cnes.regards.modules.indexer.domain.SearchKey;
 import fr.cnes.regards.modules.indexer.domain.SimpleSearchKey;
+import fr.cnes.regards.modules.indexer.domain.aggregation.AttributeAggregation;
 import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
 import fr.cnes.regards.modules.indexer.domain.facet.FacetType;
+import fr.cnes.regards.modules.indexer.domain.facet.IFacet;
+import fr.cnes.regards.modules.indexer.domain.facet.NumericFacet;
 
 /**
  * EsRepository test
@@ -209,6 +226,355 @@ public class EsRepositoryTest {
         // If someone could find a case when a document save failed...Don't hesitate to talk it to me
     }
 
+    @Test
+    public void testBulkIndexingSession() {
+        repository.createIndex("bulktest");
+        SearchKey<Item, Item> searchKey = new SearchKey<>("item", Item.class);
+        searchKey.setSearchIndex("bulktest");
+        try (BulkIndexingSession session = repository.openBulkIndexingSession("bulktest")) {
+            // Nested session
+            try (BulkIndexingSession nestedSession = repository.openBulkIndexingSession("bulktest")) {
+                repository.saveBulk("bulktest", Arrays.asList(new Item("1", "group1"), new Item("2", "group2")));
+            }
+            // Index isn't refreshed while a session is opened but documents can be retrieved by id
+            Assert.assertEquals(Long.valueOf(0), repository.count(searchKey, ICriterion.all()));
+            Assert.assertNotNull(repository.get("bulktest", "item", "1", Item.class));
+            // Settings are not restored while a session is opened
+            Assert.assertFalse(repository.restoreSettingsIfBulkInterrupted("bulktest"));
+        }
+        // Closing last session refreshes index
+        Assert.assertEquals(Long.valueOf(2), repository.count(searchKey, ICriterion.all()));
+        // Interrupted session
+        repository.setSettingsForBulk("bulktest");
+        Assert.assertTrue(repository.restoreSettingsIfBulkInterrupted("bulktest"));
+        Assert.assertFalse(repository.restoreSettingsIfBulkInterrupted("bulktest"));
+    }
+
+    @Test
+    public void testCopyIntoNewIndexAndSwapAlias() throws IOException {
+        repository.createIndex("bulktest");
+        repository.saveBulk("bulktest", Arrays.asList(new Item("1", "group1"), new Item("2", "group2")));
+        String newIndex = repository.copyIntoNewIndex("bulktest");
+        Assert.assertNotNull(newIndex);
+        Assert.assertTrue(repository.swapAlias("bulktest", newIndex));
+        // "bulktest" is now an alias on new index containing copied documents
+        SearchKey<Item, Item> searchKey = new SearchKey<>("item", Item.class);
+        searchKey.setSearchIndex("bulktest");
+        Assert.assertEquals(Long.valueOf(2), repository.count(searchKey, ICriterion.all()));
+        // Swap again (alias case)
+        String newIndex2 = repository.copyIntoNewIndex("bulktest");
+        Assert.assertNotNull(newIndex2);
+        Assert.assertTrue(repository.swapAlias("bulktest", newIndex2));
+        Assert.assertFalse(repository.indexExists(newIndex));
+        Assert.assertEquals(Long.valueOf(2), repository.count(searchKey, ICriterion.all()));
+    }
+
+    @Test
+    public void testCopyWriteBlockedIndex() throws IOException {
+        repository.createIndex("bulktest");
+        repository.saveBulk("bulktest", Arrays.asList(new Item("1", "group1"), new Item("2", "group2")));
+        Assert.assertTrue(repository.blockWrites("bulktest", true));
+        try {
+            repository.save("bulktest", new Item("3", "group3"));
+            Assert.fail("Writes on a blocked index must fail");
+        } catch (RuntimeException e) { // NOSONAR
+            // Expected
+        }
+        // Blocked index can still be copied
+        String newIndex = repository.copyIntoNewIndex("bulktest");
+        Assert.assertNotNull(newIndex);
+        // and new index is not blocked
+        Assert.assertTrue(repository.save(newIndex, new Item("3", "group3")));
+        repository.deleteIndex(newIndex);
+        Assert.assertTrue(repository.blockWrites("bulktest", false));
+        repository.save("bulktest", new Item("3", "group3"));
+    }
+
+    @Test
+    public void testUnblockWritesIfInterrupted() throws Exception {
+        repository.createIndex("bulktest");
+        // Nothing to do on an unblocked index
+        Assert.assertFalse(repository.unblockWritesIfInterrupted("bulktest"));
+        // Block set by this repository (rebuild in progress) is kept
+        Assert.assertTrue(repository.blockWrites("bulktest", true));
+        Assert.assertFalse(repository.unblockWritesIfInterrupted("bulktest"));
+        // Block left by an interrupted rebuild (i.e. seen by a restarted repository) is removed
+        IEsRepository restartedRepository = new EsRepository(gson, null, elasticHost, elasticPort, 0,
+                new AggregationBuilderFacetTypeVisitor(10, 1));
+        try {
+            Assert.assertTrue(restartedRepository.unblockWritesIfInterrupted("bulktest"));
+            Assert.assertFalse(restartedRepository.unblockWritesIfInterrupted("bulktest"));
+        } finally {
+            restartedRepository.close();
+        }
+        Assert.assertTrue(repository.save("bulktest", new Item("1", "group1")));
+    }
+
+    /**
+     * A joined search result heavier than a quarter of cache maximum weight (Guava default segment share) must be
+     * kept in cache while paging through it
+     */
+    @Test
+    public void testJoinedSearchCacheKeepsHeavyResult() {
+        // 1 Mb, i.e. more than 5 000 joined values
+        ReflectionTestUtils.setField(repository, "searchAllCacheMaxWeightMb", 1L);
+        repository.createIndex("bulktest");
+        int count = 5_000;
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(Integer.toString(i), String.format("joined_value_%05d", i), i, i, "group"));
+        }
+        repository.saveBulk("bulktest", items);
+        repository.refresh("bulktest");
+        SearchKey<Item, String> searchKey = new SearchKey<>(TYPE, Item.class, String.class);
+        searchKey.setSearchIndex("bulktest");
+
+        List<String> firstPage = repository.search(searchKey, ICriterion.all(), "name").subList(0, 100);
+        CacheStats stats = repository.getSearchAllCacheStats();
+        Assert.assertEquals(1, stats.loadCount());
+        Assert.assertEquals(0, stats.evictionCount());
+        // Next pages are taken from cache
+        List<String> values = repository.search(searchKey, ICriterion.all(), "name");
+        Assert.assertEquals(count, values.size());
+        Assert.assertEquals(firstPage, values.subList(0, 100));
+        stats = repository.getSearchAllCacheStats();
+        Assert.assertEquals(1, stats.loadCount());
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(0, stats.evictionCount());
+    }
+
+    /**
+     * A model attribute missing from cached mapping is added by dynamic mapping as soon as a document values it, it
+     * must then be found without waiting for mapping cache reload delay
+     */
+    @Test
+    public void testMappingCacheReloadedOnModelAttributeMiss() {
+        repository.createIndex("bulktest");
+        repository.save("bulktest", new Item("1", "group1"));
+        String attribute = "feature.properties.label";
+        Assert.assertNull(ReflectionTestUtils.invokeMethod(repository, "getMappingType", "bulktest", attribute));
+
+        Item item = new Item("2", "group1");
+        item.setFeature(ImmutableMap.<String, Object> of("properties", ImmutableMap.of("label", "a text label")));
+        repository.save("bulktest", item);
+        Assert.assertEquals("text", ReflectionTestUtils.invokeMethod(repository, "getMappingType", "bulktest",
+                                                                     attribute));
+    }
+
+    /**
+     * Numeric facets percentiles are computed once for a search (index, types, criterion) then taken from cache, and
+     * range aggregations built from them give facets of all hits
+     */
+    @Test
+    public void testNumericFacetsPercentilesCache() {
+        repository.createIndex("bulktest");
+        int count = 100;
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(Integer.toString(i), "item_" + i, i, i * 10.0, "group"));
+        }
+        repository.saveBulk("bulktest", items);
+        repository.refresh("bulktest");
+        SearchKey<Item, Item> searchKey = new SearchKey<>(TYPE, Item.class);
+        searchKey.setSearchIndex("bulktest");
+        Map<String, FacetType> facetsMap = new HashMap<>();
+        facetsMap.put("height", FacetType.NUMERIC);
+        facetsMap.put("price", FacetType.NUMERIC);
+        CacheStats initialStats = repository.getFacetPercentilesCacheStats();
+
+        // Cache miss : percentiles of both facets are computed
+        FacetPage<Item> page = repository.search(searchKey, PageRequest.of(0, 10), ICriterion.all(), facetsMap);
+        CacheStats stats = repository.getFacetPercentilesCacheStats().minus(initialStats);
+        Assert.assertEquals(2, stats.missCount());
+        Assert.assertEquals(0, stats.hitCount());
+        assertNumericFacetsCount(page.getFacets(), 2, count);
+
+        // Cache hit : same facets
+        FacetPage<Item> cachedPage = repository.search(searchKey, PageRequest.of(1, 10), ICriterion.all(),
+                                                       facetsMap);
+        stats = repository.getFacetPercentilesCacheStats().minus(initialStats);
+        Assert.assertEquals(2, stats.missCount());
+        Assert.assertEquals(2, stats.hitCount());
+        Assert.assertEquals(facetsValues(page.getFacets()), facetsValues(cachedPage.getFacets()));
+
+        // Another criterion has its own percentiles
+        FacetPage<Item> otherPage = repository.search(searchKey, PageRequest.of(0, 10),
+                                                      ICriterion.between("height", count / 2, count - 1), facetsMap);
+        stats = repository.getFacetPercentilesCacheStats().minus(initialStats);
+        Assert.assertEquals(4, stats.missCount());
+        assertNumericFacetsCount(otherPage.getFacets(), 2, count / 2);
+    }
+
+    private static Map<String, Object> facetsValues(Set<IFacet<?>> facets) {
+        return facets.stream().collect(Collectors.toMap(IFacet::getAttributeName, facet -> (Object) facet.getValues()));
+    }
+
+    /**
+     * Check facets are numeric ones and that each one counts given documents count
+     */
+    private static void assertNumericFacetsCount(Set<IFacet<?>> facets, int facetsCount, long documentsCount) {
+        Assert.assertEquals(facetsCount, facets.size());
+        for (IFacet<?> facet : facets) {
+            Assert.assertTrue(facet instanceof NumericFacet);
+            long total = ((NumericFacet) facet).getValues().values().stream().mapToLong(Long::longValue).sum();
+            Assert.assertEquals(documentsCount, total);
+        }
+    }
+
+    /**
+     * Several metric aggregations are computed by a single request on searched documents, each one being retrieved
+     * from its name
+     */
+    @Test
+    public void testAggregate() {
+        repository.createIndex("bulktest");
+        List<Item> items = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            items.add(new Item(Integer.toString(i), "item_" + i, i, i * 10.0, "group"));
+        }
+        repository.saveBulk("bulktest", items);
+        repository.refresh("bulktest");
+        SimpleSearchKey<Item> searchKey = new SimpleSearchKey<>(TYPE, Item.class);
+        searchKey.setSearchIndex("bulktest");
+
+        AttributeAggregation heightSum = AttributeAggregation.sum("height");
+        AttributeAggregation heightMin = AttributeAggregation.min("height");
+        AttributeAggregation priceMax = AttributeAggregation.max("price");
+        Assert.assertEquals("sum_height", heightSum.getName());
+        Assert.assertEquals("min_height", heightMin.getName());
+        Assert.assertEquals("max_price", priceMax.getName());
+        // Same aggregation asked twice is only computed once
+        Aggregations aggs = repository.aggregate(searchKey, ICriterion.all(),
+                                                 Arrays.asList(heightSum, heightMin, priceMax,
+                                                               AttributeAggregation.sum("height")));
+        Assert.assertEquals(3, aggs.asList().size());
+        Assert.assertEquals(55.0, ((Sum) aggs.get(heightSum.getName())).getValue(), 0.0);
+        Assert.assertEquals(1.0, ((Min) aggs.get(heightMin.getName())).getValue(), 0.0);
+        Assert.assertEquals(100.0, ((Max) aggs.get(priceMax.getName())).getValue(), 0.0);
+
+        // Aggregations only concern searched documents
+        aggs = repository.aggregate(searchKey, ICriterion.between("height", 3, 5),
+                                    Arrays.asList(heightSum, heightMin, priceMax));
+        Assert.assertEquals(12.0, ((Sum) aggs.get(heightSum.getName())).getValue(), 0.0);
+        Assert.assertEquals(3.0, ((Min) aggs.get(heightMin.getName())).getValue(), 0.0);
+        Assert.assertEquals(50.0, ((Max) aggs.get(priceMax.getName())).getValue(), 0.0);
+    }
+
+    /**
+     * Documents are retrieved by several multi-get requests when more ids than a batch size (1000) are asked, missing
+     * ones being absent from result whatever the batch they belong to
+     */
+    @Test
+    public void testMultiGet() {
+        repository.createIndex("bulktest");
+        int count = 2_500;
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(Integer.toString(i), "item_" + i, i, i, "group"));
+        }
+        repository.saveBulk("bulktest", items);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(Integer.toString(i));
+            // Missing ids spread over first, second and last batches
+            if ((i == 0) || (i == 1_200) || (i == count - 1)) {
+                ids.add("unknown_" + i);
+            }
+        }
+        Map<String, Item> results = repository.multiGet("bulktest", TYPE, ids, Item.class);
+        Assert.assertEquals(count, results.size());
+        for (int i = 0; i < count; i++) {
+            Item item = results.get(Integer.toString(i));
+            Assert.assertNotNull(item);
+            Assert.assertEquals("item_" + i, item.getName());
+        }
+        Assert.assertFalse(results.containsKey("unknown_0"));
+        Assert.assertFalse(results.containsKey("unknown_1200"));
+        Assert.assertFalse(results.containsKey("unknown_" + (count - 1)));
+
+        // Only missing ids or no ids at all
+        Assert.assertTrue(repository.multiGet("bulktest", TYPE, Arrays.asList("unknown_0", "unknown_1"), Item.class)
+                .isEmpty());
+        Assert.assertTrue(repository.multiGet("bulktest", TYPE, Collections.emptyList(), Item.class).isEmpty());
+    }
+
+    @Test
+    public void testDeleteBulk() {
+        repository.createIndex("bulktest");
+        repository.saveBulk("bulktest", Arrays.asList(new Item("1", "group1"), new Item("2", "group2"),
+                                                      new Item("3", "group3")));
+        // Every deletion of a write blocked index fails
+        Assert.assertTrue(repository.blockWrites("bulktest", true));
+        Map<String, Exception> failures = repository.deleteBulk("bulktest", TYPE, Arrays.asList("1", "2", "unknown"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2", "unknown")), failures.keySet());
+        failures.values().forEach(Assert::assertNotNull);
+        Assert.assertNotNull(repository.get("bulktest", TYPE, "1", Item.class));
+        Assert.assertNotNull(repository.get("bulktest", TYPE, "2", Item.class));
+
+        Assert.assertTrue(repository.blockWrites("bulktest", false));
+        // Unknown document is not a failure
+        failures = repository.deleteBulk("bulktest", TYPE, Arrays.asList("1", "2", "unknown"));
+        Assert.assertTrue(failures.isEmpty());
+        Assert.assertNull(repository.get("bulktest", TYPE, "1", Item.class));
+        Assert.assertNull(repository.get("bulktest", TYPE, "2", Item.class));
+        Assert.assertNotNull(repository.get("bulktest", TYPE, "3", Item.class));
+        Assert.assertTrue(repository.deleteBulk("bulktest", TYPE, Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testUpdateBulk() {
+        repository.createIndex("bulktest");
+        Item item = new Item("1", "group1", "group2");
+        item.setName("name1");
+        item.setTags(Sets.newHashSet("tag1", "tag2"));
+        item.setMetadata(ImmutableMap.of("group1", true, "group2", false));
+        item.setDatasetModelNames(Sets.newHashSet("model1"));
+        item.setProperties(ImmutableMap.of("label", "first", "size", "12"));
+        item.setWgs84(ImmutableMap.of("type", "Point", "coordinates", Arrays.asList(10.0, 20.0)));
+        Item subItem = new Item("1.1", "subgroup1");
+        subItem.setName("subname");
+        item.setSubItem(subItem);
+        repository.saveBulk("bulktest", Collections.singletonList(item));
+
+        // Updated document only holds up to date values of updated fields
+        Item updated = new Item("1", "group3");
+        updated.setName("other");
+        updated.setTags(Sets.newHashSet("tag3"));
+        updated.setMetadata(ImmutableMap.of("group3", true));
+        updated.setDatasetModelNames(Sets.newHashSet("model2"));
+        updated.setSubItem(new Item("1.1", "subgroup2"));
+        BulkSaveResult result = repository
+                .updateBulk("bulktest", Arrays.asList(updated, new Item("unknown", "group1")), "tags", "groups",
+                            "metadata", "datasetModelNames", "subItem.groups");
+        Assert.assertEquals(1, result.getSavedDocsCount());
+        // Only existing documents can be updated
+        Assert.assertEquals(1, result.getInErrorDocsCount());
+        Assert.assertNull(repository.get("bulktest", TYPE, "unknown", Item.class));
+
+        Item indexed = repository.get("bulktest", TYPE, "1", Item.class);
+        // Updated fields are replaced (removed metadata keys included)
+        Assert.assertEquals(Sets.newHashSet("tag3"), indexed.getTags());
+        Assert.assertEquals(Collections.singletonList("group3"), indexed.getGroups());
+        Assert.assertEquals(Collections.singletonMap("group3", true), indexed.getMetadata());
+        Assert.assertEquals(Sets.newHashSet("model2"), indexed.getDatasetModelNames());
+        Assert.assertEquals(Collections.singletonList("subgroup2"), indexed.getSubItem().getGroups());
+        // Others are untouched
+        Assert.assertEquals("name1", indexed.getName());
+        Assert.assertEquals("subname", indexed.getSubItem().getName());
+        Assert.assertEquals(item.getProperties(), indexed.getProperties());
+        Assert.assertEquals(item.getWgs84(), indexed.getWgs84());
+
+        // Removed values are removed
+        updated.setTags(null);
+        updated.setMetadata(Collections.emptyMap());
+        result = repository.updateBulk("bulktest", Collections.singletonList(updated), "tags", "metadata");
+        Assert.assertEquals(1, result.getSavedDocsCount());
+        indexed = repository.get("bulktest", TYPE, "1", Item.class);
+        Assert.assertNull(indexed.getTags());
+        Assert.assertTrue(indexed.getMetadata().isEmpty());
+        Assert.assertEquals(item.getWgs84(), indexed.getWgs84());
+    }
+
     // @Test
     public void testLoad() {
         loadItemsBulk(100_000);
@@ -315,6 +681,18 @@ public class EsRepositoryTest {
 
         private double price;
 
+        private Set<String> tags;
+
+        private Map<String, Boolean> metadata;
+
+        private Set<String> datasetModelNames;
+
+        private Map<String, String> properties;
+
+        private Map<String, Object> wgs84;
+
+        private Map<String, Object> feature;
+
         public Item() {
         }
 
@@ -380,6 +758,55 @@ public class EsRepositoryTest {
             this.price = price;
         }
 
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(Set<String> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, Boolean> getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(Map<String, Boolean> metadata) {
+            this.metadata = metadata;
+        }
+
+        public Set<String> getDatasetModelNames() {
+            return datasetModelNames;
+        }
+
+        public void setDatasetModelNames(Set<String> datasetModelNames) {
+            this.datasetModelNames = datasetModelNames;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(Map<String, String> properties) {
+            this.properties = properties;
+        }
+
+        public Map<String, Object> getWgs84() {
+            return wgs84;
+        }
+
+        public void setWgs84(Map<String, Object> wgs84) {
+            this.wgs84 = wgs84;
+        }
+
+        @SuppressWarnings("unused")
+        public Map<String, Object> getFeature() {
+            return feature;
+        }
+
+        public void setFeature(Map<String, Object> feature) {
+            this.feature = feature;
+        }
+
         @JsonProperty("id")
         @Override
         public String getDocId() {
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.dao;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * @author oroussel
+ */
+public class SearchAfterCursorTest {
+
+    private static final SecretKeySpec KEY = SearchAfterCursor.createKey("secret".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void testEncodeDecode() {
+        Object[] sortValues = new Object[] { 1_546_300_800_123L, "URN:AIP:DATA:project:ab12", 12.5, 3, null,
+                Long.MAX_VALUE };
+        String token = new SearchAfterCursor(20_000, "context", sortValues).encode(KEY);
+
+        SearchAfterCursor cursor = SearchAfterCursor.decode(token, KEY);
+        Assert.assertNotNull(cursor);
+        Assert.assertEquals(20_000, cursor.getOffset());
+        Assert.assertEquals("context", cursor.getContext());
+        // Sort values must be given back with their exact types
+        Assert.assertArrayEquals(sortValues, cursor.getSortValues());
+    }
+
+    @Test
+    public void testInvalidTokens() {
+        String token = new SearchAfterCursor(20_000, "context", new Object[] { 1L }).encode(KEY);
+        // Signed with another key
+        Assert.assertNull(SearchAfterCursor
+                .decode(token, SearchAfterCursor.createKey("other".getBytes(StandardCharsets.UTF_8))));
+        // Forged payload
+        String forged = new SearchAfterCursor(30_000, "context", new Object[] { 1L }).encode(KEY);
+        Assert.assertNull(SearchAfterCursor.decode(forged.substring(0, forged.indexOf('.'))
+                + token.substring(token.indexOf('.')), KEY));
+        // Malformed
+        Assert.assertNull(SearchAfterCursor.decode("not a cursor", KEY));
+    }
+
+    @Test
+    public void testCursorPageRequestEquality() {
+        Sort sort = Sort.by("label");
+        CursorPageRequest request = CursorPageRequest.of(2, 10, sort, "token1");
+        Assert.assertEquals(request, CursorPageRequest.of(2, 10, sort, "token1"));
+        Assert.assertEquals(request.hashCode(), CursorPageRequest.of(2, 10, sort, "token1").hashCode());
+        // Same page with another cursor (or without cursor) is another request
+        Assert.assertNotEquals(request, CursorPageRequest.of(2, 10, sort, "token2"));
+        Assert.assertNotEquals(request, CursorPageRequest.of(2, 10, sort, null));
+        Assert.assertNotEquals(request, PageRequest.of(2, 10, sort));
+        Assert.assertEquals(CursorPageRequest.of(2, 10, sort, null), CursorPageRequest.of(2, 10, sort, null));
+    }
+}
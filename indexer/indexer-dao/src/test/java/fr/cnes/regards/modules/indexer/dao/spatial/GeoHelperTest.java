@@ -37,6 +37,10 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Before;
@@ -697,6 +701,59 @@ public class GeoHelperTest {
         System.out.println(displayGeoJson(polygon));
     }
 
+    /**
+     * Transforming several points at once must give the same coordinates as transforming each point
+     */
+    @Test
+    public void bulkTransformTest() {
+        double[][] points = new double[][] { { 0.0, 0.0 }, { 45.0, 45.0 }, { -120.5, 60.25 }, { 179.9, -89.5 },
+                { -180.0, 30.0 }, { 10.0, 90.0 } };
+        for (Crs toCrs : new Crs[] { Crs.WGS_84, Crs.ASTRO }) {
+            double[][] transformedPoints = GeoHelper.transform(points, Crs.MARS_49900, toCrs);
+            Assert.assertEquals(points.length, transformedPoints.length);
+            for (int i = 0; i < points.length; i++) {
+                Assert.assertArrayEquals(GeoHelper.transform(points[i], Crs.MARS_49900, toCrs), transformedPoints[i],
+                                         1e-9);
+            }
+            // Lines of points
+            double[][][] transformedLines = GeoHelper.transform(new double[][][] { points, points }, Crs.MARS_49900,
+                                                                toCrs);
+            Assert.assertEquals(2, transformedLines.length);
+            for (double[][] transformedLine : transformedLines) {
+                for (int i = 0; i < points.length; i++) {
+                    Assert.assertArrayEquals(transformedPoints[i], transformedLine[i], 0.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Each thread has its own geodetic calculator so concurrent distance computations must give the same results
+     * as sequential ones
+     */
+    @Test
+    public void concurrentGetDistanceTest() throws InterruptedException, ExecutionException {
+        int count = 1_000;
+        double[] expected = new double[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = GeoHelper.getDistance((i % 360) - 180.0, (i % 180) - 90.0, 0.0, 0.0, Crs.MARS_49900);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                double lon = (i % 360) - 180.0;
+                double lat = (i % 180) - 90.0;
+                futures.add(executor.submit(() -> GeoHelper.getDistance(lon, lat, 0.0, 0.0, Crs.MARS_49900)));
+            }
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(expected[i], futures.get(i).get(), 0.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Utility method
      */
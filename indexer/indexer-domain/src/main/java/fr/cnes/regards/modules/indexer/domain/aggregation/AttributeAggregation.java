@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.domain.aggregation;
+
+import java.util.Objects;
+
+/**
+ * Metric aggregation asked on an attribute, ie :<ul>
+ * <li>type : {@link AttributeAggregation.Type} kind of metric (sum, min, max, ...)</li>
+ * <li>attributePath : complete path of the attribute in the index</li>
+ * </ul>
+ * Two aggregations with same type on same attribute are equal so that they are computed only once when several
+ * of them are gathered into a single request.
+ *
+ * @author oroussel
+ */
+public class AttributeAggregation {
+
+    /**
+     * Metric aggregation types
+     */
+    public enum Type {
+        SUM,
+        MIN,
+        MAX,
+        AVG,
+        CARDINALITY,
+        STATS;
+    }
+
+    /**
+     * Kind of metric
+     */
+    private final Type type;
+
+    /**
+     * Complete path of the attribute in the index
+     */
+    private final String attributePath;
+
+    public AttributeAggregation(Type type, String attributePath) {
+        this.type = Objects.requireNonNull(type);
+        this.attributePath = Objects.requireNonNull(attributePath);
+    }
+
+    public static AttributeAggregation sum(String attributePath) {
+        return new AttributeAggregation(Type.SUM, attributePath);
+    }
+
+    public static AttributeAggregation min(String attributePath) {
+        return new AttributeAggregation(Type.MIN, attributePath);
+    }
+
+    public static AttributeAggregation max(String attributePath) {
+        return new AttributeAggregation(Type.MAX, attributePath);
+    }
+
+    public static AttributeAggregation avg(String attributePath) {
+        return new AttributeAggregation(Type.AVG, attributePath);
+    }
+
+    public static AttributeAggregation cardinality(String attributePath) {
+        return new AttributeAggregation(Type.CARDINALITY, attributePath);
+    }
+
+    public static AttributeAggregation stats(String attributePath) {
+        return new AttributeAggregation(Type.STATS, attributePath);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAttributePath() {
+        return attributePath;
+    }
+
+    /**
+     * @return name of the aggregation into Elasticsearch request and response (unique by type and attribute)
+     */
+    public String getName() {
+        return type.name().toLowerCase() + "_" + attributePath;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, attributePath);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        AttributeAggregation other = (AttributeAggregation) obj;
+        return (type == other.type) && attributePath.equals(other.attributePath);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -1,51 +0,0 @@
-/*
- * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
- *
- * This file is part of REGARDS.
- *
- * REGARDS is free software: you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * REGARDS is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
- */
-package fr.cnes.regards.modules.indexer.domain.reminder;
-
-import java.time.OffsetDateTime;
-
-import fr.cnes.regards.modules.indexer.domain.IIndexable;
-
-/**
- * In case another reminder exist one day (by now only SearchAfterReminder does)
- * @author oroussel
- */
-public abstract class AbstractReminder implements IIndexable {
-
-    protected String docId;
-
-    protected OffsetDateTime expirationDate;
-
-    protected void setDocId(String docId) {
-        this.docId = docId;
-    }
-
-    @Override
-    public String getDocId() {
-        return this.docId;
-    }
-
-    public OffsetDateTime getExpirationDate() {
-        return expirationDate;
-    }
-
-    public void setExpirationDate(OffsetDateTime expirationDate) {
-        this.expirationDate = expirationDate;
-    }
-}
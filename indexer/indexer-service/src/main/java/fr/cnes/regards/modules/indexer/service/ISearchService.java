@@ -98,7 +98,9 @@ public interface ISearchService {
      * @param facetsMap facets, on data, to be calculated
      * @param <S> entity class on which request is done
      * @param <R> Joined entity class ("result" type)
-     * @return a page of joined entities
+     * @return a page of joined entities. Joined entities no longer indexed are skipped from page content. Without
+     *         result filter, total elements is the count of joined entities URNs (no longer indexed ones included,
+     *         checking them would need to retrieve all of them), with a filter it only counts found entities.
      */
     <S, R extends IIndexable> FacetPage<R> search(JoinEntitySearchKey<S, R> searchKey, Pageable pageRequest,
             ICriterion criterion, Predicate<R> searchResultFilter, Map<String, FacetType> facetsMap);
@@ -23,6 +23,9 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import fr.cnes.regards.framework.amqp.ISubscriber;
+import fr.cnes.regards.framework.amqp.domain.IHandler;
+import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
 import fr.cnes.regards.framework.jpa.multitenant.event.spring.TenantConnectionReady;
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.framework.multitenant.ITenantResolver;
@@ -30,9 +33,13 @@ import fr.cnes.regards.framework.notification.NotificationLevel;
 import fr.cnes.regards.framework.notification.client.IInstanceNotificationClient;
 import fr.cnes.regards.framework.security.role.DefaultRole;
 import fr.cnes.regards.modules.indexer.dao.IEsRepository;
+import fr.cnes.regards.modules.model.domain.event.AttributeModelCreated;
+import fr.cnes.regards.modules.model.domain.event.AttributeModelDeleted;
+import fr.cnes.regards.modules.model.dto.event.ModelChangeEvent;
 
 /**
- * Listening for tenant creation and application ready to manage Elasticsearch index creation
+ * Listening for tenant creation and application ready to manage Elasticsearch index creation.<br/>
+ * Listening for model and attribute changes to invalidate Elasticsearch mapping cache.
  * @author oroussel
  */
 @Component
@@ -50,8 +57,15 @@ public class IndexerEventsListener {
     @Autowired
     private IInstanceNotificationClient instanceNotificationClient;
 
+    @Autowired
+    private ISubscriber subscriber;
+
     @EventListener
     public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+        // Subscriber registers listeners by handler class so each event type needs its own handler class
+        subscriber.subscribeTo(AttributeModelCreated.class, new AttributeCreatedHandler());
+        subscriber.subscribeTo(AttributeModelDeleted.class, new AttributeDeletedHandler());
+        subscriber.subscribeTo(ModelChangeEvent.class, new ModelChangeHandler());
         for (String tenant : tenantResolver.getAllActiveTenants()) {
             runtimeTenantResolver.forceTenant(tenant);
             this.checkIndex(tenant);
@@ -81,4 +95,37 @@ public class IndexerEventsListener {
             }
         }
     }
+
+    /**
+     * Invalidate tenant index mapping cache on attribute creation
+     */
+    private class AttributeCreatedHandler implements IHandler<AttributeModelCreated> {
+
+        @Override
+        public void handle(TenantWrapper<AttributeModelCreated> wrapper) {
+            repository.invalidateMappingCache(wrapper.getTenant());
+        }
+    }
+
+    /**
+     * Invalidate tenant index mapping cache on attribute deletion
+     */
+    private class AttributeDeletedHandler implements IHandler<AttributeModelDeleted> {
+
+        @Override
+        public void handle(TenantWrapper<AttributeModelDeleted> wrapper) {
+            repository.invalidateMappingCache(wrapper.getTenant());
+        }
+    }
+
+    /**
+     * Invalidate tenant index mapping cache on model change
+     */
+    private class ModelChangeHandler implements IHandler<ModelChangeEvent> {
+
+        @Override
+        public void handle(TenantWrapper<ModelChangeEvent> wrapper) {
+            repository.invalidateMappingCache(wrapper.getTenant());
+        }
+    }
 }
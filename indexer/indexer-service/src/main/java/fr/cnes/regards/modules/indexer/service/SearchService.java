@@ -18,10 +18,13 @@
  */
 package fr.cnes.regards.modules.indexer.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
@@ -36,6 +39,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Lists;
+
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.framework.oais.urn.OaisUniformResourceName;
 import fr.cnes.regards.framework.urn.DataType;
@@ -60,6 +65,11 @@ import fr.cnes.regards.modules.indexer.domain.summary.DocFilesSummary;
 @Service
 public class SearchService implements ISearchService {
 
+    /**
+     * Number of joined entities retrieved at once when all of them must be retrieved (to apply a filter)
+     */
+    private static final int JOIN_BATCH_SIZE = 1_000;
+
     @Autowired
     private IEsRepository repository;
 
@@ -114,23 +124,49 @@ public class SearchService implements ISearchService {
         // Predicate to filter each tag : it must be a valid URN and this URN must concern wanted result type
         Predicate<String> askedTypePredicate = tag -> OaisUniformResourceName.isValidUrn(tag) && (Searches.TYPE_MAP
                 .get(OaisUniformResourceName.fromString(tag).getEntityType()) == searchKey.getResultClass());
-        // Function to get Entity from its ipId (URN) (from Elasticsearch)
-        Function<String, T> toAskedEntityFct = tag -> repository
-                .get(searchKey.getSearchIndex(), Searches.TYPE_MAP.inverse().get(searchKey.getResultClass()).toString(),
-                     tag, searchKey.getResultClass());
-        Tuple<List<T>, Set<IFacet<?>>> objectsNFacets = repository
-                .search(tagSearchKey, criterion, "tags", askedTypePredicate, toAskedEntityFct, facetsMap);
-        List<T> objects = objectsNFacets.v1();
-        if (searchResultFilter != null) {
-            objects = objects.stream().filter(searchResultFilter).collect(Collectors.toList());
+        // Only retrieve joined entities URNs (cached by repository), entities are then retrieved by batches
+        Tuple<List<String>, Set<IFacet<?>>> tagsNFacets = repository
+                .search(tagSearchKey, criterion, "tags", askedTypePredicate, Function.identity(), facetsMap);
+        List<String> tags = tagsNFacets.v1();
+        String resultType = Searches.TYPE_MAP.inverse().get(searchKey.getResultClass()).toString();
+        int offset = (int) Math.min(pageRequest.getOffset(), Integer.MAX_VALUE);
+        if (searchResultFilter == null) {
+            // Without filter, total is known without retrieving entities so only asked page is retrieved (total then
+            // includes URNs of entities that are no longer indexed)
+            List<String> pageTags = tags
+                    .subList(Math.min(offset, tags.size()),
+                             (int) Math.min((long) offset + pageRequest.getPageSize(), tags.size()));
+            return new FacetPage<>(multiGet(searchKey, resultType, pageTags), tagsNFacets.v2(), pageRequest,
+                    tags.size());
+        }
+        // With a filter, all entities must be retrieved (by batches) to compute total but only asked page is kept
+        List<T> objects = new ArrayList<>(pageRequest.getPageSize());
+        int total = 0;
+        for (List<String> batchTags : Lists.partition(tags, JOIN_BATCH_SIZE)) {
+            for (T object : multiGet(searchKey, resultType, batchTags)) {
+                if (searchResultFilter.test(object)) {
+                    if ((total >= offset) && (objects.size() < pageRequest.getPageSize())) {
+                        objects.add(object);
+                    }
+                    total++;
+                }
+            }
         }
-        int total = objects.size();
-        if (!objects.isEmpty()) {
-            objects = objects
-                    .subList((int) pageRequest.getOffset(),
-                             (int) Math.min(pageRequest.getOffset() + pageRequest.getPageSize(), objects.size()));
+        return new FacetPage<>(objects, tagsNFacets.v2(), pageRequest, total);
+    }
+
+    /**
+     * Retrieve joined entities from their URNs with one multi-get request, keeping URNs order (not found entities are
+     * ignored)
+     */
+    private <T extends IIndexable> List<T> multiGet(JoinEntitySearchKey<?, T> searchKey, String resultType,
+            List<String> tags) {
+        if (tags.isEmpty()) {
+            return Collections.emptyList();
         }
-        return new FacetPage<>(objects, objectsNFacets.v2(), pageRequest, total);
+        Map<String, T> entitiesByTag = repository.multiGet(searchKey.getSearchIndex(), resultType, tags,
+                                                           searchKey.getResultClass());
+        return tags.stream().map(entitiesByTag::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
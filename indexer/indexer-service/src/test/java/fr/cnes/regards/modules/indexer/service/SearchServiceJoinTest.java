@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.indexer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.common.collect.Tuple;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.modules.dam.domain.entities.Dataset;
+import fr.cnes.regards.modules.dam.domain.entities.DataObject;
+import fr.cnes.regards.modules.indexer.dao.FacetPage;
+import fr.cnes.regards.modules.indexer.dao.IEsRepository;
+import fr.cnes.regards.modules.indexer.dao.spatial.ProjectGeoSettings;
+import fr.cnes.regards.modules.indexer.domain.JoinEntitySearchKey;
+import fr.cnes.regards.modules.indexer.domain.SearchKey;
+import fr.cnes.regards.modules.indexer.domain.criterion.ICriterion;
+import fr.cnes.regards.modules.indexer.domain.spatial.Crs;
+import fr.cnes.regards.modules.model.domain.Model;
+
+/**
+ * Test joined entities search pagination (joined entities are retrieved through multi-get requests)
+ * @author oroussel
+ */
+public class SearchServiceJoinTest {
+
+    private static final String TENANT = "tenant";
+
+    private IEsRepository repository;
+
+    private SearchService searchService;
+
+    /**
+     * Joined entities URNs, in joined search order
+     */
+    private List<String> tags;
+
+    /**
+     * Indexed joined entities by URN
+     */
+    private Map<String, Dataset> datasets;
+
+    @Before
+    public void setUp() {
+        repository = Mockito.mock(IEsRepository.class);
+        IRuntimeTenantResolver tenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(tenantResolver.getTenant()).thenReturn(TENANT);
+        ProjectGeoSettings projectGeoSettings = Mockito.mock(ProjectGeoSettings.class);
+        Mockito.when(projectGeoSettings.getCrs()).thenReturn(Crs.WGS_84);
+        searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "repository", repository);
+        ReflectionTestUtils.setField(searchService, "tenantResolver", tenantResolver);
+        ReflectionTestUtils.setField(searchService, "projectGeoSettings", projectGeoSettings);
+
+        tags = new ArrayList<>();
+        datasets = new HashMap<>();
+        Mockito.doAnswer(invocation -> new Tuple<>(tags, Collections.emptySet())).when(repository)
+                .search(Mockito.any(SearchKey.class), Mockito.any(), Mockito.eq("tags"), Mockito.any(Predicate.class),
+                        Mockito.any(Function.class), Mockito.any());
+        Mockito.when(repository.multiGet(Mockito.eq(TENANT), Mockito.eq(EntityType.DATASET.toString()),
+                                         Mockito.anyCollection(), Mockito.eq(Dataset.class)))
+                .thenAnswer(invocation -> {
+                    Collection<String> ids = invocation.getArgument(2);
+                    return ids.stream().filter(datasets::containsKey)
+                            .collect(Collectors.toMap(Function.identity(), datasets::get));
+                });
+    }
+
+    /**
+     * Create given count of joined entities, those whose index is in missingIndexes being not indexed anymore
+     */
+    private void createDatasets(int count, Integer... missingIndexes) {
+        Model model = new Model();
+        model.setName("Dataset model");
+        List<Integer> missing = Arrays.asList(missingIndexes);
+        for (int i = 0; i < count; i++) {
+            Dataset dataset = new Dataset(model, TENANT, "DS" + i, "dataset " + i);
+            tags.add(dataset.getIpId().toString());
+            if (!missing.contains(i)) {
+                datasets.put(dataset.getIpId().toString(), dataset);
+            }
+        }
+    }
+
+    private static JoinEntitySearchKey<DataObject, Dataset> searchKey() {
+        return Searches.onSingleEntityReturningJoinEntity(EntityType.DATA, EntityType.DATASET);
+    }
+
+    private static List<String> labels(FacetPage<Dataset> page) {
+        return page.getContent().stream().map(Dataset::getLabel).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOnlyAskedPageRetrievedWithoutFilter() {
+        createDatasets(25, 3);
+
+        FacetPage<Dataset> page = searchService.search(searchKey(), PageRequest.of(0, 10), ICriterion.all(), null,
+                                                       null);
+        // Total is joined URNs count, not found entities are only skipped from page content
+        Assert.assertEquals(25, page.getTotalElements());
+        Assert.assertEquals(Arrays.asList("dataset 0", "dataset 1", "dataset 2", "dataset 4", "dataset 5",
+                                                    "dataset 6", "dataset 7", "dataset 8", "dataset 9"),
+                            labels(page));
+        // Only page URNs are asked
+        ArgumentCaptor<Collection<String>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(repository).multiGet(Mockito.eq(TENANT), Mockito.anyString(), idsCaptor.capture(),
+                                            Mockito.eq(Dataset.class));
+        Assert.assertEquals(tags.subList(0, 10), new ArrayList<>(idsCaptor.getValue()));
+
+        // Last page is partial
+        page = searchService.search(searchKey(), PageRequest.of(2, 10), ICriterion.all(), null, null);
+        Assert.assertEquals(25, page.getTotalElements());
+        Assert.assertEquals(Arrays.asList("dataset 20", "dataset 21", "dataset 22", "dataset 23",
+                                                    "dataset 24"),
+                            labels(page));
+
+        // Page after last one is empty and needs no request
+        Mockito.clearInvocations(repository);
+        page = searchService.search(searchKey(), PageRequest.of(3, 10), ICriterion.all(), null, null);
+        Assert.assertTrue(page.getContent().isEmpty());
+        Mockito.verify(repository, Mockito.never()).multiGet(Mockito.any(), Mockito.any(), Mockito.any(),
+                                                             Mockito.any());
+    }
+
+    @Test
+    public void testAllEntitiesRetrievedByBatchesWithFilter() {
+        // 2500 joined entities : 3 multi-get batches, even ones only are kept and some of them are missing
+        createDatasets(2_500, 0, 1_200, 2_498);
+        Predicate<Dataset> evenFilter = ds -> Integer.parseInt(ds.getLabel().substring("dataset ".length())) % 2 == 0;
+
+        FacetPage<Dataset> page = searchService.search(searchKey(), PageRequest.of(1, 10), ICriterion.all(),
+                                                       evenFilter, null);
+        // Filter total only counts found entities
+        Assert.assertEquals(1_250 - 3, page.getTotalElements());
+        Assert.assertEquals(Arrays.asList("dataset 22", "dataset 24", "dataset 26", "dataset 28",
+                                                    "dataset 30", "dataset 32", "dataset 34", "dataset 36",
+                                                    "dataset 38", "dataset 40"),
+                            labels(page));
+        Mockito.verify(repository, Mockito.times(3)).multiGet(Mockito.eq(TENANT), Mockito.anyString(),
+                                                              Mockito.anyCollection(), Mockito.eq(Dataset.class));
+    }
+}
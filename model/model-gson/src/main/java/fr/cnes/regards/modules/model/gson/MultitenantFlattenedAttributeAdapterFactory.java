@@ -18,24 +18,35 @@
  */
 package fr.cnes.regards.modules.model.gson;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.Iterator;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.common.collect.Range;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import fr.cnes.regards.framework.gson.adapters.MultitenantPolymorphicTypeAdapterFactory;
 import fr.cnes.regards.framework.gson.annotation.GsonTypeAdapterFactoryBean;
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
 import fr.cnes.regards.modules.model.domain.attributes.AttributeModel;
 import fr.cnes.regards.modules.model.domain.attributes.Fragment;
+import fr.cnes.regards.modules.model.dto.properties.AbstractProperty;
 import fr.cnes.regards.modules.model.dto.properties.BooleanProperty;
 import fr.cnes.regards.modules.model.dto.properties.DateArrayProperty;
 import fr.cnes.regards.modules.model.dto.properties.DateIntervalProperty;
@@ -55,9 +66,16 @@ import fr.cnes.regards.modules.model.dto.properties.PropertyType;
 import fr.cnes.regards.modules.model.dto.properties.StringArrayProperty;
 import fr.cnes.regards.modules.model.dto.properties.StringProperty;
 import fr.cnes.regards.modules.model.dto.properties.UrlProperty;
+import fr.cnes.regards.modules.model.dto.properties.adapter.IntervalMapping;
 
 /**
- * Manage dynamic attribute (de)serialization
+ * Manage dynamic attribute (de)serialization.<br/>
+ * Properties are read and written directly from/to the JSON stream following the flattened layout :
+ * <pre>
+ * { "&lt;name>" : &lt;value> }
+ * { "&lt;fragment name>" : { "&lt;name>" : &lt;value>, ... } }
+ * </pre>
+ * without building any intermediate {@link com.google.gson.JsonElement} tree.
  *
  * @author Marc Sordi
  */
@@ -76,25 +94,61 @@ public class MultitenantFlattenedAttributeAdapterFactory extends MultitenantPoly
     private static final String DISCRIMINATOR_FIELD_NAME = "name";
 
     /**
-     * Discriminator field
+     * Namespace separator
      */
-    private static final String VALUE_FIELD_NAME = "value";
+    private static final String NS_SEPARATOR = ".";
 
     /**
-     * Namespace separator
+     * Property instantiation by property class
      */
-    private static final String NS_SEPARATOR = ".";
+    private static final Map<Class<?>, Supplier<AbstractProperty<?>>> PROPERTY_SUPPLIERS = new HashMap<>();
+
+    static {
+        PROPERTY_SUPPLIERS.put(BooleanProperty.class, BooleanProperty::new);
+        PROPERTY_SUPPLIERS.put(DateArrayProperty.class, DateArrayProperty::new);
+        PROPERTY_SUPPLIERS.put(DateIntervalProperty.class, DateIntervalProperty::new);
+        PROPERTY_SUPPLIERS.put(DateProperty.class, DateProperty::new);
+        PROPERTY_SUPPLIERS.put(DoubleProperty.class, DoubleProperty::new);
+        PROPERTY_SUPPLIERS.put(DoubleArrayProperty.class, DoubleArrayProperty::new);
+        PROPERTY_SUPPLIERS.put(DoubleIntervalProperty.class, DoubleIntervalProperty::new);
+        PROPERTY_SUPPLIERS.put(IntegerProperty.class, IntegerProperty::new);
+        PROPERTY_SUPPLIERS.put(IntegerArrayProperty.class, IntegerArrayProperty::new);
+        PROPERTY_SUPPLIERS.put(IntegerIntervalProperty.class, IntegerIntervalProperty::new);
+        PROPERTY_SUPPLIERS.put(StringProperty.class, StringProperty::new);
+        PROPERTY_SUPPLIERS.put(StringArrayProperty.class, StringArrayProperty::new);
+        PROPERTY_SUPPLIERS.put(UrlProperty.class, UrlProperty::new);
+        PROPERTY_SUPPLIERS.put(LongProperty.class, LongProperty::new);
+        PROPERTY_SUPPLIERS.put(LongArrayProperty.class, LongArrayProperty::new);
+        PROPERTY_SUPPLIERS.put(LongIntervalProperty.class, LongIntervalProperty::new);
+        PROPERTY_SUPPLIERS.put(ObjectProperty.class, ObjectProperty::new);
+    }
 
     /**
-     * Regexp escape character
+     * Property class by discriminator (ie. property name prefixed by its namespace if any) for each tenant
      */
-    private static final String REGEXP_ESCAPE = "\\";
+    private final ConcurrentMap<String, ConcurrentMap<String, Class<?>>> subtypesByTenant = new ConcurrentHashMap<>();
 
     public MultitenantFlattenedAttributeAdapterFactory(final IRuntimeTenantResolver pRuntimeTenantResolver) {
         super(pRuntimeTenantResolver, IProperty.class, DISCRIMINATOR_FIELD_NAME);
         runtimeTenantResolver = pRuntimeTenantResolver;
     }
 
+    @Override
+    public void registerSubtype(final String pTenant, final Class<?> pType, final String pDiscriminatorFieldValue) {
+        super.registerSubtype(pTenant, pType, pDiscriminatorFieldValue);
+        subtypesByTenant.computeIfAbsent(pTenant, t -> new ConcurrentHashMap<>())
+                .put(pDiscriminatorFieldValue, pType);
+    }
+
+    @Override
+    public void unregisterSubtype(final String pTenant, final Class<?> pType, final String pDiscriminatorFieldValue) {
+        super.unregisterSubtype(pTenant, pType, pDiscriminatorFieldValue);
+        Map<String, Class<?>> subtypes = subtypesByTenant.get(pTenant);
+        if (subtypes != null) {
+            subtypes.remove(pDiscriminatorFieldValue, pType);
+        }
+    }
+
     public void registerSubtype(final String pTenant, final Class<?> pType, final String pDiscriminatorFieldValue,
             final String pNamespace) {
         if (pNamespace == null) {
@@ -246,242 +300,192 @@ public class MultitenantFlattenedAttributeAdapterFactory extends MultitenantPoly
         return matchingClass;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
-    protected JsonElement getOnReadDiscriminator(final JsonElement pJsonElement) {
-        final JsonElement discriminator = null;
-        if (pJsonElement.isJsonObject()) {
-            final JsonObject o = pJsonElement.getAsJsonObject();
-            if (o.size() != 1) {
-                final String errorMessage = String.format("Only single key/value pair is expected in \"%s\"",
-                                                          pJsonElement);
-                LOGGER.error(errorMessage);
-                throw new IllegalArgumentException(errorMessage);
-            }
-            for (final Map.Entry<String, JsonElement> entry : o.entrySet()) {
-                return new JsonPrimitive(entry.getKey());
-            }
+    public <T> TypeAdapter<T> create(final Gson pGson, final TypeToken<T> pType) {
+        if (!IProperty.class.isAssignableFrom(pType.getRawType())) {
+            return null;
         }
-        return discriminator;
+        return (TypeAdapter<T>) new FlattenedPropertyAdapter(pGson).nullSafe();
     }
 
-    @Override
-    protected JsonElement beforeRead(final JsonElement pJsonElement, final String pDiscriminator,
-            final Class<?> pSubType) {
-        final JsonElement restored = restore(pJsonElement, pSubType);
-        if (pSubType == ObjectProperty.class) {
-            addNamespaceToChildren(restored, pDiscriminator);
+    private Map<String, Class<?>> getCurrentTenantSubtypes() {
+        String tenant = runtimeTenantResolver.getTenant();
+        Map<String, Class<?>> subtypes = subtypesByTenant.get(tenant);
+        if (subtypes == null) {
+            final String errorMessage = String.format("No attribute registered for tenant \"%s\".", tenant);
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
         }
-        removeParentNamespace(restored);
-        return restored;
-    }
-
-    @Override
-    protected JsonElement beforeWrite(final JsonElement pJsonElement, final Class<?> pSubType) {
-        return flatten(pJsonElement, pSubType);
+        return subtypes;
     }
 
     /**
-     * Flatten a {@link JsonElement} carrying key and value in separated fields into a single field whose key is the
-     * value of the key field and value the value of the value field
-     *
-     * @param pJsonElement
-     *            {@link JsonElement} to flatten
-     * @param pSubType
-     *            sub type
-     * @return flattened {@link JsonElement}
+     * Streaming {@link IProperty} adapter using flattened layout
      */
-    protected JsonElement flatten(final JsonElement pJsonElement, final Class<?> pSubType) {
-        LOGGER.debug(String.format("Flattening %s", pJsonElement));
-
-        if (!pJsonElement.isJsonObject()) {
-            final String format = "JSON element must be an object containing 2 members whose names are \"%s\" and \"%s\"";
-            final String errorMessage = String.format(format, DISCRIMINATOR_FIELD_NAME, VALUE_FIELD_NAME);
-            LOGGER.error(errorMessage);
-            throw new IllegalArgumentException(errorMessage);
-        }
-
-        final JsonObject current = pJsonElement.getAsJsonObject();
-
-        // Init flattened element
-        final JsonObject flattened = new JsonObject();
-        // Get key : must be a string
-        final JsonElement key = current.get(DISCRIMINATOR_FIELD_NAME);
-        // Get value
-        final JsonElement val = current.get(VALUE_FIELD_NAME);
-
-        if (pSubType == ObjectProperty.class) {
-            // Flattening array elements
-            final JsonObject flattenedObject = new JsonObject();
-            final Iterator<JsonElement> nestedIter = val.getAsJsonArray().iterator();
-            while (nestedIter.hasNext()) {
-                final JsonObject nested = nestedIter.next().getAsJsonObject();
-                for (final Map.Entry<String, JsonElement> e : nested.entrySet()) {
-                    flattenedObject.add(e.getKey(), e.getValue());
+    private class FlattenedPropertyAdapter extends TypeAdapter<IProperty<?>> {
+
+        /**
+         * Value adapter by property class (computed once for all with given Gson)
+         */
+        private final Map<Class<?>, TypeAdapter<Object>> valueAdapters = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        public FlattenedPropertyAdapter(Gson gson) {
+            for (Class<?> propertyClass : PROPERTY_SUPPLIERS.keySet()) {
+                if (propertyClass != ObjectProperty.class) {
+                    // Value type is the generic parameter of AbstractProperty
+                    Type valueType = ((ParameterizedType) propertyClass.getGenericSuperclass())
+                            .getActualTypeArguments()[0];
+                    TypeAdapter<?> valueAdapter;
+                    if ((valueType instanceof ParameterizedType)
+                            && (((ParameterizedType) valueType).getRawType() == Range.class)) {
+                        Type boundType = ((ParameterizedType) valueType).getActualTypeArguments()[0];
+                        valueAdapter = new RangeAdapter<>((TypeAdapter<Comparable>) gson
+                                .getAdapter(TypeToken.get(boundType))).nullSafe();
+                    } else {
+                        valueAdapter = gson.getAdapter(TypeToken.get(valueType));
+                    }
+                    valueAdapters.put(propertyClass, (TypeAdapter<Object>) valueAdapter);
                 }
             }
-            flattened.add(key.getAsString(), flattenedObject);
-        } else {
-            flattened.add(key.getAsString(), val);
         }
 
-        LOGGER.debug(String.format("Flattened object : \"%s\" -> \"%s\"", pJsonElement, flattened));
-
-        return flattened;
-    }
-
-    /**
-     * Restore {@link JsonElement} object structure (inverse flattening)
-     *
-     * @param pJsonElement
-     *            {@link JsonElement} to restore
-     * @param pSubType
-     *            sub type
-     * @return restored {@link JsonElement}
-     */
-    protected JsonElement restore(final JsonElement pJsonElement, final Class<?> pSubType) {
-        LOGGER.debug(String.format("Restoring %s", pJsonElement));
-
-        if (!pJsonElement.isJsonObject()) {
-            final String errorMessage = "JSON element must be an object.";
-            LOGGER.error(errorMessage);
-            throw new IllegalArgumentException(errorMessage);
+        @Override
+        public void write(JsonWriter out, IProperty<?> property) throws IOException {
+            out.beginObject();
+            writeProperty(out, property);
+            out.endObject();
         }
 
-        final JsonObject current = pJsonElement.getAsJsonObject();
-
-        // Init restored element
-        final JsonObject restored = new JsonObject();
-        // Restore members
-        for (final Map.Entry<String, JsonElement> e : current.entrySet()) {
-            restored.addProperty(DISCRIMINATOR_FIELD_NAME, e.getKey());
-            final JsonElement val = e.getValue();
-            if (pSubType == ObjectProperty.class) {
-                // Restoring array but not element structure
-                final JsonArray restoredArray = new JsonArray();
-                for (final Map.Entry<String, JsonElement> nestedEntry : val.getAsJsonObject().entrySet()) {
-                    final JsonObject nestedObject = new JsonObject();
-                    nestedObject.add(nestedEntry.getKey(), nestedEntry.getValue());
-                    restoredArray.add(nestedObject);
+        private void writeProperty(JsonWriter out, IProperty<?> property) throws IOException {
+            out.name(property.getName());
+            if (property instanceof ObjectProperty) {
+                out.beginObject();
+                Set<IProperty<?>> children = ((ObjectProperty) property).getValue();
+                if (children != null) {
+                    for (IProperty<?> child : children) {
+                        writeProperty(out, child);
+                    }
                 }
-                restored.add(VALUE_FIELD_NAME, restoredArray);
+                out.endObject();
             } else {
-                restored.add(VALUE_FIELD_NAME, val);
+                getValueAdapter(property.getClass()).write(out, property.getValue());
             }
         }
 
-        LOGGER.debug(String.format("Restored object : \"%s\" -> \"%s\"", pJsonElement, restored));
-
-        return restored;
-    }
-
-    /**
-     * Add namespace to {@link JsonElement} children of {@link ObjectProperty}
-     *
-     * @param pJsonElement
-     *            {@link JsonElement}
-     * @param pDiscriminator
-     *            discriminator value
-     */
-    protected void addNamespaceToChildren(final JsonElement pJsonElement, final String pDiscriminator) {
-
-        if (pJsonElement.isJsonObject()) {
-            final JsonElement children = pJsonElement.getAsJsonObject().get(VALUE_FIELD_NAME);
-
-            if (children == null) {
-                throw missingFieldException(pJsonElement, VALUE_FIELD_NAME);
+        @Override
+        public IProperty<?> read(JsonReader in) throws IOException {
+            Map<String, Class<?>> subtypes = getCurrentTenantSubtypes();
+            in.beginObject();
+            if (!in.hasNext()) {
+                throw singlePairException(in);
+            }
+            IProperty<?> property = readProperty(in, subtypes, in.nextName());
+            if (in.hasNext()) {
+                throw singlePairException(in);
             }
+            in.endObject();
+            return property;
+        }
 
-            if (children.isJsonArray()) {
-                final Iterator<JsonElement> childrenIter = children.getAsJsonArray().iterator();
-                while (childrenIter.hasNext()) {
-                    addNamespaceToChild(childrenIter.next(), pDiscriminator);
+        @SuppressWarnings("unchecked")
+        private IProperty<?> readProperty(JsonReader in, Map<String, Class<?>> subtypes, String discriminator)
+                throws IOException {
+            Class<?> subtype = subtypes.get(discriminator);
+            Supplier<AbstractProperty<?>> supplier = subtype == null ? null : PROPERTY_SUPPLIERS.get(subtype);
+            if (supplier == null) {
+                final String errorMessage = String.format("No property type registered for \"%s\" at %s",
+                                                          discriminator, in.getPath());
+                LOGGER.error(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            AbstractProperty<Object> property = (AbstractProperty<Object>) supplier.get();
+            // Name is the discriminator without its namespace
+            property.setName(discriminator.substring(discriminator.lastIndexOf(NS_SEPARATOR) + 1));
+            if (subtype == ObjectProperty.class) {
+                Set<IProperty<?>> children = new LinkedHashSet<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    children.add(readProperty(in, subtypes, discriminator + NS_SEPARATOR + in.nextName()));
                 }
+                in.endObject();
+                property.setValue(children);
             } else {
-                throw objectRequiredException(pJsonElement);
+                property.setValue(getValueAdapter(subtype).read(in));
             }
-        } else {
-            throw objectRequiredException(pJsonElement);
+            return property;
         }
-    }
 
-    /**
-     * Add namespace to {@link JsonElement} child keys
-     *
-     * @param pJsonElement
-     *            {@link JsonElement}
-     * @param pDiscriminator
-     *            discriminator value
-     */
-    protected void addNamespaceToChild(final JsonElement pJsonElement, final String pDiscriminator) {
-
-        if (pJsonElement.isJsonObject()) {
-
-            // Backup for logging
-            final String logOriginal = pJsonElement.toString();
-            final JsonObject o = pJsonElement.getAsJsonObject();
-
-            for (final Map.Entry<String, JsonElement> entry : o.entrySet()) {
-                // Add new key mapping
-                o.add(pDiscriminator.concat(NS_SEPARATOR).concat(entry.getKey()), entry.getValue());
-                // Remove old key mapping
-                o.remove(entry.getKey());
+        private TypeAdapter<Object> getValueAdapter(Class<?> propertyClass) {
+            TypeAdapter<Object> valueAdapter = valueAdapters.get(propertyClass);
+            if (valueAdapter == null) {
+                final String errorMessage = String.format("Unexpected property class \"%s\".", propertyClass);
+                LOGGER.error(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
             }
+            return valueAdapter;
+        }
 
-            LOGGER.debug(String.format("Namespace added : \"%s\" -> \"%s\"", logOriginal, pJsonElement.toString()));
-        } else {
-            throw objectRequiredException(pJsonElement);
+        private IllegalArgumentException singlePairException(JsonReader in) {
+            final String errorMessage = String.format("Only single key/value pair is expected at %s", in.getPath());
+            LOGGER.error(errorMessage);
+            return new IllegalArgumentException(errorMessage);
         }
     }
 
     /**
-     * Remove namespace from {@link JsonElement}
-     *
-     * @param pJsonElement
-     *            target {@link JsonElement}
+     * Range value adapter (same layout as interval properties adapters, see
+     * {@link fr.cnes.regards.modules.model.dto.properties.adapter.AbstractIntervalAttributeTypeAdapter}).<br/>
+     * A missing bound is written as no bound at all and read back as unbounded. Bound types are not part of the
+     * layout so bounds are always read back as closed ones.
+     * @param <C> bound type
      */
-    protected void removeParentNamespace(final JsonElement pJsonElement) {
+    private static class RangeAdapter<C extends Comparable> extends TypeAdapter<Range<C>> {
 
-        if (pJsonElement.isJsonObject()) {
+        private final TypeAdapter<C> boundAdapter;
 
-            // Backup for logging
-            final String logOriginal = pJsonElement.toString();
+        public RangeAdapter(TypeAdapter<C> boundAdapter) {
+            this.boundAdapter = boundAdapter;
+        }
 
-            final JsonObject o = pJsonElement.getAsJsonObject();
-            final JsonElement nsElement = o.get(DISCRIMINATOR_FIELD_NAME);
-            if (nsElement == null) {
-                throw missingFieldException(pJsonElement, DISCRIMINATOR_FIELD_NAME);
+        @Override
+        public void write(JsonWriter out, Range<C> range) throws IOException {
+            out.beginObject();
+            if (range.hasLowerBound()) {
+                out.name(IntervalMapping.RANGE_LOWER_BOUND);
+                boundAdapter.write(out, range.lowerEndpoint());
+            }
+            if (range.hasUpperBound()) {
+                out.name(IntervalMapping.RANGE_UPPER_BOUND);
+                boundAdapter.write(out, range.upperEndpoint());
             }
+            out.endObject();
+        }
 
-            // Compute and inject name without its namespace
-            final String nsName = nsElement.getAsString();
-            final String[] splitNsName = nsName.split(REGEXP_ESCAPE + NS_SEPARATOR);
-            o.add(DISCRIMINATOR_FIELD_NAME, new JsonPrimitive(splitNsName[splitNsName.length - 1]));
-
-            if (LOGGER.isDebugEnabled()) {
-                if (splitNsName.length > 1) {
-                    LOGGER.debug(String.format("Namespace removed : \"%s\" -> \"%s\"", logOriginal,
-                                               pJsonElement.toString()));
-                } else {
-                    LOGGER.debug(String.format("No namespace to remove : \"%s\" -> \"%s\"", logOriginal,
-                                               pJsonElement.toString()));
+        @Override
+        public Range<C> read(JsonReader in) throws IOException {
+            C lowerBound = null;
+            C upperBound = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case IntervalMapping.RANGE_LOWER_BOUND:
+                        lowerBound = boundAdapter.read(in);
+                        break;
+                    case IntervalMapping.RANGE_UPPER_BOUND:
+                        upperBound = boundAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
                 }
             }
-        } else {
-            throw objectRequiredException(pJsonElement);
+            in.endObject();
+            // No bound at all (or only null ones) : unbounded range
+            if ((lowerBound == null) && (upperBound == null)) {
+                return Range.all();
+            }
+            return IProperty.buildRange(lowerBound, upperBound);
         }
     }
-
-    private IllegalArgumentException objectRequiredException(final JsonElement pJsonElement) {
-        final String errorMessage = String.format("Unexpected JSON element %s. Object required.",
-                                                  pJsonElement.toString());
-        LOGGER.error(errorMessage);
-        return new IllegalArgumentException(errorMessage);
-    }
-
-    private IllegalArgumentException missingFieldException(final JsonElement pJsonElement, final String pFieldName) {
-        final String errorMessage = String.format("JSON element %s must contains a \"%s\" field",
-                                                  pJsonElement.toString(), pFieldName);
-        LOGGER.error(errorMessage);
-        return new IllegalArgumentException(errorMessage);
-    }
 }
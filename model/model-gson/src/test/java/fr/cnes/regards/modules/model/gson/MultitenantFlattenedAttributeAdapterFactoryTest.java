@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.model.gson;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Range;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import fr.cnes.regards.framework.gson.adapters.OffsetDateTimeAdapter;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.modules.model.dto.properties.DateIntervalProperty;
+import fr.cnes.regards.modules.model.dto.properties.IProperty;
+import fr.cnes.regards.modules.model.dto.properties.IntegerArrayProperty;
+import fr.cnes.regards.modules.model.dto.properties.IntegerIntervalProperty;
+import fr.cnes.regards.modules.model.dto.properties.IntegerProperty;
+import fr.cnes.regards.modules.model.dto.properties.ObjectProperty;
+import fr.cnes.regards.modules.model.dto.properties.StringArrayProperty;
+import fr.cnes.regards.modules.model.dto.properties.StringProperty;
+
+/**
+ * Round-trip tests of {@link MultitenantFlattenedAttributeAdapterFactory} streaming (de)serialization
+ * @author oroussel
+ */
+public class MultitenantFlattenedAttributeAdapterFactoryTest {
+
+    private static final String TENANT = "tenant1";
+
+    private static final String OTHER_TENANT = "tenant2";
+
+    private IRuntimeTenantResolver runtimeTenantResolver;
+
+    private MultitenantFlattenedAttributeAdapterFactory factory;
+
+    private Gson gson;
+
+    @Before
+    public void setUp() {
+        runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+        factory = new MultitenantFlattenedAttributeAdapterFactory(runtimeTenantResolver);
+        gson = new GsonBuilder().registerTypeAdapter(OffsetDateTime.class, new OffsetDateTimeAdapter().nullSafe())
+                .registerTypeAdapterFactory(factory).create();
+    }
+
+    private IProperty<?> roundTrip(IProperty<?> property) {
+        return gson.fromJson(gson.toJson(property, IProperty.class), IProperty.class);
+    }
+
+    @Test
+    public void testSimpleProperty() {
+        factory.registerSubtype(TENANT, IntegerProperty.class, "int");
+        factory.registerSubtype(TENANT, StringProperty.class, "string");
+
+        Assert.assertEquals("{\"int\":42}", gson.toJson(IProperty.buildInteger("int", 42), IProperty.class));
+        IProperty<?> read = roundTrip(IProperty.buildInteger("int", 42));
+        Assert.assertTrue(read instanceof IntegerProperty);
+        Assert.assertEquals("int", read.getName());
+        Assert.assertEquals(42, read.getValue());
+
+        read = roundTrip(IProperty.buildString("string", "Esope reste et se repose"));
+        Assert.assertTrue(read instanceof StringProperty);
+        Assert.assertEquals("Esope reste et se repose", read.getValue());
+    }
+
+    @Test
+    public void testArrays() {
+        factory.registerSubtype(TENANT, IntegerArrayProperty.class, "intArray");
+        factory.registerSubtype(TENANT, StringArrayProperty.class, "stringArray");
+
+        IProperty<?> read = roundTrip(IProperty.buildIntegerArray("intArray", -2, -1, 0, 1, 2));
+        Assert.assertTrue(read instanceof IntegerArrayProperty);
+        Assert.assertArrayEquals(new Integer[] { -2, -1, 0, 1, 2 }, (Integer[]) read.getValue());
+
+        read = roundTrip(IProperty.buildStringArray("stringArray"));
+        Assert.assertArrayEquals(new String[0], (String[]) read.getValue());
+    }
+
+    @Test
+    public void testFragment() {
+        factory.registerSubtype(TENANT, ObjectProperty.class, "frag");
+        factory.registerSubtype(TENANT, IntegerProperty.class, "int", "frag");
+        factory.registerSubtype(TENANT, StringArrayProperty.class, "strings", "frag");
+        // Same name outside fragment with another type
+        factory.registerSubtype(TENANT, StringProperty.class, "int");
+
+        IProperty<?> read = roundTrip(IProperty.buildObject("frag", IProperty.buildInteger("int", 1),
+                                                            IProperty.buildStringArray("strings", "a", "b")));
+        Assert.assertTrue(read instanceof ObjectProperty);
+        Assert.assertEquals("frag", read.getName());
+        ObjectProperty fragment = (ObjectProperty) read;
+        Assert.assertEquals(2, fragment.getValue().size());
+        for (IProperty<?> child : fragment.getValue()) {
+            if (child.getName().equals("int")) {
+                Assert.assertTrue(child instanceof IntegerProperty);
+                Assert.assertEquals(1, child.getValue());
+            } else {
+                Assert.assertEquals("strings", child.getName());
+                Assert.assertArrayEquals(new String[] { "a", "b" }, (String[]) child.getValue());
+            }
+        }
+
+        // Empty fragment
+        read = roundTrip(IProperty.buildObject("frag"));
+        Assert.assertTrue(((ObjectProperty) read).getValue().isEmpty());
+    }
+
+    @Test
+    public void testNestedObjects() {
+        factory.registerSubtype(TENANT, ObjectProperty.class, "outer");
+        factory.registerSubtype(TENANT, ObjectProperty.class, "inner", "outer");
+        factory.registerSubtype(TENANT, IntegerProperty.class, "int", "outer.inner");
+
+        IProperty<?> read = roundTrip(IProperty
+                .buildObject("outer", IProperty.buildObject("inner", IProperty.buildInteger("int", 7))));
+        ObjectProperty outer = (ObjectProperty) read;
+        Assert.assertEquals(1, outer.getValue().size());
+        ObjectProperty inner = (ObjectProperty) outer.getValue().iterator().next();
+        Assert.assertEquals("inner", inner.getName());
+        IProperty<?> leaf = inner.getValue().iterator().next();
+        Assert.assertTrue(leaf instanceof IntegerProperty);
+        Assert.assertEquals("int", leaf.getName());
+        Assert.assertEquals(7, leaf.getValue());
+    }
+
+    @Test
+    public void testIntervals() {
+        factory.registerSubtype(TENANT, IntegerIntervalProperty.class, "interval");
+        factory.registerSubtype(TENANT, DateIntervalProperty.class, "dateInterval");
+
+        Assert.assertEquals(Range.closed(-10, 10),
+                            roundTrip(IProperty.buildIntegerInterval("interval", -10, 10)).getValue());
+        // Unbounded on one side
+        Assert.assertEquals(Range.atLeast(-10),
+                            roundTrip(IProperty.buildIntegerInterval("interval", Range.atLeast(-10))).getValue());
+        Assert.assertEquals(Range.atMost(10),
+                            roundTrip(IProperty.buildIntegerInterval("interval", Range.atMost(10))).getValue());
+        // Unbounded on both sides
+        Assert.assertEquals(Range.all(),
+                            roundTrip(IProperty.buildIntegerInterval("interval", Range.<Integer> all())).getValue());
+        // Exclusive bounds are not part of the layout, they are read back as inclusive ones
+        Assert.assertEquals(Range.closed(-10, 10),
+                            roundTrip(IProperty.buildIntegerInterval("interval", Range.open(-10, 10))).getValue());
+
+        OffsetDateTime start = OffsetDateTime.of(1939, 9, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        OffsetDateTime stop = OffsetDateTime.of(1945, 9, 2, 0, 0, 0, 0, ZoneOffset.UTC);
+        Assert.assertEquals(Range.closed(start, stop),
+                            roundTrip(IProperty.buildDateInterval("dateInterval", start, stop)).getValue());
+    }
+
+    @Test
+    public void testIntervalsWithMissingOrNullBounds() {
+        factory.registerSubtype(TENANT, IntegerIntervalProperty.class, "interval");
+
+        Assert.assertEquals(Range.all(), gson.fromJson("{\"interval\":{}}", IProperty.class).getValue());
+        Assert.assertEquals(Range.all(),
+                            gson.fromJson("{\"interval\":{\"lowerBound\":null,\"upperBound\":null}}", IProperty.class)
+                                    .getValue());
+        Assert.assertEquals(Range.atLeast(3),
+                            gson.fromJson("{\"interval\":{\"lowerBound\":3,\"upperBound\":null}}", IProperty.class)
+                                    .getValue());
+        Assert.assertEquals(Range.atMost(3),
+                            gson.fromJson("{\"interval\":{\"upperBound\":3}}", IProperty.class).getValue());
+        Assert.assertNull(gson.fromJson("{\"interval\":null}", IProperty.class).getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAttribute() {
+        factory.registerSubtype(TENANT, IntegerProperty.class, "int");
+        gson.fromJson("{\"unknown\":1}", IProperty.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAttributeInFragment() {
+        factory.registerSubtype(TENANT, ObjectProperty.class, "frag");
+        factory.registerSubtype(TENANT, IntegerProperty.class, "int", "frag");
+        gson.fromJson("{\"frag\":{\"int\":1,\"unknown\":2}}", IProperty.class);
+    }
+
+    @Test
+    public void testTenantsWithConflictingSubtypes() {
+        factory.registerSubtype(TENANT, IntegerProperty.class, "att");
+        factory.registerSubtype(OTHER_TENANT, StringProperty.class, "att");
+
+        IProperty<?> read = gson.fromJson("{\"att\":\"12\"}", IProperty.class);
+        Assert.assertTrue(read instanceof IntegerProperty);
+        Assert.assertEquals(12, read.getValue());
+
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(OTHER_TENANT);
+        read = gson.fromJson("{\"att\":\"12\"}", IProperty.class);
+        Assert.assertTrue(read instanceof StringProperty);
+        Assert.assertEquals("12", read.getValue());
+
+        // Unregistering from one tenant doesn't affect the other one
+        factory.unregisterSubtype(OTHER_TENANT, StringProperty.class, "att");
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+        Assert.assertTrue(gson.fromJson("{\"att\":12}", IProperty.class) instanceof IntegerProperty);
+    }
+}
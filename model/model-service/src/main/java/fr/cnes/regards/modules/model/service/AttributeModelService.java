@@ -24,6 +24,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +39,7 @@ import fr.cnes.regards.framework.amqp.IPublisher;
 import fr.cnes.regards.framework.jpa.multitenant.transactional.MultitenantTransactional;
 import fr.cnes.regards.framework.module.rest.exception.EntityAlreadyExistsException;
 import fr.cnes.regards.framework.module.rest.exception.EntityInconsistentIdentifierException;
+import fr.cnes.regards.framework.module.rest.exception.EntityInvalidException;
 import fr.cnes.regards.framework.module.rest.exception.EntityNotFoundException;
 import fr.cnes.regards.framework.module.rest.exception.EntityOperationForbiddenException;
 import fr.cnes.regards.framework.module.rest.exception.ModuleException;
@@ -52,6 +55,7 @@ import fr.cnes.regards.modules.model.domain.attributes.AttributeProperty;
 import fr.cnes.regards.modules.model.domain.attributes.Fragment;
 import fr.cnes.regards.modules.model.domain.attributes.restriction.AbstractRestriction;
 import fr.cnes.regards.modules.model.domain.attributes.restriction.IRestriction;
+import fr.cnes.regards.modules.model.domain.attributes.restriction.PatternRestriction;
 import fr.cnes.regards.modules.model.domain.event.AttributeModelCreated;
 import fr.cnes.regards.modules.model.domain.event.AttributeModelDeleted;
 import fr.cnes.regards.modules.model.dto.properties.PropertyType;
@@ -226,15 +230,36 @@ public class AttributeModelService implements IAttributeModelService {
      * Manage attribute model restriction
      * @param attributeModel attribute model
      * @throws UnsupportedRestrictionException if restriction not supported
+     * @throws EntityInvalidException if restriction pattern cannot be compiled
      */
-    private void manageRestriction(AttributeModel attributeModel) throws UnsupportedRestrictionException {
+    private void manageRestriction(AttributeModel attributeModel) throws ModuleException {
         final AbstractRestriction restriction = attributeModel.getRestriction();
         if (restriction != null) {
             checkRestrictionSupport(attributeModel);
+            checkRestrictionPattern(attributeModel);
             restrictionRepository.save(restriction);
         }
     }
 
+    /**
+     * Reject invalid pattern restriction when attribute is saved instead of failing later on each validation
+     * @param attributeModel attribute model
+     * @throws EntityInvalidException if restriction pattern cannot be compiled
+     */
+    private void checkRestrictionPattern(AttributeModel attributeModel) throws EntityInvalidException {
+        if (attributeModel.getRestriction() instanceof PatternRestriction) {
+            String pattern = ((PatternRestriction) attributeModel.getRestriction()).getPattern();
+            try {
+                Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                String message = String.format("Invalid pattern restriction \"%s\" for attribute %s : %s", pattern,
+                                               attributeModel.getName(), e.getDescription());
+                LOGGER.error(message);
+                throw new EntityInvalidException(message);
+            }
+        }
+    }
+
     /**
      * Manage attribute model fragment (fallback to default fragment)
      * @param attributeModel attribute model
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017-2020 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.model.service;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+
+import fr.cnes.regards.framework.amqp.IPublisher;
+import fr.cnes.regards.framework.module.rest.exception.EntityInvalidException;
+import fr.cnes.regards.framework.module.rest.exception.ModuleException;
+import fr.cnes.regards.modules.model.dao.IAttributeModelRepository;
+import fr.cnes.regards.modules.model.dao.IAttributePropertyRepository;
+import fr.cnes.regards.modules.model.dao.IFragmentRepository;
+import fr.cnes.regards.modules.model.dao.IModelAttrAssocRepository;
+import fr.cnes.regards.modules.model.dao.IRestrictionRepository;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModel;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModelBuilder;
+import fr.cnes.regards.modules.model.dto.properties.PropertyType;
+
+/**
+ * Test attribute model service restriction checks
+ *
+ * @author oroussel
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AttributeModelServiceTest {
+
+    /**
+     * Invalid regular expression (unclosed character class)
+     */
+    private static final String INVALID_PATTERN = "[a-z";
+
+    @Mock
+    private IAttributeModelRepository mockAttModelR;
+
+    @Mock
+    private IRestrictionRepository mockRestrictionR;
+
+    @Mock
+    private IFragmentRepository mockFragmentR;
+
+    private IAttributeModelService attributeModelService;
+
+    @Before
+    public void beforeTest() {
+        attributeModelService = new AttributeModelService(new ArrayList<>(), mockAttModelR, mockRestrictionR,
+                mockFragmentR, Mockito.mock(IAttributePropertyRepository.class),
+                Mockito.mock(IModelAttrAssocRepository.class), Mockito.mock(IPublisher.class),
+                Mockito.mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    public void testCreateWithInvalidPattern() throws ModuleException {
+        AttributeModel attModel = AttributeModelBuilder.build("CODE", PropertyType.STRING, "Code")
+                .withPatternRestriction(INVALID_PATTERN);
+        try {
+            attributeModelService.createAttribute(attModel);
+            Assert.fail("Attribute with invalid pattern restriction should be rejected");
+        } catch (EntityInvalidException e) {
+            Assert.assertTrue(e.getMessage().contains(INVALID_PATTERN));
+        }
+        // Nothing saved
+        Mockito.verifyZeroInteractions(mockRestrictionR, mockFragmentR, mockAttModelR);
+    }
+
+    @Test
+    public void testUpdateWithInvalidPattern() throws ModuleException {
+        AttributeModel attModel = AttributeModelBuilder.build("CODE", PropertyType.STRING, "Code").withId(1L)
+                .withPatternRestriction(INVALID_PATTERN);
+        Mockito.when(mockAttModelR.existsById(1L)).thenReturn(true);
+        try {
+            attributeModelService.updateAttribute(1L, attModel);
+            Assert.fail("Attribute with invalid pattern restriction should be rejected");
+        } catch (EntityInvalidException e) {
+            Assert.assertTrue(e.getMessage().contains(INVALID_PATTERN));
+        }
+        // Nothing saved
+        Mockito.verifyZeroInteractions(mockRestrictionR);
+        Mockito.verify(mockAttModelR, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    public void testUpdateWithValidPattern() throws ModuleException {
+        AttributeModel attModel = AttributeModelBuilder.build("CODE", PropertyType.STRING, "Code").withId(1L)
+                .withPatternRestriction("[a-z]+");
+        Mockito.when(mockAttModelR.existsById(1L)).thenReturn(true);
+        attributeModelService.updateAttribute(1L, attModel);
+        Mockito.verify(mockRestrictionR).save(attModel.getRestriction());
+        Mockito.verify(mockAttModelR).save(attModel);
+    }
+}
@@ -18,12 +18,17 @@
  */
 package fr.cnes.regards.modules.model.service.validation;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,17 +37,23 @@ import org.springframework.context.ApplicationListener;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 
 import fr.cnes.regards.framework.amqp.ISubscriber;
 import fr.cnes.regards.framework.amqp.domain.IHandler;
 import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
 import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
 import fr.cnes.regards.modules.model.domain.ModelAttrAssoc;
 import fr.cnes.regards.modules.model.dto.event.ModelChangeEvent;
 
 /**
- * Cache proxy to handle model attributes
+ * Cache proxy to handle model attributes.<br/>
+ * Caches are preloaded for all tenants at startup. Model changes and periodic refreshes are reloaded
+ * asynchronously : readers keep getting previous attributes until new ones are available.
  *
  * @author Marc SORDI
  *
@@ -56,7 +67,16 @@ public abstract class AbstractCacheableModelFinder
     * Model cache is used to avoid useless database request as models rarely change!<br/>
     * tenant key -> model key / attributes val
     */
-    private final Map<String, LoadingCache<String, List<ModelAttrAssoc>>> modelCacheMap = new HashMap<>();
+    private final ConcurrentMap<String, LoadingCache<String, List<ModelAttrAssoc>>> modelCacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * Executor used to reload models without blocking readers
+     */
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-finder-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Autowired
     private ISubscriber subscriber;
@@ -64,9 +84,35 @@ public abstract class AbstractCacheableModelFinder
     @Autowired
     private IRuntimeTenantResolver runtimeTenantResolver;
 
+    @Autowired
+    private ITenantResolver tenantResolver;
+
     @Override
     public void onApplicationEvent(ApplicationReadyEvent event) {
         subscriber.subscribeTo(ModelChangeEvent.class, this);
+        // Warm caches so first objects of each model don't pay attributes loading
+        for (String tenant : tenantResolver.getAllActiveTenants()) {
+            runtimeTenantResolver.forceTenant(tenant);
+            try {
+                LoadingCache<String, List<ModelAttrAssoc>> modelCache = getTenantCache(tenant);
+                for (String model : loadModelNames()) {
+                    List<ModelAttrAssoc> attributesByModel = loadAttributesByModel(model);
+                    if (attributesByModel != null) {
+                        modelCache.put(model, attributesByModel);
+                    }
+                }
+                LOGGER.info("{} models preloaded for tenant {}", modelCache.size(), tenant);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Models cannot be preloaded for tenant %s", tenant), e);
+            } finally {
+                runtimeTenantResolver.clearTenant();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reloadExecutor.shutdownNow();
     }
 
     @Override
@@ -80,42 +126,87 @@ public abstract class AbstractCacheableModelFinder
         }
     }
 
-    private LoadingCache<String, List<ModelAttrAssoc>> getTenantCache(String tenant) {
-
+    /**
+     * @return hit, miss and load statistics of given tenant cache (null if no cache exists yet for this tenant)
+     */
+    public CacheStats getStats(String tenant) {
         LoadingCache<String, List<ModelAttrAssoc>> modelCache = modelCacheMap.get(tenant);
-        if (modelCache == null) {
-            // Dynamically initialize cache
-            modelCache = CacheBuilder.newBuilder().expireAfterWrite(60, TimeUnit.MINUTES)
-                    .build(new CacheLoader<String, List<ModelAttrAssoc>>() {
-
-                        @Override
-                        public List<ModelAttrAssoc> load(String modelName) throws Exception {
-                            List<ModelAttrAssoc> attributesByModel = loadAttributesByModel(modelName);
-                            if (attributesByModel == null) {
-                                throw new Exception(String.format("Unknow Model %s", modelName));
-                            }
-                            return attributesByModel;
+        return modelCache == null ? null : modelCache.stats();
+    }
+
+    private LoadingCache<String, List<ModelAttrAssoc>> getTenantCache(String tenant) {
+        // Dynamically initialize cache
+        return modelCacheMap.computeIfAbsent(tenant, t -> CacheBuilder.newBuilder()
+                .refreshAfterWrite(60, TimeUnit.MINUTES).recordStats()
+                .build(new CacheLoader<String, List<ModelAttrAssoc>>() {
+
+                    @Override
+                    public List<ModelAttrAssoc> load(String modelName) throws Exception {
+                        List<ModelAttrAssoc> attributesByModel = loadAttributesByModel(modelName);
+                        if (attributesByModel == null) {
+                            throw new Exception(String.format("Unknow Model %s", modelName));
                         }
-                    });
-            modelCacheMap.put(tenant, modelCache);
-        }
-        return modelCache;
+                        return attributesByModel;
+                    }
+
+                    @Override
+                    public ListenableFuture<List<ModelAttrAssoc>> reload(String modelName,
+                            List<ModelAttrAssoc> oldValue) {
+                        ListenableFutureTask<List<ModelAttrAssoc>> task = ListenableFutureTask.create(() -> {
+                            runtimeTenantResolver.forceTenant(t);
+                            try {
+                                return load(modelName);
+                            } finally {
+                                runtimeTenantResolver.clearTenant();
+                            }
+                        });
+                        reloadExecutor.execute(task);
+                        return task;
+                    }
+                }));
     }
 
-    private void cleanTenantCache(String tenant, String model) {
-        LoadingCache<String, List<ModelAttrAssoc>> modelCache = modelCacheMap.get(tenant);
-        if (modelCache != null) {
-            modelCache.invalidate(model);
-        }
+    /**
+     * Asynchronously reload model attributes, previous ones are still returned until reloading is done
+     */
+    private void reloadTenantCache(String tenant, String model) {
+        reloadExecutor.execute(() -> {
+            runtimeTenantResolver.forceTenant(tenant);
+            try {
+                LoadingCache<String, List<ModelAttrAssoc>> modelCache = getTenantCache(tenant);
+                List<ModelAttrAssoc> attributesByModel = loadAttributesByModel(model);
+                if (attributesByModel == null) {
+                    // Model has been deleted
+                    modelCache.invalidate(model);
+                } else {
+                    modelCache.put(model, attributesByModel);
+                }
+                LOGGER.debug("Model cache of tenant {} reloaded ({})", tenant, modelCache.stats());
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Model %s of tenant %s cannot be reloaded", model, tenant), e);
+                // Don't keep outdated attributes, they will be loaded again on next access
+                getTenantCache(tenant).invalidate(model);
+            } finally {
+                runtimeTenantResolver.clearTenant();
+            }
+        });
     }
 
     protected abstract List<ModelAttrAssoc> loadAttributesByModel(String modelName);
 
+    /**
+     * Retrieve names of all models of current tenant, used to preload cache at startup
+     * @return model names (empty by default, no preloading)
+     */
+    protected List<String> loadModelNames() {
+        return Collections.emptyList();
+    }
+
     @Override
     public void handle(TenantWrapper<ModelChangeEvent> pWrapper) {
         String tenant = pWrapper.getTenant();
         String model = pWrapper.getContent().getModel();
         LOGGER.info("Change detected for model \"{}\" of tenant \"{}\"", model, tenant);
-        cleanTenantCache(tenant, model);
+        reloadTenantCache(tenant, model);
     }
 }
@@ -19,6 +19,7 @@
 package fr.cnes.regards.modules.model.service.validation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,6 +32,10 @@ import org.springframework.validation.Errors;
 import org.springframework.validation.MapBindingResult;
 import org.springframework.validation.Validator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import fr.cnes.regards.framework.geojson.AbstractFeature;
 import fr.cnes.regards.modules.model.domain.ComputationMode;
 import fr.cnes.regards.modules.model.domain.ModelAttrAssoc;
@@ -42,7 +47,12 @@ import fr.cnes.regards.modules.model.service.validation.validator.restriction.Re
 
 /**
  *
- * Override this class to validate feature properties
+ * Override this class to validate feature properties.<br/>
+ * Model attributes are compiled once into a {@link ValidationPlan} (attribute paths and validators) reused for all
+ * features of the same model. Plans are weakly keyed by the attribute list instance returned by the
+ * {@link IModelFinder} so they are dropped as soon as the finder reloads the model (ie after a ModelChangeEvent).<br/>
+ * Only model compilation is shared : each validation still allocates its own errors holder (a MapBindingResult) and
+ * property map.
  * @author oroussel
  * @author Marc SORDI
  */
@@ -53,6 +63,18 @@ public abstract class AbstractValidationService<F extends AbstractFeature<Set<IP
 
     private final IModelFinder modelFinder;
 
+    /**
+     * Compiled validation plans, keys are compared by identity (weak keys)
+     */
+    private final LoadingCache<List<ModelAttrAssoc>, ValidationPlan> planCache = CacheBuilder.newBuilder().weakKeys()
+            .build(new CacheLoader<List<ModelAttrAssoc>, ValidationPlan>() {
+
+                @Override
+                public ValidationPlan load(List<ModelAttrAssoc> modAtts) {
+                    return compile(modAtts);
+                }
+            });
+
     public AbstractValidationService(IModelFinder modelFinder) {
         this.modelFinder = modelFinder;
     }
@@ -70,87 +92,113 @@ public abstract class AbstractValidationService<F extends AbstractFeature<Set<IP
             errors.reject("error.unknow.model.message", String.format("Unknow model %s", model));
             return errors;
         }
+        ValidationPlan plan = planCache.getUnchecked(modAtts);
         // Build fast property access map
         Map<String, IProperty<?>> pptyMap = IProperty.getPropertyMap(feature.getProperties());
-        // Get a copy of entity attributes values to optimize the search of unexpected properties
-        // FIXME check it's a real copy!
-        Set<String> toCheckProperties = new HashSet<>(pptyMap.keySet());
 
         // Loop over model attributes ... to validate each properties
-        for (ModelAttrAssoc modelAttrAssoc : modAtts) {
-            errors.addAllErrors(checkModelAttribute(modelAttrAssoc, objectName, mode, feature, pptyMap,
-                                                    toCheckProperties));
+        int checkedCount = 0;
+        List<String> uncheckedPaths = null;
+        for (AttributeValidation attValidation : plan.attributes) {
+            IProperty<?> att = pptyMap.get(attValidation.path);
+            if (checkModelAttribute(attValidation, att, mode, feature, errors)) {
+                if (att != null) {
+                    checkedCount++;
+                }
+            } else if (att != null) {
+                if (uncheckedPaths == null) {
+                    uncheckedPaths = new ArrayList<>();
+                }
+                uncheckedPaths.add(attValidation.path);
+            }
         }
 
-        // If properties isn't empty it means some properties are unexpected by the model
-        if (!toCheckProperties.isEmpty()) {
-            toCheckProperties.forEach(propPath -> errors
-                    .reject("error.unexpected.property.message",
-                            String.format("%s isn't expected by the model %s", propPath, model)));
+        // If some properties haven't been checked, it means they are unexpected by the model
+        if (checkedCount < pptyMap.size()) {
+            for (String propPath : pptyMap.keySet()) {
+                if (!plan.paths.contains(propPath) || ((uncheckedPaths != null) && uncheckedPaths.contains(propPath))) {
+                    errors.reject("error.unexpected.property.message",
+                                  String.format("%s isn't expected by the model %s", propPath, model));
+                }
+            }
         }
 
         return errors;
     }
 
     /**
-     * Validate a property according to its corresponding model attribute
-     * @param modelAttrAssoc model attribute
-     * @param objectName name of the object to validate
-     * @param pptyMap properties to check
-     * @param toCheckProperties properties not already checked
-     * @return validation errors
+     * Compile model attributes into a validation plan
      */
-    protected Errors checkModelAttribute(ModelAttrAssoc modelAttrAssoc, String objectName, ValidationMode mode,
-            F feature, Map<String, IProperty<?>> pptyMap, Set<String> toCheckProperties) {
-
-        Errors errors = new MapBindingResult(new HashMap<>(), objectName);
-
-        AttributeModel attModel = modelAttrAssoc.getAttribute();
-        String attPath = attModel.getJsonPropertyPath();
-
-        // Only validate attribute that have a ComputationMode of GIVEN. Otherwise the attribute value will most likely
-        // be missing and is added during the crawling process
-        if (modelAttrAssoc.getMode() == ComputationMode.GIVEN) {
-            LOGGER.debug("Computed key : \"{}\"", attPath);
+    private ValidationPlan compile(List<ModelAttrAssoc> modAtts) {
+        List<AttributeValidation> attributes = new ArrayList<>(modAtts.size());
+        Set<String> paths = new HashSet<>();
+        for (ModelAttrAssoc modelAttrAssoc : modAtts) {
+            String attPath = modelAttrAssoc.getAttribute().getJsonPropertyPath();
+            // Only attribute that have a ComputationMode of GIVEN are validated. Otherwise the attribute value will
+            // most likely be missing and is added during the crawling process
+            boolean given = modelAttrAssoc.getMode() == ComputationMode.GIVEN;
+            List<Validator> validators = given ? getModelValidators(modelAttrAssoc, attPath)
+                    : Collections.emptyList();
+            attributes.add(new AttributeValidation(modelAttrAssoc, attPath, given, validators));
+            paths.add(attPath);
+        }
+        return new ValidationPlan(attributes, paths);
+    }
 
-            // Retrieve property
-            IProperty<?> att = pptyMap.get(attPath);
+    /**
+     * Validate a property according to its corresponding compiled model attribute
+     * @param attValidation compiled model attribute
+     * @param att property to check (may be null)
+     * @param errors validation errors
+     * @return true if property has been checked (or is a computed one), false if it must be considered unexpected
+     */
+    private boolean checkModelAttribute(AttributeValidation attValidation, IProperty<?> att, ValidationMode mode,
+            F feature, Errors errors) {
+        if (!attValidation.given) {
+            // Ok, attribute is a computed one
+            return true;
+        }
+        AttributeModel attModel = attValidation.modelAttrAssoc.getAttribute();
+        String attPath = attValidation.path;
+        LOGGER.debug("Computed key : \"{}\"", attPath);
 
-            // Null property check
-            if (att == null) {
-                checkNullProperty(attModel, errors, mode);
-                return errors;
-            }
+        // Null property check
+        if (att == null) {
+            checkNullProperty(attModel, errors, mode);
+            return true;
+        }
 
-            // Null property value check
-            if (att.getValue() == null) {
-                checkNullPropertyValue(attModel, errors, mode);
-                return errors;
-            }
+        // Null property value check
+        if (att.getValue() == null) {
+            checkNullPropertyValue(attModel, errors, mode);
+            return false;
+        }
 
-            // Check if value is expected or not according to the validation context
-            checkAuthorizedPropertyValue(attModel, errors, mode);
+        // Check if value is expected or not according to the validation context
+        int errorCount = errors.getErrorCount();
+        checkAuthorizedPropertyValue(attModel, errors, mode);
+        if (errors.getErrorCount() > errorCount) {
+            // Ok, attribute has been checked
+            return true;
+        }
 
-            if (errors.hasErrors()) {
-                // Ok, attribute has been checked
-                toCheckProperties.remove(attPath);
-                return errors;
-            }
+        // Do validation
+        validate(attValidation.validators, att, attPath, errors);
+        validate(getContextValidators(attValidation.modelAttrAssoc, attPath, mode, feature), att, attPath, errors);
+        // Ok, attribute has been checked
+        return true;
+    }
 
-            // Do validation
-            for (Validator validator : getValidators(modelAttrAssoc, attPath, mode, feature)) {
-                if (validator.supports(att.getClass())) {
-                    validator.validate(att, errors);
-                } else {
-                    String defaultMessage = String.format("Unsupported validator \"%s\" for property \"%s\"",
-                                                          validator.getClass().getName(), attPath);
-                    errors.reject("error.unsupported.validator.message", defaultMessage);
-                }
+    private static void validate(List<Validator> validators, IProperty<?> att, String attPath, Errors errors) {
+        for (Validator validator : validators) {
+            if (validator.supports(att.getClass())) {
+                validator.validate(att, errors);
+            } else {
+                String defaultMessage = String.format("Unsupported validator \"%s\" for property \"%s\"",
+                                                      validator.getClass().getName(), attPath);
+                errors.reject("error.unsupported.validator.message", defaultMessage);
             }
         }
-        // Ok, attribute has been checked or is a computed one
-        toCheckProperties.remove(attPath);
-        return errors;
     }
 
     protected void checkNullProperty(AttributeModel attModel, Errors errors, ValidationMode mode) {
@@ -194,10 +242,10 @@ public abstract class AbstractValidationService<F extends AbstractFeature<Set<IP
     }
 
     /**
-     * Get validators
+     * Get validators only depending on model attribute (compiled once into validation plan, see
+     * {@link #getContextValidators(ModelAttrAssoc, String, ValidationMode, AbstractFeature)} for others)
      */
-    protected List<Validator> getValidators(ModelAttrAssoc modelAttrAssoc, String attributeKey, ValidationMode mode,
-            F feature) {
+    protected List<Validator> getModelValidators(ModelAttrAssoc modelAttrAssoc, String attributeKey) {
         AttributeModel attModel = modelAttrAssoc.getAttribute();
 
         List<Validator> validators = new ArrayList<>();
@@ -211,4 +259,50 @@ public abstract class AbstractValidationService<F extends AbstractFeature<Set<IP
         }
         return validators;
     }
+
+    /**
+     * Get validators depending on validation context (mode, feature), called for each validated property in addition to
+     * {@link #getModelValidators(ModelAttrAssoc, String)} ones
+     */
+    protected List<Validator> getContextValidators(ModelAttrAssoc modelAttrAssoc, String attributeKey,
+            ValidationMode mode, F feature) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Compiled model attribute
+     */
+    private static final class AttributeValidation {
+
+        private final ModelAttrAssoc modelAttrAssoc;
+
+        private final String path;
+
+        private final boolean given;
+
+        private final List<Validator> validators;
+
+        private AttributeValidation(ModelAttrAssoc modelAttrAssoc, String path, boolean given,
+                List<Validator> validators) {
+            this.modelAttrAssoc = modelAttrAssoc;
+            this.path = path;
+            this.given = given;
+            this.validators = validators;
+        }
+    }
+
+    /**
+     * Compiled model : ordered model attributes and all their paths
+     */
+    private static final class ValidationPlan {
+
+        private final List<AttributeValidation> attributes;
+
+        private final Set<String> paths;
+
+        private ValidationPlan(List<AttributeValidation> attributes, Set<String> paths) {
+            this.attributes = attributes;
+            this.paths = paths;
+        }
+    }
 }
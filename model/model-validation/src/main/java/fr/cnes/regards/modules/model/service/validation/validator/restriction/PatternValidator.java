@@ -19,11 +19,17 @@
 package fr.cnes.regards.modules.model.service.validation.validator.restriction;
 
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.validation.Errors;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import fr.cnes.regards.modules.model.domain.attributes.restriction.PatternRestriction;
 import fr.cnes.regards.modules.model.dto.properties.StringArrayProperty;
 import fr.cnes.regards.modules.model.dto.properties.StringProperty;
@@ -40,17 +46,55 @@ public class PatternValidator extends AbstractPropertyValidator {
     /**
      * Class logger
      */
-    @SuppressWarnings("unused")
     private static final Logger LOGGER = LoggerFactory.getLogger(PatternValidator.class);
 
+    /**
+     * Maximum number of compiled patterns kept in cache
+     */
+    private static final int PATTERN_CACHE_MAX_SIZE = 1000;
+
+    /**
+     * Compiled patterns shared by all validators (Pattern is immutable and thread-safe)
+     */
+    private static final LoadingCache<String, Pattern> PATTERN_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(PATTERN_CACHE_MAX_SIZE).build(new CacheLoader<String, Pattern>() {
+
+                @Override
+                public Pattern load(String regex) {
+                    return Pattern.compile(regex);
+                }
+            });
+
     /**
      * Configured restriction
      */
     private final PatternRestriction restriction;
 
+    /**
+     * Compiled restriction pattern (null if restriction pattern is invalid)
+     */
+    private final Pattern pattern;
+
     public PatternValidator(PatternRestriction pRestriction, String pAttributeKey) {
         super(pAttributeKey);
         this.restriction = pRestriction;
+        this.pattern = compile(pRestriction.getPattern());
+    }
+
+    /**
+     * Retrieve compiled pattern from cache
+     * @return compiled pattern or null if it is invalid
+     */
+    private static Pattern compile(String regex) {
+        try {
+            return PATTERN_CACHE.getUnchecked(regex);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof PatternSyntaxException) {
+                LOGGER.error("Invalid restriction pattern {}", regex, e.getCause());
+                return null;
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -70,14 +114,14 @@ public class PatternValidator extends AbstractPropertyValidator {
     }
 
     public void validate(StringProperty pTarget, Errors pErrors) {
-        if (!Pattern.matches(restriction.getPattern(), pTarget.getValue())) {
+        if ((pattern == null) || !pattern.matcher(pTarget.getValue()).matches()) {
             reject(pErrors);
         }
     }
 
     public void validate(StringArrayProperty pTarget, Errors pErrors) {
         for (String val : pTarget.getValue()) {
-            if (!Pattern.matches(restriction.getPattern(), val)) {
+            if ((pattern == null) || !pattern.matcher(val).matches()) {
                 reject(pErrors);
             }
         }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-2019 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.model.service.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.cache.CacheStats;
+
+import fr.cnes.regards.framework.amqp.ISubscriber;
+import fr.cnes.regards.framework.amqp.domain.TenantWrapper;
+import fr.cnes.regards.framework.multitenant.IRuntimeTenantResolver;
+import fr.cnes.regards.framework.multitenant.ITenantResolver;
+import fr.cnes.regards.modules.model.domain.Model;
+import fr.cnes.regards.modules.model.domain.ModelAttrAssoc;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModelBuilder;
+import fr.cnes.regards.modules.model.dto.event.ModelChangeEvent;
+import fr.cnes.regards.modules.model.dto.properties.PropertyType;
+
+/**
+ * Test model attributes cache : preloading, asynchronous reloading on model change and statistics
+ * @author oroussel
+ */
+public class AbstractCacheableModelFinderTest {
+
+    private static final String TENANT = "tenant";
+
+    private static final String MODEL = "model";
+
+    private static final String OTHER_MODEL = "other";
+
+    private TestModelFinder modelFinder;
+
+    private ISubscriber subscriber;
+
+    /**
+     * Model finder loading attributes from a map, loading can be blocked to simulate a slow database
+     */
+    private static class TestModelFinder extends AbstractCacheableModelFinder {
+
+        private final Map<String, List<ModelAttrAssoc>> attributesByModel = new ConcurrentHashMap<>();
+
+        private final Map<String, AtomicInteger> loadCounts = new ConcurrentHashMap<>();
+
+        /**
+         * Counted down when a blocked loading starts
+         */
+        private volatile CountDownLatch loadingStarted;
+
+        /**
+         * When not null, loading waits for it to be counted down
+         */
+        private volatile CountDownLatch loadingGate;
+
+        @Override
+        protected List<ModelAttrAssoc> loadAttributesByModel(String modelName) {
+            loadCounts.computeIfAbsent(modelName, m -> new AtomicInteger()).incrementAndGet();
+            CountDownLatch gate = loadingGate;
+            if (gate != null) {
+                loadingStarted.countDown();
+                try {
+                    gate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return attributesByModel.get(modelName);
+        }
+
+        @Override
+        protected List<String> loadModelNames() {
+            return new ArrayList<>(attributesByModel.keySet());
+        }
+
+        private int loadCount(String modelName) {
+            AtomicInteger count = loadCounts.get(modelName);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        modelFinder = new TestModelFinder();
+        subscriber = Mockito.mock(ISubscriber.class);
+        IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+        ITenantResolver tenantResolver = Mockito.mock(ITenantResolver.class);
+        Mockito.when(tenantResolver.getAllActiveTenants()).thenReturn(Collections.singleton(TENANT));
+        ReflectionTestUtils.setField(modelFinder, "subscriber", subscriber);
+        ReflectionTestUtils.setField(modelFinder, "runtimeTenantResolver", runtimeTenantResolver);
+        ReflectionTestUtils.setField(modelFinder, "tenantResolver", tenantResolver);
+        modelFinder.attributesByModel.put(MODEL, attributes(MODEL, "attr1"));
+        modelFinder.attributesByModel.put(OTHER_MODEL, attributes(OTHER_MODEL, "attr2"));
+    }
+
+    @After
+    public void tearDown() {
+        modelFinder.destroy();
+    }
+
+    private static List<ModelAttrAssoc> attributes(String modelName, String... attributeNames) {
+        Model model = new Model();
+        model.setName(modelName);
+        List<ModelAttrAssoc> attributes = new ArrayList<>();
+        for (String attributeName : attributeNames) {
+            attributes.add(new ModelAttrAssoc(AttributeModelBuilder.build(attributeName, PropertyType.STRING,
+                                                                          attributeName)
+                    .withoutRestriction(), model));
+        }
+        return attributes;
+    }
+
+    /**
+     * Wait (at most 10 s) for given condition to be true
+     */
+    private static void waitFor(Supplier<Boolean> condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10_000;
+        while (!condition.get() && (System.currentTimeMillis() < end)) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(condition.get());
+    }
+
+    @Test
+    public void testPreloading() {
+        Assert.assertNull(modelFinder.getStats(TENANT));
+        modelFinder.onApplicationEvent(null);
+        Mockito.verify(subscriber).subscribeTo(ModelChangeEvent.class, modelFinder);
+        Assert.assertEquals(1, modelFinder.loadCount(MODEL));
+        Assert.assertEquals(1, modelFinder.loadCount(OTHER_MODEL));
+
+        // Preloaded models are taken from cache
+        Assert.assertEquals(modelFinder.attributesByModel.get(MODEL), modelFinder.findByModel(MODEL));
+        Assert.assertEquals(modelFinder.attributesByModel.get(OTHER_MODEL), modelFinder.findByModel(OTHER_MODEL));
+        Assert.assertEquals(1, modelFinder.loadCount(MODEL));
+        Assert.assertEquals(1, modelFinder.loadCount(OTHER_MODEL));
+        CacheStats stats = modelFinder.getStats(TENANT);
+        Assert.assertEquals(2, stats.hitCount());
+        Assert.assertEquals(0, stats.missCount());
+
+        // Unknown model is a miss whose loading fails
+        Assert.assertNull(modelFinder.findByModel("unknown"));
+        stats = modelFinder.getStats(TENANT);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.loadExceptionCount());
+        Assert.assertNull(modelFinder.getStats("otherTenant"));
+    }
+
+    @Test
+    public void testAsyncReloadOnModelChange() throws InterruptedException {
+        modelFinder.onApplicationEvent(null);
+        List<ModelAttrAssoc> oldAttributes = modelFinder.findByModel(MODEL);
+        List<ModelAttrAssoc> newAttributes = attributes(MODEL, "attr1", "attr3");
+        modelFinder.attributesByModel.put(MODEL, newAttributes);
+        CountDownLatch loadingGate = new CountDownLatch(1);
+        modelFinder.loadingStarted = new CountDownLatch(1);
+        modelFinder.loadingGate = loadingGate;
+
+        modelFinder.handle(TenantWrapper.build(ModelChangeEvent.build(MODEL), TENANT));
+        Assert.assertTrue(modelFinder.loadingStarted.await(10, TimeUnit.SECONDS));
+        // Reloading is in progress : readers are not blocked and still get previous attributes
+        Assert.assertSame(oldAttributes, modelFinder.findByModel(MODEL));
+        Assert.assertEquals(modelFinder.attributesByModel.get(OTHER_MODEL), modelFinder.findByModel(OTHER_MODEL));
+
+        modelFinder.loadingGate = null;
+        loadingGate.countDown();
+        waitFor(() -> modelFinder.findByModel(MODEL) == newAttributes);
+        Assert.assertEquals(2, modelFinder.loadCount(MODEL));
+        Assert.assertEquals(1, modelFinder.loadCount(OTHER_MODEL));
+    }
+
+    @Test
+    public void testDeletedModelRemovedOnModelChange() throws InterruptedException {
+        modelFinder.onApplicationEvent(null);
+        Assert.assertNotNull(modelFinder.findByModel(MODEL));
+        modelFinder.attributesByModel.remove(MODEL);
+
+        modelFinder.handle(TenantWrapper.build(ModelChangeEvent.build(MODEL), TENANT));
+        waitFor(() -> modelFinder.findByModel(MODEL) == null);
+        Assert.assertNotNull(modelFinder.findByModel(OTHER_MODEL));
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017-2019 CNES - CENTRE NATIONAL d'ETUDES SPATIALES
+ *
+ * This file is part of REGARDS.
+ *
+ * REGARDS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * REGARDS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with REGARDS. If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.cnes.regards.modules.model.service.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.validation.Errors;
+import org.springframework.validation.MapBindingResult;
+import org.springframework.validation.ObjectError;
+import org.springframework.validation.Validator;
+
+import fr.cnes.regards.framework.geojson.AbstractFeature;
+import fr.cnes.regards.framework.modules.plugins.domain.PluginConfiguration;
+import fr.cnes.regards.framework.urn.EntityType;
+import fr.cnes.regards.modules.model.domain.ComputationMode;
+import fr.cnes.regards.modules.model.domain.Model;
+import fr.cnes.regards.modules.model.domain.ModelAttrAssoc;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModel;
+import fr.cnes.regards.modules.model.domain.attributes.AttributeModelBuilder;
+import fr.cnes.regards.modules.model.domain.attributes.Fragment;
+import fr.cnes.regards.modules.model.dto.properties.IProperty;
+import fr.cnes.regards.modules.model.dto.properties.PropertyType;
+
+/**
+ * Check that validation with compiled model attributes reports the same errors as the former per feature validation
+ * (kept here as reference implementation) and compare their performances
+ * @author oroussel
+ */
+public class AbstractValidationServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractValidationServiceTest.class);
+
+    private static final String MODEL = "model";
+
+    private static final String BENCH_MODEL = "bench";
+
+    private final Map<String, List<ModelAttrAssoc>> modelAttributes = new HashMap<>();
+
+    private final IModelFinder modelFinder = modelAttributes::get;
+
+    private TestValidationService validationService;
+
+    private ReferenceValidationService referenceService;
+
+    @Before
+    public void setUp() {
+        Model model = Model.build(MODEL, "Test model", EntityType.DATA);
+        Fragment fragment = Fragment.buildFragment("frag", "Test fragment");
+        List<ModelAttrAssoc> modAtts = new ArrayList<>();
+        modAtts.add(new ModelAttrAssoc(AttributeModelBuilder.build("name", PropertyType.STRING, "Name")
+                .withoutRestriction(), model));
+        modAtts.add(new ModelAttrAssoc(AttributeModelBuilder.build("size", PropertyType.INTEGER, "Size").isOptional()
+                .isAlterable().withoutRestriction(), model));
+        modAtts.add(new ModelAttrAssoc(AttributeModelBuilder.build("fixed", PropertyType.STRING, "Fixed").isOptional()
+                .withoutRestriction(), model));
+        modAtts.add(new ModelAttrAssoc(AttributeModelBuilder.build("code", PropertyType.STRING, "Code").isOptional()
+                .isAlterable().withPatternRestriction("[a-z]+"), model));
+        modAtts.add(new ModelAttrAssoc(AttributeModelBuilder.build("inner", PropertyType.STRING, "Inner")
+                .fragment(fragment).isOptional().isAlterable().withoutRestriction(), model));
+        ModelAttrAssoc computed = new ModelAttrAssoc(AttributeModelBuilder.build("computed", PropertyType.LONG,
+                                                                                 "Computed")
+                .isOptional().withoutRestriction(), model);
+        computed.setComputationConf(new PluginConfiguration());
+        Assert.assertEquals(ComputationMode.COMPUTED, computed.getMode());
+        modAtts.add(computed);
+        modelAttributes.put(MODEL, modAtts);
+
+        validationService = new TestValidationService(modelFinder);
+        referenceService = new ReferenceValidationService(modelFinder);
+    }
+
+    @Test
+    public void testValidFeature() {
+        TestFeature feature = new TestFeature(IProperty.buildString("name", "name"), IProperty.buildInteger("size", 1),
+                IProperty.buildString("code", "abc"),
+                IProperty.buildObject("frag", IProperty.buildString("inner", "inner")));
+        for (ValidationMode mode : Arrays.asList(ValidationMode.CREATION, ValidationMode.UPDATE)) {
+            Assert.assertFalse(validationService.validate(MODEL, feature, mode, "feature").hasErrors());
+            assertSameErrors(feature, mode);
+        }
+    }
+
+    @Test
+    public void testUnexpectedProperties() {
+        TestFeature feature = new TestFeature(IProperty.buildString("name", "name"),
+                IProperty.buildString("unknown", "unknown"),
+                IProperty.buildObject("frag", IProperty.buildString("inner", "inner"),
+                                      IProperty.buildString("other", "other")),
+                // Computed attributes can be given
+                IProperty.buildLong("computed", 1L));
+        Errors errors = validationService.validate(MODEL, feature, ValidationMode.CREATION, "feature");
+        Assert.assertEquals(2, errors.getErrorCount());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("unknown isn't expected by the model model",
+                                                        "frag.other isn't expected by the model model")),
+                            errors.getAllErrors().stream().map(ObjectError::getDefaultMessage)
+                                    .collect(Collectors.toSet()));
+        for (ValidationMode mode : ValidationMode.values()) {
+            assertSameErrors(feature, mode);
+        }
+    }
+
+    @Test
+    public void testNullValues() {
+        // Null valued properties are not considered as checked (so they are reported as unexpected)
+        TestFeature feature = new TestFeature(IProperty.buildString("name", null), IProperty.buildInteger("size", null),
+                IProperty.buildString("fixed", null), IProperty.buildString("unknown", null));
+        for (ValidationMode mode : ValidationMode.values()) {
+            Errors errors = assertSameErrors(feature, mode);
+            Assert.assertTrue(errors.getAllErrors().stream().map(ObjectError::getCode)
+                    .anyMatch("error.unexpected.property.message"::equals));
+        }
+        // Not alterable property cannot be unset in PATCH mode
+        Assert.assertTrue(validationService.validate(MODEL, feature, ValidationMode.PATCH, "feature").getAllErrors()
+                .stream().map(ObjectError::getCode).anyMatch("error.unset.non.alterable.property.message"::equals));
+    }
+
+    @Test
+    public void testMissingAndInvalidProperties() {
+        // Missing required property, wrong type and pattern mismatch
+        TestFeature feature = new TestFeature(IProperty.buildString("size", "notAnInteger"),
+                IProperty.buildString("code", "ABC"), IProperty.buildString("fixed", "fixed"));
+        for (ValidationMode mode : ValidationMode.values()) {
+            Assert.assertTrue(assertSameErrors(feature, mode).hasErrors());
+        }
+        // Empty feature
+        for (ValidationMode mode : ValidationMode.values()) {
+            assertSameErrors(new TestFeature(), mode);
+        }
+    }
+
+    @Test
+    public void testUnknownModel() {
+        Errors errors = validationService.validate("unknown", new TestFeature(), ValidationMode.CREATION, "feature");
+        Assert.assertEquals("error.unknow.model.message", errors.getGlobalError().getCode());
+    }
+
+    @Test
+    public void testContextValidatorsCalledForEachProperty() {
+        TestFeature feature = new TestFeature(IProperty.buildString("name", "name"), IProperty.buildInteger("size", 1));
+        validationService.validate(MODEL, feature, ValidationMode.UPDATE, "feature");
+        validationService.validate(MODEL, feature, ValidationMode.UPDATE, "feature");
+        Assert.assertEquals(Arrays.asList("name", "size", "name", "size"), validationService.contextValidatedPaths);
+    }
+
+    /**
+     * Manual benchmark comparing former and compiled validations durations (only logged, both still allocate a
+     * MapBindingResult and a property map per feature)
+     */
+    @Ignore("Benchmark, not a test : durations are only logged")
+    @Test
+    public void benchmarkValidation() {
+        Model model = Model.build(BENCH_MODEL, "Benchmark model", EntityType.DATA);
+        List<ModelAttrAssoc> modAtts = new ArrayList<>();
+        List<IProperty<?>> properties = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            AttributeModel attModel = (i % 5) == 0
+                    ? AttributeModelBuilder.build("att" + i, PropertyType.STRING, "att" + i)
+                            .withPatternRestriction("value[0-9]+")
+                    : AttributeModelBuilder.build("att" + i, PropertyType.STRING, "att" + i).withoutRestriction();
+            modAtts.add(new ModelAttrAssoc(attModel, model));
+            properties.add(IProperty.buildString("att" + i, "value" + i));
+        }
+        modelAttributes.put(BENCH_MODEL, modAtts);
+        List<TestFeature> features = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            features.add(new TestFeature(properties.toArray(new IProperty<?>[properties.size()])));
+        }
+        // Warm up
+        runValidation(referenceService, features);
+        runValidation(validationService, features);
+
+        long referenceDuration = runValidation(referenceService, features);
+        long planDuration = runValidation(validationService, features);
+        LOGGER.info("Validation of {} features with {} attributes: former validation {} ms, compiled validation {} ms",
+                    features.size(), modAtts.size(), referenceDuration, planDuration);
+    }
+
+    private long runValidation(IValidationService<TestFeature> service, List<TestFeature> features) {
+        long start = System.currentTimeMillis();
+        for (TestFeature feature : features) {
+            Assert.assertFalse(service.validate(BENCH_MODEL, feature, ValidationMode.CREATION, "feature").hasErrors());
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Check that both validations report the same errors (order apart)
+     */
+    private Errors assertSameErrors(TestFeature feature, ValidationMode mode) {
+        Errors errors = validationService.validate(MODEL, feature, mode, "feature");
+        Errors expected = referenceService.validate(MODEL, feature, mode, "feature");
+        Assert.assertEquals(String.format("Different errors in %s mode", mode), toSortedMessages(expected),
+                            toSortedMessages(errors));
+        return errors;
+    }
+
+    private static List<String> toSortedMessages(Errors errors) {
+        return errors.getAllErrors().stream().map(e -> e.getCode() + " : " + e.getDefaultMessage()).sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static class TestFeature extends AbstractFeature<Set<IProperty<?>>, String> {
+
+        private TestFeature(IProperty<?>... properties) {
+            this.properties = new HashSet<>(Arrays.asList(properties));
+        }
+    }
+
+    private static class TestValidationService extends AbstractValidationService<TestFeature> {
+
+        private final List<String> contextValidatedPaths = new ArrayList<>();
+
+        private TestValidationService(IModelFinder modelFinder) {
+            super(modelFinder);
+        }
+
+        @Override
+        protected List<Validator> getContextValidators(ModelAttrAssoc modelAttrAssoc, String attributeKey,
+                ValidationMode mode, TestFeature feature) {
+            contextValidatedPaths.add(attributeKey);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Former validation : validators are built and all property paths copied for each validated feature
+     */
+    private static class ReferenceValidationService extends AbstractValidationService<TestFeature> {
+
+        private final IModelFinder modelFinder;
+
+        private ReferenceValidationService(IModelFinder modelFinder) {
+            super(modelFinder);
+            this.modelFinder = modelFinder;
+        }
+
+        @Override
+        public Errors validate(String model, TestFeature feature, ValidationMode mode, String objectName) {
+            Errors errors = new MapBindingResult(new HashMap<>(), objectName);
+            List<ModelAttrAssoc> modAtts = modelFinder.findByModel(model);
+            if (modAtts == null) {
+                errors.reject("error.unknow.model.message", String.format("Unknow model %s", model));
+                return errors;
+            }
+            Map<String, IProperty<?>> pptyMap = IProperty.getPropertyMap(feature.getProperties());
+            Set<String> toCheckProperties = new HashSet<>(pptyMap.keySet());
+            for (ModelAttrAssoc modelAttrAssoc : modAtts) {
+                errors.addAllErrors(checkModelAttribute(modelAttrAssoc, objectName, mode, feature, pptyMap,
+                                                        toCheckProperties));
+            }
+            toCheckProperties.forEach(propPath -> errors
+                    .reject("error.unexpected.property.message",
+                            String.format("%s isn't expected by the model %s", propPath, model)));
+            return errors;
+        }
+
+        private Errors checkModelAttribute(ModelAttrAssoc modelAttrAssoc, String objectName, ValidationMode mode,
+                TestFeature feature, Map<String, IProperty<?>> pptyMap, Set<String> toCheckProperties) {
+            Errors errors = new MapBindingResult(new HashMap<>(), objectName);
+            AttributeModel attModel = modelAttrAssoc.getAttribute();
+            String attPath = attModel.getJsonPropertyPath();
+            if (modelAttrAssoc.getMode() == ComputationMode.GIVEN) {
+                IProperty<?> att = pptyMap.get(attPath);
+                if (att == null) {
+                    checkNullProperty(attModel, errors, mode);
+                    return errors;
+                }
+                if (att.getValue() == null) {
+                    checkNullPropertyValue(attModel, errors, mode);
+                    return errors;
+                }
+                checkAuthorizedPropertyValue(attModel, errors, mode);
+                if (errors.hasErrors()) {
+                    toCheckProperties.remove(attPath);
+                    return errors;
+                }
+                List<Validator> validators = new ArrayList<>(getModelValidators(modelAttrAssoc, attPath));
+                validators.addAll(getContextValidators(modelAttrAssoc, attPath, mode, feature));
+                for (Validator validator : validators) {
+                    if (validator.supports(att.getClass())) {
+                        validator.validate(att, errors);
+                    } else {
+                        errors.reject("error.unsupported.validator.message",
+                                      String.format("Unsupported validator \"%s\" for property \"%s\"",
+                                                    validator.getClass().getName(), attPath));
+                    }
+                }
+            }
+            toCheckProperties.remove(attPath);
+            return errors;
+        }
+    }
+}
@@ -24,7 +24,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -36,6 +35,7 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 
 import fr.cnes.regards.framework.amqp.ISubscriber;
@@ -72,15 +72,10 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
     private final IRuntimeTenantResolver runtimeTenantResolver;
 
     /**
-     * Store dynamic and static properties by tenant. <br/>
-     * Allows intelligent guess of attribute from a partial or complete JSON path preventing potential conflicts!<br/>
+     * Store properties maps by tenant. Maps of a tenant are fully built before being published all at once so readers
+     * never see a partially built map.
      */
-    private final ConcurrentMap<String, Map<String, AttributeModel>> propertyMap = new ConcurrentHashMap<>();
-
-    /**
-     * Store dynamic and static properties by tenant and type for full text search
-     */
-    private final ConcurrentMap<String, Multimap<PropertyType, AttributeModel>> typedPropertyMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TenantProperties> tenantPropertiesMap = new ConcurrentHashMap<>();
 
     public AttributeFinder(IAttributeHelper attributeModelClient, ISubscriber subscriber,
             IRuntimeTenantResolver runtimeTenantResolver) {
@@ -92,7 +87,7 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
     @Override
     public AttributeModel findByName(String name) throws OpenSearchUnknownParameter {
 
-        AttributeModel attModel = getTenantMap().get(name);
+        AttributeModel attModel = getTenantProperties().propertyMap.get(name);
 
         if (attModel == null) {
             String errorMessage = String.format("Unknown parameter %s for tenant %s", name,
@@ -107,7 +102,7 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
     @Override
     public Set<AttributeModel> findByType(PropertyType type) throws OpenSearchUnknownParameter {
 
-        Collection<AttributeModel> ppties = getTenantTypedMap().get(type);
+        Collection<AttributeModel> ppties = getTenantProperties().typedPropertyMap.get(type);
         if (ppties == null) {
             String errorMessage = String.format("No parameter found with type %s for tenant %s", type,
                                                 runtimeTenantResolver.getTenant());
@@ -127,13 +122,12 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
             return name;
         }
 
-        for (Entry<String, AttributeModel> entry : getTenantMap().entrySet()) {
-            AttributeModel att = entry.getValue();
-            if (att.isDynamic() && (att.getId() != null) && att.getId().equals(attribute.getId())) {
-                if (entry.getKey().length() < name.length()) {
-                    name = entry.getKey();
-                }
-            }
+        if (attribute.getId() == null) {
+            return name;
+        }
+        String shortestName = getTenantProperties().nameMap.get(attribute.getId());
+        if ((shortestName != null) && (shortestName.length() < name.length())) {
+            name = shortestName;
         }
         return name;
     }
@@ -143,20 +137,14 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
         computePropertyMap(tenant);
     }
 
-    private Map<String, AttributeModel> getTenantMap() {
-        String tenant = runtimeTenantResolver.getTenant();
-        if (!propertyMap.containsKey(tenant)) {
-            computePropertyMap(tenant);
-        }
-        return propertyMap.get(tenant);
-    }
-
-    private Multimap<PropertyType, AttributeModel> getTenantTypedMap() {
+    private TenantProperties getTenantProperties() {
         String tenant = runtimeTenantResolver.getTenant();
-        if (!typedPropertyMap.containsKey(tenant)) {
+        TenantProperties tenantProperties = tenantPropertiesMap.get(tenant);
+        if (tenantProperties == null) {
             computePropertyMap(tenant);
+            tenantProperties = tenantPropertiesMap.get(tenant);
         }
-        return typedPropertyMap.get(tenant);
+        return tenantProperties;
     }
 
     /**
@@ -217,10 +205,6 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
         // Add static properties
         initStaticProperties(tenantMap, tenantTypeMap);
 
-        // Reference tenant maps (override maybe)
-        propertyMap.put(tenant, tenantMap);
-        typedPropertyMap.put(tenant, tenantTypeMap);
-
         // Conflictual dynamic keys to be removed
         List<String> conflictualKeys = new ArrayList<>();
 
@@ -262,6 +246,20 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
             // - Add mapping between fully qualified property and attribute
             tenantMap.put(attModel.getFullJsonPath(), attModel);
         }
+
+        // Build reverse index : dynamic attribute id -> shortest name
+        Map<Long, String> nameMap = new HashMap<>();
+        tenantMap.forEach((key, att) -> {
+            if (att.isDynamic() && (att.getId() != null)) {
+                String name = nameMap.get(att.getId());
+                if ((name == null) || (key.length() < name.length())) {
+                    nameMap.put(att.getId(), key);
+                }
+            }
+        });
+
+        // Reference tenant maps (override maybe)
+        tenantPropertiesMap.put(tenant, new TenantProperties(tenantMap, tenantTypeMap, nameMap));
     }
 
     @Override
@@ -309,7 +307,36 @@ public class AttributeFinder implements IAttributeFinder, ApplicationListener<Ap
     }
 
     protected Map<String, Map<String, AttributeModel>> getPropertyMap() {
-        return propertyMap;
+        return Maps.transformValues(tenantPropertiesMap, tenantProperties -> tenantProperties.propertyMap);
+    }
+
+    /**
+     * Tenant properties maps
+     */
+    private static final class TenantProperties {
+
+        /**
+         * Dynamic and static properties. <br/>
+         * Allows intelligent guess of attribute from a partial or complete JSON path preventing potential conflicts!<br/>
+         */
+        private final Map<String, AttributeModel> propertyMap;
+
+        /**
+         * Dynamic and static properties by type for full text search
+         */
+        private final Multimap<PropertyType, AttributeModel> typedPropertyMap;
+
+        /**
+         * Shortest name of dynamic properties by attribute id (reverse index of propertyMap)
+         */
+        private final Map<Long, String> nameMap;
+
+        private TenantProperties(Map<String, AttributeModel> propertyMap,
+                Multimap<PropertyType, AttributeModel> typedPropertyMap, Map<Long, String> nameMap) {
+            this.propertyMap = propertyMap;
+            this.typedPropertyMap = typedPropertyMap;
+            this.nameMap = nameMap;
+        }
     }
 
 }
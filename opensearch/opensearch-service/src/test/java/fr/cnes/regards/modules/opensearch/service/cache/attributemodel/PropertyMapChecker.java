@@ -58,8 +58,9 @@ public class PropertyMapChecker {
     public void init() {
         atts = new ArrayList<>();
         attributeHelper = Mockito.mock(IAttributeHelper.class);
-        finder = new AttributeFinder(attributeHelper, Mockito.mock(ISubscriber.class),
-                Mockito.mock(IRuntimeTenantResolver.class));
+        IRuntimeTenantResolver runtimeTenantResolver = Mockito.mock(IRuntimeTenantResolver.class);
+        Mockito.when(runtimeTenantResolver.getTenant()).thenReturn(TENANT);
+        finder = new AttributeFinder(attributeHelper, Mockito.mock(ISubscriber.class), runtimeTenantResolver);
     }
 
     private Map<String, AttributeModel> getBuiltMap(List<AttributeModel> atts) {
@@ -163,4 +164,62 @@ public class PropertyMapChecker {
                 .containsKey(startDateModel2.getJsonPathForNamespace(StaticProperties.FEATURE_PROPERTIES)));
         Assert.assertTrue(builtMap.containsKey(startDateModel2.getFullJsonPath()));
     }
+
+    /**
+     * Former {@link AttributeFinder#findName(AttributeModel)} implementation scanning the whole property map, kept as
+     * reference for the reverse index
+     */
+    private static String scanName(Map<String, AttributeModel> builtMap, AttributeModel attribute) {
+        String name = attribute.getFullJsonPath();
+        if (!attribute.isDynamic() && (attribute.getId() != null)) {
+            return name;
+        }
+        for (Map.Entry<String, AttributeModel> entry : builtMap.entrySet()) {
+            AttributeModel att = entry.getValue();
+            if (att.isDynamic() && (att.getId() != null) && att.getId().equals(attribute.getId())) {
+                if (entry.getKey().length() < name.length()) {
+                    name = entry.getKey();
+                }
+            }
+        }
+        return name;
+    }
+
+    @Test
+    public void shortestName() {
+        // Define attributes, both START_DATE conflict on their short name
+        String startDate = "START_DATE";
+        AttributeModel startDateModel = AttributeModelBuilder.build(startDate, PropertyType.DATE_ISO8601, "Start date")
+                .withId(1L).fragment(Fragment.buildFragment("fragment1", "description")).get();
+        atts.add(startDateModel);
+        AttributeModel startDateModel2 = AttributeModelBuilder
+                .build(startDate, PropertyType.DATE_ISO8601, "Start date 2").withId(2L)
+                .fragment(Fragment.buildFragment("fragment2", "description")).get();
+        atts.add(startDateModel2);
+        AttributeModel stopDateModel = AttributeModelBuilder.build("STOP_DATE", PropertyType.DATE_ISO8601, "Stop date")
+                .withId(3L).get();
+        atts.add(stopDateModel);
+        AttributeModel sizeModel = AttributeModelBuilder.build("SIZE", PropertyType.INTEGER, "Size").withId(4L)
+                .fragment(Fragment.buildFragment("fragment1", "description")).get();
+        atts.add(sizeModel);
+
+        // Build and get map
+        Map<String, AttributeModel> builtMap = getBuiltMap(atts);
+
+        // Reverse index gives the same shortest name as the former scan
+        for (AttributeModel att : atts) {
+            Assert.assertEquals(scanName(builtMap, att), finder.findName(att));
+        }
+        Assert.assertEquals(startDateModel.getJsonPathForNamespace(""), finder.findName(startDateModel));
+        Assert.assertEquals(startDateModel2.getJsonPathForNamespace(""), finder.findName(startDateModel2));
+        Assert.assertEquals("STOP_DATE", finder.findName(stopDateModel));
+        Assert.assertEquals("SIZE", finder.findName(sizeModel));
+
+        // Static attribute and attribute without id keep their full path
+        AttributeModel tagsModel = builtMap.get(StaticProperties.FEATURE_TAGS);
+        Assert.assertEquals(scanName(builtMap, tagsModel), finder.findName(tagsModel));
+        AttributeModel unsavedModel = AttributeModelBuilder.build("UNSAVED", PropertyType.STRING, "Unsaved").get();
+        Assert.assertEquals(unsavedModel.getFullJsonPath(), finder.findName(unsavedModel));
+        Assert.assertEquals(scanName(builtMap, unsavedModel), finder.findName(unsavedModel));
+    }
 }